@@ -0,0 +1,59 @@
+package com.garantias.benchmarks;
+
+import com.garantias.analytics.FacturaAnalytics;
+import com.garantias.analytics.GarantiaAnalytics;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Garantia.EstadoGarantia;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * Consultas de gráficas sobre la instantánea columnar (objetivo: menos de 10 ms con 1M filas)
+ */
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark extends BenchmarkDefaults {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private GarantiaAnalytics garantias;
+    private FacturaAnalytics facturas;
+
+    @Setup
+    public void setup() {
+        garantias = GarantiaAnalytics.of(BenchmarkData.garantiaDocuments(size), size);
+        facturas = FacturaAnalytics.of(BenchmarkData.facturaDocuments(size), size);
+    }
+
+    @Benchmark
+    public Map<EstadoGarantia, Long> countByEstado() {
+        return garantias.countByEstado();
+    }
+
+    @Benchmark
+    public Map<String, Long> topMarcasActivas() {
+        return garantias.topMarcas(8, EstadoGarantia.ACTIVA);
+    }
+
+    @Benchmark
+    public Map<YearMonth, Long> vencimientosPorMes() {
+        return garantias.vencimientosPorMes(YearMonth.of(2023, 1), 36, EstadoGarantia.ACTIVA);
+    }
+
+    @Benchmark
+    public Map<YearMonth, Long> facturacionPorMes() {
+        return facturas.facturacionPorMes(YearMonth.of(2022, 1), 36, EstadoFactura.PAGADA);
+    }
+
+    @Benchmark
+    public Object totalesPorMetodoPago() {
+        return facturas.totalesPorMetodoPago(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31), null);
+    }
+}
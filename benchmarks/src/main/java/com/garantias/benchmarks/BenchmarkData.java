@@ -0,0 +1,139 @@
+package com.garantias.benchmarks;
+
+import com.garantias.model.Factura;
+import com.garantias.util.Dinero;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Datos deterministas para los benchmarks, con la misma forma que los documentos de MongoDB
+ */
+final class BenchmarkData {
+
+    static final long SEED = 42L;
+
+    private static final String[] MARCAS = {"Daikin", "Mitsubishi", "Samsung", "LG", "Fujitsu", "Panasonic", "Toshiba", "Carrier"};
+    private static final int[] BTU = {9000, 12000, 12000, 12000, 18000, 18000, 24000};
+    private static final String[] NOMBRES = {"María", "José", "Antonio", "Carmen", "Lucía", "Javier", "Ana", "Pedro"};
+    private static final String[] APELLIDOS = {"García", "Martínez", "López", "Sánchez", "Pérez", "Gómez", "Ruiz", "Díaz"};
+    private static final String[] ESTADOS_GARANTIA = {"ACTIVA", "ACTIVA", "ACTIVA", "VENCIDA", "VENCIDA", "RECLAMADA", "ANULADA"};
+    private static final String[] ESTADOS_FACTURA = {"PAGADA", "PAGADA", "PAGADA", "PENDIENTE", "ANULADA"};
+    private static final String[] METODOS = {"EFECTIVO", "TARJETA", "TRANSFERENCIA", "BIZUM", "FINANCIADO"};
+    private static final String[] CONCEPTOS = {"Instalación split", "Carga de gas R-32", "Revisión anual", "Sustitución compresor", "Mano de obra"};
+
+    private BenchmarkData() {}
+
+    static List<Document> garantiaDocuments(int n) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Document> docs = new ArrayList<>(n);
+        LocalDate base = LocalDate.of(2022, 1, 1);
+        for (int i = 0; i < n; i++) {
+            LocalDate inicio = base.plusDays(random.nextInt(1100));
+            int meses = 12 * (1 + random.nextInt(5));
+            docs.add(new Document("_id", new ObjectId())
+                .append("numeroGarantia", String.format("GAR-%d-%06d", inicio.getYear(), i))
+                .append("cliente", new Document("nombre", nombre(random))
+                    .append("telefono", "6" + (10000000 + random.nextInt(89999999)))
+                    .append("email", "cliente" + i + "@correo.es")
+                    .append("direccion", "Calle Mayor " + random.nextInt(200) + ", Valencia"))
+                .append("aireAcondicionado", new Document("marca", pick(random, MARCAS))
+                    .append("modelo", "M" + random.nextInt(1000))
+                    .append("numeroSerie", "SN" + Long.toHexString(random.nextLong()))
+                    .append("tipoRefrigerante", "R-32")
+                    .append("potenciaBTU", BTU[random.nextInt(BTU.length)])
+                    .append("fechaInstalacion", date(inicio)))
+                .append("garantia", new Document("fechaInicio", date(inicio))
+                    .append("fechaFin", date(inicio.plusMonths(meses)))
+                    .append("duracionMeses", meses)
+                    .append("tipo", random.nextInt(4) == 0 ? "EXTENDIDA" : "COMPLETA")
+                    .append("estado", pick(random, ESTADOS_GARANTIA))
+                    .append("cobertura", Arrays.asList("compresor", "evaporador", "condensador", "mano_obra")))
+                .append("notas", "")
+                .append("creadoPor", "admin")
+                .append("fechaCreacion", new Date())
+                .append("fechaActualizacion", new Date()));
+        }
+        return docs;
+    }
+
+    static List<Document> facturaDocuments(int n) {
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        List<Document> docs = new ArrayList<>(n);
+        LocalDate base = LocalDate.of(2022, 1, 1);
+        for (int i = 0; i < n; i++) {
+            List<Document> items = new ArrayList<>();
+            // Importes como los guarda FacturaMapper: Decimal128 en céntimos
+            long subtotal = 0;
+            long totalIVA = 0;
+            int lineas = 1 + random.nextInt(4);
+            for (int l = 0; l < lineas; l++) {
+                int cantidad = 1 + random.nextInt(3);
+                long precio = 2000 + random.nextInt(80000);
+                long importe = cantidad * precio;
+                long iva = Dinero.porcentaje(importe, 21);
+                subtotal += importe;
+                totalIVA += iva;
+                items.add(new Document("descripcion", pick(random, CONCEPTOS))
+                    .append("cantidad", cantidad)
+                    .append("precioUnitario", Dinero.aDecimal128(precio))
+                    .append("iva", 21)
+                    .append("total", Dinero.aDecimal128(importe + iva)));
+            }
+            docs.add(new Document("_id", new ObjectId())
+                .append("numeroFactura", String.format("FAC-%06d", i))
+                .append("garantiaId", new ObjectId())
+                .append("cliente", new Document("nombre", nombre(random))
+                    .append("nif", (10000000 + random.nextInt(89999999)) + "X")
+                    .append("direccion", "Avenida del Puerto " + random.nextInt(300)))
+                .append("items", items)
+                .append("subtotal", Dinero.aDecimal128(subtotal))
+                .append("totalIVA", Dinero.aDecimal128(totalIVA))
+                .append("total", Dinero.aDecimal128(subtotal + totalIVA))
+                .append("estado", pick(random, ESTADOS_FACTURA))
+                .append("metodoPago", pick(random, METODOS))
+                .append("notas", "")
+                .append("fechaEmision", date(base.plusDays(random.nextInt(1100)))));
+        }
+        return docs;
+    }
+
+    static List<Factura> facturas(int n) {
+        SplittableRandom random = new SplittableRandom(SEED + 2);
+        List<Factura> facturas = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Factura f = new Factura(String.format("FAC-%06d", i), new Factura.DatosCliente(nombre(random), "00000000T", ""));
+            int lineas = 1 + random.nextInt(4);
+            List<Factura.ItemFactura> items = new ArrayList<>(lineas);
+            for (int l = 0; l < lineas; l++) {
+                items.add(new Factura.ItemFactura(pick(random, CONCEPTOS), 1 + random.nextInt(3),
+                    20 + random.nextInt(80000) / 100.0, 21));
+            }
+            f.setItems(items);
+            facturas.add(f);
+        }
+        return facturas;
+    }
+
+    /**
+     * El driver devuelve java.util.Date (no java.sql.Date) al leer fechas
+     */
+    private static Date date(LocalDate fecha) {
+        return Date.from(fecha.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String nombre(SplittableRandom random) {
+        return pick(random, NOMBRES) + " " + pick(random, APELLIDOS) + " " + pick(random, APELLIDOS);
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
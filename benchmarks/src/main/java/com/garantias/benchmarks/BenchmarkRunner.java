@@ -0,0 +1,32 @@
+package com.garantias.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lanza las suites con el profiler de GC/asignación y guarda el resultado en JSON.
+ * <p>
+ * Acepta las opciones habituales de JMH (p. ej. {@code -p size=1000,100000} o un
+ * patrón de benchmarks); por defecto escribe {@code baselines/baseline.json}.
+ */
+public class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT = "baselines/baseline.json";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+
+        Options options = new OptionsBuilder()
+            .parent(cli)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(cli.getResult().orElse(DEFAULT_RESULT))
+            .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,45 @@
+package com.garantias.benchmarks;
+
+import com.garantias.model.Factura;
+import com.garantias.service.FacturaMapper;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Cálculo de importes: Factura.recalcularTotales y la suma en cliente de getTotalFacturado
+ */
+@State(Scope.Benchmark)
+public class FacturaTotalesBenchmark extends BenchmarkDefaults {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Factura> facturas;
+    private List<Document> facturaDocs;
+
+    @Setup
+    public void setup() {
+        facturas = BenchmarkData.facturas(size);
+        facturaDocs = BenchmarkData.facturaDocuments(size);
+    }
+
+    @Benchmark
+    public void recalcularTotales(Blackhole bh) {
+        for (Factura f : facturas) {
+            f.recalcularTotales();
+            bh.consume(f.getTotalCentimos());
+        }
+    }
+
+    @Benchmark
+    public long sumTotales() {
+        return FacturaMapper.sumTotales(facturaDocs);
+    }
+}
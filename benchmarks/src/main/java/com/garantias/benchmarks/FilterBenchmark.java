@@ -0,0 +1,69 @@
+package com.garantias.benchmarks;
+
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.service.FacturaMapper;
+import com.garantias.service.GarantiaMapper;
+import com.garantias.util.FacturaFilter;
+import com.garantias.util.GarantiaFilter;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Predicados de filtrado de las tablas de garantías y facturas (applyFilters)
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark extends BenchmarkDefaults {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    /** Texto de búsqueda tal como lo teclea el usuario (vacío = solo filtro de estado) */
+    @Param({"", "garcía"})
+    public String search;
+
+    private List<Garantia> garantias;
+    private List<Factura> facturas;
+
+    @Setup
+    public void setup() {
+        garantias = new ArrayList<>(size);
+        for (Document doc : BenchmarkData.garantiaDocuments(size)) {
+            garantias.add(GarantiaMapper.toGarantia(doc));
+        }
+        facturas = new ArrayList<>(size);
+        for (Document doc : BenchmarkData.facturaDocuments(size)) {
+            facturas.add(FacturaMapper.toFactura(doc));
+        }
+    }
+
+    @Benchmark
+    public int filtrarGarantias() {
+        return count(garantias, new GarantiaFilter(EstadoGarantia.ACTIVA, search));
+    }
+
+    @Benchmark
+    public int filtrarFacturas() {
+        return count(facturas, new FacturaFilter(EstadoFactura.PAGADA,
+            LocalDate.of(2022, 6, 1), LocalDate.of(2024, 6, 1), search));
+    }
+
+    private static <T> int count(List<T> items, Predicate<T> filter) {
+        int visible = 0;
+        for (T item : items) {
+            if (filter.test(item)) visible++;
+        }
+        return visible;
+    }
+}
@@ -0,0 +1,60 @@
+package com.garantias.benchmarks;
+
+import com.garantias.model.Garantia;
+import com.garantias.service.FacturaMapper;
+import com.garantias.service.GarantiaMapper;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversión Document <-> modelo (GarantiaMapper / FacturaMapper) sobre N registros
+ */
+@State(Scope.Benchmark)
+public class MappingBenchmark extends BenchmarkDefaults {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Document> garantiaDocs;
+    private List<Garantia> garantias;
+    private List<Document> facturaDocs;
+
+    @Setup
+    public void setup() {
+        garantiaDocs = BenchmarkData.garantiaDocuments(size);
+        garantias = new ArrayList<>(size);
+        for (Document doc : garantiaDocs) {
+            garantias.add(GarantiaMapper.toGarantia(doc));
+        }
+        facturaDocs = BenchmarkData.facturaDocuments(size);
+    }
+
+    @Benchmark
+    public void documentToGarantia(Blackhole bh) {
+        for (Document doc : garantiaDocs) {
+            bh.consume(GarantiaMapper.toGarantia(doc));
+        }
+    }
+
+    @Benchmark
+    public void garantiaToDocument(Blackhole bh) {
+        for (Garantia g : garantias) {
+            bh.consume(GarantiaMapper.toDocument(g));
+        }
+    }
+
+    @Benchmark
+    public void documentToFactura(Blackhole bh) {
+        for (Document doc : facturaDocs) {
+            bh.consume(FacturaMapper.toFactura(doc));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.garantias.benchmarks.loadtest;
+
+import com.garantias.service.ClienteService;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+import java.net.InetSocketAddress;
+
+/**
+ * MongoDB en memoria (mongo-java-server) para ejecutar la prueba sin Docker.
+ * No reproduce el rendimiento real de mongod: sirve para validar la mezcla de
+ * operaciones, la concurrencia y las colisiones de numeración.
+ */
+final class EmbeddedMongo implements AutoCloseable {
+
+    private final MongoServer server = new MongoServer(new MemoryBackend());
+    private final String uri;
+
+    EmbeddedMongo() {
+        InetSocketAddress address = server.bind();
+        this.uri = "mongodb://" + address.getHostString() + ":" + address.getPort() + "/garantias_db";
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    /**
+     * Índices de mongo-init/init-db.js (salvo el de texto, que el servidor en memoria no admite)
+     */
+    static void createIndexes(MongoDatabase db) {
+        db.getCollection("garantias").createIndex(Indexes.ascending("numeroGarantia"), new IndexOptions().unique(true));
+        db.getCollection("garantias").createIndex(Indexes.ascending("aireAcondicionado.numeroSerie"));
+        db.getCollection("garantias").createIndex(Indexes.ascending("garantia.fechaFin"));
+        db.getCollection("garantias").createIndex(Indexes.ascending("garantia.estado"));
+        db.getCollection("facturas").createIndex(Indexes.ascending("numeroFactura"), new IndexOptions().unique(true));
+        db.getCollection("facturas").createIndex(Indexes.ascending("garantiaId"));
+        db.getCollection("facturas").createIndex(Indexes.ascending("estado"));
+        db.getCollection("facturas").createIndex(Indexes.ascending("fechaEmision"));
+        db.getCollection("reparaciones").createIndex(Indexes.compoundIndex(Indexes.ascending("garantiaId"), Indexes.descending("fecha")));
+        db.getCollection("reparaciones").createIndex(Indexes.compoundIndex(Indexes.ascending("tecnico"), Indexes.descending("fecha")));
+        db.getCollection("reparaciones").createIndex(Indexes.descending("fecha"));
+        ClienteService.crearIndices(db);
+    }
+
+    @Override
+    public void close() {
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,84 @@
+package com.garantias.benchmarks.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias (µs) y contadores de una operación; seguro entre hilos
+ */
+final class OperationStats {
+
+    private static final long MAX_LATENCY_US = TimeUnit.MINUTES.toMicros(10);
+
+    final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_US, 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    void recordSuccess(long nanos) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY_US));
+        completed.increment();
+    }
+
+    void recordError(long nanos, boolean duplicateKey) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_LATENCY_US));
+        completed.increment();
+        if (duplicateKey) {
+            collisions.increment();
+        } else {
+            errors.increment();
+        }
+    }
+
+    long completed() {
+        return completed.sum();
+    }
+
+    /**
+     * Cierra el intervalo actual y devuelve su resultado (pone los contadores a cero)
+     */
+    Result interval(double seconds) {
+        Histogram histogram = recorder.getIntervalHistogram();
+        completed.reset();
+        return new Result(name, histogram, errors.sumThenReset(), collisions.sumThenReset(), seconds);
+    }
+
+    /**
+     * Resultado de un intervalo de medición
+     */
+    static final class Result {
+        final String operation;
+        final long count;
+        final long errors;
+        final long collisions;
+        final double throughput;
+        final double p50Ms;
+        final double p99Ms;
+        final double p999Ms;
+        final double maxMs;
+
+        Result(String operation, Histogram h, long errors, long collisions, double seconds) {
+            this.operation = operation;
+            this.count = h.getTotalCount();
+            this.errors = errors;
+            this.collisions = collisions;
+            this.throughput = seconds > 0 ? count / seconds : 0;
+            this.p50Ms = h.getValueAtPercentile(50) / 1000.0;
+            this.p99Ms = h.getValueAtPercentile(99) / 1000.0;
+            this.p999Ms = h.getValueAtPercentile(99.9) / 1000.0;
+            this.maxMs = h.getMaxValue() / 1000.0;
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : 100.0 * (errors + collisions) / count;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.garantias.benchmarks.loadtest;
+
+import ch.qos.logback.classic.Level;
+import com.garantias.config.MongoDBConfig;
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.service.GarantiaService;
+import com.garantias.service.Outbox;
+import com.garantias.util.CircuitBreaker;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprobación del reenvío de altas sin conexión contra números ya ocupados.
+ * <p>
+ * Con un MongoDB en memoria, abre el circuit breaker para simular el corte, deja en el
+ * diario altas y cambios de garantías y los reenvía al recuperar la conexión:
+ * <ul>
+ *   <li>un alta provisional recibe el siguiente número libre y un cambio posterior sin
+ *       base no le vuelve a poner el provisional;</li>
+ *   <li>un alta con un número definitivo que ya tiene otra garantía se aparta en
+ *       {@code outbox.dead.jsonl};</li>
+ *   <li>un alta provisional cuyo siguiente número está siempre ocupado se aparta tras los
+ *       reintentos, sin guardarse con un número ajeno.</li>
+ * </ul>
+ * Termina con código 1 si alguna comprobación falla.
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.garantias.benchmarks.loadtest.OutboxReplayCheck
+ * </pre>
+ */
+public class OutboxReplayCheck {
+
+    private static final List<String> fallos = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.garantias")).setLevel(Level.ERROR);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.mongodb")).setLevel(Level.ERROR);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("de.bwaldvogel")).setLevel(Level.OFF);
+
+        Path dir = Files.createTempDirectory("outbox-check");
+        System.setProperty(Outbox.DIR_PROPERTY, dir.toString());
+
+        try (EmbeddedMongo embedded = new EmbeddedMongo()) {
+            System.setProperty("garantias.mongo.uri", embedded.getUri());
+            EmbeddedMongo.createIndexes(MongoDBConfig.getDatabase());
+            MongoCollection<Document> garantias = MongoDBConfig.getDatabase().getCollection("garantias");
+            GarantiaService service = new GarantiaService();
+            String prefix = "GAR-" + LocalDate.now().getYear() + "-";
+
+            // ========================================
+            // NÚMERO PROVISIONAL Y NÚMERO DEFINITIVO OCUPADO
+            // ========================================
+
+            garantias.insertOne(new Document("_id", new ObjectId()).append("numeroGarantia", prefix + "0001"));
+
+            sinConexion();
+            Garantia provisional = nuevaGarantia(service.reservarNumero());
+            service.insert(provisional);
+            Garantia ocupada = nuevaGarantia(prefix + "0001");
+            service.insert(ocupada);
+            // Cambio sin base (no leído con findById): lleva el documento entero
+            Garantia cambio = nuevaGarantia(provisional.getNumeroGarantia());
+            cambio.setId(provisional.getId());
+            cambio.getGarantia().setEstado(EstadoGarantia.RECLAMADA);
+            service.update(cambio);
+            comprobar(Outbox.pendientes() == 3, "3 escrituras en el diario, hay " + Outbox.pendientes());
+
+            conConexion();
+            Outbox.replay();
+            Document enviada = garantias.find(Filters.eq("_id", provisional.getId())).first();
+            comprobar(enviada != null, "el alta provisional se ha enviado");
+            if (enviada != null) {
+                comprobar((prefix + "0002").equals(enviada.getString("numeroGarantia")),
+                    "el alta provisional conserva el número definitivo, tiene " + enviada.getString("numeroGarantia"));
+                comprobar(EstadoGarantia.RECLAMADA.name().equals(enviada.get("garantia", Document.class).getString("estado")),
+                    "el cambio posterior se ha aplicado");
+            }
+            comprobar(garantias.find(Filters.eq("_id", ocupada.getId())).first() == null,
+                "el alta con número ocupado no se ha guardado");
+            comprobar(apartada(dir, ocupada.getId()), "el alta con número ocupado está en outbox.dead.jsonl");
+
+            // ========================================
+            // NÚMERO SIGUIENTE SIEMPRE OCUPADO
+            // ========================================
+
+            // "0011" y "00010" (importado con otro relleno): el siguiente calculado es "0011"
+            garantias.insertOne(new Document("_id", new ObjectId()).append("numeroGarantia", prefix + "0011"));
+            garantias.insertOne(new Document("_id", new ObjectId()).append("numeroGarantia", prefix + "00010"));
+
+            sinConexion();
+            Garantia sinHueco = nuevaGarantia(service.reservarNumero());
+            service.insert(sinHueco);
+
+            conConexion();
+            Outbox.replay();
+            comprobar(garantias.find(Filters.eq("_id", sinHueco.getId())).first() == null,
+                "el alta sin número libre no se ha guardado con un número ajeno");
+            comprobar(apartada(dir, sinHueco.getId()), "el alta sin número libre está en outbox.dead.jsonl");
+            comprobar(Outbox.pendientes() == 0, "no queda nada pendiente, hay " + Outbox.pendientes());
+        } finally {
+            MongoDBConfig.close();
+        }
+
+        if (fallos.isEmpty()) {
+            System.out.println("✅ Reenvío del diario correcto");
+        } else {
+            fallos.forEach(f -> System.out.println("❌ " + f));
+            System.exit(1);
+        }
+    }
+
+    private static void sinConexion() {
+        CircuitBreaker breaker = MongoDBConfig.getCircuitBreaker();
+        while (breaker.getEstado() != CircuitBreaker.Estado.ABIERTO) breaker.recordFailure();
+    }
+
+    private static void conConexion() {
+        MongoDBConfig.getCircuitBreaker().recordSuccess();
+    }
+
+    private static boolean apartada(Path dir, ObjectId id) throws Exception {
+        Path dead = dir.resolve("outbox.dead.jsonl");
+        return Files.exists(dead) && Files.readString(dead, StandardCharsets.UTF_8).contains(id.toHexString());
+    }
+
+    private static void comprobar(boolean ok, String descripcion) {
+        if (!ok) fallos.add(descripcion);
+    }
+
+    private static Garantia nuevaGarantia(String numero) {
+        Garantia g = new Garantia();
+        g.setNumeroGarantia(numero);
+        g.setCliente(new Garantia.Cliente("Cliente Reenvío", "+34 600 000 000", "reenvio@correo.es", "Calle Mayor 1, Valencia"));
+        Garantia.AireAcondicionado aire = new Garantia.AireAcondicionado();
+        aire.setMarca("Daikin");
+        aire.setModelo("FTXM35R");
+        aire.setNumeroSerie("RC" + new ObjectId().toHexString());
+        aire.setFechaInstalacion(LocalDate.now());
+        g.setAireAcondicionado(aire);
+        Garantia.DetalleGarantia info = new Garantia.DetalleGarantia();
+        info.setFechaInicio(LocalDate.now());
+        info.setFechaFin(LocalDate.now().plusYears(3));
+        info.setEstado(EstadoGarantia.ACTIVA);
+        g.setGarantia(info);
+        return g;
+    }
+}
@@ -72,6 +72,7 @@ db.garantias.createIndex({ 'cliente.nombre': 'text', 'cliente.telefono': 'text'
 db.garantias.createIndex({ 'garantia.estado': 1 });
 db.garantias.createIndex({ 'garantia.fechaFin': 1 });
 db.garantias.createIndex({ 'aireAcondicionado.numeroSerie': 1 });
+db.garantias.createIndex({ 'clienteId': 1 });
 
 // ============================================
 // Colección: facturas
@@ -98,9 +99,10 @@ db.createCollection('facturas', {
                 },
                 fechaEmision: { bsonType: 'date' },
                 items: { bsonType: 'array' },
-                subtotal: { bsonType: 'double' },
-                totalIVA: { bsonType: 'double' },
-                total: { bsonType: 'double' },
+                // Importes exactos en euros con 2 decimales (ver Dinero.java)
+                subtotal: { bsonType: 'decimal' },
+                totalIVA: { bsonType: 'decimal' },
+                total: { bsonType: 'decimal' },
                 estado: { enum: ['PENDIENTE', 'PAGADA', 'ANULADA'] },
                 metodoPago: { bsonType: 'string' }
             }
@@ -113,6 +115,63 @@ db.facturas.createIndex({ 'numeroFactura': 1 }, { unique: true });
 db.facturas.createIndex({ 'garantiaId': 1 });
 db.facturas.createIndex({ 'estado': 1 });
 db.facturas.createIndex({ 'fechaEmision': 1 });
+db.facturas.createIndex({ 'clienteId': 1 });
+
+// ============================================
+// Colección: clientes
+// Una ficha por cliente; claves.* son el NIF, teléfono y email normalizados
+// ============================================
+db.createCollection('clientes', {
+    validator: {
+        $jsonSchema: {
+            bsonType: 'object',
+            required: ['claves'],
+            properties: {
+                nombre: { bsonType: ['string', 'null'] },
+                claves: {
+                    bsonType: 'object',
+                    properties: {
+                        nif: { bsonType: 'array', items: { bsonType: 'string' } },
+                        telefono: { bsonType: 'array', items: { bsonType: 'string' } },
+                        email: { bsonType: 'array', items: { bsonType: 'string' } }
+                    }
+                },
+                fechaCreacion: { bsonType: 'date' }
+            }
+        }
+    }
+});
+
+// Crear índices para clientes: dos fichas no comparten ninguna clave
+db.clientes.createIndex({ 'claves.nif': 1 }, { unique: true, sparse: true });
+db.clientes.createIndex({ 'claves.telefono': 1 }, { unique: true, sparse: true });
+db.clientes.createIndex({ 'claves.email': 1 }, { unique: true, sparse: true });
+
+// ============================================
+// Colección: reparaciones
+// Historial completo, solo se añade; cada garantía embebe las últimas 5
+// ============================================
+db.createCollection('reparaciones', {
+    validator: {
+        $jsonSchema: {
+            bsonType: 'object',
+            required: ['garantiaId', 'fecha', 'descripcion'],
+            properties: {
+                garantiaId: { bsonType: 'objectId' },
+                fecha: { bsonType: 'date' },
+                descripcion: { bsonType: 'string' },
+                tecnico: { bsonType: 'string' },
+                costo: { bsonType: ['double', 'int'] },
+                fechaRegistro: { bsonType: 'date' }
+            }
+        }
+    }
+});
+
+// Crear índices para reparaciones
+db.reparaciones.createIndex({ 'garantiaId': 1, 'fecha': -1 });
+db.reparaciones.createIndex({ 'tecnico': 1, 'fecha': -1 });
+db.reparaciones.createIndex({ 'fecha': -1 });
 
 // ============================================
 // Datos de ejemplo
@@ -143,6 +202,7 @@ db.garantias.insertMany([
             cobertura: ['compresor', 'evaporador', 'condensador', 'mano_obra']
         },
         historialReparaciones: [],
+        numeroReparaciones: 0,
         notas: 'Instalación en vivienda unifamiliar',
         creadoPor: 'admin',
         fechaCreacion: new Date(),
@@ -173,6 +233,7 @@ db.garantias.insertMany([
             cobertura: ['compresor', 'evaporador', 'condensador', 'mano_obra']
         },
         historialReparaciones: [],
+        numeroReparaciones: 0,
         notas: 'Oficina comercial',
         creadoPor: 'admin',
         fechaCreacion: new Date(),
@@ -204,12 +265,14 @@ db.garantias.insertMany([
         },
         historialReparaciones: [
             {
+                _id: ObjectId(),
                 fecha: new Date('2024-02-15'),
                 descripcion: 'Revisión anual preventiva',
                 tecnico: 'Antonio Ruiz',
                 costo: 0
             }
         ],
+        numeroReparaciones: 1,
         notas: 'Cliente preferente',
         creadoPor: 'admin',
         fechaCreacion: new Date('2023-06-10'),
@@ -217,6 +280,13 @@ db.garantias.insertMany([
     }
 ]);
 
+// Las reparaciones de ejemplo también van al historial completo
+db.garantias.find({ 'historialReparaciones.0': { $exists: true } }).forEach(function (g) {
+    g.historialReparaciones.forEach(function (r) {
+        db.reparaciones.insertOne(Object.assign({ garantiaId: g._id, fechaRegistro: r.fecha }, r));
+    });
+});
+
 db.facturas.insertMany([
     {
         numeroFactura: 'FAC-2024-0001',
@@ -231,21 +301,21 @@ db.facturas.insertMany([
             {
                 descripcion: 'Aire Acondicionado Samsung AR12TXHQASINXEF',
                 cantidad: 1,
-                precioUnitario: 899.99,
+                precioUnitario: NumberDecimal("899.99"),
                 iva: 21,
-                total: 1088.99
+                total: NumberDecimal("1088.99")
             },
             {
                 descripcion: 'Instalación profesional',
                 cantidad: 1,
-                precioUnitario: 200.00,
+                precioUnitario: NumberDecimal("200.00"),
                 iva: 21,
-                total: 242.00
+                total: NumberDecimal("242.00")
             }
         ],
-        subtotal: 1099.99,
-        totalIVA: 230.99,
-        total: 1330.99,
+        subtotal: NumberDecimal("1099.99"),
+        totalIVA: NumberDecimal("231.00"),
+        total: NumberDecimal("1330.99"),
         estado: 'PAGADA',
         metodoPago: 'TARJETA',
         notas: ''
@@ -263,21 +333,21 @@ db.facturas.insertMany([
             {
                 descripcion: 'Aire Acondicionado Daikin FTXM35N',
                 cantidad: 1,
-                precioUnitario: 1199.99,
+                precioUnitario: NumberDecimal("1199.99"),
                 iva: 21,
-                total: 1451.99
+                total: NumberDecimal("1451.99")
             },
             {
                 descripcion: 'Instalación en altura',
                 cantidad: 1,
-                precioUnitario: 350.00,
+                precioUnitario: NumberDecimal("350.00"),
                 iva: 21,
-                total: 423.50
+                total: NumberDecimal("423.50")
             }
         ],
-        subtotal: 1549.99,
-        totalIVA: 325.49,
-        total: 1875.49,
+        subtotal: NumberDecimal("1549.99"),
+        totalIVA: NumberDecimal("325.50"),
+        total: NumberDecimal("1875.49"),
         estado: 'PAGADA',
         metodoPago: 'TRANSFERENCIA',
         notas: ''
@@ -287,3 +357,4 @@ db.facturas.insertMany([
 print('✅ Base de datos garantias_db inicializada correctamente');
 print('📊 Garantías insertadas: ' + db.garantias.countDocuments());
 print('📄 Facturas insertadas: ' + db.facturas.countDocuments());
+print('🔧 Reparaciones insertadas: ' + db.reparaciones.countDocuments());
@@ -16,21 +16,21 @@ db.facturas.insertMany([
             {
                 descripcion: "Aire Acondicionado Split 3000 frigorías",
                 cantidad: 1,
-                precioUnitario: 650.00,
+                precioUnitario: NumberDecimal("650.00"),
                 iva: 21,
-                total: 786.50
+                total: NumberDecimal("786.50")
             },
             {
                 descripcion: "Instalación completa",
                 cantidad: 1,
-                precioUnitario: 350.00,
+                precioUnitario: NumberDecimal("350.00"),
                 iva: 21,
-                total: 423.50
+                total: NumberDecimal("423.50")
             }
         ],
-        subtotal: 1000.00,
-        totalIVA: 210.00,
-        total: 1210.00,
+        subtotal: NumberDecimal("1000.00"),
+        totalIVA: NumberDecimal("210.00"),
+        total: NumberDecimal("1210.00"),
         estado: "PAGADA",
         metodoPago: "TARJETA",
         notas: "Cliente satisfecho. Instalación completada sin incidencias.",
@@ -50,21 +50,21 @@ db.facturas.insertMany([
             {
                 descripcion: "Aire Acondicionado Multi-split 2x1",
                 cantidad: 1,
-                precioUnitario: 1250.00,
+                precioUnitario: NumberDecimal("1250.00"),
                 iva: 21,
-                total: 1512.50
+                total: NumberDecimal("1512.50")
             },
             {
                 descripcion: "Instalación Multi-split",
                 cantidad: 1,
-                precioUnitario: 550.00,
+                precioUnitario: NumberDecimal("550.00"),
                 iva: 21,
-                total: 665.50
+                total: NumberDecimal("665.50")
             }
         ],
-        subtotal: 1800.00,
-        totalIVA: 378.00,
-        total: 2178.00,
+        subtotal: NumberDecimal("1800.00"),
+        totalIVA: NumberDecimal("378.00"),
+        total: NumberDecimal("2178.00"),
         estado: "PENDIENTE",
         metodoPago: "TRANSFERENCIA",
         notas: "Pendiente de pago. Cliente solicitó factura en PDF.",
@@ -84,14 +84,14 @@ db.facturas.insertMany([
             {
                 descripcion: "Aire Acondicionado Portátil 2500 frigorías",
                 cantidad: 2,
-                precioUnitario: 350.00,
+                precioUnitario: NumberDecimal("350.00"),
                 iva: 21,
-                total: 847.00
+                total: NumberDecimal("847.00")
             }
         ],
-        subtotal: 700.00,
-        totalIVA: 147.00,
-        total: 847.00,
+        subtotal: NumberDecimal("700.00"),
+        totalIVA: NumberDecimal("147.00"),
+        total: NumberDecimal("847.00"),
         estado: "PAGADA",
         metodoPago: "EFECTIVO",
         notas: "Venta de equipos portátiles. Sin instalación.",
@@ -111,21 +111,21 @@ db.facturas.insertMany([
             {
                 descripcion: "Aire Acondicionado Cassette 4500 frigorías",
                 cantidad: 1,
-                precioUnitario: 980.00,
+                precioUnitario: NumberDecimal("980.00"),
                 iva: 21,
-                total: 1185.80
+                total: NumberDecimal("1185.80")
             },
             {
                 descripcion: "Instalación tipo cassette",
                 cantidad: 1,
-                precioUnitario: 420.00,
+                precioUnitario: NumberDecimal("420.00"),
                 iva: 21,
-                total: 508.20
+                total: NumberDecimal("508.20")
             }
         ],
-        subtotal: 1400.00,
-        totalIVA: 294.00,
-        total: 1694.00,
+        subtotal: NumberDecimal("1400.00"),
+        totalIVA: NumberDecimal("294.00"),
+        total: NumberDecimal("1694.00"),
         estado: "PENDIENTE",
         metodoPago: "FINANCIADO",
         notas: "Financiación a 12 meses sin intereses. Pendiente primera cuota.",
@@ -145,21 +145,21 @@ db.facturas.insertMany([
             {
                 descripcion: "Sistema VRV 4 unidades interiores",
                 cantidad: 1,
-                precioUnitario: 2500.00,
+                precioUnitario: NumberDecimal("2500.00"),
                 iva: 21,
-                total: 3025.00
+                total: NumberDecimal("3025.00")
             },
             {
                 descripcion: "Instalación sistema VRV completo",
                 cantidad: 1,
-                precioUnitario: 850.00,
+                precioUnitario: NumberDecimal("850.00"),
                 iva: 21,
-                total: 1028.50
+                total: NumberDecimal("1028.50")
             }
         ],
-        subtotal: 3350.00,
-        totalIVA: 703.50,
-        total: 4053.50,
+        subtotal: NumberDecimal("3350.00"),
+        totalIVA: NumberDecimal("703.50"),
+        total: NumberDecimal("4053.50"),
         estado: "PAGADA",
         metodoPago: "TRANSFERENCIA",
         notas: "Proyecto comercial. Instalación en local comercial.",
@@ -179,28 +179,28 @@ db.facturas.insertMany([
             {
                 descripcion: "Aire Acondicionado Inverter 3500 frigorías",
                 cantidad: 1,
-                precioUnitario: 750.00,
+                precioUnitario: NumberDecimal("750.00"),
                 iva: 21,
-                total: 907.50
+                total: NumberDecimal("907.50")
             },
             {
                 descripcion: "Instalación estándar",
                 cantidad: 1,
-                precioUnitario: 300.00,
+                precioUnitario: NumberDecimal("300.00"),
                 iva: 21,
-                total: 363.00
+                total: NumberDecimal("363.00")
             },
             {
                 descripcion: "Mantenimiento anual",
                 cantidad: 1,
-                precioUnitario: 120.00,
+                precioUnitario: NumberDecimal("120.00"),
                 iva: 21,
-                total: 145.20
+                total: NumberDecimal("145.20")
             }
         ],
-        subtotal: 1170.00,
-        totalIVA: 245.70,
-        total: 1415.70,
+        subtotal: NumberDecimal("1170.00"),
+        totalIVA: NumberDecimal("245.70"),
+        total: NumberDecimal("1415.70"),
         estado: "PAGADA",
         metodoPago: "BIZUM",
         notas: "Incluye contrato de mantenimiento anual.",
@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# ============================================
+# Benchmark de arranque: tiempo hasta el primer frame
+# Compara el runtime recortado con y sin el archivo AppCDS
+#
+# Requiere: mvn clean package -Pruntime-image
+# Uso: scripts/startup-benchmark.sh [iteraciones]
+# ============================================
+
+set -euo pipefail
+
+ITERATIONS="${1:-10}"
+TARGET="$(cd "$(dirname "$0")/.." && pwd)/target"
+JAVA="$TARGET/runtime/bin/java"
+ARCHIVE="$TARGET/garantias-cds.jsa"
+APP_JAR="$(ls "$TARGET"/original-*.jar | head -n 1)"
+CLASSPATH="$APP_JAR:$TARGET/lib/*"
+
+if [ ! -x "$JAVA" ]; then
+    echo "❌ No existe $JAVA. Ejecuta: mvn clean package -Pruntime-image" >&2
+    exit 1
+fi
+
+run_series() {
+    local label="$1"
+    shift
+    local total=0
+    local min=""
+    local max=0
+
+    for ((i = 1; i <= ITERATIONS; i++)); do
+        local ms
+        ms=$("$JAVA" "$@" -Dgarantias.startup.benchmark=true -cp "$CLASSPATH" com.garantias.App 2>/dev/null \
+            | grep -o 'STARTUP_MS=[0-9]*' | cut -d= -f2)
+        total=$((total + ms))
+        if [ -z "$min" ] || [ "$ms" -lt "$min" ]; then min=$ms; fi
+        if [ "$ms" -gt "$max" ]; then max=$ms; fi
+    done
+
+    printf "%-20s media=%5d ms  min=%5d ms  max=%5d ms  (n=%d)\n" \
+        "$label" $((total / ITERATIONS)) "$min" "$max" "$ITERATIONS"
+}
+
+run_series "runtime sin CDS" -Xshare:auto
+if [ -f "$ARCHIVE" ]; then
+    run_series "runtime + AppCDS" -XX:SharedArchiveFile="$ARCHIVE"
+else
+    echo "⚠️  No se encontró $ARCHIVE; se omite la serie con AppCDS"
+fi
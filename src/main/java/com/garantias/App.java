@@ -1,6 +1,12 @@
  package com.garantias;
 
+import com.garantias.analytics.AnalyticsStore;
 import com.garantias.config.MongoDBConfig;
+import com.garantias.metrics.MetricsReporter;
+import com.garantias.profiling.FlightRecording;
+import com.garantias.service.Outbox;
+import com.garantias.snapshot.LocalSnapshot;
+import com.garantias.util.StartupMonitor;
 import com.garantias.util.ViewManager;
 import javafx.application.Application;
 import javafx.scene.Scene;
@@ -22,6 +28,16 @@ public class App extends Application {
     public void start(Stage stage) throws Exception {
         primaryStage = stage;
         
+        // Conectar a MongoDB en segundo plano mientras se muestra el login
+        MongoDBConfig.connectAsync();
+        MetricsReporter.start();
+        // Instantánea para gráficas y cuadros de mando (se carga en segundo plano)
+        AnalyticsStore.start();
+        // Copia local de los listados: tablas al instante y consulta sin conexión
+        LocalSnapshot.start();
+        // Escrituras hechas sin conexión: se envían en cuanto vuelve MongoDB
+        Outbox.start();
+        
         // Configurar la ventana principal
         stage.setTitle("🌬️ Sistema de Garantías - Aires Acondicionados");
         stage.setMinWidth(1280);
@@ -33,13 +49,18 @@ public class App extends Application {
         
         stage.setScene(scene);
         stage.centerOnScreen();
+        StartupMonitor.watchFirstFrame(scene);
         stage.show();
     }
     
     @Override
     public void stop() throws Exception {
-        // Cerrar conexión a MongoDB al salir
+        // Último volcado de métricas y cierre de la conexión a MongoDB
+        MetricsReporter.stop();
+        AnalyticsStore.stop();
+        Outbox.stop();
         MongoDBConfig.close();
+        FlightRecording.stop();
         super.stop();
     }
     
@@ -48,6 +69,8 @@ public class App extends Application {
     }
     
     public static void main(String[] args) {
+        // Grabación JFR opcional (-Dgarantias.jfr=true) desde antes de iniciar JavaFX
+        FlightRecording.startIfEnabled();
         launch(args);
     }
 }
@@ -0,0 +1,244 @@
+package com.garantias.analytics;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.FacturaChanged;
+import com.garantias.events.GarantiaChanged;
+import com.garantias.events.ReparacionChanged;
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.Timer;
+import com.garantias.service.FacturaMapper;
+import com.garantias.service.GarantiaMapper;
+import com.garantias.util.Dinero;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Instantánea columnar de garantías, facturas y fiabilidad de los equipos para gráficas y
+ * cuadros de mando.
+ * <p>
+ * Se carga una vez (solo los campos agregables) y se mantiene al día con los eventos de
+ * cambio de los servicios ({@link EventBus}); cada {@code garantias.analytics.refreshMinutes} (5 por defecto) se
+ * recarga entera para recoger los cambios hechos desde otros puestos. Mientras no esté
+ * cargada, {@link #garantias()} y {@link #facturas()} devuelven null y los servicios
+ * consultan MongoDB. Se desactiva con {@code -Dgarantias.analytics=false}.
+ */
+public final class AnalyticsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsStore.class);
+
+    public static final String ENABLED_PROPERTY = "garantias.analytics";
+    public static final String REFRESH_PROPERTY = "garantias.analytics.refreshMinutes";
+    private static final long DEFAULT_REFRESH_MINUTES = 5;
+    private static final long RETRY_SECONDS = 15;
+    private static final int BATCH_SIZE = 5000;
+
+    private static volatile GarantiaAnalytics garantias;
+    private static volatile FacturaAnalytics facturas;
+    private static volatile FiabilidadAnalytics fiabilidad;
+    private static ScheduledExecutorService scheduler;
+    private static List<EventBus.Subscription> subscriptions = List.of();
+
+    // Escrituras que llegan durante una recarga: se repiten sobre la nueva instantánea
+    private static final Object reloadLock = new Object();
+    private static List<Consumer<Snapshot>> pendientes;
+
+    private AnalyticsStore() {}
+
+    /**
+     * Tablas que se construyen en cada recarga
+     */
+    private static final class Snapshot {
+        final GarantiaAnalytics garantias;
+        final FacturaAnalytics facturas;
+        final FiabilidadAnalytics fiabilidad;
+
+        Snapshot(GarantiaAnalytics garantias, FacturaAnalytics facturas, FiabilidadAnalytics fiabilidad) {
+            this.garantias = garantias;
+            this.facturas = facturas;
+            this.fiabilidad = fiabilidad;
+        }
+    }
+
+    /**
+     * Programa la carga inicial y las recargas periódicas (idempotente)
+     */
+    public static synchronized void start() {
+        if (scheduler != null || !Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "analytics-loader");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.execute(AnalyticsStore::loadOrRetry);
+        subscriptions = List.of(
+            EventBus.subscribe(GarantiaChanged.class, AnalyticsStore::onGarantiaChanged),
+            EventBus.subscribe(FacturaChanged.class, AnalyticsStore::onFacturaChanged),
+            EventBus.subscribe(ReparacionChanged.class, AnalyticsStore::onReparacionChanged));
+    }
+
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        subscriptions.forEach(EventBus.Subscription::cancel);
+        subscriptions = List.of();
+    }
+
+    public static boolean isReady() {
+        return garantias != null && facturas != null && fiabilidad != null;
+    }
+
+    /** Instantánea de garantías, o null si todavía no se ha cargado */
+    public static GarantiaAnalytics garantias() {
+        return garantias;
+    }
+
+    /** Instantánea de facturas, o null si todavía no se ha cargado */
+    public static FacturaAnalytics facturas() {
+        return facturas;
+    }
+
+    /** Instantánea de fiabilidad, o null si todavía no se ha cargado */
+    public static FiabilidadAnalytics fiabilidad() {
+        return fiabilidad;
+    }
+
+    private static void loadOrRetry() {
+        long delay;
+        try {
+            reload();
+            delay = TimeUnit.MINUTES.toSeconds(Long.getLong(REFRESH_PROPERTY, DEFAULT_REFRESH_MINUTES));
+        } catch (RuntimeException e) {
+            // Sin conexión (DatabaseUnavailableException/MongoException) o datos inesperados: se reintenta
+            logger.warn("⚠️ No se pudo cargar la instantánea analítica: {}", e.getMessage());
+            delay = RETRY_SECONDS;
+        }
+        synchronized (AnalyticsStore.class) {
+            if (scheduler != null) {
+                scheduler.schedule(AnalyticsStore::loadOrRetry, delay, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Recarga completa desde MongoDB; la instantánea anterior sigue en uso hasta el final
+     */
+    public static void reload() {
+        synchronized (reloadLock) {
+            pendientes = new ArrayList<>();
+        }
+        try (Timer.Context ignored = Metrics.timer("analytics.load").time()) {
+            MongoDatabase db = MongoDBConfig.getDatabase();
+
+            // Un solo recorrido de garantías para las dos tablas que salen de ellas
+            ObjectId corte = new ObjectId();
+            int capacidadGarantias = capacity(db, "garantias");
+            GarantiaAnalytics nuevasGarantias = new GarantiaAnalytics(capacidadGarantias);
+            FiabilidadAnalytics nuevaFiabilidad = new FiabilidadAnalytics(capacidadGarantias, LocalDate.now(), corte);
+            for (Document doc : db.getCollection("garantias").find()
+                    .projection(Projections.fields(GarantiaAnalytics.PROJECTION, FiabilidadAnalytics.PROJECTION))
+                    .batchSize(BATCH_SIZE)) {
+                ObjectId id = doc.getObjectId("_id");
+                nuevasGarantias.put(id, doc);
+                nuevaFiabilidad.put(id, doc);
+            }
+            nuevaFiabilidad.addReparaciones(db.getCollection("reparaciones")
+                .aggregate(FiabilidadAnalytics.pipeline(corte)).allowDiskUse(true));
+            FacturaAnalytics nuevasFacturas = FacturaAnalytics.of(db.getCollection("facturas").find()
+                .projection(FacturaAnalytics.PROJECTION).batchSize(BATCH_SIZE), capacity(db, "facturas"));
+
+            Snapshot snapshot = new Snapshot(nuevasGarantias, nuevasFacturas, nuevaFiabilidad);
+            synchronized (reloadLock) {
+                pendientes.forEach(cambio -> cambio.accept(snapshot));
+                pendientes = null;
+                garantias = nuevasGarantias;
+                facturas = nuevasFacturas;
+                fiabilidad = nuevaFiabilidad;
+            }
+            logger.info("✅ Instantánea analítica cargada: {} garantías, {} facturas",
+                nuevasGarantias.count(), nuevasFacturas.count());
+        } finally {
+            synchronized (reloadLock) {
+                pendientes = null;
+            }
+        }
+    }
+
+    private static int capacity(MongoDatabase db, String collection) {
+        // Estimación de metadatos (no recorre la colección), con margen para altas
+        long estimated = db.getCollection(collection).estimatedDocumentCount();
+        return (int) Math.min(Integer.MAX_VALUE - 8, estimated + estimated / 8 + 16);
+    }
+
+    // ========================================
+    // ESCRITURAS DE LOS SERVICIOS
+    // ========================================
+
+    private static void onGarantiaChanged(GarantiaChanged e) {
+        if (e.isDeleted()) garantiaEliminada(e.getId());
+        else garantiaGuardada(e.getId(), GarantiaMapper.toDocument(e.getAfter()));
+    }
+
+    private static void onReparacionChanged(ReparacionChanged e) {
+        Double costo = e.getAfter().getCosto();
+        long centimos = costo != null ? Dinero.deEuros(costo) : 0;
+        apply(s -> s.fiabilidad.reparacion(e.getId(), e.getAfter().getGarantiaId(), centimos));
+    }
+
+    private static void onFacturaChanged(FacturaChanged e) {
+        if (e.isDeleted()) facturaEliminada(e.getId());
+        else facturaGuardada(e.getId(), FacturaMapper.toDocument(e.getAfter()));
+    }
+
+    /**
+     * Alta o cambio sin evento, para escrituras masivas que no publican uno por fila
+     * (importación de CSV)
+     */
+    public static void garantiaGuardada(ObjectId id, Document doc) {
+        apply(s -> {
+            s.garantias.put(id, doc);
+            s.fiabilidad.put(id, doc);
+        });
+    }
+
+    private static void garantiaEliminada(ObjectId id) {
+        apply(s -> {
+            s.garantias.remove(id);
+            s.fiabilidad.remove(id);
+        });
+    }
+
+    private static void facturaGuardada(ObjectId id, Document doc) {
+        apply(s -> s.facturas.put(id, doc));
+    }
+
+    private static void facturaEliminada(ObjectId id) {
+        apply(s -> s.facturas.remove(id));
+    }
+
+    private static void apply(Consumer<Snapshot> cambio) {
+        synchronized (reloadLock) {
+            if (isReady()) {
+                cambio.accept(new Snapshot(garantias, facturas, fiabilidad));
+            }
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+        }
+    }
+}
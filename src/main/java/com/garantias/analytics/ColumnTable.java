@@ -0,0 +1,355 @@
+package com.garantias.analytics;
+
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Tabla columnar en memoria: una columna {@code int[]} por dimensión (ordinales de enum,
+ * códigos de diccionario o días epoch) y una {@code long[]} por medida (céntimos).
+ * <p>
+ * Las filas se localizan por {@link ObjectId} con un índice de direccionamiento abierto
+ * sobre los 12 bytes del id, sin objetos por fila. Los borrados solo marcan la fila; la
+ * tabla se compacta al recargarla entera. Las agregaciones van por bloques de 64K filas:
+ * primero un vector de selección columna a columna y luego la suma, ambos sin saltos
+ * dependientes de los datos; con muchas filas los bloques van en un stream paralelo.
+ */
+public class ColumnTable {
+
+    /** Valor nulo en las columnas de códigos */
+    public static final int NULL = -1;
+
+    /** Valor nulo en las columnas de días epoch (fuera de cualquier rango de fechas) */
+    public static final int NULL_DAY = Integer.MIN_VALUE;
+
+    private static final int PARALLEL_THRESHOLD = 200_000;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final ThreadLocal<byte[]> SELECTION = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private final int dimCount;
+    private final int measureCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] idHigh;
+    private int[] idLow;
+    private final int[][] dims;
+    private final long[][] measures;
+    private byte[] live;
+    private int size;
+    private int liveCount;
+
+    // Índice id -> fila + 1 (0 = hueco libre)
+    private int[] slots;
+
+    public ColumnTable(int dimCount, int measureCount, int capacity) {
+        this.dimCount = dimCount;
+        this.measureCount = measureCount;
+        int initial = Math.max(16, capacity);
+        this.idHigh = new long[initial];
+        this.idLow = new int[initial];
+        this.dims = new int[dimCount][initial];
+        this.measures = new long[measureCount][initial];
+        this.live = new byte[initial];
+        this.slots = new int[Integer.highestOneBit(initial * 2 - 1) * 2];
+    }
+
+    // ========================================
+    // ESCRITURA
+    // ========================================
+
+    /**
+     * Inserta o sustituye la fila del id. Si {@code measureValues} trae menos medidas que la
+     * tabla, las restantes conservan su valor (0 en filas nuevas o borradas).
+     */
+    public void upsert(ObjectId id, int[] dimValues, long[] measureValues) {
+        byte[] bytes = id.toByteArray();
+        long high = high(bytes);
+        int low = low(bytes);
+
+        lock.writeLock().lock();
+        try {
+            int row = find(high, low);
+            if (row < 0) {
+                row = append(high, low);
+            }
+            for (int d = 0; d < dimCount; d++) {
+                dims[d][row] = dimValues[d];
+            }
+            for (int m = 0; m < measureCount; m++) {
+                if (m < measureValues.length) measures[m][row] = measureValues[m];
+                else if (live[row] == 0) measures[m][row] = 0;
+            }
+            if (live[row] == 0) {
+                live[row] = 1;
+                liveCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cambia una dimensión de una fila existente (false si el id no está)
+     */
+    public boolean setDim(ObjectId id, int dim, int value) {
+        byte[] bytes = id.toByteArray();
+        lock.writeLock().lock();
+        try {
+            int row = find(high(bytes), low(bytes));
+            if (row < 0 || live[row] == 0) return false;
+            dims[dim][row] = value;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suma {@code delta} a una medida de una fila existente (false si el id no está)
+     */
+    public boolean add(ObjectId id, int measure, long delta) {
+        byte[] bytes = id.toByteArray();
+        lock.writeLock().lock();
+        try {
+            int row = find(high(bytes), low(bytes));
+            if (row < 0 || live[row] == 0) return false;
+            measures[measure][row] += delta;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean delete(ObjectId id) {
+        byte[] bytes = id.toByteArray();
+        lock.writeLock().lock();
+        try {
+            int row = find(high(bytes), low(bytes));
+            if (row < 0 || live[row] == 0) return false;
+            live[row] = 0;
+            liveCount--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int liveRows() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========================================
+    // CONSULTA
+    // ========================================
+
+    /**
+     * Cuenta las filas seleccionadas por grupo
+     */
+    public long[] count(Grouping grouping, Filter filter) {
+        return aggregate(grouping, -1, filter);
+    }
+
+    /**
+     * Suma una medida de las filas seleccionadas por grupo
+     */
+    public long[] sum(Grouping grouping, int measure, Filter filter) {
+        return aggregate(grouping, measure, filter);
+    }
+
+    private long[] aggregate(Grouping grouping, int measure, Filter filter) {
+        lock.readLock().lock();
+        try {
+            int n = size;
+            int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            int[] keys = grouping.dim >= 0 ? dims[grouping.dim] : null;
+            long[] values = measure >= 0 ? measures[measure] : null;
+
+            // Un grupo extra al final recoge las filas descartadas, sin saltos en el bucle
+            long[] result;
+            if (n < PARALLEL_THRESHOLD) {
+                result = new long[grouping.groups + 1];
+                for (int c = 0; c < chunks; c++) {
+                    aggregateChunk(c, n, filter, keys, values, grouping, result);
+                }
+            } else {
+                result = IntStream.range(0, chunks).parallel()
+                    .mapToObj(c -> {
+                        long[] partial = new long[grouping.groups + 1];
+                        aggregateChunk(c, n, filter, keys, values, grouping, partial);
+                        return partial;
+                    })
+                    .reduce(ColumnTable::merge)
+                    .orElseGet(() -> new long[grouping.groups + 1]);
+            }
+            return Arrays.copyOf(result, grouping.groups);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Filtra y agrega un bloque de filas. El vector de selección (0/1) es del tamaño del
+     * bloque, cabe en caché y se reutiliza por hilo.
+     */
+    private void aggregateChunk(int chunk, int n, Filter filter, int[] keys, long[] values,
+                                Grouping grouping, long[] out) {
+        int from = chunk * CHUNK_SIZE;
+        int len = Math.min(n, from + CHUNK_SIZE) - from;
+        byte[] selection = SELECTION.get();
+        select(filter, from, len, selection);
+
+        int trash = grouping.groups;
+        int[] lookup = grouping.lookup;
+        if (keys == null) {
+            long total = 0;
+            for (int i = 0; i < len; i++) {
+                total += selection[i] * (values != null ? values[from + i] : 1);
+            }
+            out[0] += total;
+        } else if (lookup == null) {
+            for (int i = 0; i < len; i++) {
+                int key = keys[from + i];
+                key = Integer.compareUnsigned(key, trash) < 0 ? key : trash;
+                out[key] += selection[i] * (values != null ? values[from + i] : 1);
+            }
+        } else {
+            // lookup lleva una posición final que apunta al grupo de descarte
+            int offset = grouping.offset;
+            long last = lookup.length - 1;
+            for (int i = 0; i < len; i++) {
+                long day = (keys[from + i] - (long) offset) & 0xFFFFFFFFL;
+                int key = lookup[(int) Math.min(day, last)];
+                out[key] += selection[i] * (values != null ? values[from + i] : 1);
+            }
+        }
+    }
+
+    private static long[] merge(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    /**
+     * Vector de selección del bloque: filas vivas que cumplen todas las condiciones.
+     * Se llama con el bloqueo de lectura tomado.
+     */
+    private void select(Filter filter, int from, int len, byte[] selection) {
+        System.arraycopy(live, from, selection, 0, len);
+        for (Filter.Condition condition : filter.conditions()) {
+            int[] column = dims[condition.dim];
+            if (condition.allowed != null) {
+                // allowed[0] es NULL y el último hueco, cualquier código fuera de rango
+                byte[] allowed = condition.allowed;
+                long last = allowed.length - 1;
+                for (int i = 0; i < len; i++) {
+                    long index = (column[from + i] + 1L) & 0xFFFFFFFFL;
+                    selection[i] &= allowed[(int) Math.min(index, last)];
+                }
+            } else {
+                int min = condition.min;
+                int max = condition.max;
+                for (int i = 0; i < len; i++) {
+                    int v = column[from + i];
+                    selection[i] &= (byte) ((v >= min & v <= max) ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Códigos de los {@code n} grupos con más valor (sin los vacíos), de mayor a menor
+     */
+    public static int[] topN(long[] totals, int n) {
+        return IntStream.range(0, totals.length)
+            .filter(i -> totals[i] > 0)
+            .boxed()
+            .sorted((a, b) -> Long.compare(totals[b], totals[a]))
+            .limit(n)
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    // ========================================
+    // ÍNDICE POR ID
+    // ========================================
+
+    private int find(long high, int low) {
+        int mask = slots.length - 1;
+        for (int slot = hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) return -1;
+            int row = entry - 1;
+            if (idHigh[row] == high && idLow[row] == low) return row;
+        }
+    }
+
+    private int append(long high, int low) {
+        if (size == live.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        idHigh[row] = high;
+        idLow[row] = low;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insertSlot(row);
+        }
+        return row;
+    }
+
+    private void insertSlot(int row) {
+        int mask = slots.length - 1;
+        int slot = hash(idHigh[row], idLow[row]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            insertSlot(row);
+        }
+    }
+
+    private void grow(int capacity) {
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        live = Arrays.copyOf(live, capacity);
+        for (int d = 0; d < dimCount; d++) {
+            dims[d] = Arrays.copyOf(dims[d], capacity);
+        }
+        for (int m = 0; m < measureCount; m++) {
+            measures[m] = Arrays.copyOf(measures[m], capacity);
+        }
+    }
+
+    private static long high(byte[] bytes) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int low(byte[] bytes) {
+        return ((bytes[8] & 0xFF) << 24) | ((bytes[9] & 0xFF) << 16) | ((bytes[10] & 0xFF) << 8) | (bytes[11] & 0xFF);
+    }
+
+    private static int hash(long high, int low) {
+        // Los ObjectId consecutivos solo difieren en el contador: mezclar todos los bits
+        long h = high * 0x9E3779B97F4A7C15L ^ low * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,130 @@
+package com.garantias.analytics;
+
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Factura.MetodoPago;
+import com.garantias.util.Dinero;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Instantánea columnar de las facturas: estado, método de pago, fecha de emisión y total
+ */
+public class FacturaAnalytics {
+
+    static final int ESTADO = 0;
+    static final int METODO_PAGO = 1;
+    static final int FECHA_EMISION = 2;
+
+    static final int TOTAL = 0;
+
+    /** Campos que se leen de MongoDB al cargar */
+    static final Bson PROJECTION = Projections.include(
+        "estado", "estadoFactura", "metodoPago", "fechaEmision", "total");
+
+    private static final EstadoFactura[] ESTADOS = EstadoFactura.values();
+    private static final MetodoPago[] METODOS = MetodoPago.values();
+
+    private final ColumnTable table;
+
+    FacturaAnalytics(int capacity) {
+        this.table = new ColumnTable(3, 1, capacity);
+    }
+
+    /**
+     * Construye la instantánea a partir de documentos completos o proyectados con {@link #PROJECTION}
+     */
+    public static FacturaAnalytics of(Iterable<Document> docs, int capacity) {
+        FacturaAnalytics analytics = new FacturaAnalytics(capacity);
+        for (Document doc : docs) {
+            analytics.put(doc.getObjectId("_id"), doc);
+        }
+        return analytics;
+    }
+
+    /**
+     * Inserta o sustituye la fila a partir del documento (completo o proyectado)
+     */
+    void put(ObjectId id, Document doc) {
+        // Igual que FacturaMapper: "estadoFactura" tiene prioridad sobre "estado"
+        String estado = doc.getString("estadoFactura");
+        if (estado == null) estado = doc.getString("estado");
+        int[] row = {
+            GarantiaAnalytics.ordinal(EstadoFactura.class, estado),
+            GarantiaAnalytics.ordinal(MetodoPago.class, doc.getString("metodoPago")),
+            GarantiaAnalytics.epochDay(doc.getDate("fechaEmision"))
+        };
+        table.upsert(id, row, new long[]{Dinero.deBson(doc.get("total"))});
+    }
+
+    void remove(ObjectId id) {
+        table.delete(id);
+    }
+
+    // ========================================
+    // CONSULTAS (importes en céntimos)
+    // ========================================
+
+    public long count() {
+        return table.liveRows();
+    }
+
+    public Map<EstadoFactura, Long> totalesPorEstado() {
+        long[] totals = table.sum(Grouping.by(ESTADO, ESTADOS.length), TOTAL, Filter.all());
+        Map<EstadoFactura, Long> result = new EnumMap<>(EstadoFactura.class);
+        for (EstadoFactura estado : ESTADOS) {
+            result.put(estado, totals[estado.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Suma de las facturas pagadas
+     */
+    public long totalFacturado() {
+        return table.sum(Grouping.total(), TOTAL, Filter.all().in(ESTADO, EstadoFactura.PAGADA.ordinal()))[0];
+    }
+
+    public Map<MetodoPago, Long> countByMetodoPago() {
+        long[] counts = table.count(Grouping.by(METODO_PAGO, METODOS.length), Filter.all());
+        Map<MetodoPago, Long> result = new EnumMap<>(MetodoPago.class);
+        for (MetodoPago metodo : METODOS) {
+            result.put(metodo, counts[metodo.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Facturación por mes a partir de {@code desde}, opcionalmente solo de un estado
+     */
+    public Map<YearMonth, Long> facturacionPorMes(YearMonth desde, int meses, EstadoFactura estado) {
+        Filter filter = estado != null ? Filter.all().in(ESTADO, estado.ordinal()) : Filter.all();
+        long[] totals = table.sum(Grouping.byMonth(FECHA_EMISION, desde, meses), TOTAL, filter);
+        Map<YearMonth, Long> result = new LinkedHashMap<>();
+        for (int mes = 0; mes < meses; mes++) {
+            result.put(desde.plusMonths(mes), totals[mes]);
+        }
+        return result;
+    }
+
+    /**
+     * Facturación de un rango de fechas agrupada por método de pago
+     */
+    public Map<MetodoPago, Long> totalesPorMetodoPago(LocalDate desde, LocalDate hasta, EstadoFactura estado) {
+        Filter filter = Filter.all().between(FECHA_EMISION, (int) desde.toEpochDay(), (int) hasta.toEpochDay());
+        if (estado != null) filter = filter.in(ESTADO, estado.ordinal());
+        long[] totals = table.sum(Grouping.by(METODO_PAGO, METODOS.length), TOTAL, filter);
+        Map<MetodoPago, Long> result = new EnumMap<>(MetodoPago.class);
+        for (MetodoPago metodo : METODOS) {
+            result.put(metodo, totals[metodo.ordinal()]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.garantias.analytics;
+
+import com.garantias.util.Dinero;
+
+/**
+ * Fiabilidad de un grupo de equipos (una marca, un modelo...): averías registradas sobre
+ * el tiempo que han estado en garantía
+ */
+public final class Fiabilidad {
+
+    private static final double DIAS_POR_ANIO = 365.25;
+
+    private final String grupo;
+    private final long equipos;
+    private final long reparaciones;
+    private final long diasServicio;
+    private final long costeCentimos;
+
+    Fiabilidad(String grupo, long equipos, long reparaciones, long diasServicio, long costeCentimos) {
+        this.grupo = grupo;
+        this.equipos = equipos;
+        this.reparaciones = reparaciones;
+        this.diasServicio = diasServicio;
+        this.costeCentimos = costeCentimos;
+    }
+
+    public String getGrupo() { return grupo; }
+    public long getEquipos() { return equipos; }
+    public long getReparaciones() { return reparaciones; }
+    /** Suma de los días en garantía de todos los equipos del grupo */
+    public long getDiasServicio() { return diasServicio; }
+    public long getCosteCentimos() { return costeCentimos; }
+
+    /**
+     * Averías por equipo y año de servicio
+     */
+    public double getTasaAnual() {
+        return diasServicio > 0 ? reparaciones * DIAS_POR_ANIO / diasServicio : 0;
+    }
+
+    /**
+     * Tiempo medio entre averías en días (MTBF), o null si no hay ninguna
+     */
+    public Double getMtbfDias() {
+        return reparaciones > 0 ? (double) diasServicio / reparaciones : null;
+    }
+
+    /**
+     * Coste medio por reparación en euros
+     */
+    public double getCosteMedio() {
+        return reparaciones > 0 ? Dinero.aEuros(costeCentimos) / reparaciones : 0;
+    }
+
+    @Override
+    public String toString() {
+        return grupo + " [" + equipos + " equipos, " + reparaciones + " reparaciones]";
+    }
+}
@@ -0,0 +1,263 @@
+package com.garantias.analytics;
+
+import com.garantias.util.Dinero;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instantánea columnar de fiabilidad: una fila por equipo en garantía con su marca, modelo,
+ * refrigerante y banda de potencia, y como medidas los días en garantía, las reparaciones
+ * y su coste.
+ * <p>
+ * Las reparaciones se cargan agrupadas por garantía en MongoDB ({@link #pipeline}) y
+ * después se suman al registrarlas ({@link #reparacion}). Cada consulta recorre la tabla
+ * en paralelo ({@link ColumnTable}) y su resultado se guarda por dimensión hasta el
+ * siguiente cambio.
+ */
+public class FiabilidadAnalytics {
+
+    /**
+     * Dimensiones por las que se agrupa (el ordinal es su columna en la tabla)
+     */
+    public enum Dimension {
+        MARCA("Marca"),
+        MODELO("Modelo"),
+        REFRIGERANTE("Refrigerante"),
+        POTENCIA("Potencia");
+
+        private final String displayName;
+        Dimension(String displayName) { this.displayName = displayName; }
+        public String getDisplayName() { return displayName; }
+    }
+
+    static final int DIAS_SERVICIO = 0;
+    static final int REPARACIONES = 1;
+    static final int COSTE = 2;
+
+    /** Campos de la garantía que se leen de MongoDB al cargar */
+    static final Bson PROJECTION = Projections.include(
+        "aireAcondicionado.marca", "aireAcondicionado.modelo", "aireAcondicionado.tipoRefrigerante",
+        "aireAcondicionado.potenciaBTU", "garantia.fechaInicio", "garantia.fechaFin");
+
+    // Límites inferiores de las bandas de potencia a partir de la segunda
+    private static final int[] LIMITES_BTU = {10_000, 15_000, 21_000, 30_000};
+    private static final String[] BANDAS_BTU = {"< 10.000 BTU", "10.000-14.999 BTU", "15.000-20.999 BTU",
+        "21.000-29.999 BTU", "≥ 30.000 BTU"};
+
+    private final ColumnTable table;
+    private final StringDictionary marcas = new StringDictionary();
+    private final StringDictionary modelos = new StringDictionary();
+    private final StringDictionary refrigerantes = new StringDictionary();
+    private final int hoy;
+    private final ObjectId corte;
+
+    private final AtomicLong version = new AtomicLong();
+    private final Map<Dimension, Cached> cache = new ConcurrentHashMap<>();
+
+    private static final class Cached {
+        final long version;
+        final List<Fiabilidad> result;
+
+        Cached(long version, List<Fiabilidad> result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param corte las reparaciones con id anterior ya vienen en la carga: al registrarlas
+     *              de nuevo (cambios recibidos durante la recarga) se ignoran
+     */
+    FiabilidadAnalytics(int capacity, LocalDate hoy, ObjectId corte) {
+        this.table = new ColumnTable(4, 3, capacity);
+        this.hoy = (int) hoy.toEpochDay();
+        this.corte = corte;
+    }
+
+    /**
+     * Carga completa desde MongoDB (sin la instantánea de {@link AnalyticsStore})
+     */
+    public static FiabilidadAnalytics load(MongoDatabase db, int capacity) {
+        ObjectId corte = new ObjectId();
+        FiabilidadAnalytics analytics = new FiabilidadAnalytics(capacity, LocalDate.now(), corte);
+        for (Document doc : db.getCollection("garantias").find().projection(PROJECTION).batchSize(5000)) {
+            analytics.put(doc.getObjectId("_id"), doc);
+        }
+        analytics.addReparaciones(db.getCollection("reparaciones").aggregate(pipeline(corte)).allowDiskUse(true));
+        return analytics;
+    }
+
+    /**
+     * Número y coste de las reparaciones por garantía, anteriores al corte
+     */
+    static List<Bson> pipeline(ObjectId corte) {
+        return List.of(
+            Aggregates.match(Filters.lt("_id", corte)),
+            Aggregates.group("$garantiaId",
+                Accumulators.sum("reparaciones", 1),
+                Accumulators.sum("coste", "$costo")));
+    }
+
+    /**
+     * Suma los totales por garantía de {@link #pipeline}
+     */
+    void addReparaciones(Iterable<Document> totales) {
+        for (Document doc : totales) {
+            Object id = doc.get("_id");
+            if (!(id instanceof ObjectId)) continue;
+            Number n = doc.get("reparaciones", Number.class);
+            Number coste = doc.get("coste", Number.class);
+            add((ObjectId) id, n != null ? n.longValue() : 0, coste != null ? Dinero.deEuros(coste.doubleValue()) : 0);
+        }
+    }
+
+    /**
+     * Inserta o sustituye el equipo de la garantía; conserva sus reparaciones
+     */
+    void put(ObjectId id, Document doc) {
+        Document aire = doc.get("aireAcondicionado", Document.class);
+        Document garantia = doc.get("garantia", Document.class);
+        String marca = aire != null ? aire.getString("marca") : null;
+        String modelo = aire != null ? aire.getString("modelo") : null;
+        Number btu = aire != null ? aire.get("potenciaBTU", Number.class) : null;
+        int[] row = {
+            marcas.encode(marca),
+            modelos.encode(modelo != null ? (marca != null ? marca + " " + modelo : modelo) : null),
+            refrigerantes.encode(aire != null ? aire.getString("tipoRefrigerante") : null),
+            banda(btu)
+        };
+        table.upsert(id, row, new long[]{diasServicio(garantia)});
+        version.incrementAndGet();
+    }
+
+    void remove(ObjectId id) {
+        table.delete(id);
+        version.incrementAndGet();
+    }
+
+    /**
+     * Suma una reparación nueva a su garantía
+     */
+    void reparacion(ObjectId reparacionId, ObjectId garantiaId, long costeCentimos) {
+        if (reparacionId.compareTo(corte) < 0) return;
+        add(garantiaId, 1, costeCentimos);
+    }
+
+    private void add(ObjectId garantiaId, long reparaciones, long costeCentimos) {
+        // Sin fila (garantía eliminada) no hay equipo al que atribuirla
+        if (table.add(garantiaId, REPARACIONES, reparaciones)) {
+            table.add(garantiaId, COSTE, costeCentimos);
+            version.incrementAndGet();
+        }
+    }
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    /**
+     * Fiabilidad por grupo de la dimensión, de más a menos equipos
+     */
+    public List<Fiabilidad> por(Dimension dimension) {
+        long v = version.get();
+        Cached cached = cache.get(dimension);
+        if (cached != null && cached.version == v) return cached.result;
+
+        int dim = dimension.ordinal();
+        Grouping grouping = Grouping.by(dim, groups(dimension));
+        long[] equipos = table.count(grouping, Filter.all());
+        long[] dias = table.sum(grouping, DIAS_SERVICIO, Filter.all());
+        long[] reparaciones = table.sum(grouping, REPARACIONES, Filter.all());
+        long[] coste = table.sum(grouping, COSTE, Filter.all());
+
+        List<Fiabilidad> result = new ArrayList<>();
+        for (int code = 0; code < equipos.length; code++) {
+            if (equipos[code] > 0) {
+                result.add(new Fiabilidad(label(dimension, code), equipos[code], reparaciones[code], dias[code], coste[code]));
+            }
+        }
+        result.sort(Comparator.comparingLong(Fiabilidad::getEquipos).reversed());
+        List<Fiabilidad> inmutable = List.copyOf(result);
+        cache.put(dimension, new Cached(v, inmutable));
+        return inmutable;
+    }
+
+    /**
+     * Totales de un modelo ({@code marca} y {@code modelo}), de una marca ({@code modelo}
+     * null) o de todos los equipos (ambos null). Sin cachear: un solo recorrido.
+     */
+    public Fiabilidad resumen(String marca, String modelo) {
+        Filter filter = Filter.all();
+        if (marca != null) {
+            filter = filter.in(Dimension.MARCA.ordinal(), marcas.lookup(marca));
+        }
+        if (modelo != null) {
+            filter = filter.in(Dimension.MODELO.ordinal(), modelos.lookup(marca != null ? marca + " " + modelo : modelo));
+        }
+        Grouping total = Grouping.total();
+        return new Fiabilidad(modelo != null ? marca + " " + modelo : marca != null ? marca : "Todos",
+            table.count(total, filter)[0], table.sum(total, REPARACIONES, filter)[0],
+            table.sum(total, DIAS_SERVICIO, filter)[0], table.sum(total, COSTE, filter)[0]);
+    }
+
+    public long count() {
+        return table.liveRows();
+    }
+
+    private int groups(Dimension dimension) {
+        switch (dimension) {
+            case MARCA: return marcas.size();
+            case MODELO: return modelos.size();
+            case REFRIGERANTE: return refrigerantes.size();
+            default: return BANDAS_BTU.length;
+        }
+    }
+
+    private String label(Dimension dimension, int code) {
+        switch (dimension) {
+            case MARCA: return marcas.decode(code);
+            case MODELO: return modelos.decode(code);
+            case REFRIGERANTE: return refrigerantes.decode(code);
+            default: return BANDAS_BTU[code];
+        }
+    }
+
+    // ========================================
+    // CODIFICACIÓN
+    // ========================================
+
+    private static int banda(Number btu) {
+        if (btu == null) return ColumnTable.NULL;
+        int banda = 0;
+        while (banda < LIMITES_BTU.length && btu.intValue() >= LIMITES_BTU[banda]) {
+            banda++;
+        }
+        return banda;
+    }
+
+    /**
+     * Días desde el inicio de la garantía hasta su fin o hasta hoy si sigue vigente
+     */
+    private long diasServicio(Document garantia) {
+        if (garantia == null) return 0;
+        int inicio = GarantiaAnalytics.epochDay(garantia.getDate("fechaInicio"));
+        if (inicio == ColumnTable.NULL_DAY) return 0;
+        int fin = GarantiaAnalytics.epochDay(garantia.getDate("fechaFin"));
+        int hasta = fin == ColumnTable.NULL_DAY ? hoy : Math.min(fin, hoy);
+        return Math.max(0, hasta - inicio);
+    }
+}
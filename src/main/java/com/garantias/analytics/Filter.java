@@ -0,0 +1,77 @@
+package com.garantias.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Condiciones sobre las columnas de dimensión de una {@link ColumnTable}.
+ * <p>
+ * Se evalúan columna a columna sobre un vector de selección, no fila a fila.
+ */
+public final class Filter {
+
+    private static final Filter ALL = new Filter(Collections.emptyList());
+
+    /**
+     * Condición sobre una columna: valores permitidos (por código) o rango inclusivo
+     */
+    static final class Condition {
+        final int dim;
+        final byte[] allowed;
+        final int min;
+        final int max;
+
+        Condition(int dim, byte[] allowed, int min, int max) {
+            this.dim = dim;
+            this.allowed = allowed;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final List<Condition> conditions;
+
+    private Filter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    public static Filter all() {
+        return ALL;
+    }
+
+    /**
+     * Filas cuya dimensión tiene alguno de los códigos indicados
+     */
+    public Filter in(int dim, int... codes) {
+        int max = -1;
+        for (int code : codes) max = Math.max(max, code);
+        // Desplazado en uno (posición 0 = NULL) y con un hueco final a 0 para códigos mayores
+        byte[] allowed = new byte[max + 3];
+        for (int code : codes) {
+            if (code >= 0) allowed[code + 1] = 1;
+        }
+        return with(new Condition(dim, allowed, 0, 0));
+    }
+
+    /**
+     * Filas cuya dimensión está entre min y max (ambos incluidos), p. ej. días epoch
+     */
+    public Filter between(int dim, int min, int max) {
+        return with(new Condition(dim, null, min, max));
+    }
+
+    private Filter with(Condition condition) {
+        List<Condition> copy = new ArrayList<>(conditions);
+        copy.add(condition);
+        return new Filter(copy);
+    }
+
+    boolean isAll() {
+        return conditions.isEmpty();
+    }
+
+    List<Condition> conditions() {
+        return conditions;
+    }
+}
@@ -0,0 +1,155 @@
+package com.garantias.analytics;
+
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Instantánea columnar de las garantías: estado, tipo, marca y fecha de fin
+ */
+public class GarantiaAnalytics {
+
+    static final int ESTADO = 0;
+    static final int TIPO = 1;
+    static final int MARCA = 2;
+    static final int FECHA_FIN = 3;
+
+    /** Campos que se leen de MongoDB al cargar */
+    static final Bson PROJECTION = Projections.include(
+        "garantia.estado", "garantia.tipo", "garantia.fechaFin", "aireAcondicionado.marca");
+
+    private static final EstadoGarantia[] ESTADOS = EstadoGarantia.values();
+    private static final TipoGarantia[] TIPOS = TipoGarantia.values();
+
+    private final ColumnTable table;
+    private final StringDictionary marcas = new StringDictionary();
+
+    GarantiaAnalytics(int capacity) {
+        this.table = new ColumnTable(4, 0, capacity);
+    }
+
+    /**
+     * Construye la instantánea a partir de documentos completos o proyectados con {@link #PROJECTION}
+     */
+    public static GarantiaAnalytics of(Iterable<Document> docs, int capacity) {
+        GarantiaAnalytics analytics = new GarantiaAnalytics(capacity);
+        for (Document doc : docs) {
+            analytics.put(doc.getObjectId("_id"), doc);
+        }
+        return analytics;
+    }
+
+    /**
+     * Inserta o sustituye la fila a partir del documento (completo o proyectado)
+     */
+    void put(ObjectId id, Document doc) {
+        Document garantia = doc.get("garantia", Document.class);
+        Document aire = doc.get("aireAcondicionado", Document.class);
+        int[] row = {
+            ordinal(EstadoGarantia.class, garantia != null ? garantia.getString("estado") : null),
+            ordinal(TipoGarantia.class, garantia != null ? garantia.getString("tipo") : null),
+            marcas.encode(aire != null ? aire.getString("marca") : null),
+            epochDay(garantia != null ? garantia.getDate("fechaFin") : null)
+        };
+        table.upsert(id, row, new long[0]);
+    }
+
+    void remove(ObjectId id) {
+        table.delete(id);
+    }
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    public long count() {
+        return table.liveRows();
+    }
+
+    public Map<EstadoGarantia, Long> countByEstado() {
+        long[] counts = table.count(Grouping.by(ESTADO, ESTADOS.length), Filter.all());
+        Map<EstadoGarantia, Long> result = new EnumMap<>(EstadoGarantia.class);
+        for (EstadoGarantia estado : ESTADOS) {
+            result.put(estado, counts[estado.ordinal()]);
+        }
+        return result;
+    }
+
+    public Map<TipoGarantia, Long> countByTipo() {
+        long[] counts = table.count(Grouping.by(TIPO, TIPOS.length), Filter.all());
+        Map<TipoGarantia, Long> result = new EnumMap<>(TipoGarantia.class);
+        for (TipoGarantia tipo : TIPOS) {
+            result.put(tipo, counts[tipo.ordinal()]);
+        }
+        return result;
+    }
+
+    public Map<String, Long> countByMarca() {
+        long[] counts = table.count(Grouping.by(MARCA, marcas.size()), Filter.all());
+        Map<String, Long> result = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(marcas.decode(code), counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Las {@code n} marcas con más garantías, opcionalmente solo de un estado
+     */
+    public Map<String, Long> topMarcas(int n, EstadoGarantia estado) {
+        Filter filter = estado != null ? Filter.all().in(ESTADO, estado.ordinal()) : Filter.all();
+        long[] counts = table.count(Grouping.by(MARCA, marcas.size()), filter);
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int code : ColumnTable.topN(counts, n)) {
+            result.put(marcas.decode(code), counts[code]);
+        }
+        return result;
+    }
+
+    /**
+     * Garantías que vencen cada mes a partir de {@code desde}, opcionalmente de un estado
+     */
+    public Map<YearMonth, Long> vencimientosPorMes(YearMonth desde, int meses, EstadoGarantia estado) {
+        Filter filter = estado != null ? Filter.all().in(ESTADO, estado.ordinal()) : Filter.all();
+        long[] counts = table.count(Grouping.byMonth(FECHA_FIN, desde, meses), filter);
+        Map<YearMonth, Long> result = new LinkedHashMap<>();
+        for (int mes = 0; mes < meses; mes++) {
+            result.put(desde.plusMonths(mes), counts[mes]);
+        }
+        return result;
+    }
+
+    // ========================================
+    // CODIFICACIÓN
+    // ========================================
+
+    static <E extends Enum<E>> int ordinal(Class<E> type, String name) {
+        if (name == null) return ColumnTable.NULL;
+        try {
+            return Enum.valueOf(type, name).ordinal();
+        } catch (IllegalArgumentException e) {
+            return ColumnTable.NULL;
+        }
+    }
+
+    static int epochDay(Date date) {
+        // getTime() y no toInstant(): los mappers escriben java.sql.Date, que no lo admite
+        return date != null
+            ? (int) Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()
+            : ColumnTable.NULL_DAY;
+    }
+}
@@ -0,0 +1,61 @@
+package com.garantias.analytics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Cómo se reparte cada fila en grupos al agregar: por el código de una dimensión,
+ * por mes de una columna de fecha (días epoch) o en un único total
+ */
+public final class Grouping {
+
+    final int dim;
+    final int groups;
+    // Tabla día epoch -> grupo para los histogramas; null si el valor ya es el grupo.
+    // El grupo número "groups" es el de descarte
+    final int[] lookup;
+    final int offset;
+
+    private Grouping(int dim, int groups, int[] lookup, int offset) {
+        this.dim = dim;
+        this.groups = groups;
+        this.lookup = lookup;
+        this.offset = offset;
+    }
+
+    /**
+     * Un único grupo con el total de las filas seleccionadas
+     */
+    public static Grouping total() {
+        return new Grouping(-1, 1, null, 0);
+    }
+
+    /**
+     * Un grupo por código de la dimensión (ordinal de enum o código de diccionario)
+     */
+    public static Grouping by(int dim, int groups) {
+        return new Grouping(dim, groups, null, 0);
+    }
+
+    /**
+     * Un grupo por mes a partir de {@code desde}, sobre una columna de días epoch
+     */
+    public static Grouping byMonth(int dateDim, YearMonth desde, int meses) {
+        LocalDate inicio = desde.atDay(1);
+        LocalDate fin = desde.plusMonths(meses).atDay(1);
+        int first = (int) inicio.toEpochDay();
+        // Posición extra al final: días fuera de rango o nulos van al grupo de descarte
+        int[] lookup = new int[(int) (fin.toEpochDay() - first) + 1];
+
+        // La tabla se rellena mes a mes: el bucle de agregación solo indexa
+        int pos = 0;
+        for (int mes = 0; mes < meses; mes++) {
+            int dias = desde.plusMonths(mes).lengthOfMonth();
+            for (int d = 0; d < dias; d++) {
+                lookup[pos++] = mes;
+            }
+        }
+        lookup[pos] = meses;
+        return new Grouping(dateDim, meses, lookup, first);
+    }
+}
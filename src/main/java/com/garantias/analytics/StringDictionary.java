@@ -0,0 +1,46 @@
+package com.garantias.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación por diccionario de una columna de texto: cada valor distinto se guarda
+ * una vez y las filas solo llevan su código {@code int}
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Código del valor, creándolo si no existe ({@link ColumnTable#NULL} para null)
+     */
+    public synchronized int encode(String value) {
+        if (value == null) return ColumnTable.NULL;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    /**
+     * Código del valor sin crearlo ({@link ColumnTable#NULL} si no existe)
+     */
+    public synchronized int lookup(String value) {
+        Integer code = value != null ? codes.get(value) : null;
+        return code != null ? code : ColumnTable.NULL;
+    }
+
+    public synchronized String decode(int code) {
+        return code >= 0 && code < values.size() ? values.get(code) : null;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+}
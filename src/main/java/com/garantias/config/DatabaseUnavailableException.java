@@ -0,0 +1,12 @@
+package com.garantias.config;
+
+/**
+ * Se lanza cuando MongoDB no está disponible y el circuit breaker rechaza
+ * la operación sin esperar al timeout de selección de servidor
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,9 +1,13 @@
 package com.garantias.controller;
 
+import com.garantias.events.EntityChanged;
+import com.garantias.events.EventBus;
 import com.garantias.model.Garantia;
 import com.garantias.model.Garantia.EstadoGarantia;
 import com.garantias.service.FacturaService;
 import com.garantias.service.GarantiaService;
+import com.garantias.service.Outbox;
+import com.garantias.service.VentaService;
 import com.garantias.util.ViewManager;
 import javafx.animation.*;
 import javafx.application.Platform;
@@ -24,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.net.URL;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controlador para el contenido del Dashboard
@@ -45,20 +50,37 @@ public class DashboardContentController implements Initializable {
     
     private GarantiaService garantiaService;
     private FacturaService facturaService;
+    private VentaService ventaService;
     
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
+    private final AtomicBoolean statsPendientes = new AtomicBoolean();
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         try {
             garantiaService = new GarantiaService();
             facturaService = new FacturaService();
+            ventaService = new VentaService();
             loadDashboardStats();
+            EventBus.subscribe(this, EntityChanged.class, DashboardContentController::onEntityChanged);
         } catch (Exception e) {
             logger.error("Error al inicializar dashboard: {}", e.getMessage());
         }
     }
     
+    /**
+     * Recalcula las cifras tras un alta, cambio o baja; una ráfaga de cambios (varios en
+     * el mismo ciclo del hilo de JavaFX) produce un solo recálculo
+     */
+    private void onEntityChanged(EntityChanged<?> e) {
+        if (statsPendientes.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                statsPendientes.set(false);
+                loadDashboardStats();
+            });
+        }
+    }
+    
     private void loadDashboardStats() {
         new Thread(() -> {
             try {
@@ -244,6 +266,16 @@ public class DashboardContentController implements Initializable {
         
         Spinner<Integer> duracion = new Spinner<>(6, 60, 24, 6);
         
+        // Venta: la factura se crea con la garantía, enlazadas y en la misma operación
+        CheckBox facturar = new CheckBox("Emitir factura");
+        Spinner<Double> precio = new Spinner<>(0.0, 10000.0, 100.0, 10.0);
+        precio.setEditable(true);
+        ComboBox<String> metodoPago = new ComboBox<>();
+        metodoPago.getItems().addAll("EFECTIVO", "TARJETA", "TRANSFERENCIA");
+        metodoPago.setValue("EFECTIVO");
+        precio.disableProperty().bind(facturar.selectedProperty().not());
+        metodoPago.disableProperty().bind(facturar.selectedProperty().not());
+        
         grid.add(new Label("Cliente:"), 0, 0);
         grid.add(clienteNombre, 1, 0);
         grid.add(new Label("Teléfono:"), 0, 1);
@@ -264,6 +296,11 @@ public class DashboardContentController implements Initializable {
         grid.add(tipoGarantia, 1, 7);
         grid.add(new Label("Duración (meses):"), 0, 8);
         grid.add(duracion, 1, 8);
+        grid.add(facturar, 1, 9);
+        grid.add(new Label("Precio (€):"), 0, 10);
+        grid.add(precio, 1, 10);
+        grid.add(new Label("Método pago:"), 0, 11);
+        grid.add(metodoPago, 1, 11);
         
         dialog.getDialogPane().setContent(grid);
         
@@ -272,7 +309,8 @@ public class DashboardContentController implements Initializable {
             if (dialogButton == crearButtonType) {
                 try {
                     Garantia g = new Garantia();
-                    g.setNumeroGarantia(garantiaService.generateNextNumero());
+                    // En una venta los números los asigna VentaService
+                    if (!facturar.isSelected()) g.setNumeroGarantia(garantiaService.reservarNumero());
                     g.setCreadoPor(com.garantias.util.SessionManager.getInstance().getCurrentUserName());
                     
                     Garantia.Cliente cliente = new Garantia.Cliente();
@@ -315,6 +353,11 @@ public class DashboardContentController implements Initializable {
                 logger.info("Cliente: {}", garantia.getCliente() != null ? garantia.getCliente().getNombre() : "null");
                 logger.info("Aire: {}", garantia.getAireAcondicionado() != null ? garantia.getAireAcondicionado().getMarca() : "null");
                 
+                if (facturar.isSelected()) {
+                    registrarVenta(garantia, precio.getValue(),
+                        com.garantias.model.Factura.MetodoPago.valueOf(metodoPago.getValue()));
+                    return;
+                }
                 ObjectId id = garantiaService.insert(garantia);
                 garantia.setId(id);
                 logger.info("✅ Garantía creada exitosamente con ID: {}", id);
@@ -322,9 +365,9 @@ public class DashboardContentController implements Initializable {
                 Alert success = new Alert(Alert.AlertType.INFORMATION);
                 success.setTitle("Éxito");
                 success.setHeaderText("Garantía creada");
-                success.setContentText("La garantía " + garantia.getNumeroGarantia() + " ha sido creada correctamente.");
+                success.setContentText("La garantía " + garantia.getNumeroGarantia() + " ha sido creada correctamente."
+                    + (Outbox.isPendiente(id) ? "\n\nSin conexión: está guardada en este equipo y se enviará al volver la conexión." : ""));
                 success.showAndWait();
-                loadDashboardStats(); // Refrescar estadísticas
             } catch (Exception e) {
                 logger.error("❌ Error al crear garantía", e);
                 Alert error = new Alert(Alert.AlertType.ERROR);
@@ -336,6 +379,35 @@ public class DashboardContentController implements Initializable {
         });
     }
     
+    /**
+     * Garantía y factura juntas: números, altas y enlaces en una sola operación
+     */
+    private void registrarVenta(Garantia garantia, double precio, com.garantias.model.Factura.MetodoPago metodoPago) {
+        com.garantias.model.Factura factura = new com.garantias.model.Factura();
+        factura.setCliente(new com.garantias.model.Factura.DatosCliente(
+            garantia.getCliente().getNombre(), null, garantia.getCliente().getDireccion()));
+        String equipo = garantia.getAireAcondicionado().getMarca() + " " + garantia.getAireAcondicionado().getModelo();
+        com.garantias.model.Factura.ItemFactura item = new com.garantias.model.Factura.ItemFactura(
+            "Garantía " + garantia.getGarantia().getTipo() + " " + garantia.getGarantia().getDuracionMeses()
+                + " meses - " + equipo, 1, precio, 21);
+        factura.setItems(new java.util.ArrayList<>(java.util.Collections.singletonList(item)));
+        factura.recalcularTotales();
+        factura.setEstado(com.garantias.model.Factura.EstadoFactura.PENDIENTE);
+        factura.setMetodoPago(metodoPago);
+        factura.setFechaEmision(java.time.LocalDate.now());
+        
+        ventaService.registrar(garantia, factura);
+        logger.info("✅ Venta registrada: garantía {} y factura {}", garantia.getId(), factura.getId());
+        
+        Alert success = new Alert(Alert.AlertType.INFORMATION);
+        success.setTitle("Éxito");
+        success.setHeaderText("Venta registrada");
+        success.setContentText("La garantía " + garantia.getNumeroGarantia() + " y la factura " + factura.getNumeroFactura()
+            + " por " + currencyFormat.format(factura.getTotal()) + " han sido creadas."
+            + (Outbox.isPendiente(garantia.getId()) ? "\n\nSin conexión: están guardadas en este equipo y se enviarán al volver la conexión." : ""));
+        success.showAndWait();
+    }
+    
     private void showNuevaFacturaDialog() {
         Dialog<com.garantias.model.Factura> dialog = new Dialog<>();
         dialog.setTitle("Nueva Factura");
@@ -384,29 +456,17 @@ public class DashboardContentController implements Initializable {
             if (dialogButton == crearButtonType) {
                 try {
                     com.garantias.model.Factura f = new com.garantias.model.Factura();
-                    f.setNumeroFactura(facturaService.generateNextNumero());
+                    f.setNumeroFactura(facturaService.reservarNumero());
                     
                     com.garantias.model.Factura.DatosCliente cliente = new com.garantias.model.Factura.DatosCliente(
                         clienteNombre.getText(), clienteNif.getText(), clienteDireccion.getText()
                     );
                     f.setCliente(cliente);
                     
-                    com.garantias.model.Factura.ItemFactura item = new com.garantias.model.Factura.ItemFactura();
-                    item.setDescripcion(descripcion.getText());
-                    item.setCantidad(1);
-                    item.setPrecioUnitario(precio.getValue());
-                    item.setIva(21);
-                    // Calcular total del item manualmente
-                    double itemTotal = precio.getValue() * (1 + 21.0 / 100);
-                    item.setTotal(itemTotal);
-                    f.setItems(java.util.Collections.singletonList(item));
-                    
-                    // Calcular totales manualmente
-                    double subtotal = precio.getValue();
-                    double iva = subtotal * 0.21;
-                    f.setSubtotal(subtotal);
-                    f.setTotalIVA(iva);
-                    f.setTotal(subtotal + iva);
+                    com.garantias.model.Factura.ItemFactura item = new com.garantias.model.Factura.ItemFactura(
+                        descripcion.getText(), 1, precio.getValue(), 21);
+                    f.setItems(new java.util.ArrayList<>(java.util.Collections.singletonList(item)));
+                    f.recalcularTotales();
                     
                     f.setEstado(com.garantias.model.Factura.EstadoFactura.PENDIENTE);
                     f.setMetodoPago(com.garantias.model.Factura.MetodoPago.valueOf(metodoPago.getValue()));
@@ -430,9 +490,9 @@ public class DashboardContentController implements Initializable {
                 success.setTitle("Éxito");
                 success.setHeaderText("Factura creada");
                 success.setContentText("La factura " + factura.getNumeroFactura() + " por " + 
-                    currencyFormat.format(factura.getTotal()) + " ha sido creada.");
+                    currencyFormat.format(factura.getTotal()) + " ha sido creada."
+                    + (Outbox.isPendiente(id) ? "\n\nSin conexión: está guardada en este equipo y se enviará al volver la conexión." : ""));
                 success.showAndWait();
-                loadDashboardStats();
             } catch (Exception e) {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setTitle("Error");
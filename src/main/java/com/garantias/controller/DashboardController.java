@@ -1,14 +1,19 @@
 package com.garantias.controller;
 
+import com.garantias.config.MongoDBConfig;
+import com.garantias.config.MongoDBConfig.EstadoConexion;
 import com.garantias.config.OdooConfig;
 import com.garantias.model.Garantia;
 import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.profiling.ViewLoadEvent;
 import com.garantias.service.FacturaService;
 import com.garantias.service.GarantiaService;
 import com.garantias.util.SessionManager;
 import com.garantias.util.ViewManager;
 import javafx.animation.*;
 import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.WeakChangeListener;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
@@ -48,12 +53,14 @@ public class DashboardController implements Initializable {
     @FXML private Button btnGarantias;
     @FXML private Button btnFacturas;
     @FXML private Button btnGraficas;
+    @FXML private Button btnDiagnosticos;
     @FXML private Button btnLogout;
     
     // Content
     @FXML private StackPane contentArea;
     @FXML private Label pageTitle;
     @FXML private Label dateLabel;
+    @FXML private Label connectionLabel;
     
     // Dashboard Stats
     @FXML private VBox dashboardContent;
@@ -69,6 +76,8 @@ public class DashboardController implements Initializable {
     private GarantiaService garantiaService;
     private FacturaService facturaService;
     private Button currentActiveButton;
+    // La propiedad es estática: se registra débil para no retener el controlador al cerrar sesión
+    private final ChangeListener<EstadoConexion> estadoListener = (obs, old, nuevo) -> updateConnectionStatus(nuevo);
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -81,6 +90,9 @@ public class DashboardController implements Initializable {
         // Configurar fecha
         dateLabel.setText(LocalDate.now().format(DateTimeFormatter.ofPattern("EEEE, d 'de' MMMM yyyy", new Locale("es", "ES"))));
         
+        // Indicador de conexión
+        setupConnectionStatus();
+        
         // Configurar navegación
         setupNavigation();
         
@@ -112,11 +124,23 @@ public class DashboardController implements Initializable {
             : "AD";
     }
     
+    private void setupConnectionStatus() {
+        updateConnectionStatus(MongoDBConfig.estadoProperty().get());
+        MongoDBConfig.estadoProperty().addListener(new WeakChangeListener<>(estadoListener));
+    }
+    
+    private void updateConnectionStatus(EstadoConexion estado) {
+        connectionLabel.setText(estado.getDisplayName());
+        connectionLabel.getStyleClass().removeIf(style -> style.startsWith("connection-") && !style.equals("connection-status"));
+        connectionLabel.getStyleClass().add("connection-" + estado.name().toLowerCase());
+    }
+    
     private void setupNavigation() {
         btnDashboard.setOnAction(e -> showDashboard());
         btnGarantias.setOnAction(e -> showGarantias());
         btnFacturas.setOnAction(e -> showFacturas());
         btnGraficas.setOnAction(e -> showGraficas());
+        btnDiagnosticos.setOnAction(e -> showDiagnosticos());
         btnLogout.setOnAction(e -> handleLogout());
         
         setActiveButton(btnDashboard);
@@ -285,6 +309,16 @@ public class DashboardController implements Initializable {
         loadView("graficas");
     }
     
+    // ========================================
+    // DIAGNÓSTICO
+    // ========================================
+    @FXML
+    private void showDiagnosticos() {
+        setActiveButton(btnDiagnosticos);
+        pageTitle.setText("Diagnóstico de Rendimiento");
+        loadView("diagnosticos");
+    }
+    
     // ========================================
     // LOGOUT
     // ========================================
@@ -307,9 +341,12 @@ public class DashboardController implements Initializable {
     // UTILIDADES
     // ========================================
     private void loadView(String viewName) {
+        ViewLoadEvent event = new ViewLoadEvent(viewName);
+        event.begin();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/views/" + viewName + ".fxml"));
             Parent view = loader.load();
+            event.commit();
             
             // Animación de transición
             view.setOpacity(0);
@@ -0,0 +1,141 @@
+package com.garantias.controller;
+
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.MetricsReporter;
+import com.garantias.metrics.MetricsRegistry;
+import com.garantias.metrics.Timer;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+
+import java.net.URL;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.function.Function;
+
+/**
+ * Controlador del panel de diagnóstico: métricas de servicios, comandos MongoDB y pool
+ */
+public class DiagnosticosController implements Initializable {
+
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(2);
+
+    @FXML private TextField filterField;
+    @FXML private TableView<MetricRow> metricsTable;
+    @FXML private TableColumn<MetricRow, String> colNombre;
+    @FXML private TableColumn<MetricRow, String> colTipo;
+    @FXML private TableColumn<MetricRow, String> colValor;
+    @FXML private TableColumn<MetricRow, String> colMedia;
+    @FXML private TableColumn<MetricRow, String> colP50;
+    @FXML private TableColumn<MetricRow, String> colP99;
+    @FXML private TableColumn<MetricRow, String> colMax;
+    @FXML private Label totalLabel;
+
+    private final ObservableList<MetricRow> rows = FXCollections.observableArrayList();
+    private Timeline refresher;
+
+    @Override
+    public void initialize(URL location, ResourceBundle resources) {
+        bind(colNombre, r -> r.nombre);
+        bind(colTipo, r -> r.tipo);
+        bind(colValor, r -> r.valor);
+        bind(colMedia, r -> r.media);
+        bind(colP50, r -> r.p50);
+        bind(colP99, r -> r.p99);
+        bind(colMax, r -> r.max);
+        metricsTable.setItems(rows);
+
+        filterField.textProperty().addListener((obs, old, texto) -> refresh());
+
+        // Refresco periódico mientras la vista esté en pantalla
+        refresher = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> refresh()));
+        refresher.setCycleCount(Animation.INDEFINITE);
+        metricsTable.sceneProperty().addListener((obs, old, scene) -> {
+            if (scene == null) {
+                refresher.stop();
+            }
+        });
+
+        refresh();
+        refresher.play();
+    }
+
+    private void bind(TableColumn<MetricRow, String> column, Function<MetricRow, String> getter) {
+        column.setCellValueFactory(data -> new ReadOnlyStringWrapper(getter.apply(data.getValue())));
+    }
+
+    private void refresh() {
+        // Las métricas son contadores en memoria: leerlas en el hilo de la UI es barato
+        String filtro = filterField.getText() == null ? "" : filterField.getText().trim().toLowerCase();
+        MetricsRegistry registry = Metrics.getRegistry();
+        ObservableList<MetricRow> nuevas = FXCollections.observableArrayList();
+
+        registry.getTimers().forEach((name, timer) -> {
+            if (matches(name, filtro)) nuevas.add(MetricRow.timer(name, timer.snapshot()));
+        });
+        registry.getCounters().forEach((name, counter) -> {
+            if (matches(name, filtro)) nuevas.add(MetricRow.value(name, "Contador", counter.getCount()));
+        });
+        registry.getGauges().forEach((name, gauge) -> {
+            if (matches(name, filtro)) nuevas.add(MetricRow.value(name, "Gauge", gauge.getAsLong()));
+        });
+
+        rows.setAll(nuevas);
+        totalLabel.setText(nuevas.size() + " métrica(s)");
+    }
+
+    private boolean matches(String name, String filtro) {
+        return filtro.isEmpty() || name.toLowerCase().contains(filtro);
+    }
+
+    @FXML
+    private void exportarJson() {
+        new Thread(MetricsReporter::dump).start();
+    }
+
+    /**
+     * Fila de la tabla (valores ya formateados)
+     */
+    public static class MetricRow {
+        private final String nombre;
+        private final String tipo;
+        private final String valor;
+        private final String media;
+        private final String p50;
+        private final String p99;
+        private final String max;
+
+        private MetricRow(String nombre, String tipo, String valor, String media, String p50, String p99, String max) {
+            this.nombre = nombre;
+            this.tipo = tipo;
+            this.valor = valor;
+            this.media = media;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        static MetricRow timer(String name, Timer.Snapshot s) {
+            return new MetricRow(name, "Timer", String.valueOf(s.getCount()),
+                ms(s.getMean()), ms(s.getP50()), ms(s.getP99()), ms(s.getMax()));
+        }
+
+        static MetricRow value(String name, String tipo, long value) {
+            return new MetricRow(name, tipo, String.valueOf(value), "", "", "", "");
+        }
+
+        private static String ms(double value) {
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.garantias.controller;
+
+import com.garantias.export.ExportFormat;
+import com.garantias.export.ExportSource;
+import com.garantias.export.Exporter;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Exportación desde una tabla: pide el fichero, exporta en segundo plano y muestra el
+ * avance con opción de cancelar
+ */
+final class ExportDialog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportDialog.class);
+
+    private ExportDialog() {}
+
+    static void show(Window owner, ExportSource source, String defaultName) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Exportar " + source.title().toLowerCase());
+        for (ExportFormat format : ExportFormat.values()) {
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                format.getDisplayName() + " (*" + format.getExtension() + ")", "*" + format.getExtension()));
+        }
+        chooser.setInitialFileName(defaultName + ExportFormat.XLSX.getExtension());
+        chooser.setSelectedExtensionFilter(chooser.getExtensionFilters().get(ExportFormat.XLSX.ordinal()));
+        File destino = chooser.showSaveDialog(owner);
+        if (destino == null) return;
+
+        int selected = chooser.getExtensionFilters().indexOf(chooser.getSelectedExtensionFilter());
+        Path file = withExtension(destino.toPath(),
+            selected >= 0 ? ExportFormat.values()[selected] : ExportFormat.XLSX);
+        Exporter exporter = new Exporter(source);
+        NumberFormat numbers = NumberFormat.getIntegerInstance(new Locale("es", "ES"));
+
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                return exporter.export(file, (filas, total) -> {
+                    updateProgress(filas, total);
+                    updateMessage(numbers.format(filas) + " de " + numbers.format(total) + " filas");
+                });
+            }
+
+            @Override
+            protected void cancelled() {
+                exporter.cancel();
+            }
+        };
+
+        ProgressBar bar = new ProgressBar();
+        bar.setPrefWidth(360);
+        bar.progressProperty().bind(task.progressProperty());
+        Label message = new Label("Contando filas...");
+        message.textProperty().bind(task.messageProperty());
+        VBox content = new VBox(10, new Label(file.getFileName().toString()), bar, message);
+        content.setPadding(new Insets(20));
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.initOwner(owner);
+        dialog.setTitle("Exportando");
+        dialog.setHeaderText("Exportando " + source.title().toLowerCase());
+        dialog.getDialogPane().setContent(content);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+        // Cerrar el diálogo con la exportación en marcha la cancela
+        dialog.setOnHidden(e -> {
+            if (task.isRunning()) task.cancel();
+        });
+
+        task.setOnSucceeded(e -> {
+            dialog.close();
+            showAlert(Alert.AlertType.INFORMATION, "Exportación terminada",
+                numbers.format(task.getValue()) + " filas exportadas a:\n" + file);
+        });
+        task.setOnFailed(e -> {
+            dialog.close();
+            logger.error("❌ Error al exportar {}: {}", source.collection(), task.getException().getMessage());
+            showAlert(Alert.AlertType.ERROR, "Error al exportar", task.getException().getMessage());
+        });
+        task.setOnCancelled(e -> dialog.close());
+
+        Thread thread = new Thread(task, "export-" + source.collection());
+        thread.setDaemon(true);
+        thread.start();
+        dialog.show();
+    }
+
+    /** Añade la extensión del filtro elegido si el nombre escrito no tiene una válida */
+    private static Path withExtension(Path file, ExportFormat selected) {
+        try {
+            ExportFormat.of(file);
+            return file;
+        } catch (IllegalArgumentException e) {
+            return file.resolveSibling(file.getFileName() + selected.getExtension());
+        }
+    }
+
+    private static void showAlert(Alert.AlertType type, String header, String message) {
+        Alert alert = new Alert(type);
+        alert.setTitle(type == Alert.AlertType.ERROR ? "Error" : "Éxito");
+        alert.setHeaderText(header);
+        alert.setContentText(message);
+        alert.show();
+    }
+}
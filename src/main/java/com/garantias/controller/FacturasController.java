@@ -1,8 +1,18 @@
 package com.garantias.controller;
 
+import com.garantias.events.EventBus;
+import com.garantias.events.FacturaChanged;
+import com.garantias.export.ExportSource;
 import com.garantias.model.Factura;
 import com.garantias.model.Factura.*;
+import com.garantias.pdf.FacturaPdfBatch;
+import com.garantias.pdf.FacturaPdfRenderer;
+import com.garantias.profiling.FilterApplyEvent;
+import com.garantias.service.BulkOutcome;
 import com.garantias.service.FacturaService;
+import com.garantias.service.Outbox;
+import com.garantias.util.Dinero;
+import com.garantias.util.FacturaFilter;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -14,17 +24,21 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
 import javafx.util.StringConverter;
 import org.bson.types.ObjectId;
 import org.kordamp.ikonli.javafx.FontIcon;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.net.URL;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Controlador para la gestión de Facturas
@@ -39,6 +53,8 @@ public class FacturasController implements Initializable {
     @FXML private DatePicker dateTo;
     @FXML private Button btnNueva;
     @FXML private Button btnRefresh;
+    @FXML private Button btnExport;
+    @FXML private Button btnPagar;
     @FXML private TableView<Factura> facturasTable;
     @FXML private TableColumn<Factura, String> colNumero;
     @FXML private TableColumn<Factura, String> colCliente;
@@ -53,6 +69,11 @@ public class FacturasController implements Initializable {
     private ObservableList<Factura> facturasList;
     private FilteredList<Factura> filteredList;
     
+    // Cambios recibidos pendientes de aplicar a la tabla en el siguiente ciclo de JavaFX
+    private final Queue<FacturaChanged> cambiosPendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean aplicacionPendiente = new AtomicBoolean();
+    private FacturaPdfRenderer pdfRenderer;
+    
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
     
@@ -64,6 +85,7 @@ public class FacturasController implements Initializable {
         setupTable();
         setupFilters();
         loadData();
+        EventBus.subscribe(this, FacturaChanged.class, FacturasController::onFacturaChanged);
     }
     
     private void setupTable() {
@@ -85,8 +107,7 @@ public class FacturasController implements Initializable {
         
         // Total
         colTotal.setCellValueFactory(data -> {
-            Double total = data.getValue().getTotal();
-            return new SimpleStringProperty(total != null ? currencyFormat.format(total) : "€0.00");
+            return new SimpleStringProperty(currencyFormat.format(data.getValue().getTotal()));
         });
         colTotal.setStyle("-fx-alignment: CENTER-RIGHT;");
         
@@ -154,6 +175,10 @@ public class FacturasController implements Initializable {
                 setGraphic(empty ? null : actions);
             }
         });
+        
+        // Selección múltiple para marcar varias como pagadas a la vez
+        facturasTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        btnPagar.disableProperty().bind(facturasTable.getSelectionModel().selectedItemProperty().isNull());
     }
     
     private void setupFilters() {
@@ -181,62 +206,135 @@ public class FacturasController implements Initializable {
     private void applyFilters() {
         if (filteredList == null) return;
         
+        FacturaFilter filter = currentFilter();
+        FilterApplyEvent event = new FilterApplyEvent("facturas", filter.toString());
+        event.begin();
+        filteredList.setPredicate(filter);
+        event.setResult(filteredList.getSource().size(), filteredList.size());
+        event.commit();
+        
+        updateTotals();
+    }
+    
+    private FacturaFilter currentFilter() {
         String searchText = searchField.getText().toLowerCase().trim();
         EstadoFactura estadoFilter = filterEstado.getValue();
         LocalDate from = dateFrom.getValue();
         LocalDate to = dateTo.getValue();
-        
-        filteredList.setPredicate(factura -> {
-            // Estado
-            if (estadoFilter != null && factura.getEstado() != estadoFilter) {
-                return false;
-            }
-            
-            // Fechas
-            if (from != null && factura.getFechaEmision() != null && factura.getFechaEmision().isBefore(from)) {
-                return false;
-            }
-            if (to != null && factura.getFechaEmision() != null && factura.getFechaEmision().isAfter(to)) {
-                return false;
-            }
-            
-            // Texto
-            if (!searchText.isEmpty()) {
-                boolean matchNumero = factura.getNumeroFactura() != null && 
-                    factura.getNumeroFactura().toLowerCase().contains(searchText);
-                boolean matchCliente = factura.getCliente() != null && 
-                    factura.getCliente().getNombre() != null &&
-                    factura.getCliente().getNombre().toLowerCase().contains(searchText);
-                return matchNumero || matchCliente;
-            }
-            
-            return true;
-        });
-        
-        updateTotals();
+        return new FacturaFilter(estadoFilter, from, to, searchText);
     }
     
     private void loadData() {
         new Thread(() -> {
-            try {
-                List<Factura> facturas = facturaService.findAll();
+            // Primero la copia local: la tabla se ve al instante aunque MongoDB no responda
+            List<Factura> local = facturaService.findAllLocal();
+            if (!local.isEmpty()) {
                 Platform.runLater(() -> {
-                    facturasList.setAll(facturas);
-                    filteredList = new FilteredList<>(facturasList, p -> true);
-                    facturasTable.setItems(filteredList);
-                    updateTotals();
+                    if (filteredList == null) showFacturas(local);
                 });
+            }
+            try {
+                List<Factura> facturas = facturaService.findAllResumen();
+                Platform.runLater(() -> showFacturas(facturas));
             } catch (Exception e) {
                 logger.error("Error al cargar facturas: {}", e.getMessage());
+                if (!local.isEmpty()) {
+                    Platform.runLater(() -> totalLabel.setText(totalLabel.getText() + " · sin conexión (solo lectura)"));
+                }
             }
         }).start();
     }
     
+    /**
+     * Aplica un alta, cambio o baja a la fila afectada en lugar de recargar el listado; una
+     * ráfaga de cambios (p. ej. varias marcadas como pagadas) se aplica en una sola pasada
+     */
+    private void onFacturaChanged(FacturaChanged e) {
+        cambiosPendientes.add(e);
+        if (aplicacionPendiente.compareAndSet(false, true)) {
+            Platform.runLater(this::aplicarCambios);
+        }
+    }
+    
+    private void aplicarCambios() {
+        aplicacionPendiente.set(false);
+        if (filteredList == null) {
+            cambiosPendientes.clear();
+            return;
+        }
+        // El último cambio de cada factura es el que cuenta
+        Map<ObjectId, FacturaChanged> cambios = new LinkedHashMap<>();
+        for (FacturaChanged e; (e = cambiosPendientes.poll()) != null; ) {
+            cambios.put(e.getId(), e);
+        }
+        if (cambios.isEmpty()) return;
+        
+        Set<ObjectId> eliminadas = new HashSet<>();
+        for (int i = 0; i < facturasList.size(); i++) {
+            FacturaChanged e = cambios.remove(facturasList.get(i).getId());
+            if (e == null) continue;
+            if (e.isDeleted()) eliminadas.add(e.getId());
+            else facturasList.set(i, e.getAfter());
+        }
+        if (!eliminadas.isEmpty()) {
+            facturasList.removeIf(f -> eliminadas.contains(f.getId()));
+        }
+        // Las que no estaban en la tabla son altas: el listado va de la más reciente a la más antigua
+        List<Factura> nuevas = new ArrayList<>();
+        cambios.values().forEach(e -> {
+            if (!e.isDeleted()) nuevas.add(0, e.getAfter());
+        });
+        if (!nuevas.isEmpty()) facturasList.addAll(0, nuevas);
+        updateTotals();
+    }
+    
+    private void showFacturas(List<Factura> facturas) {
+        facturasList.setAll(facturas);
+        filteredList = new FilteredList<>(facturasList, p -> true);
+        facturasTable.setItems(filteredList);
+        updateTotals();
+    }
+    
     @FXML
     private void refreshData() {
         loadData();
     }
     
+    /**
+     * Marca como pagadas las facturas seleccionadas en una sola operación
+     */
+    @FXML
+    private void marcarPagadas() {
+        List<ObjectId> ids = new ArrayList<>();
+        facturasTable.getSelectionModel().getSelectedItems().forEach(f -> ids.add(f.getId()));
+        if (ids.isEmpty()) return;
+        
+        Map<String, MetodoPago> metodos = new LinkedHashMap<>();
+        for (MetodoPago metodo : MetodoPago.values()) metodos.put(metodo.getDisplayName(), metodo);
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(MetodoPago.TRANSFERENCIA.getDisplayName(), metodos.keySet());
+        dialog.setTitle("Marcar como Pagadas");
+        dialog.setHeaderText(ids.size() + " factura(s) seleccionada(s)");
+        dialog.setContentText("Método de pago:");
+        dialog.showAndWait().map(metodos::get).ifPresent(metodo -> new Thread(() -> {
+            try {
+                BulkOutcome outcome = facturaService.marcarPagadasBulk(ids, metodo);
+                Platform.runLater(() -> showSuccess("Facturas pagadas: " + outcome));
+            } catch (Exception e) {
+                logger.error("Error al marcar las facturas como pagadas: {}", e.getMessage());
+                Platform.runLater(() -> showError("Error al marcar como pagadas", e.getMessage()));
+            }
+        }).start());
+    }
+    
+    /**
+     * Exporta desde MongoDB lo que cumple los filtros actuales (no solo lo cargado en la tabla)
+     */
+    @FXML
+    private void exportData() {
+        ExportDialog.show(facturasTable.getScene().getWindow(),
+            ExportSource.facturas(currentFilter()), "facturas-" + LocalDate.now());
+    }
+    
     @FXML
     private void showNewFacturaDialog() {
         Dialog<Factura> dialog = createFacturaDialog(null);
@@ -245,12 +343,27 @@ public class FacturasController implements Initializable {
             ObjectId id = facturaService.insert(factura);
             factura.setId(id);
             logger.info("Factura creada con ID: {}", id);
-            loadData();
-            showSuccess("Factura creada correctamente");
+            showSuccess(Outbox.isPendiente(id)
+                ? "Factura guardada en este equipo; se enviará al volver la conexión"
+                : "Factura creada correctamente");
         });
     }
     
-    private void viewFactura(Factura factura) {
+    private void viewFactura(Factura fila) {
+        // Las filas de la tabla son resúmenes sin líneas: se carga la factura completa
+        Factura factura;
+        try {
+            factura = facturaService.findById(fila.getId());
+        } catch (Exception e) {
+            logger.error("Error al cargar la factura {}: {}", fila.getId(), e.getMessage());
+            showError("Sin conexión con MongoDB", "Solo está disponible el listado guardado en este equipo.");
+            return;
+        }
+        if (factura == null) {
+            loadData();
+            return;
+        }
+        
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Detalles de Factura");
         alert.setHeaderText(factura.getNumeroFactura());
@@ -276,8 +389,40 @@ public class FacturasController implements Initializable {
         alert.showAndWait();
     }
     
-    private void generatePdf(Factura factura) {
-        showSuccess("Funcionalidad de generación de PDF en desarrollo.\n\nFactura: " + factura.getNumeroFactura());
+    private void generatePdf(Factura fila) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Guardar factura en PDF");
+        chooser.setInitialFileName(FacturaPdfBatch.fileName(fila));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF", "*.pdf"));
+        File destino = chooser.showSaveDialog(facturasTable.getScene().getWindow());
+        if (destino == null) return;
+        
+        new Thread(() -> {
+            try {
+                // La fila es un resumen sin líneas: se genera desde la factura completa
+                Factura factura = facturaService.findById(fila.getId());
+                if (factura == null) {
+                    Platform.runLater(() -> showError("Factura no encontrada", "Se ha eliminado desde otro puesto."));
+                    return;
+                }
+                int paginas = pdfRenderer().render(factura, destino.toPath());
+                logger.info("PDF de {} generado: {} ({} páginas)", factura.getNumeroFactura(), destino, paginas);
+                Platform.runLater(() -> showSuccess("PDF generado:\n" + destino.getAbsolutePath()));
+            } catch (Exception e) {
+                logger.error("Error al generar el PDF de {}: {}", fila.getNumeroFactura(), e.getMessage());
+                Platform.runLater(() -> showError("Error al generar el PDF", e.getMessage()));
+            }
+        }, "pdf-factura").start();
+    }
+    
+    private FacturaPdfRenderer pdfRenderer() {
+        // Se prepara (fuentes y cabecera) la primera vez que se usa
+        synchronized (this) {
+            if (pdfRenderer == null) {
+                pdfRenderer = new FacturaPdfRenderer();
+            }
+            return pdfRenderer;
+        }
     }
     
     private void deleteFactura(Factura factura) {
@@ -288,9 +433,12 @@ public class FacturasController implements Initializable {
         
         Optional<ButtonType> result = confirm.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            facturaService.delete(factura.getId());
-            loadData();
-            showSuccess("Factura eliminada");
+            try {
+                facturaService.delete(factura.getId());
+                showSuccess("Factura eliminada");
+            } catch (IllegalStateException e) {
+                showError("No se puede eliminar la factura", e.getMessage());
+            }
         }
     }
     
@@ -342,7 +490,7 @@ public class FacturasController implements Initializable {
         dialog.setResultConverter(button -> {
             if (button == saveButtonType) {
                 Factura f = new Factura();
-                f.setNumeroFactura(facturaService.generateNextNumero());
+                f.setNumeroFactura(facturaService.reservarNumero());
                 f.setCliente(new DatosCliente(
                     clienteNombre.getText(),
                     clienteNif.getText(),
@@ -372,15 +520,13 @@ public class FacturasController implements Initializable {
         int count = filteredList != null ? filteredList.size() : 0;
         totalLabel.setText("Mostrando " + count + " factura(s)");
         
-        double sum = 0;
+        long sum = 0;
         if (filteredList != null) {
             for (Factura f : filteredList) {
-                if (f.getTotal() != null) {
-                    sum += f.getTotal();
-                }
+                sum += f.getTotalCentimos();
             }
         }
-        sumLabel.setText("Total: " + currencyFormat.format(sum));
+        sumLabel.setText("Total: " + currencyFormat.format(Dinero.aEuros(sum)));
     }
     
     private void showSuccess(String message) {
@@ -390,4 +536,12 @@ public class FacturasController implements Initializable {
         alert.setContentText(message);
         alert.showAndWait();
     }
+    
+    private void showError(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(title);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
 }
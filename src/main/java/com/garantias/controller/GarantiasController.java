@@ -1,8 +1,20 @@
 package com.garantias.controller;
 
+import com.garantias.events.EventBus;
+import com.garantias.events.GarantiaChanged;
+import com.garantias.export.ExportSource;
 import com.garantias.model.Garantia;
 import com.garantias.model.Garantia.*;
+import com.garantias.pricing.Cotizacion;
+import com.garantias.profiling.FilterApplyEvent;
+import com.garantias.service.BulkOutcome;
+import com.garantias.service.CotizacionService;
 import com.garantias.service.GarantiaService;
+import com.garantias.service.Outbox;
+import com.garantias.service.ReparacionService;
+import com.garantias.service.UpdateOutcome;
+import com.garantias.service.UpdateOutcome.FieldConflict;
+import com.garantias.util.GarantiaFilter;
 import com.garantias.util.SessionManager;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
@@ -25,8 +37,12 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Controlador para la gestión de Garantías
@@ -39,6 +55,9 @@ public class GarantiasController implements Initializable {
     @FXML private ComboBox<EstadoGarantia> filterEstado;
     @FXML private Button btnNueva;
     @FXML private Button btnRefresh;
+    @FXML private Button btnExport;
+    @FXML private Button btnImport;
+    @FXML private MenuButton btnEstado;
     @FXML private TableView<Garantia> garantiasTable;
     @FXML private TableColumn<Garantia, String> colNumero;
     @FXML private TableColumn<Garantia, String> colCliente;
@@ -50,19 +69,30 @@ public class GarantiasController implements Initializable {
     @FXML private Label totalLabel;
     
     private GarantiaService garantiaService;
+    private ReparacionService reparacionService;
+    private CotizacionService cotizacionService;
     private ObservableList<Garantia> garantiasList;
     private FilteredList<Garantia> filteredList;
+    // Posición de cada garantía en garantiasList; null tras un alta o baja hasta que se necesite
+    private Map<ObjectId, Integer> posiciones;
+    
+    // Cambios recibidos pendientes de aplicar a la tabla en el siguiente ciclo de JavaFX
+    private final Queue<GarantiaChanged> cambiosPendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean aplicacionPendiente = new AtomicBoolean();
     
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         garantiaService = new GarantiaService();
+        reparacionService = new ReparacionService();
+        cotizacionService = new CotizacionService();
         garantiasList = FXCollections.observableArrayList();
         
         setupTable();
         setupFilters();
         loadData();
+        EventBus.subscribe(this, GarantiaChanged.class, GarantiasController::onGarantiaChanged);
     }
     
     private void setupTable() {
@@ -131,6 +161,7 @@ public class GarantiasController implements Initializable {
         colAcciones.setCellFactory(col -> new TableCell<>() {
             private final Button btnView = new Button();
             private final Button btnEdit = new Button();
+            private final Button btnRepair = new Button();
             private final Button btnDelete = new Button();
             private final HBox actions = new HBox(5);
             
@@ -147,6 +178,12 @@ public class GarantiasController implements Initializable {
                 btnEdit.getStyleClass().addAll("btn-icon", "btn-edit");
                 btnEdit.setTooltip(new Tooltip("Editar"));
                 
+                FontIcon repairIcon = new FontIcon("fas-tools");
+                repairIcon.setIconSize(14);
+                btnRepair.setGraphic(repairIcon);
+                btnRepair.getStyleClass().addAll("btn-icon", "btn-edit");
+                btnRepair.setTooltip(new Tooltip("Registrar reparación"));
+                
                 FontIcon deleteIcon = new FontIcon("fas-trash");
                 deleteIcon.setIconSize(14);
                 btnDelete.setGraphic(deleteIcon);
@@ -154,10 +191,11 @@ public class GarantiasController implements Initializable {
                 btnDelete.setTooltip(new Tooltip("Eliminar"));
                 
                 actions.setAlignment(Pos.CENTER);
-                actions.getChildren().addAll(btnView, btnEdit, btnDelete);
+                actions.getChildren().addAll(btnView, btnEdit, btnRepair, btnDelete);
                 
                 btnView.setOnAction(e -> viewGarantia(getTableRow().getItem()));
                 btnEdit.setOnAction(e -> editGarantia(getTableRow().getItem()));
+                btnRepair.setOnAction(e -> registrarReparacion(getTableRow().getItem()));
                 btnDelete.setOnAction(e -> deleteGarantia(getTableRow().getItem()));
             }
             
@@ -178,6 +216,15 @@ public class GarantiasController implements Initializable {
             });
             return row;
         });
+        
+        // Selección múltiple para cambiar el estado de varias a la vez
+        garantiasTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        for (EstadoGarantia estado : EstadoGarantia.values()) {
+            MenuItem item = new MenuItem(estado.getDisplayName());
+            item.setOnAction(e -> cambiarEstadoSeleccionadas(estado));
+            btnEstado.getItems().add(item);
+        }
+        btnEstado.disableProperty().bind(garantiasTable.getSelectionModel().selectedItemProperty().isNull());
     }
     
     private void setupFilters() {
@@ -202,60 +249,177 @@ public class GarantiasController implements Initializable {
     private void applyFilters() {
         if (filteredList == null) return;
         
-        String searchText = searchField.getText().toLowerCase().trim();
-        EstadoGarantia estadoFilter = filterEstado.getValue();
-        
-        filteredList.setPredicate(garantia -> {
-            // Filtro de estado
-            if (estadoFilter != null) {
-                DetalleGarantia detalle = garantia.getGarantia();
-                if (detalle == null || detalle.getEstado() != estadoFilter) {
-                    return false;
-                }
-            }
-            
-            // Búsqueda de texto
-            if (!searchText.isEmpty()) {
-                boolean matchNumero = garantia.getNumeroGarantia() != null && 
-                    garantia.getNumeroGarantia().toLowerCase().contains(searchText);
-                boolean matchCliente = garantia.getCliente() != null && 
-                    garantia.getCliente().getNombre() != null &&
-                    garantia.getCliente().getNombre().toLowerCase().contains(searchText);
-                boolean matchEquipo = garantia.getAireAcondicionado() != null &&
-                    (garantia.getAireAcondicionado().getMarca() + " " + garantia.getAireAcondicionado().getModelo())
-                    .toLowerCase().contains(searchText);
-                
-                return matchNumero || matchCliente || matchEquipo;
-            }
-            
-            return true;
-        });
+        GarantiaFilter filter = currentFilter();
+        FilterApplyEvent event = new FilterApplyEvent("garantias", filter.toString());
+        event.begin();
+        filteredList.setPredicate(filter);
+        event.setResult(filteredList.getSource().size(), filteredList.size());
+        event.commit();
         
         updateTotal();
     }
     
+    private GarantiaFilter currentFilter() {
+        String searchText = searchField.getText().toLowerCase().trim();
+        EstadoGarantia estadoFilter = filterEstado.getValue();
+        return new GarantiaFilter(estadoFilter, searchText);
+    }
+    
     private void loadData() {
         new Thread(() -> {
-            try {
-                List<Garantia> garantias = garantiaService.findAll();
+            // Primero la copia local: la tabla se ve al instante aunque MongoDB no responda
+            List<Garantia> local = garantiaService.findAllLocal();
+            if (!local.isEmpty()) {
                 Platform.runLater(() -> {
-                    garantiasList.setAll(garantias);
-                    filteredList = new FilteredList<>(garantiasList, p -> true);
-                    garantiasTable.setItems(filteredList);
-                    updateTotal();
+                    if (filteredList == null) showGarantias(local);
                 });
+            }
+            try {
+                List<Garantia> garantias = garantiaService.findAllResumen();
+                Platform.runLater(() -> showGarantias(garantias));
             } catch (Exception e) {
                 logger.error("Error al cargar garantías: {}", e.getMessage());
-                Platform.runLater(() -> showError("Error al cargar datos", e.getMessage()));
+                if (local.isEmpty()) {
+                    Platform.runLater(() -> showError("Error al cargar datos", e.getMessage()));
+                } else {
+                    Platform.runLater(() -> totalLabel.setText(totalLabel.getText() + " · sin conexión (solo lectura)"));
+                }
             }
         }).start();
     }
     
+    /**
+     * Aplica un alta, cambio o baja a la fila afectada en lugar de recargar el listado; una
+     * ráfaga de cambios (p. ej. un cambio de estado múltiple) se aplica en una sola pasada
+     */
+    private void onGarantiaChanged(GarantiaChanged e) {
+        cambiosPendientes.add(e);
+        if (aplicacionPendiente.compareAndSet(false, true)) {
+            Platform.runLater(this::aplicarCambios);
+        }
+    }
+    
+    private void aplicarCambios() {
+        aplicacionPendiente.set(false);
+        if (filteredList == null) {
+            cambiosPendientes.clear();
+            return;
+        }
+        // El último cambio de cada garantía es el que cuenta
+        Map<ObjectId, GarantiaChanged> cambios = new LinkedHashMap<>();
+        for (GarantiaChanged e; (e = cambiosPendientes.poll()) != null; ) {
+            cambios.put(e.getId(), e);
+        }
+        if (cambios.isEmpty()) return;
+        
+        if (posiciones == null) indexar();
+        List<Integer> eliminadas = new ArrayList<>();
+        for (Iterator<GarantiaChanged> it = cambios.values().iterator(); it.hasNext(); ) {
+            GarantiaChanged e = it.next();
+            Integer i = posiciones.get(e.getId());
+            if (i == null) continue;
+            it.remove();
+            if (e.isDeleted()) eliminadas.add(i);
+            else garantiasList.set(i, e.getAfter());
+        }
+        if (!eliminadas.isEmpty()) {
+            // De la última a la primera: quitar una fila no mueve las anteriores
+            eliminadas.sort(Comparator.reverseOrder());
+            eliminadas.forEach(i -> garantiasList.remove((int) i));
+            posiciones = null;
+        }
+        // Las que no estaban en la tabla son altas: el listado va de la más reciente a la más antigua
+        List<Garantia> nuevas = new ArrayList<>();
+        cambios.values().forEach(e -> {
+            if (!e.isDeleted()) nuevas.add(0, e.getAfter());
+        });
+        if (!nuevas.isEmpty()) {
+            garantiasList.addAll(0, nuevas);
+            posiciones = null;
+        }
+        updateTotal();
+    }
+    
+    private void indexar() {
+        posiciones = new HashMap<>(garantiasList.size() * 2);
+        for (int i = 0; i < garantiasList.size(); i++) {
+            posiciones.put(garantiasList.get(i).getId(), i);
+        }
+    }
+    
+    private void showGarantias(List<Garantia> garantias) {
+        garantiasList.setAll(garantias);
+        posiciones = null;
+        filteredList = new FilteredList<>(garantiasList, p -> true);
+        garantiasTable.setItems(filteredList);
+        updateTotal();
+    }
+    
+    /**
+     * Las filas de la tabla son resúmenes: para ver o editar se carga la garantía completa
+     */
+    private Garantia loadCompleta(Garantia fila) {
+        try {
+            Garantia garantia = garantiaService.findById(fila.getId());
+            if (garantia == null) {
+                showError("Garantía no encontrada", "Se ha eliminado desde otro puesto.");
+                loadData();
+            }
+            return garantia;
+        } catch (Exception e) {
+            logger.error("Error al cargar la garantía {}: {}", fila.getId(), e.getMessage());
+            showError("Sin conexión con MongoDB", "Solo está disponible el listado guardado en este equipo.");
+            return null;
+        }
+    }
+    
     @FXML
     private void refreshData() {
         loadData();
     }
     
+    /**
+     * Cambia el estado de las garantías seleccionadas en una sola operación
+     */
+    private void cambiarEstadoSeleccionadas(EstadoGarantia estado) {
+        List<ObjectId> ids = new ArrayList<>();
+        garantiasTable.getSelectionModel().getSelectedItems().forEach(g -> ids.add(g.getId()));
+        if (ids.isEmpty()) return;
+        
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Cambiar Estado");
+        confirm.setHeaderText("¿Marcar " + ids.size() + " garantía(s) como " + estado.getDisplayName() + "?");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+        
+        new Thread(() -> {
+            try {
+                BulkOutcome outcome = garantiaService.updateEstadoBulk(ids, estado);
+                Platform.runLater(() -> showSuccess("Estado actualizado: " + outcome));
+            } catch (Exception e) {
+                logger.error("Error al cambiar el estado: {}", e.getMessage());
+                Platform.runLater(() -> showError("Error al cambiar el estado", e.getMessage()));
+            }
+        }).start();
+    }
+    
+    /**
+     * Exporta desde MongoDB lo que cumple los filtros actuales (no solo lo cargado en la tabla)
+     */
+    @FXML
+    private void exportData() {
+        ExportDialog.show(garantiasTable.getScene().getWindow(),
+            ExportSource.garantias(currentFilter()), "garantias-" + LocalDate.now());
+    }
+    
+    /**
+     * Importa garantías de un CSV (simulación previa opcional) y recarga la tabla
+     */
+    @FXML
+    private void importData() {
+        ImportDialog.show(garantiasTable.getScene().getWindow(),
+            SessionManager.getInstance().getCurrentUserName(), this::loadData);
+    }
+    
     @FXML
     private void showNewGarantiaDialog() {
         Dialog<Garantia> dialog = createGarantiaDialog(null);
@@ -264,12 +428,16 @@ public class GarantiasController implements Initializable {
             ObjectId id = garantiaService.insert(garantia);
             garantia.setId(id);
             logger.info("Garantía creada con ID: {}", id);
-            loadData();
-            showSuccess("Garantía creada correctamente");
+            showSuccess(Outbox.isPendiente(id)
+                ? "Garantía guardada en este equipo; se enviará al volver la conexión"
+                : "Garantía creada correctamente");
         });
     }
     
-    private void viewGarantia(Garantia garantia) {
+    private void viewGarantia(Garantia fila) {
+        Garantia garantia = loadCompleta(fila);
+        if (garantia == null) return;
+        
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle("Detalles de Garantía");
         alert.setHeaderText(garantia.getNumeroGarantia());
@@ -288,17 +456,178 @@ public class GarantiasController implements Initializable {
         content.append("Duración: ").append(garantia.getGarantia().getDuracionMeses()).append(" meses\n");
         content.append("Días restantes: ").append(garantia.getDiasRestantes()).append("\n");
         
+        // Solo las últimas van embebidas; el total viene de numeroReparaciones
+        List<Reparacion> recientes = garantia.getHistorialReparaciones();
+        if (!recientes.isEmpty()) {
+            content.append("\nReparaciones (").append(garantia.getNumeroReparaciones()).append("):\n");
+            for (int i = recientes.size() - 1; i >= 0; i--) {
+                Reparacion r = recientes.get(i);
+                content.append("  ").append(r.getFecha() != null ? r.getFecha().format(dateFormatter) : "")
+                       .append(" - ").append(r.getDescripcion())
+                       .append(r.getTecnico() != null ? " (" + r.getTecnico() + ")" : "").append("\n");
+            }
+            if (garantia.getNumeroReparaciones() > recientes.size()) {
+                content.append("  ... y ").append(garantia.getNumeroReparaciones() - recientes.size()).append(" anteriores\n");
+            }
+        }
+        
         alert.setContentText(content.toString());
         alert.showAndWait();
     }
     
-    private void editGarantia(Garantia garantia) {
+    private void editGarantia(Garantia fila) {
+        Garantia garantia = loadCompleta(fila);
+        if (garantia == null) return;
+        
         Dialog<Garantia> dialog = createGarantiaDialog(garantia);
         Optional<Garantia> result = dialog.showAndWait();
-        result.ifPresent(updated -> {
-            garantiaService.update(updated);
-            loadData();
-            showSuccess("Garantía actualizada correctamente");
+        result.ifPresent(this::guardarEdicion);
+    }
+    
+    /**
+     * Guarda la edición. Si otro puesto ha guardado la garantía entre medias se combinan
+     * los cambios y solo se pregunta por los campos que han cambiado los dos.
+     */
+    private void guardarEdicion(Garantia garantia) {
+        UpdateOutcome<Garantia> outcome = garantiaService.update(garantia);
+        boolean combinada = false;
+        while (outcome.getEstado() == UpdateOutcome.Estado.CONFLICTO) {
+            Optional<Set<String>> quedarseSuyos = outcome.getConflictos().isEmpty()
+                ? Optional.of(Set.of())
+                : elegirCampos(outcome.getConflictos());
+            if (quedarseSuyos.isEmpty()) {
+                showError("Cambios descartados", "Se mantiene la versión guardada desde otro puesto.");
+                return;
+            }
+            outcome = garantiaService.update(garantiaService.merge(outcome, quedarseSuyos.get()));
+            combinada = true;
+        }
+        if (outcome.isEnCola()) {
+            showSuccess("Sin conexión: cambios guardados en este equipo; se enviarán al volver la conexión");
+        } else if (outcome.isActualizada()) {
+            showSuccess(combinada
+                ? "Garantía actualizada junto con los cambios guardados desde otro puesto"
+                : "Garantía actualizada correctamente");
+        } else {
+            showError("Garantía no encontrada", "Se ha eliminado desde otro puesto.");
+        }
+    }
+    
+    /**
+     * Elige, campo a campo, entre el valor propio y el guardado desde otro puesto.
+     * Devuelve los campos en los que se queda el suyo (vacío si se cancela).
+     */
+    private Optional<Set<String>> elegirCampos(List<FieldConflict> conflictos) {
+        Dialog<Set<String>> dialog = new Dialog<>();
+        dialog.setTitle("Garantía modificada");
+        dialog.setHeaderText("Otro puesto ha guardado esta garantía mientras la editabas.\nElige qué valor conservar en cada campo.");
+        
+        ButtonType saveButtonType = new ButtonType("Guardar", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButtonType, ButtonType.CANCEL);
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+        grid.add(new Label("Campo"), 0, 0);
+        grid.add(new Label("Tu cambio"), 1, 0);
+        grid.add(new Label("Otro puesto"), 2, 0);
+        
+        Map<String, RadioButton> suyos = new LinkedHashMap<>();
+        int row = 1;
+        for (FieldConflict conflicto : conflictos) {
+            ToggleGroup group = new ToggleGroup();
+            RadioButton mio = new RadioButton(formatValor(conflicto.getMio()));
+            RadioButton suyo = new RadioButton(formatValor(conflicto.getSuyo()));
+            mio.setToggleGroup(group);
+            suyo.setToggleGroup(group);
+            mio.setSelected(true);
+            grid.add(new Label(conflicto.getCampo()), 0, row);
+            grid.add(mio, 1, row);
+            grid.add(suyo, 2, row++);
+            suyos.put(conflicto.getCampo(), suyo);
+        }
+        dialog.getDialogPane().setContent(grid);
+        
+        dialog.setResultConverter(buttonType -> {
+            if (buttonType != saveButtonType) return null;
+            Set<String> campos = new HashSet<>();
+            suyos.forEach((campo, suyo) -> {
+                if (suyo.isSelected()) campos.add(campo);
+            });
+            return campos;
+        });
+        return dialog.showAndWait();
+    }
+    
+    private String formatValor(Object valor) {
+        if (valor == null) return "(vacío)";
+        if (valor instanceof Date) {
+            return ((Date) valor).toInstant().atZone(ZoneId.systemDefault()).toLocalDate().format(dateFormatter);
+        }
+        if (valor instanceof List) return ((List<?>) valor).size() + " elementos";
+        return valor.toString();
+    }
+    
+    /**
+     * Añade una reparación al historial sin reescribir la garantía
+     */
+    private void registrarReparacion(Garantia garantia) {
+        Dialog<Reparacion> dialog = new Dialog<>();
+        dialog.setTitle("Registrar Reparación");
+        dialog.setHeaderText(garantia.getNumeroGarantia());
+        
+        ButtonType saveButtonType = new ButtonType("Guardar", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().addAll(saveButtonType, ButtonType.CANCEL);
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+        
+        DatePicker fecha = new DatePicker(LocalDate.now());
+        TextField descripcion = new TextField();
+        descripcion.setPromptText("Avería y trabajo realizado");
+        TextField tecnico = new TextField(SessionManager.getInstance().getCurrentUserName());
+        TextField costo = new TextField("0");
+        
+        int row = 0;
+        grid.add(new Label("Fecha:"), 0, row);
+        grid.add(fecha, 1, row++);
+        grid.add(new Label("Descripción:"), 0, row);
+        grid.add(descripcion, 1, row++);
+        grid.add(new Label("Técnico:"), 0, row);
+        grid.add(tecnico, 1, row++);
+        grid.add(new Label("Coste (€):"), 0, row);
+        grid.add(costo, 1, row++);
+        dialog.getDialogPane().setContent(grid);
+        
+        dialog.setResultConverter(buttonType -> {
+            if (buttonType != saveButtonType) return null;
+            try {
+                double importe = Double.parseDouble(costo.getText().trim().replace(',', '.'));
+                return new Reparacion(fecha.getValue(), descripcion.getText(), tecnico.getText(), importe);
+            } catch (NumberFormatException e) {
+                showError("Coste no válido", costo.getText());
+                return null;
+            }
+        });
+        
+        dialog.showAndWait().ifPresent(reparacion -> {
+            if (reparacion.getFecha() == null || reparacion.getDescripcion().isBlank()) {
+                showError("Reparación incompleta", "Indica la fecha y la descripción.");
+                return;
+            }
+            try {
+                if (reparacionService.registrar(garantia.getId(), reparacion)) {
+                    showSuccess("Reparación registrada correctamente");
+                } else {
+                    showError("Garantía no encontrada", "Se ha eliminado desde otro puesto.");
+                }
+            } catch (Exception e) {
+                logger.error("Error al registrar la reparación: {}", e.getMessage());
+                showError("Error al registrar la reparación", e.getMessage());
+            }
         });
     }
     
@@ -310,12 +639,59 @@ public class GarantiasController implements Initializable {
         
         Optional<ButtonType> result = confirm.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            garantiaService.delete(garantia.getId());
-            loadData();
-            showSuccess("Garantía eliminada correctamente");
+            try {
+                garantiaService.delete(garantia.getId());
+                showSuccess("Garantía eliminada correctamente");
+            } catch (IllegalStateException e) {
+                showError("No se puede eliminar la garantía", e.getMessage());
+            }
         }
     }
     
+    /**
+     * Coste esperado en reparaciones de una garantía extendida, recalculado en segundo plano
+     * al cambiar el equipo o la duración
+     */
+    private void setupCotizacion(Label label, ComboBox<TipoGarantia> tipo, ComboBox<String> marca,
+                                 TextField modelo, ComboBox<Integer> duracion) {
+        AtomicLong ultima = new AtomicLong();
+        Runnable actualizar = () -> {
+            long peticion = ultima.incrementAndGet();
+            String m = marca.getValue();
+            Integer meses = duracion.getValue();
+            if (tipo.getValue() != TipoGarantia.EXTENDIDA || m == null || m.isBlank() || meses == null) {
+                label.setText("");
+                return;
+            }
+            String mod = modelo.getText() != null && !modelo.getText().isBlank() ? modelo.getText().trim() : null;
+            label.setText("Calculando coste esperado...");
+            new Thread(() -> {
+                String texto;
+                try {
+                    Cotizacion c = cotizacionService.cotizar(m.trim(), mod, meses);
+                    texto = String.format("Coste esperado: %.2f € (p95 %.2f €) · P(avería) %.0f %% · %d reparaciones de %s",
+                        c.getCosteEsperado(), c.getPercentil95(), c.getProbabilidadAveria() * 100,
+                        c.getModelo().getReparaciones(), c.getModelo().getEquipo());
+                } catch (Exception e) {
+                    logger.warn("⚠️ No se pudo cotizar {} {}: {}", m, mod, e.getMessage());
+                    texto = "Sin datos para estimar el coste";
+                }
+                String resultado = texto;
+                Platform.runLater(() -> {
+                    // Solo la última petición: el usuario puede haber cambiado el equipo
+                    if (peticion == ultima.get()) label.setText(resultado);
+                });
+            }).start();
+        };
+        tipo.valueProperty().addListener((obs, old, val) -> actualizar.run());
+        marca.valueProperty().addListener((obs, old, val) -> actualizar.run());
+        duracion.valueProperty().addListener((obs, old, val) -> actualizar.run());
+        modelo.focusedProperty().addListener((obs, old, focused) -> {
+            if (!focused) actualizar.run();
+        });
+        actualizar.run();
+    }
+    
     private Dialog<Garantia> createGarantiaDialog(Garantia existing) {
         Dialog<Garantia> dialog = new Dialog<>();
         dialog.setTitle(existing == null ? "Nueva Garantía" : "Editar Garantía");
@@ -398,6 +774,10 @@ public class GarantiasController implements Initializable {
         grid.add(garantiaTipo, 1, row++);
         grid.add(new Label("Duración (meses):"), 0, row);
         grid.add(garantiaDuracion, 1, row++);
+        Label cotizacion = new Label();
+        cotizacion.setWrapText(true);
+        cotizacion.setMaxWidth(320);
+        grid.add(cotizacion, 1, row++);
         grid.add(new Label("Notas:"), 0, row);
         grid.add(notas, 1, row++);
         
@@ -424,6 +804,7 @@ public class GarantiasController implements Initializable {
             notas.setText(existing.getNotas());
         }
         
+        setupCotizacion(cotizacion, garantiaTipo, aireMarca, aireModelo, garantiaDuracion);
         dialog.getDialogPane().setContent(grid);
         
         // Result converter
@@ -432,7 +813,7 @@ public class GarantiasController implements Initializable {
                 Garantia g = existing != null ? existing : new Garantia();
                 
                 if (existing == null) {
-                    g.setNumeroGarantia(garantiaService.generateNextNumero());
+                    g.setNumeroGarantia(garantiaService.reservarNumero());
                     g.setCreadoPor(SessionManager.getInstance().getCurrentUserName());
                 }
                 
@@ -1,17 +1,24 @@
 package com.garantias.controller;
 
+import com.garantias.analytics.Fiabilidad;
+import com.garantias.analytics.FiabilidadAnalytics.Dimension;
 import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
 import com.garantias.service.FacturaService;
 import com.garantias.service.GarantiaService;
+import com.garantias.service.ReparacionService;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
 import javafx.geometry.Side;
 import javafx.scene.chart.*;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
+import javafx.util.StringConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,6 +27,7 @@ import java.text.NumberFormat;
 import java.time.Month;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Controlador para la vista de Gráficas y Estadísticas
@@ -32,6 +40,8 @@ public class GraficasController implements Initializable {
     @FXML private BarChart<String, Number> marcasChart;
     @FXML private LineChart<String, Number> facturacionChart;
     @FXML private PieChart tipoGarantiaChart;
+    @FXML private BarChart<String, Number> fiabilidadChart;
+    @FXML private ComboBox<Dimension> fiabilidadDimension;
     
     @FXML private Label totalGarantias;
     @FXML private Label totalFacturas;
@@ -42,6 +52,7 @@ public class GraficasController implements Initializable {
     
     private GarantiaService garantiaService;
     private FacturaService facturaService;
+    private ReparacionService reparacionService;
     
     private final NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("es", "ES"));
     
@@ -49,9 +60,24 @@ public class GraficasController implements Initializable {
     public void initialize(URL location, ResourceBundle resources) {
         garantiaService = new GarantiaService();
         facturaService = new FacturaService();
+        reparacionService = new ReparacionService();
+        
+        if (fiabilidadDimension != null) {
+            fiabilidadDimension.getItems().addAll(Dimension.values());
+            fiabilidadDimension.setConverter(new StringConverter<>() {
+                @Override
+                public String toString(Dimension dimension) {
+                    return dimension == null ? "" : "Por " + dimension.getDisplayName().toLowerCase();
+                }
+                @Override
+                public Dimension fromString(String string) { return null; }
+            });
+            fiabilidadDimension.setValue(Dimension.MARCA);
+        }
         
         loadCharts();
         loadStats();
+        loadFiabilidad();
     }
     
     private void loadCharts() {
@@ -60,6 +86,7 @@ public class GraficasController implements Initializable {
                 Map<EstadoGarantia, Long> estadoCounts = garantiaService.countByEstado();
                 Map<String, Long> marcaCounts = garantiaService.countByMarca();
                 Map<Integer, Double> facturacionMensual = facturaService.getFacturacionPorMes();
+                Map<TipoGarantia, Long> tipoCounts = garantiaService.countByTipo();
                 
                 Platform.runLater(() -> {
                     // Gráfica de estados (Pie)
@@ -105,11 +132,12 @@ public class GraficasController implements Initializable {
                     // Gráfica de tipos
                     if (tipoGarantiaChart != null) {
                         tipoGarantiaChart.getData().clear();
-                        tipoGarantiaChart.getData().addAll(
-                            new PieChart.Data("Completa", 60),
-                            new PieChart.Data("Extendida", 25),
-                            new PieChart.Data("Limitada", 15)
-                        );
+                        for (Map.Entry<TipoGarantia, Long> entry : tipoCounts.entrySet()) {
+                            if (entry.getValue() > 0) {
+                                tipoGarantiaChart.getData().add(
+                                    new PieChart.Data(entry.getKey().getDisplayName(), entry.getValue()));
+                            }
+                        }
                     }
                 });
             } catch (Exception e) {
@@ -118,6 +146,53 @@ public class GraficasController implements Initializable {
         }).start();
     }
     
+    /**
+     * Averías por equipo y año de los grupos con más equipos; el detalle (MTBF y coste
+     * medio) va en el tooltip de cada barra
+     */
+    @FXML
+    private void loadFiabilidad() {
+        if (fiabilidadChart == null || fiabilidadDimension == null) return;
+        Dimension dimension = fiabilidadDimension.getValue();
+        new Thread(() -> {
+            try {
+                List<Fiabilidad> grupos = reparacionService.fiabilidad(dimension).stream()
+                    .filter(f -> f.getGrupo() != null)
+                    .limit(10)
+                    .collect(Collectors.toList());
+                
+                Platform.runLater(() -> {
+                    fiabilidadChart.getData().clear();
+                    XYChart.Series<String, Number> series = new XYChart.Series<>();
+                    series.setName("Averías / equipo / año");
+                    for (Fiabilidad f : grupos) {
+                        series.getData().add(new XYChart.Data<>(f.getGrupo(), f.getTasaAnual()));
+                    }
+                    fiabilidadChart.getData().add(series);
+                    applyBarChartColors(fiabilidadChart);
+                    
+                    for (int i = 0; i < grupos.size(); i++) {
+                        Fiabilidad f = grupos.get(i);
+                        XYChart.Data<String, Number> data = series.getData().get(i);
+                        if (data.getNode() != null) {
+                            Tooltip.install(data.getNode(), new Tooltip(fiabilidadTooltip(f)));
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                logger.error("Error al cargar la fiabilidad: {}", e.getMessage());
+            }
+        }).start();
+    }
+    
+    private String fiabilidadTooltip(Fiabilidad f) {
+        Double mtbf = f.getMtbfDias();
+        return f.getGrupo() + "\n"
+            + f.getEquipos() + " equipos, " + f.getReparaciones() + " reparaciones\n"
+            + "MTBF: " + (mtbf != null ? Math.round(mtbf / 30.44) + " meses" : "sin averías") + "\n"
+            + "Coste medio: " + currencyFormat.format(f.getCosteMedio());
+    }
+    
     private void loadStats() {
         new Thread(() -> {
             try {
@@ -168,6 +243,7 @@ public class GraficasController implements Initializable {
     private void refreshCharts() {
         loadCharts();
         loadStats();
+        loadFiabilidad();
     }
     
     @FXML
@@ -0,0 +1,158 @@
+package com.garantias.controller;
+
+import com.garantias.importer.GarantiaImporter;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Importación de garantías desde CSV: pide el fichero, permite simular antes de escribir
+ * e importa en segundo plano con el avance y opción de cancelar (se puede reanudar)
+ */
+final class ImportDialog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportDialog.class);
+
+    private static final ButtonType SIMULAR = new ButtonType("Simular", ButtonBar.ButtonData.OTHER);
+    private static final ButtonType IMPORTAR = new ButtonType("Importar", ButtonBar.ButtonData.OK_DONE);
+
+    private ImportDialog() {}
+
+    /**
+     * @param alTerminar se llama en el hilo de JavaFX si se ha insertado algo
+     */
+    static void show(Window owner, String usuario, Runnable alTerminar) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar garantías");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv"));
+        File origen = chooser.showOpenDialog(owner);
+        if (origen == null) return;
+
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.initOwner(owner);
+        confirm.setTitle("Importar garantías");
+        confirm.setHeaderText(origen.getName());
+        confirm.setContentText("Simular valida el fichero y genera los rechazos sin guardar nada.");
+        confirm.getButtonTypes().setAll(SIMULAR, IMPORTAR, ButtonType.CANCEL);
+        Optional<ButtonType> choice = confirm.showAndWait();
+        if (choice.isEmpty() || choice.get() == ButtonType.CANCEL) return;
+
+        run(owner, origen.toPath(), choice.get() == SIMULAR, usuario, alTerminar);
+    }
+
+    private static void run(Window owner, Path file, boolean dryRun, String usuario, Runnable alTerminar) {
+        GarantiaImporter importer = new GarantiaImporter(file).dryRun(dryRun).creadoPor(usuario);
+        NumberFormat numbers = NumberFormat.getIntegerInstance(new Locale("es", "ES"));
+
+        Task<GarantiaImporter.Resultado> task = new Task<>() {
+            @Override
+            protected GarantiaImporter.Resultado call() throws Exception {
+                return importer.importar((registros, fraccion) -> {
+                    updateProgress(fraccion, 1);
+                    updateMessage(numbers.format(registros) + " registros");
+                });
+            }
+
+            @Override
+            protected void cancelled() {
+                importer.cancel();
+            }
+        };
+
+        ProgressBar bar = new ProgressBar();
+        bar.setPrefWidth(360);
+        bar.progressProperty().bind(task.progressProperty());
+        Label message = new Label("Leyendo...");
+        message.textProperty().bind(task.messageProperty());
+        VBox content = new VBox(10, new Label(file.getFileName().toString()), bar, message);
+        content.setPadding(new Insets(20));
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.initOwner(owner);
+        dialog.setTitle(dryRun ? "Simulando" : "Importando");
+        dialog.setHeaderText(dryRun ? "Validando garantías" : "Importando garantías");
+        dialog.getDialogPane().setContent(content);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+        dialog.setOnHidden(e -> {
+            if (task.isRunning()) task.cancel();
+        });
+
+        task.setOnSucceeded(e -> {
+            dialog.close();
+            GarantiaImporter.Resultado r = task.getValue();
+            if (!dryRun && r.getInsertadas() > 0) alTerminar.run();
+            showResultado(owner, file, r, usuario, alTerminar, numbers);
+        });
+        task.setOnFailed(e -> {
+            dialog.close();
+            logger.error("❌ Error al importar {}: {}", file, task.getException().getMessage());
+            showAlert(Alert.AlertType.ERROR, "Error al importar", task.getException().getMessage());
+        });
+        task.setOnCancelled(e -> {
+            dialog.close();
+            if (!dryRun) {
+                alTerminar.run();
+                showAlert(Alert.AlertType.INFORMATION, "Importación cancelada",
+                    "Lo importado se conserva. Vuelve a importar el mismo fichero para continuar.");
+            }
+        });
+
+        Thread thread = new Thread(task, "import-garantias");
+        thread.setDaemon(true);
+        thread.start();
+        dialog.show();
+    }
+
+    private static void showResultado(Window owner, Path file, GarantiaImporter.Resultado r, String usuario,
+                                      Runnable alTerminar, NumberFormat numbers) {
+        StringBuilder texto = new StringBuilder()
+            .append(numbers.format(r.getInsertadas())).append(r.isDryRun() ? " válidas" : " insertadas");
+        if (r.getYaImportadas() > 0) {
+            texto.append(" (más ").append(numbers.format(r.getYaImportadas())).append(" de la ejecución anterior)");
+        }
+        texto.append("\n").append(numbers.format(r.getRechazadas())).append(" rechazadas");
+        Path rechazos = GarantiaImporter.rechazosPath(file);
+        if (r.getRechazadas() > 0 && Files.exists(rechazos)) {
+            texto.append(":\n").append(rechazos);
+        }
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.initOwner(owner);
+        alert.setTitle("Éxito");
+        alert.setHeaderText(r.isDryRun() ? "Simulación terminada" : "Importación terminada");
+        alert.setContentText(texto.toString());
+        if (r.isDryRun() && r.getInsertadas() > 0) {
+            alert.getButtonTypes().setAll(IMPORTAR, ButtonType.CLOSE);
+            alert.showAndWait()
+                .filter(b -> b == IMPORTAR)
+                .ifPresent(b -> run(owner, file, false, usuario, alTerminar));
+        } else {
+            alert.show();
+        }
+    }
+
+    private static void showAlert(Alert.AlertType type, String header, String message) {
+        Alert alert = new Alert(type);
+        alert.setTitle(type == Alert.AlertType.ERROR ? "Error" : "Información");
+        alert.setHeaderText(header);
+        alert.setContentText(message);
+        alert.show();
+    }
+}
@@ -0,0 +1,40 @@
+package com.garantias.events;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Cambio de una entidad: estado anterior y posterior. Al crearla no hay anterior y al
+ * eliminarla no hay posterior.
+ */
+public abstract class EntityChanged<T> {
+
+    private final ObjectId id;
+    private final T before;
+    private final T after;
+
+    protected EntityChanged(ObjectId id, T before, T after) {
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    public ObjectId getId() { return id; }
+    /** Estado anterior, o null si se acaba de crear */
+    public T getBefore() { return before; }
+    /** Estado nuevo, o null si se ha eliminado */
+    public T getAfter() { return after; }
+
+    public boolean isCreated() {
+        return before == null;
+    }
+
+    public boolean isDeleted() {
+        return after == null;
+    }
+
+    @Override
+    public String toString() {
+        String tipo = isCreated() ? "creada" : isDeleted() ? "eliminada" : "modificada";
+        return getClass().getSimpleName() + "[" + id + " " + tipo + "]";
+    }
+}
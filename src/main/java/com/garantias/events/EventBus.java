@@ -0,0 +1,142 @@
+package com.garantias.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Avisos de cambios dentro de la aplicación: los servicios publican
+ * ({@link GarantiaChanged}, {@link FacturaChanged}) y las tablas, instantáneas y
+ * cuadros de mando se actualizan con el cambio en vez de volver a leerlo todo.
+ * <p>
+ * La entrega es síncrona, en el hilo que publica: no hay colas que puedan crecer. Los
+ * suscriptores de cada tipo están en un array que se copia al suscribirse o darse de
+ * baja (poco frecuente) y se lee sin bloqueos al publicar. Quien publica desde un hilo
+ * cualquiera y necesita el hilo de JavaFX usa {@code Platform.runLater} en su manejador.
+ * <p>
+ * Las vistas se crean de nuevo en cada navegación, así que se suscriben con
+ * {@link #subscribe(Object, Class, BiConsumer)}: el bus solo guarda una referencia débil
+ * a la vista y la suscripción desaparece cuando la vista deja de usarse.
+ */
+public final class EventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventBus.class);
+
+    private static final Subscriber[] NONE = new Subscriber[0];
+    private static final Map<Class<?>, AtomicReference<Subscriber[]>> subscribers = new ConcurrentHashMap<>();
+
+    private EventBus() {}
+
+    /**
+     * Baja de una suscripción
+     */
+    @FunctionalInterface
+    public interface Subscription {
+        void cancel();
+    }
+
+    /**
+     * Suscripción permanente (hasta {@link Subscription#cancel()}), para componentes que
+     * viven lo que la aplicación
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        return add(type, new Subscriber(null, (owner, event) -> handler.accept((E) event)));
+    }
+
+    /**
+     * Suscripción ligada a {@code owner}, que se guarda con una referencia débil. El
+     * manejador recibe el propietario como parámetro y no debe capturarlo: con una
+     * referencia a método ({@code GarantiasController::onGarantiaChanged}) no lo hace.
+     */
+    @SuppressWarnings("unchecked")
+    public static <O, E> Subscription subscribe(O owner, Class<E> type, BiConsumer<? super O, ? super E> handler) {
+        return add(type, new Subscriber(new WeakReference<Object>(owner),
+            (o, event) -> handler.accept((O) o, (E) event)));
+    }
+
+    /**
+     * Entrega el evento a los suscriptores de su clase y de sus superclases. El fallo de un
+     * suscriptor se registra y no impide la entrega a los demás.
+     */
+    public static void publish(Object event) {
+        for (Class<?> type = event.getClass(); type != null; type = type.getSuperclass()) {
+            AtomicReference<Subscriber[]> ref = subscribers.get(type);
+            if (ref == null) continue;
+
+            boolean dead = false;
+            for (Subscriber s : ref.get()) {
+                Object owner = null;
+                if (s.owner != null && (owner = s.owner.get()) == null) {
+                    dead = true;
+                    continue;
+                }
+                try {
+                    s.handler.accept(owner, event);
+                } catch (RuntimeException e) {
+                    logger.error("❌ Error al entregar {}: {}", event, e.getMessage(), e);
+                }
+            }
+            if (dead) remove(ref, null);
+        }
+    }
+
+    /** Suscriptores vivos del tipo (para diagnóstico) */
+    public static int subscriberCount(Class<?> type) {
+        AtomicReference<Subscriber[]> ref = subscribers.get(type);
+        if (ref == null) return 0;
+        int count = 0;
+        for (Subscriber s : ref.get()) {
+            if (s.owner == null || s.owner.get() != null) count++;
+        }
+        return count;
+    }
+
+    private static Subscription add(Class<?> type, Subscriber subscriber) {
+        AtomicReference<Subscriber[]> ref = subscribers.computeIfAbsent(type, t -> new AtomicReference<>(NONE));
+        Subscriber[] current;
+        Subscriber[] next;
+        do {
+            current = ref.get();
+            next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = subscriber;
+        } while (!ref.compareAndSet(current, next));
+        return () -> remove(ref, subscriber);
+    }
+
+    /**
+     * Quita el suscriptor indicado (si lo hay) y los de vistas ya recogidas
+     */
+    private static void remove(AtomicReference<Subscriber[]> ref, Subscriber subscriber) {
+        Subscriber[] current;
+        Subscriber[] next;
+        do {
+            current = ref.get();
+            next = new Subscriber[current.length];
+            int n = 0;
+            for (Subscriber s : current) {
+                boolean dead = s.owner != null && s.owner.get() == null;
+                if (s != subscriber && !dead) next[n++] = s;
+            }
+            if (n == current.length) return;
+            next = n == 0 ? NONE : Arrays.copyOf(next, n);
+        } while (!ref.compareAndSet(current, next));
+    }
+
+    private static final class Subscriber {
+        final WeakReference<Object> owner;
+        final BiConsumer<Object, Object> handler;
+
+        Subscriber(WeakReference<Object> owner, BiConsumer<Object, Object> handler) {
+            this.owner = owner;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.garantias.events;
+
+import com.garantias.model.Factura;
+import org.bson.types.ObjectId;
+
+/**
+ * Alta, modificación o baja de una factura, publicada por {@code FacturaService}
+ */
+public final class FacturaChanged extends EntityChanged<Factura> {
+
+    public FacturaChanged(ObjectId id, Factura before, Factura after) {
+        super(id, before, after);
+    }
+}
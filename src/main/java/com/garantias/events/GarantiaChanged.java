@@ -0,0 +1,14 @@
+package com.garantias.events;
+
+import com.garantias.model.Garantia;
+import org.bson.types.ObjectId;
+
+/**
+ * Alta, modificación o baja de una garantía, publicada por {@code GarantiaService}
+ */
+public final class GarantiaChanged extends EntityChanged<Garantia> {
+
+    public GarantiaChanged(ObjectId id, Garantia before, Garantia after) {
+        super(id, before, after);
+    }
+}
@@ -0,0 +1,15 @@
+package com.garantias.events;
+
+import com.garantias.model.Garantia.Reparacion;
+import org.bson.types.ObjectId;
+
+/**
+ * Reparación registrada, publicada por {@code ReparacionService}. El historial solo
+ * admite altas: nunca hay estado anterior.
+ */
+public final class ReparacionChanged extends EntityChanged<Reparacion> {
+
+    public ReparacionChanged(ObjectId id, Reparacion reparacion) {
+        super(id, null, reparacion);
+    }
+}
@@ -0,0 +1,91 @@
+package com.garantias.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * CSV para Excel en español: UTF-8 con BOM, separador {@code ;}, coma decimal y fechas
+ * dd/MM/yyyy. Los textos solo se entrecomillan si contienen separador, comillas o saltos
+ * de línea.
+ */
+final class CsvTableWriter extends TextTableWriter {
+
+    private static final char SEPARATOR = ';';
+
+    private boolean firstCell = true;
+
+    CsvTableWriter(OutputStream out) throws IOException {
+        super(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        append('\uFEFF');
+    }
+
+    @Override
+    public void header(String... titulos) throws IOException {
+        for (String titulo : titulos) {
+            text(titulo);
+        }
+        endRow();
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        separator();
+        if (value == null) return;
+        if (!needsQuotes(value)) {
+            append(value);
+            return;
+        }
+        append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                append(value, start, i + 1);
+                append('"');
+                start = i + 1;
+            }
+        }
+        append(value, start, value.length());
+        append('"');
+    }
+
+    @Override
+    public void integer(long value) throws IOException {
+        separator();
+        appendLong(value);
+    }
+
+    @Override
+    public void money(long centimos) throws IOException {
+        separator();
+        appendMoney(centimos, ',');
+    }
+
+    @Override
+    public void date(Date value) throws IOException {
+        separator();
+        if (value != null) appendDate(epochDay(value));
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        append('\r');
+        append('\n');
+        firstCell = true;
+    }
+
+    private void separator() throws IOException {
+        if (!firstCell) append(SEPARATOR);
+        firstCell = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package com.garantias.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formatos de exportación; se elige por la extensión del fichero de destino
+ */
+public enum ExportFormat {
+    CSV(".csv", "CSV (Excel)"),
+    CSV_GZIP(".csv.gz", "CSV comprimido"),
+    XLSX(".xlsx", "Libro de Excel");
+
+    private final String extension;
+    private final String displayName;
+
+    ExportFormat(String extension, String displayName) {
+        this.extension = extension;
+        this.displayName = displayName;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Formato según la extensión del fichero
+     *
+     * @throws IllegalArgumentException si la extensión no es .csv, .csv.gz ni .xlsx
+     */
+    public static ExportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        // .csv.gz antes que .csv
+        if (name.endsWith(CSV_GZIP.extension)) return CSV_GZIP;
+        if (name.endsWith(CSV.extension)) return CSV;
+        if (name.endsWith(XLSX.extension)) return XLSX;
+        throw new IllegalArgumentException("Formato de exportación no soportado: " + file.getFileName());
+    }
+
+    /**
+     * Escritor sobre {@code out}; al cerrarlo se cierra también {@code out}
+     */
+    TableWriter open(OutputStream out, String sheetName) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvTableWriter(out);
+            case CSV_GZIP:
+                return new CsvTableWriter(new GZIPOutputStream(out, 64 * 1024) {
+                    {
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                });
+            case XLSX:
+                return new XlsxTableWriter(out, sheetName);
+            default:
+                throw new IllegalStateException(name());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.garantias.export;
+
+import com.garantias.util.FacturaFilter;
+import com.garantias.util.GarantiaFilter;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.io.IOException;
+
+/**
+ * Qué se exporta: colección, consulta, campos leídos y cómo se escribe cada documento
+ */
+public interface ExportSource {
+
+    String collection();
+
+    /** Nombre de la hoja en XLSX */
+    String title();
+
+    Bson filter();
+
+    Bson projection();
+
+    /** Orden por un campo indexado, para que MongoDB no tenga que ordenar en memoria */
+    Bson sort();
+
+    String[] headers();
+
+    /** Escribe las celdas de una fila (sin {@link TableWriter#endRow()}) */
+    void write(Document doc, TableWriter out) throws IOException;
+
+    /**
+     * Garantías que cumplen el filtro de la tabla
+     */
+    static ExportSource garantias(GarantiaFilter filter) {
+        return new GarantiaExportSource(filter.toBson());
+    }
+
+    /**
+     * Facturas que cumplen el filtro de la tabla
+     */
+    static ExportSource facturas(FacturaFilter filter) {
+        return new FacturaExportSource(filter.toBson());
+    }
+}
@@ -0,0 +1,171 @@
+package com.garantias.export;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.Timer;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.util.FacturaFilter;
+import com.garantias.util.GarantiaFilter;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exporta una colección (o lo que cumple el filtro de la tabla) a CSV, CSV comprimido o
+ * XLSX en memoria constante: los documentos se leen de un cursor de MongoDB con solo los
+ * campos de las columnas y se escriben según llegan, sin construir listas ni modelos.
+ * <p>
+ * Se escribe en {@code <fichero>.part} y se renombra al terminar: una exportación
+ * cancelada o fallida no deja un fichero a medias con el nombre final.
+ *
+ * <pre>
+ * java -cp ... com.garantias.export.Exporter --coleccion garantias --out garantias.xlsx
+ *     [--estado ACTIVA] [--texto samsung] [--desde 2024-01-01] [--hasta 2024-12-31] [--uri mongodb://...]
+ * </pre>
+ */
+public class Exporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(Exporter.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int PROGRESS_EVERY = 2000;
+
+    /**
+     * Avance de la exportación; se llama desde el hilo que exporta
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void update(long filas, long total);
+    }
+
+    private final ExportSource source;
+    private volatile boolean cancelled;
+
+    public Exporter(ExportSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Exporta al fichero indicado; el formato sale de la extensión (.csv, .csv.gz o .xlsx)
+     *
+     * @return filas exportadas (sin la cabecera)
+     * @throws CancellationException si se ha llamado a {@link #cancel()}
+     */
+    public long export(Path file, Progress progress) throws IOException {
+        ExportFormat format = ExportFormat.of(file);
+        MongoCollection<Document> coll = MongoDBConfig.getDatabase().getCollection(source.collection());
+        Bson filter = source.filter();
+        boolean sinFiltro = filter.toBsonDocument(Document.class, coll.getCodecRegistry()).isEmpty();
+        long total = sinFiltro ? coll.estimatedDocumentCount() : coll.countDocuments(filter);
+        progress.update(0, total);
+
+        Path target = file.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+
+        long inicio = System.nanoTime();
+        long filas = 0;
+        boolean ok = false;
+        try (Timer.Context ignored = Metrics.timer("export." + source.collection()).time();
+             TableWriter out = format.open(new BufferedOutputStream(Files.newOutputStream(part), 64 * 1024), source.title());
+             MongoCursor<Document> cursor = coll.find(filter)
+                 .projection(source.projection())
+                 .sort(source.sort())
+                 .batchSize(BATCH_SIZE)
+                 .iterator()) {
+            out.header(source.headers());
+            while (!cancelled && cursor.hasNext()) {
+                source.write(cursor.next(), out);
+                out.endRow();
+                if (++filas % PROGRESS_EVERY == 0) {
+                    progress.update(filas, Math.max(total, filas));
+                }
+            }
+            ok = !cancelled;
+        } catch (RuntimeException e) {
+            // Al cancelar se interrumpe el hilo y el driver corta la lectura en curso
+            if (!cancelled) throw e;
+        } finally {
+            if (!ok) Files.deleteIfExists(part);
+        }
+        if (!ok) {
+            logger.info("Exportación de {} cancelada tras {} filas", source.collection(), filas);
+            throw new CancellationException("Exportación cancelada");
+        }
+
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        progress.update(filas, filas);
+        Metrics.counter("export.filas").increment(filas);
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        logger.info("✅ Exportadas {} filas de {} a {} en {} s ({} filas/s)", filas, source.collection(), target,
+            String.format(Locale.ROOT, "%.1f", segundos), Math.round(segundos > 0 ? filas / segundos : filas));
+        return filas;
+    }
+
+    /**
+     * Detiene la exportación en curso en la siguiente fila; {@link #export} lanza
+     * {@link CancellationException} y borra el fichero parcial
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        String coleccion = options.getOrDefault("coleccion", "garantias");
+        String texto = options.getOrDefault("texto", "").toLowerCase().trim();
+        String estado = options.get("estado");
+        Path out = Paths.get(options.getOrDefault("out", coleccion + ".xlsx"));
+
+        ExportSource source;
+        if ("facturas".equals(coleccion)) {
+            source = ExportSource.facturas(new FacturaFilter(
+                estado != null ? EstadoFactura.valueOf(estado) : null,
+                options.containsKey("desde") ? LocalDate.parse(options.get("desde")) : null,
+                options.containsKey("hasta") ? LocalDate.parse(options.get("hasta")) : null,
+                texto));
+        } else if ("garantias".equals(coleccion)) {
+            source = ExportSource.garantias(new GarantiaFilter(
+                estado != null ? EstadoGarantia.valueOf(estado) : null, texto));
+        } else {
+            throw new IllegalArgumentException("Colección desconocida: " + coleccion + " (garantias o facturas)");
+        }
+
+        try {
+            new Exporter(source).export(out, (filas, total) -> {
+                if (filas > 0 && filas % 100_000 == 0) {
+                    logger.info("{} / {} filas", filas, total);
+                }
+            });
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
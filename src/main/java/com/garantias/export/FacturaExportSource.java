@@ -0,0 +1,89 @@
+package com.garantias.export;
+
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Factura.MetodoPago;
+import com.garantias.util.Dinero;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnas de la exportación de facturas (cabecera, sin líneas)
+ */
+final class FacturaExportSource implements ExportSource {
+
+    private static final String[] HEADERS = {
+        "Nº Factura", "Fecha", "Cliente", "NIF", "Subtotal", "IVA", "Total", "Estado", "Método de pago"
+    };
+
+    private static final Bson PROJECTION = Projections.include(
+        "numeroFactura", "fechaEmision", "cliente.nombre", "cliente.nif",
+        "subtotal", "totalIVA", "total", "estado", "estadoFactura", "metodoPago");
+
+    private static final Map<String, String> ESTADOS = new HashMap<>();
+    private static final Map<String, String> METODOS = new HashMap<>();
+
+    static {
+        for (EstadoFactura estado : EstadoFactura.values()) ESTADOS.put(estado.name(), estado.getDisplayName());
+        for (MetodoPago metodo : MetodoPago.values()) METODOS.put(metodo.name(), metodo.getDisplayName());
+    }
+
+    private final Bson filter;
+
+    FacturaExportSource(Bson filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public String collection() {
+        return "facturas";
+    }
+
+    @Override
+    public String title() {
+        return "Facturas";
+    }
+
+    @Override
+    public Bson filter() {
+        return filter;
+    }
+
+    @Override
+    public Bson projection() {
+        return PROJECTION;
+    }
+
+    @Override
+    public Bson sort() {
+        return Sorts.descending("fechaEmision");
+    }
+
+    @Override
+    public String[] headers() {
+        return HEADERS;
+    }
+
+    @Override
+    public void write(Document doc, TableWriter out) throws IOException {
+        Document cliente = GarantiaExportSource.subdocument(doc, "cliente");
+        // Igual que FacturaMapper: "estadoFactura" tiene prioridad sobre "estado"
+        String estado = doc.getString("estadoFactura");
+        if (estado == null) estado = doc.getString("estado");
+
+        out.text(doc.getString("numeroFactura"));
+        out.date(doc.getDate("fechaEmision"));
+        out.text(cliente.getString("nombre"));
+        out.text(cliente.getString("nif"));
+        out.money(Dinero.deBson(doc.get("subtotal")));
+        out.money(Dinero.deBson(doc.get("totalIVA")));
+        out.money(Dinero.deBson(doc.get("total")));
+        out.text(GarantiaExportSource.display(ESTADOS, estado));
+        out.text(GarantiaExportSource.display(METODOS, doc.getString("metodoPago")));
+    }
+}
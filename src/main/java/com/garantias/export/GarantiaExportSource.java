@@ -0,0 +1,116 @@
+package com.garantias.export;
+
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnas de la exportación de garantías
+ */
+final class GarantiaExportSource implements ExportSource {
+
+    private static final String[] HEADERS = {
+        "Nº Garantía", "Cliente", "Teléfono", "Email", "Marca", "Modelo", "Nº Serie",
+        "Potencia (BTU)", "Instalación", "Tipo", "Inicio", "Vencimiento", "Duración (meses)", "Estado"
+    };
+
+    private static final Bson PROJECTION = Projections.include(
+        "numeroGarantia", "cliente.nombre", "cliente.telefono", "cliente.email",
+        "aireAcondicionado.marca", "aireAcondicionado.modelo", "aireAcondicionado.numeroSerie",
+        "aireAcondicionado.potenciaBTU", "aireAcondicionado.fechaInstalacion",
+        "garantia.tipo", "garantia.fechaInicio", "garantia.fechaFin", "garantia.duracionMeses", "garantia.estado");
+
+    private static final Map<String, String> ESTADOS = new HashMap<>();
+    private static final Map<String, String> TIPOS = new HashMap<>();
+
+    static {
+        for (EstadoGarantia estado : EstadoGarantia.values()) ESTADOS.put(estado.name(), estado.getDisplayName());
+        for (TipoGarantia tipo : TipoGarantia.values()) TIPOS.put(tipo.name(), tipo.getDisplayName());
+    }
+
+    private static final Document EMPTY = new Document();
+
+    private final Bson filter;
+
+    GarantiaExportSource(Bson filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public String collection() {
+        return "garantias";
+    }
+
+    @Override
+    public String title() {
+        return "Garantías";
+    }
+
+    @Override
+    public Bson filter() {
+        return filter;
+    }
+
+    @Override
+    public Bson projection() {
+        return PROJECTION;
+    }
+
+    @Override
+    public Bson sort() {
+        return Sorts.ascending("numeroGarantia");
+    }
+
+    @Override
+    public String[] headers() {
+        return HEADERS;
+    }
+
+    @Override
+    public void write(Document doc, TableWriter out) throws IOException {
+        Document cliente = subdocument(doc, "cliente");
+        Document aire = subdocument(doc, "aireAcondicionado");
+        Document garantia = subdocument(doc, "garantia");
+
+        out.text(doc.getString("numeroGarantia"));
+        out.text(cliente.getString("nombre"));
+        out.text(cliente.getString("telefono"));
+        out.text(cliente.getString("email"));
+        out.text(aire.getString("marca"));
+        out.text(aire.getString("modelo"));
+        out.text(aire.getString("numeroSerie"));
+        integer(out, aire.get("potenciaBTU"));
+        out.date(aire.getDate("fechaInstalacion"));
+        out.text(display(TIPOS, garantia.getString("tipo")));
+        out.date(garantia.getDate("fechaInicio"));
+        out.date(garantia.getDate("fechaFin"));
+        integer(out, garantia.get("duracionMeses"));
+        out.text(display(ESTADOS, garantia.getString("estado")));
+    }
+
+    static Document subdocument(Document doc, String key) {
+        Document sub = doc.get(key, Document.class);
+        return sub != null ? sub : EMPTY;
+    }
+
+    static void integer(TableWriter out, Object value) throws IOException {
+        if (value instanceof Number) {
+            out.integer(((Number) value).longValue());
+        } else {
+            out.text(null);
+        }
+    }
+
+    /** Nombre visible del enum; si el valor no es conocido se exporta tal cual */
+    static String display(Map<String, String> names, String value) {
+        if (value == null) return null;
+        return names.getOrDefault(value, value);
+    }
+}
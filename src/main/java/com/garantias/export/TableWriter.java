@@ -0,0 +1,35 @@
+package com.garantias.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Escritura de una tabla celda a celda, sin crear objetos por celda.
+ * <p>
+ * Cada fila es una secuencia de llamadas a los métodos de celda terminada en
+ * {@link #endRow()}. Los valores null se escriben como celda vacía.
+ */
+public interface TableWriter extends Closeable {
+
+    /**
+     * Fila de cabecera (en XLSX se repite al empezar cada hoja nueva)
+     */
+    void header(String... titulos) throws IOException;
+
+    void text(String value) throws IOException;
+
+    void integer(long value) throws IOException;
+
+    /**
+     * Importe en céntimos
+     */
+    void money(long centimos) throws IOException;
+
+    /**
+     * Fecha (día) en la zona horaria del sistema, como la muestra la aplicación
+     */
+    void date(Date value) throws IOException;
+
+    void endRow() throws IOException;
+}
@@ -0,0 +1,130 @@
+package com.garantias.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+/**
+ * Base de los formatos de texto: acumula en un {@code char[]} propio y vuelca al
+ * {@link Writer} por bloques. Números y fechas se escriben dígito a dígito, sin
+ * pasar por {@code String.valueOf} ni formateadores.
+ */
+abstract class TextTableWriter implements TableWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final char[] buf = new char[BUFFER_SIZE];
+    private final char[] digits = new char[20];
+    private int pos;
+
+    private final ZoneRules zone = ZoneId.systemDefault().getRules();
+
+    protected final Writer out;
+
+    protected TextTableWriter(Writer out) {
+        this.out = out;
+    }
+
+    // ========================================
+    // BUFFER
+    // ========================================
+
+    protected final void append(char c) throws IOException {
+        if (pos == buf.length) flushBuffer();
+        buf[pos++] = c;
+    }
+
+    protected final void append(String s) throws IOException {
+        append(s, 0, s.length());
+    }
+
+    protected final void append(String s, int from, int to) throws IOException {
+        while (from < to) {
+            if (pos == buf.length) flushBuffer();
+            int n = Math.min(to - from, buf.length - pos);
+            s.getChars(from, from + n, buf, pos);
+            pos += n;
+            from += n;
+        }
+    }
+
+    protected final void appendLong(long value) throws IOException {
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (; i < digits.length; i++) {
+            append(digits[i]);
+        }
+    }
+
+    /** Importe en céntimos con dos decimales y el separador indicado */
+    protected final void appendMoney(long centimos, char decimal) throws IOException {
+        if (centimos < 0) {
+            append('-');
+            centimos = -centimos;
+        }
+        appendLong(centimos / 100);
+        append(decimal);
+        long cts = centimos % 100;
+        append((char) ('0' + cts / 10));
+        append((char) ('0' + cts % 10));
+    }
+
+    protected final void appendTwoDigits(int value) throws IOException {
+        append((char) ('0' + value / 10));
+        append((char) ('0' + value % 10));
+    }
+
+    protected final void flushBuffer() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    // ========================================
+    // FECHAS
+    // ========================================
+
+    /** Días desde 1970-01-01 del día local de la fecha */
+    protected final long epochDay(Date value) {
+        long millis = value.getTime();
+        int offset = zone.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return Math.floorDiv(Math.floorDiv(millis, 1000) + offset, 86400);
+    }
+
+    /**
+     * Escribe el día como dd/MM/yyyy (calendario civil a partir de los días desde 1970,
+     * sin crear un LocalDate por celda)
+     */
+    protected final void appendDate(long epochDay) throws IOException {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendTwoDigits(day);
+        append('/');
+        appendTwoDigits(month);
+        append('/');
+        appendLong(year);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+}
@@ -0,0 +1,319 @@
+package com.garantias.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * XLSX escrito en streaming: la hoja se genera como XML directamente dentro del zip,
+ * fila a fila, con los textos en línea (sin tabla de cadenas compartidas que habría que
+ * tener en memoria). Las partes que dependen del número de hojas (libro, relaciones y
+ * tipos de contenido) se escriben al cerrar.
+ * <p>
+ * Una hoja admite {@value #MAX_ROWS} filas; al llenarse se continúa en otra con la misma
+ * cabecera.
+ */
+final class XlsxTableWriter extends TextTableWriter {
+
+    static final int MAX_ROWS = 1_048_576;
+
+    private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    // Índices de cellXfs en styles.xml
+    private static final int STYLE_MONEY = 1;
+    private static final int STYLE_DATE = 2;
+    private static final int STYLE_HEADER = 3;
+
+    // Serie de Excel del 1970-01-01 (sistema de fechas 1900)
+    private static final long EXCEL_EPOCH_OFFSET = 25569;
+
+    private final ZipOutputStream zip;
+    private final String sheetName;
+    private final char[] columnRef = new char[4];
+
+    private String[] headers;
+    private int sheets;
+    private int rowsInSheet;
+    private int column;
+    private boolean inRow;
+
+    XlsxTableWriter(OutputStream out, String sheetName) {
+        this(new ZipOutputStream(out), sheetName);
+    }
+
+    private XlsxTableWriter(ZipOutputStream zip, String sheetName) {
+        super(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        this.zip = zip;
+        this.sheetName = sheetName;
+        // El XML de una hoja comprime muy bien incluso con el nivel más rápido
+        zip.setLevel(Deflater.BEST_SPEED);
+    }
+
+    // ========================================
+    // CELDAS
+    // ========================================
+
+    @Override
+    public void header(String... titulos) throws IOException {
+        if (sheets > 0) throw new IllegalStateException("La cabecera debe ser la primera fila");
+        headers = titulos.clone();
+        startSheet();
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        beginCell();
+        if (value == null) return;
+        cellStart(-1);
+        append(" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        appendEscaped(value);
+        append("</t></is></c>");
+    }
+
+    @Override
+    public void integer(long value) throws IOException {
+        beginCell();
+        cellStart(-1);
+        append("><v>");
+        appendLong(value);
+        append("</v></c>");
+    }
+
+    @Override
+    public void money(long centimos) throws IOException {
+        beginCell();
+        cellStart(STYLE_MONEY);
+        append("><v>");
+        appendMoney(centimos, '.');
+        append("</v></c>");
+    }
+
+    @Override
+    public void date(Date value) throws IOException {
+        beginCell();
+        if (value == null) return;
+        cellStart(STYLE_DATE);
+        append("><v>");
+        appendLong(epochDay(value) + EXCEL_EPOCH_OFFSET);
+        append("</v></c>");
+    }
+
+    @Override
+    public void endRow() throws IOException {
+        if (!inRow) beginRow();
+        append("</row>");
+        inRow = false;
+    }
+
+    private void beginCell() throws IOException {
+        if (!inRow) beginRow();
+        column++;
+    }
+
+    private void beginRow() throws IOException {
+        if (sheets == 0) {
+            startSheet();
+        } else if (rowsInSheet == MAX_ROWS) {
+            endSheet();
+            startSheet();
+        }
+        rowsInSheet++;
+        append("<row r=\"");
+        appendLong(rowsInSheet);
+        append("\">");
+        column = 0;
+        inRow = true;
+    }
+
+    /** Abre {@code <c r="B12" s="1"}; el que llama cierra la etiqueta */
+    private void cellStart(int style) throws IOException {
+        append("<c r=\"");
+        int i = columnRef.length;
+        for (int c = column; c > 0; c = (c - 1) / 26) {
+            columnRef[--i] = (char) ('A' + (c - 1) % 26);
+        }
+        for (; i < columnRef.length; i++) {
+            append(columnRef[i]);
+        }
+        appendLong(rowsInSheet);
+        append('"');
+        if (style >= 0) {
+            append(" s=\"");
+            appendLong(style);
+            append('"');
+        }
+    }
+
+    /** Texto XML: escapa &amp;, &lt; y &gt; y descarta los caracteres de control no válidos en XML */
+    private void appendEscaped(String value) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '&') replacement = "&amp;";
+            else if (c == '<') replacement = "&lt;";
+            else if (c == '>') replacement = "&gt;";
+            else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') replacement = "";
+            else if (c == '\uFFFE' || c == '\uFFFF') replacement = "";
+            else continue;
+            append(value, start, i);
+            append(replacement);
+            start = i + 1;
+        }
+        append(value, start, value.length());
+    }
+
+    // ========================================
+    // HOJAS Y PARTES DEL PAQUETE
+    // ========================================
+
+    private void startSheet() throws IOException {
+        sheets++;
+        rowsInSheet = 0;
+        putEntry("xl/worksheets/sheet" + sheets + ".xml");
+        append(HEADER);
+        append("<worksheet xmlns=\"" + NS_MAIN + "\">");
+        if (headers != null) {
+            // Cabecera fija al desplazarse y columnas con un ancho mínimo legible
+            append("<sheetViews><sheetView workbookViewId=\"0\">"
+                + "<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>"
+                + "</sheetView></sheetViews><cols>");
+            for (int i = 0; i < headers.length; i++) {
+                append("<col min=\"");
+                appendLong(i + 1);
+                append("\" max=\"");
+                appendLong(i + 1);
+                append("\" width=\"");
+                appendLong(Math.max(12, headers[i].length() + 4));
+                append("\" customWidth=\"1\"/>");
+            }
+            append("</cols>");
+        }
+        append("<sheetData>");
+
+        if (headers != null) {
+            rowsInSheet++;
+            append("<row r=\"1\">");
+            for (column = 1; column <= headers.length; column++) {
+                cellStart(STYLE_HEADER);
+                append(" t=\"inlineStr\"><is><t>");
+                appendEscaped(headers[column - 1]);
+                append("</t></is></c>");
+            }
+            append("</row>");
+        }
+    }
+
+    private void endSheet() throws IOException {
+        append("</sheetData></worksheet>");
+        closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inRow) endRow();
+        if (sheets == 0) startSheet();
+        endSheet();
+
+        putEntry("xl/workbook.xml");
+        append(HEADER);
+        append("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\"><sheets>");
+        for (int i = 1; i <= sheets; i++) {
+            append("<sheet name=\"");
+            appendEscaped(sheetName(i));
+            append("\" sheetId=\"");
+            appendLong(i);
+            append("\" r:id=\"rId");
+            appendLong(i);
+            append("\"/>");
+        }
+        append("</sheets></workbook>");
+        closeEntry();
+
+        putEntry("xl/_rels/workbook.xml.rels");
+        append(HEADER);
+        append("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+        for (int i = 1; i <= sheets; i++) {
+            append("<Relationship Id=\"rId");
+            appendLong(i);
+            append("\" Type=\"" + NS_REL + "/worksheet\" Target=\"worksheets/sheet");
+            appendLong(i);
+            append(".xml\"/>");
+        }
+        append("<Relationship Id=\"rId");
+        appendLong(sheets + 1);
+        append("\" Type=\"" + NS_REL + "/styles\" Target=\"styles.xml\"/></Relationships>");
+        closeEntry();
+
+        putEntry("_rels/.rels");
+        append(HEADER);
+        append("<Relationships xmlns=\"" + NS_PKG_REL + "\">"
+            + "<Relationship Id=\"rId1\" Type=\"" + NS_REL + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>");
+        closeEntry();
+
+        putEntry("[Content_Types].xml");
+        append(HEADER);
+        append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            append("<Override PartName=\"/xl/worksheets/sheet");
+            appendLong(i);
+            append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        append("</Types>");
+        closeEntry();
+
+        putEntry("xl/styles.xml");
+        append(HEADER);
+        append("<styleSheet xmlns=\"" + NS_MAIN + "\">"
+            + "<numFmts count=\"1\"><numFmt numFmtId=\"164\" formatCode=\"dd/mm/yyyy\"/></numFmts>"
+            + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>"
+            + "<fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"4\">"
+            + "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"4\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+            + "<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>"
+            + "</cellXfs>"
+            + "<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+            + "</styleSheet>");
+        closeEntry();
+
+        super.close();
+    }
+
+    private String sheetName(int index) {
+        // Excel: máximo 31 caracteres y sin []:*?/\
+        String name = sheetName.replaceAll("[\\[\\]:*?/\\\\]", "_");
+        String suffix = index > 1 ? " (" + index + ")" : "";
+        return name.substring(0, Math.min(name.length(), 31 - suffix.length())) + suffix;
+    }
+
+    private void putEntry(String name) throws IOException {
+        flushBuffer();
+        out.flush();
+        zip.putNextEntry(new ZipEntry(name));
+    }
+
+    private void closeEntry() throws IOException {
+        flushBuffer();
+        out.flush();
+        zip.closeEntry();
+    }
+}
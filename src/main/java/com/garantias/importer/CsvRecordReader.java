@@ -0,0 +1,134 @@
+package com.garantias.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de registros CSV (RFC 4180): campos entre comillas con separadores, comillas
+ * dobladas y saltos de línea dentro. Lee por bloques de un {@code char[]} propio y
+ * reutiliza el mismo {@link StringBuilder} para todos los campos.
+ */
+final class CsvRecordReader implements Closeable {
+
+    private final Reader in;
+    private final char separator;
+    private final char[] buf = new char[64 * 1024];
+    private int pos;
+    private int limit;
+
+    private final StringBuilder field = new StringBuilder(64);
+    private final List<String> fields = new ArrayList<>();
+    private long line = 1;
+    private long recordLine;
+    private long charsRead;
+
+    CsvRecordReader(Reader in, char separator) {
+        this.in = in;
+        this.separator = separator;
+    }
+
+    /**
+     * Separador más frecuente fuera de comillas en la cabecera: {@code ;} (Excel en
+     * español), {@code ,} o tabulador
+     */
+    static char detectSeparator(String header) {
+        int semicolons = 0, commas = 0, tabs = 0;
+        boolean quoted = false;
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (!quoted && c == ';') semicolons++;
+            else if (!quoted && c == ',') commas++;
+            else if (!quoted && c == '\t') tabs++;
+        }
+        if (tabs > semicolons && tabs > commas) return '\t';
+        return commas > semicolons ? ',' : ';';
+    }
+
+    /**
+     * Siguiente registro, o null al final del fichero. Las líneas en blanco se saltan.
+     */
+    String[] next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        recordLine = line;
+
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            if (c == '\n') recordLine = ++line;
+            c = read();
+        }
+        if (c < 0) return null;
+
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) break;
+                if (c == '"') {
+                    int n = read();
+                    if (n == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = n;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == separator) {
+                endField();
+                wasQuoted = false;
+            } else if (c == '\n' || c < 0) {
+                if (c == '\n') line++;
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        endField();
+        return fields.toArray(new String[0]);
+    }
+
+    /** Línea del fichero (desde 1) en la que empieza el último registro leído */
+    long recordLine() {
+        return recordLine;
+    }
+
+    /** Caracteres leídos hasta ahora, para estimar el avance sobre el tamaño del fichero */
+    long charsRead() {
+        return charsRead;
+    }
+
+    private void endField() {
+        fields.add(field.toString());
+        field.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            charsRead += limit;
+        }
+        return buf[pos++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,589 @@
+package com.garantias.importer;
+
+import com.garantias.analytics.AnalyticsStore;
+import com.garantias.config.MongoDBConfig;
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.Timer;
+import com.garantias.service.GarantiaService;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Importación masiva de garantías desde CSV (el de la exportación o la hoja de un
+ * distribuidor guardada como CSV). Las etapas van en hilos propios, unidas por colas
+ * acotadas que frenan al lector si la base de datos no da abasto:
+ *
+ * <pre>
+ * lector ──► N validadores ──► deduplicación y numeración ──► M escritores (bulkWrite)
+ * </pre>
+ *
+ * Las filas viajan en lotes de {@value #BATCH_SIZE}. La deduplicación ve los lotes en el
+ * orden del fichero: la primera fila con un nº de serie gana y los números de garantía
+ * siguen ese orden. Las filas descartadas van a {@code <fichero>.rechazos.csv} con el
+ * motivo.
+ * <p>
+ * El avance se guarda en {@code <fichero>.checkpoint}; si la importación se cancela o se
+ * corta, volver a lanzarla con el mismo fichero continúa donde se quedó. En modo
+ * simulación se valida y se deduplica todo, con el fichero de rechazos, pero no se
+ * escribe nada en la base de datos.
+ *
+ * <pre>
+ * java -cp ... com.garantias.importer.GarantiaImporter --fichero distribuidor.csv
+ *     [--dry-run true] [--workers 4] [--writers 4] [--uri mongodb://...]
+ * </pre>
+ */
+public class GarantiaImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GarantiaImporter.class);
+
+    private static final String COLLECTION_NAME = "garantias";
+    static final int BATCH_SIZE = 1000;
+    private static final long CHECKPOINT_EVERY_MS = 500;
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int MAX_RETRIES = 5;
+
+    /** Marca de fin de cada cola */
+    private static final Batch FIN = new Batch(-1, List.of(), 0);
+
+    /**
+     * Avance de la importación; se llama desde los hilos que escriben
+     *
+     * @param registros registros resueltos (insertados o rechazados)
+     * @param fraccion  parte del fichero leída, de 0 a 1
+     */
+    @FunctionalInterface
+    public interface Progress {
+        void update(long registros, double fraccion);
+    }
+
+    private final Path fichero;
+    private boolean dryRun;
+    private int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private int writers = 4;
+    private String creadoPor = "importacion";
+
+    private volatile boolean cancelled;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Estado de la ejecución en curso
+    private MongoCollection<Document> collection;
+    private GarantiaRowParser parser;
+    private NumberAllocator numeros;
+    private ImportCheckpoint checkpoint;
+    private RejectWriter rechazos;
+    private Progress progress;
+    private long tamano;
+    private final Map<Long, Batch> terminados = new HashMap<>();
+    private long siguienteTerminado;
+    private long ultimoCheckpoint;
+
+    public GarantiaImporter(Path fichero) {
+        this.fichero = fichero;
+    }
+
+    /** Valida y deduplica sin escribir en la base de datos */
+    public GarantiaImporter dryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
+    /** Hilos que leen y validan las filas */
+    public GarantiaImporter workers(int workers) {
+        this.workers = Math.max(1, workers);
+        return this;
+    }
+
+    /** Hilos que escriben lotes en MongoDB */
+    public GarantiaImporter writers(int writers) {
+        this.writers = Math.max(1, writers);
+        return this;
+    }
+
+    /** Usuario que figura como creador de las garantías importadas */
+    public GarantiaImporter creadoPor(String creadoPor) {
+        this.creadoPor = creadoPor;
+        return this;
+    }
+
+    public static Path rechazosPath(Path fichero) {
+        return RejectWriter.pathFor(fichero);
+    }
+
+    /**
+     * Importa el fichero, continuando la importación anterior si quedó a medias
+     *
+     * @throws IllegalArgumentException si faltan columnas obligatorias en la cabecera
+     * @throws IllegalStateException    si se simula con una importación del fichero a medias
+     * @throws CancellationException    si se ha llamado a {@link #cancel()}; se puede reanudar
+     */
+    public Resultado importar(Progress progress) throws IOException, InterruptedException {
+        this.progress = progress;
+        long inicio = System.nanoTime();
+        tamano = Math.max(1, Files.size(fichero));
+        collection = MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+        checkpoint = ImportCheckpoint.load(fichero);
+        if (dryRun && checkpoint.isReanudacion()) {
+            // La simulación reescribiría el fichero de rechazos de la importación a medias
+            throw new IllegalStateException("Hay una importación a medias de " + fichero.getFileName()
+                + ": reanúdala o borra " + ImportCheckpoint.pathFor(fichero).getFileName() + " antes de simular");
+        }
+        siguienteTerminado = 0;
+        terminados.clear();
+
+        try (Timer.Context ignored = Metrics.timer("import.garantias").time();
+             CsvRecordReader reader = open()) {
+
+            String[] cabecera = readHeader(reader);
+            parser = new GarantiaRowParser(cabecera, LocalDate.now());
+            numeros = new NumberAllocator(new GarantiaService());
+            rechazos = new RejectWriter(RejectWriter.pathFor(fichero), cabecera, checkpoint.rechazosBytes);
+            if (checkpoint.isReanudacion()) {
+                logger.info("Reanudando la importación de {} desde el registro {}", fichero, checkpoint.registros + 1);
+            }
+
+            BlockingQueue<Batch> leidos = new ArrayBlockingQueue<>(workers * 2);
+            BlockingQueue<Batch> validados = new ArrayBlockingQueue<>(workers * 2);
+            BlockingQueue<Batch> listos = new ArrayBlockingQueue<>(writers * 2);
+            Date ahora = new Date();
+
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                threads.add(stage("import-validar-" + (i + 1), () -> validate(leidos, validados, ahora)));
+            }
+            threads.add(stage("import-dedupe", () -> dedupe(validados, listos)));
+            for (int i = 0; i < writers; i++) {
+                threads.add(stage("import-escribir-" + (i + 1), () -> write(listos)));
+            }
+
+            try {
+                read(reader, leidos);
+            } catch (Abort e) {
+                // Otra etapa ha fallado o se ha cancelado
+            } catch (IOException | RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+            for (Thread t : threads) t.join();
+            rechazos.close();
+        }
+
+        synchronized (this) {
+            if (failure.get() != null || cancelled) {
+                if (!dryRun) checkpoint.save();
+                Throwable e = failure.get();
+                if (e != null) {
+                    logger.error("❌ Importación de {} detenida en el registro {}: {}", fichero, checkpoint.registros,
+                        e.getMessage());
+                    if (e instanceof IOException) throw (IOException) e;
+                    if (e instanceof RuntimeException) throw (RuntimeException) e;
+                    throw new IllegalStateException(e);
+                }
+                logger.info("Importación de {} cancelada en el registro {}", fichero, checkpoint.registros);
+                throw new CancellationException("Importación cancelada");
+            }
+            checkpoint.delete();
+        }
+
+        Resultado resultado = new Resultado(checkpoint.registros, checkpoint.insertadas, checkpoint.yaImportadas,
+            checkpoint.rechazadas, dryRun, (System.nanoTime() - inicio) / 1e9);
+        progress.update(resultado.getRegistros(), 1);
+        if (!dryRun) {
+            Metrics.counter("import.insertadas").increment(checkpoint.insertadas);
+            Metrics.counter("import.rechazadas").increment(checkpoint.rechazadas);
+        }
+        logger.info("✅ {}: {}", fichero.getFileName(), resultado);
+        return resultado;
+    }
+
+    /**
+     * Detiene la importación; lo ya escrito queda en el checkpoint para reanudarla
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // ========================================
+    // ETAPAS
+    // ========================================
+
+    /**
+     * Abre el fichero con el separador de su cabecera. Excel guarda los CSV en UTF-8 o en
+     * Windows-1252 según la opción elegida: si el principio no es UTF-8 válido se usa la segunda.
+     */
+    private CsvRecordReader open() throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        byte[] inicio = new byte[64 * 1024];
+        int n;
+        try (InputStream in = Files.newInputStream(fichero)) {
+            n = in.readNBytes(inicio, 0, inicio.length);
+        }
+        CoderResult result = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .decode(ByteBuffer.wrap(inicio, 0, n), CharBuffer.allocate(n), n < inicio.length);
+        if (result.isError()) charset = Charset.forName("windows-1252");
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(fichero), charset), 64 * 1024);
+        in.mark(64 * 1024);
+        String primera = in.readLine();
+        in.reset();
+        return new CsvRecordReader(in, primera != null ? CsvRecordReader.detectSeparator(primera) : ';');
+    }
+
+    private static String[] readHeader(CsvRecordReader reader) throws IOException {
+        String[] cabecera = reader.next();
+        if (cabecera == null) throw new IllegalArgumentException("El fichero está vacío");
+        if (!cabecera[0].isEmpty() && cabecera[0].charAt(0) == '\uFEFF') {
+            cabecera[0] = cabecera[0].substring(1);
+        }
+        return cabecera;
+    }
+
+    private void read(CsvRecordReader reader, BlockingQueue<Batch> out) throws IOException, InterruptedException {
+        long registro = 0;
+        long seq = 0;
+        List<ImportRow> filas = new ArrayList<>(BATCH_SIZE);
+        String[] campos;
+        while ((campos = reader.next()) != null) {
+            if (cancelled) throw new Abort();
+            // Los ya resueltos en una ejecución anterior se leen, pero no se procesan
+            if (registro++ < checkpoint.registros) continue;
+            filas.add(new ImportRow(reader.recordLine(), campos));
+            if (filas.size() == BATCH_SIZE) {
+                put(out, new Batch(seq++, filas, reader.charsRead()));
+                filas = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!filas.isEmpty()) put(out, new Batch(seq, filas, reader.charsRead()));
+        for (int i = 0; i < workers; i++) put(out, FIN);
+    }
+
+    private void validate(BlockingQueue<Batch> in, BlockingQueue<Batch> out, Date ahora) throws InterruptedException {
+        Batch batch;
+        while ((batch = take(in)) != FIN) {
+            for (ImportRow row : batch.filas) {
+                parser.parse(row, checkpoint.id, creadoPor, ahora);
+            }
+            put(out, batch);
+        }
+        put(out, FIN);
+    }
+
+    /**
+     * Un solo hilo: reordena los lotes, descarta nº de serie repetidos en el fichero o ya
+     * existentes y asigna los números de garantía
+     */
+    private void dedupe(BlockingQueue<Batch> in, BlockingQueue<Batch> out) throws InterruptedException {
+        Map<Long, Batch> pendientes = new HashMap<>();
+        Map<String, Long> series = new HashMap<>();
+        long siguiente = 0;
+        int fines = 0;
+        while (fines < workers) {
+            Batch batch = take(in);
+            if (batch == FIN) {
+                fines++;
+                continue;
+            }
+            pendientes.put(batch.seq, batch);
+            while ((batch = pendientes.remove(siguiente)) != null) {
+                siguiente++;
+                dedupe(batch, series);
+                put(out, batch);
+            }
+        }
+        for (int i = 0; i < writers; i++) put(out, FIN);
+    }
+
+    private void dedupe(Batch batch, Map<String, Long> series) {
+        Set<String> lote = new HashSet<>();
+        for (ImportRow row : batch.filas) {
+            if (row.isValida()) lote.add(serie(row.doc));
+        }
+        Map<String, Document> existentes = new HashMap<>();
+        if (!lote.isEmpty()) {
+            collection.find(Filters.in("aireAcondicionado.numeroSerie", lote))
+                .projection(Projections.include("numeroGarantia", "aireAcondicionado.numeroSerie", "importacion"))
+                .forEach(doc -> existentes.putIfAbsent(serie(doc), doc));
+        }
+
+        for (ImportRow row : batch.filas) {
+            if (!row.isValida()) continue;
+            String serie = serie(row.doc);
+            Document existente = existentes.get(serie);
+            Long anterior = series.get(serie);
+            if (existente != null) {
+                Document importacion = existente.get("importacion", Document.class);
+                if (importacion != null && checkpoint.id.equals(importacion.getString("id"))) {
+                    long linea = ((Number) importacion.get("linea")).longValue();
+                    if (linea == row.linea) {
+                        // Insertada antes de cortarse la importación anterior
+                        row.yaImportada = true;
+                        row.doc = null;
+                        series.put(serie, row.linea);
+                    } else {
+                        row.rechazar("Nº de serie repetido en el fichero (línea " + linea + ")");
+                    }
+                } else {
+                    row.rechazar("Ya existe una garantía con ese nº de serie (" + existente.getString("numeroGarantia") + ")");
+                }
+            } else if (anterior != null) {
+                row.rechazar("Nº de serie repetido en el fichero (línea " + anterior + ")");
+            } else {
+                series.put(serie, row.linea);
+                row.doc.put("numeroGarantia", numeros.next());
+            }
+        }
+    }
+
+    private void write(BlockingQueue<Batch> in) throws InterruptedException, IOException {
+        Batch batch;
+        while ((batch = take(in)) != FIN) {
+            if (!dryRun) insert(batch);
+            completar(batch);
+        }
+    }
+
+    /**
+     * Inserta las filas válidas del lote sin orden: un error no detiene el resto. Si un
+     * número de garantía ya está cogido (alguien ha creado una garantía mientras tanto) se
+     * reasignan números y se reintentan esas filas; el resto de errores rechazan la fila.
+     */
+    private void insert(Batch batch) {
+        List<ImportRow> filas = new ArrayList<>(batch.filas.size());
+        for (ImportRow row : batch.filas) {
+            if (row.isValida()) filas.add(row);
+        }
+        for (int intento = 0; !filas.isEmpty(); intento++) {
+            List<InsertOneModel<Document>> models = new ArrayList<>(filas.size());
+            for (ImportRow row : filas) models.add(new InsertOneModel<>(row.doc));
+            List<ImportRow> reintentar = new ArrayList<>();
+            try {
+                collection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    ImportRow row = filas.get(error.getIndex());
+                    if (error.getCode() == DUPLICATE_KEY && error.getMessage().contains("numeroGarantia")
+                            && intento < MAX_RETRIES) {
+                        reintentar.add(row);
+                    } else {
+                        row.rechazar(error.getMessage());
+                    }
+                }
+            }
+            for (ImportRow row : filas) {
+                if (row.isValida() && !reintentar.contains(row)) {
+                    AnalyticsStore.garantiaGuardada(row.doc.getObjectId("_id"), row.doc);
+                }
+            }
+            if (!reintentar.isEmpty()) {
+                numeros.resync();
+                for (ImportRow row : reintentar) row.doc.put("numeroGarantia", numeros.next());
+            }
+            filas = reintentar;
+        }
+    }
+
+    /**
+     * Cuenta el lote cuando él y todos los anteriores están escritos: el checkpoint
+     * solo avanza sobre registros resueltos y los rechazos salen en el orden del fichero
+     */
+    private synchronized void completar(Batch batch) throws IOException {
+        terminados.put(batch.seq, batch);
+        Batch listo = null;
+        Batch b;
+        while ((b = terminados.remove(siguienteTerminado)) != null) {
+            siguienteTerminado++;
+            listo = b;
+            for (ImportRow row : b.filas) {
+                if (row.yaImportada) {
+                    checkpoint.yaImportadas++;
+                } else if (row.motivo != null) {
+                    checkpoint.rechazadas++;
+                    rechazos.write(row);
+                } else {
+                    checkpoint.insertadas++;
+                }
+            }
+            checkpoint.registros += b.filas.size();
+        }
+        if (listo == null) return;
+
+        checkpoint.rechazosBytes = rechazos.flush();
+        long ahora = System.currentTimeMillis();
+        if (!dryRun && ahora - ultimoCheckpoint >= CHECKPOINT_EVERY_MS) {
+            checkpoint.save();
+            ultimoCheckpoint = ahora;
+        }
+        progress.update(checkpoint.registros, Math.min(1, (double) listo.posicion / tamano));
+    }
+
+    // ========================================
+    // HILOS Y COLAS
+    // ========================================
+
+    @FunctionalInterface
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private Thread stage(String name, StageBody body) {
+        Thread t = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Abort e) {
+                // Otra etapa ha fallado o se ha cancelado
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private boolean detenido() {
+        return cancelled || failure.get() != null;
+    }
+
+    private void put(BlockingQueue<Batch> queue, Batch batch) throws InterruptedException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (detenido()) throw new Abort();
+        }
+    }
+
+    private Batch take(BlockingQueue<Batch> queue) throws InterruptedException {
+        Batch batch;
+        while ((batch = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            if (detenido()) throw new Abort();
+        }
+        return batch;
+    }
+
+    private static String serie(Document doc) {
+        return doc.get("aireAcondicionado", Document.class).getString("numeroSerie");
+    }
+
+    /**
+     * Lote de filas consecutivas del fichero
+     */
+    private static final class Batch {
+        final long seq;
+        final List<ImportRow> filas;
+        /** Caracteres leídos del fichero al cerrar el lote */
+        final long posicion;
+
+        Batch(long seq, List<ImportRow> filas, long posicion) {
+            this.seq = seq;
+            this.filas = filas;
+            this.posicion = posicion;
+        }
+    }
+
+    /** Salida de una etapa porque otra ha fallado o se ha cancelado */
+    private static final class Abort extends RuntimeException {
+        Abort() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Resumen de una importación
+     */
+    public static final class Resultado {
+        private final long registros;
+        private final long insertadas;
+        private final long yaImportadas;
+        private final long rechazadas;
+        private final boolean dryRun;
+        private final double segundos;
+
+        Resultado(long registros, long insertadas, long yaImportadas, long rechazadas, boolean dryRun, double segundos) {
+            this.registros = registros;
+            this.insertadas = insertadas;
+            this.yaImportadas = yaImportadas;
+            this.rechazadas = rechazadas;
+            this.dryRun = dryRun;
+            this.segundos = segundos;
+        }
+
+        public long getRegistros() { return registros; }
+        /** Insertadas (o que se insertarían, en simulación) */
+        public long getInsertadas() { return insertadas; }
+        /** Insertadas por una ejecución anterior de la misma importación */
+        public long getYaImportadas() { return yaImportadas; }
+        public long getRechazadas() { return rechazadas; }
+        public boolean isDryRun() { return dryRun; }
+        public double getSegundos() { return segundos; }
+
+        @Override
+        public String toString() {
+            return String.format("%s%d registros: %d %s, %d ya importadas, %d rechazadas en %.1f s (%.0f registros/s)",
+                dryRun ? "[simulación] " : "", registros, insertadas, dryRun ? "válidas" : "insertadas",
+                yaImportadas, rechazadas, segundos, segundos > 0 ? registros / segundos : 0);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        if (!options.containsKey("fichero")) {
+            throw new IllegalArgumentException("Falta --fichero <csv>");
+        }
+        GarantiaImporter importer = new GarantiaImporter(Paths.get(options.get("fichero")))
+            .dryRun(Boolean.parseBoolean(options.getOrDefault("dry-run", "false")));
+        if (options.containsKey("workers")) importer.workers(Integer.parseInt(options.get("workers")));
+        if (options.containsKey("writers")) importer.writers(Integer.parseInt(options.get("writers")));
+
+        try {
+            importer.importar((registros, fraccion) -> {
+                if (registros > 0 && registros % 100_000 == 0) {
+                    logger.info("{} registros ({}%)", registros, Math.round(fraccion * 100));
+                }
+            });
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
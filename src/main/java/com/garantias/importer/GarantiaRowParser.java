@@ -0,0 +1,255 @@
+package com.garantias.importer;
+
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
+import org.bson.Document;
+
+import java.text.Normalizer;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Convierte una fila del CSV en el documento de la garantía y la valida con las mismas
+ * reglas que el {@code $jsonSchema} de {@code mongo-init/init-db.js}: campos obligatorios
+ * de cliente, equipo y garantía, tipos (enteros y fechas) y valores de tipo y estado.
+ * <p>
+ * Las columnas se reconocen por nombre, sin importar mayúsculas, tildes ni signos: valen
+ * las cabeceras de la exportación ("Nº Serie", "Duración (meses)"...) y las rutas de los
+ * campos ("aireAcondicionado.numeroSerie"). La columna del número de garantía se ignora:
+ * los números se asignan al importar.
+ */
+final class GarantiaRowParser {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]");
+
+    /** Cobertura por defecto, la misma que el diálogo de nueva garantía */
+    private static final List<String> COBERTURA = List.of("compresor", "evaporador", "condensador", "mano_obra");
+
+    private enum Campo {
+        NOMBRE("Nombre del cliente", "cliente", "nombre", "clientenombre", "nombrecliente"),
+        TELEFONO("Teléfono", "telefono", "clientetelefono", "movil"),
+        EMAIL("Email", "email", "correo", "clienteemail"),
+        DIRECCION("Dirección", "direccion", "clientedireccion"),
+        MARCA("Marca", "marca", "aireacondicionadomarca"),
+        MODELO("Modelo", "modelo", "aireacondicionadomodelo"),
+        NUMERO_SERIE("Nº de serie", "nserie", "ndeserie", "numeroserie", "numerodeserie", "serie",
+            "aireacondicionadonumeroserie"),
+        REFRIGERANTE("Refrigerante", "refrigerante", "tiporefrigerante", "aireacondicionadotiporefrigerante"),
+        POTENCIA("Potencia (BTU)", "potenciabtu", "potencia", "btu", "aireacondicionadopotenciabtu"),
+        INSTALACION("Fecha de instalación", "instalacion", "fechainstalacion", "aireacondicionadofechainstalacion"),
+        TIPO("Tipo", "tipo", "tipogarantia", "garantiatipo"),
+        INICIO("Fecha de inicio", "inicio", "fechainicio", "garantiafechainicio"),
+        FIN("Vencimiento", "vencimiento", "fin", "fechafin", "garantiafechafin"),
+        DURACION("Duración (meses)", "duracionmeses", "duracion", "meses", "garantiaduracionmeses"),
+        ESTADO("Estado", "estado", "garantiaestado"),
+        NOTAS("Notas", "notas", "observaciones");
+
+        final String nombre;
+        final String[] alias;
+
+        Campo(String nombre, String... alias) {
+            this.nombre = nombre;
+            this.alias = alias;
+        }
+    }
+
+    private static final Map<String, Campo> COLUMNAS = new HashMap<>();
+    private static final Map<String, TipoGarantia> TIPOS = new HashMap<>();
+    private static final Map<String, EstadoGarantia> ESTADOS = new HashMap<>();
+
+    static {
+        for (Campo campo : Campo.values()) {
+            for (String alias : campo.alias) COLUMNAS.put(alias, campo);
+        }
+        for (TipoGarantia tipo : TipoGarantia.values()) {
+            TIPOS.put(normalizar(tipo.name()), tipo);
+            TIPOS.put(normalizar(tipo.getDisplayName()), tipo);
+        }
+        for (EstadoGarantia estado : EstadoGarantia.values()) {
+            ESTADOS.put(normalizar(estado.name()), estado);
+            ESTADOS.put(normalizar(estado.getDisplayName()), estado);
+        }
+    }
+
+    // Índice de columna de cada campo en el fichero (-1 si no está)
+    private final int[] indices = new int[Campo.values().length];
+    private final LocalDate hoy;
+
+    /**
+     * @throws IllegalArgumentException si faltan columnas obligatorias
+     */
+    GarantiaRowParser(String[] cabecera, LocalDate hoy) {
+        this.hoy = hoy;
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < cabecera.length; i++) {
+            Campo campo = COLUMNAS.get(normalizar(cabecera[i]));
+            if (campo != null && indices[campo.ordinal()] < 0) {
+                indices[campo.ordinal()] = i;
+            }
+        }
+
+        List<String> faltan = new ArrayList<>();
+        for (Campo campo : new Campo[] {Campo.NOMBRE, Campo.TELEFONO, Campo.MARCA, Campo.MODELO, Campo.NUMERO_SERIE}) {
+            if (indices[campo.ordinal()] < 0) faltan.add(campo.nombre);
+        }
+        if (indices[Campo.INICIO.ordinal()] < 0 && indices[Campo.INSTALACION.ordinal()] < 0) {
+            faltan.add(Campo.INICIO.nombre);
+        }
+        if (!faltan.isEmpty()) {
+            throw new IllegalArgumentException("Faltan columnas obligatorias: " + String.join(", ", faltan));
+        }
+    }
+
+    /**
+     * Rellena {@code row.doc} con la garantía (sin número) o rechaza la fila con el motivo
+     */
+    void parse(ImportRow row, String importacionId, String creadoPor, Date ahora) {
+        try {
+            Document importacion = new Document("id", importacionId).append("linea", row.linea);
+            row.doc = toDocument(row.campos, importacion, creadoPor, ahora);
+        } catch (RowException e) {
+            row.rechazar(e.getMessage());
+        }
+    }
+
+    private Document toDocument(String[] campos, Document importacion, String creadoPor, Date ahora) {
+        String nombre = obligatorio(campos, Campo.NOMBRE);
+        String telefono = obligatorio(campos, Campo.TELEFONO);
+        String marca = obligatorio(campos, Campo.MARCA);
+        String modelo = obligatorio(campos, Campo.MODELO);
+        String numeroSerie = obligatorio(campos, Campo.NUMERO_SERIE);
+
+        Integer potencia = entero(campos, Campo.POTENCIA);
+        LocalDate instalacion = fecha(campos, Campo.INSTALACION);
+        LocalDate inicio = fecha(campos, Campo.INICIO);
+        if (inicio == null) inicio = instalacion;
+        if (inicio == null) throw new RowException("Falta la fecha de inicio");
+
+        Integer duracion = entero(campos, Campo.DURACION);
+        LocalDate fin = fecha(campos, Campo.FIN);
+        if (duracion == null && fin == null) throw new RowException("Falta la duración o el vencimiento");
+        if (duracion == null) duracion = (int) ChronoUnit.MONTHS.between(inicio, fin);
+        if (fin == null) fin = inicio.plusMonths(duracion);
+        if (duracion <= 0) throw new RowException("Duración no válida: " + duracion);
+        if (fin.isBefore(inicio)) throw new RowException("El vencimiento es anterior al inicio");
+
+        TipoGarantia tipo = enumerado(campos, Campo.TIPO, TIPOS);
+        if (tipo == null) tipo = TipoGarantia.COMPLETA;
+        EstadoGarantia estado = enumerado(campos, Campo.ESTADO, ESTADOS);
+        if (estado == null) estado = fin.isBefore(hoy) ? EstadoGarantia.VENCIDA : EstadoGarantia.ACTIVA;
+
+        // Mismos campos y orden que GarantiaMapper; los opcionales vacíos se omiten porque el
+        // validador exige que, si están, sean del tipo indicado (null no es un string)
+        Document cliente = new Document("nombre", nombre).append("telefono", telefono);
+        opcional(cliente, "email", texto(campos, Campo.EMAIL));
+        opcional(cliente, "direccion", texto(campos, Campo.DIRECCION));
+
+        Document aire = new Document("marca", marca).append("modelo", modelo).append("numeroSerie", numeroSerie);
+        opcional(aire, "tipoRefrigerante", texto(campos, Campo.REFRIGERANTE));
+        opcional(aire, "potenciaBTU", potencia);
+        if (instalacion != null) aire.append("fechaInstalacion", java.sql.Date.valueOf(instalacion));
+
+        Document garantia = new Document("duracionMeses", duracion)
+            .append("tipo", tipo.name())
+            .append("estado", estado.name())
+            .append("cobertura", COBERTURA)
+            .append("fechaInicio", java.sql.Date.valueOf(inicio))
+            .append("fechaFin", java.sql.Date.valueOf(fin));
+
+        Document doc = new Document();
+        opcional(doc, "notas", texto(campos, Campo.NOTAS));
+        doc.append("creadoPor", creadoPor)
+            .append("cliente", cliente)
+            .append("aireAcondicionado", aire)
+            .append("garantia", garantia)
+            .append("fechaCreacion", ahora)
+            .append("fechaActualizacion", ahora)
+            .append("importacion", importacion);
+        return doc;
+    }
+
+    // ========================================
+    // CAMPOS
+    // ========================================
+
+    private String texto(String[] campos, Campo campo) {
+        int i = indices[campo.ordinal()];
+        if (i < 0 || i >= campos.length) return null;
+        String valor = campos[i].trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private String obligatorio(String[] campos, Campo campo) {
+        String valor = texto(campos, campo);
+        if (valor == null) throw new RowException("Falta " + campo.nombre.toLowerCase(Locale.ROOT));
+        return valor;
+    }
+
+    private Integer entero(String[] campos, Campo campo) {
+        String valor = texto(campos, campo);
+        if (valor == null) return null;
+        try {
+            // Admite separador de miles: "12.000"
+            return Integer.valueOf(valor.replace(".", "").replace(" ", ""));
+        } catch (NumberFormatException e) {
+            throw new RowException(campo.nombre + " no es un número entero: " + valor);
+        }
+    }
+
+    /**
+     * dd/MM/yyyy (también d/M/yyyy y con guiones) o yyyy-MM-dd
+     */
+    private LocalDate fecha(String[] campos, Campo campo) {
+        String valor = texto(campos, campo);
+        if (valor == null) return null;
+        try {
+            String[] partes = valor.split("[/-]");
+            if (partes.length == 3) {
+                int a = Integer.parseInt(partes[0]);
+                int b = Integer.parseInt(partes[1]);
+                int c = Integer.parseInt(partes[2]);
+                return partes[0].length() == 4 ? LocalDate.of(a, b, c) : LocalDate.of(c, b, a);
+            }
+        } catch (NumberFormatException | DateTimeException e) {
+            // se rechaza abajo
+        }
+        throw new RowException(campo.nombre + " no es una fecha válida: " + valor);
+    }
+
+    private <E> E enumerado(String[] campos, Campo campo, Map<String, E> valores) {
+        String valor = texto(campos, campo);
+        if (valor == null) return null;
+        E e = valores.get(normalizar(valor));
+        if (e == null) throw new RowException(campo.nombre + " no válido: " + valor);
+        return e;
+    }
+
+    private static void opcional(Document doc, String key, Object value) {
+        if (value != null) doc.append(key, value);
+    }
+
+    /** Minúsculas, sin tildes y solo letras y dígitos: "Nº Serie" → "nserie" */
+    static String normalizar(String s) {
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(s.trim(), Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinTildes.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    /**
+     * Fila no válida; el mensaje es el motivo que va al fichero de rechazos
+     */
+    static final class RowException extends RuntimeException {
+        RowException(String motivo) {
+            super(motivo, null, false, false);
+        }
+    }
+}
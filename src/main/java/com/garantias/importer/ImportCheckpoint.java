@@ -0,0 +1,108 @@
+package com.garantias.importer;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Punto de reanudación de una importación en {@code <fichero>.checkpoint}: cuántos
+ * registros del CSV están ya resueltos (insertados o rechazados), los contadores y hasta
+ * dónde llega el fichero de rechazos.
+ * <p>
+ * El identificador se guarda en cada garantía insertada ({@code importacion.id}): al
+ * reanudar, las filas de los lotes que estaban a medio escribir se reconocen en la base
+ * de datos y no se insertan dos veces.
+ */
+final class ImportCheckpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportCheckpoint.class);
+
+    private final Path file;
+    private final long tamano;
+    private final long modificado;
+
+    final String id;
+    long registros;
+    long insertadas;
+    long rechazadas;
+    long yaImportadas;
+    long rechazosBytes;
+
+    private ImportCheckpoint(Path file, long tamano, long modificado, String id) {
+        this.file = file;
+        this.tamano = tamano;
+        this.modificado = modificado;
+        this.id = id;
+    }
+
+    static Path pathFor(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Checkpoint de una importación interrumpida del mismo fichero, o uno nuevo. Si el
+     * fichero ha cambiado desde entonces se empieza de cero.
+     */
+    static ImportCheckpoint load(Path csv) throws IOException {
+        Path file = pathFor(csv);
+        long tamano = Files.size(csv);
+        long modificado = Files.getLastModifiedTime(csv).toMillis();
+        ImportCheckpoint nuevo = new ImportCheckpoint(file, tamano, modificado, new ObjectId().toHexString());
+        if (!Files.exists(file)) return nuevo;
+
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        if (Long.parseLong(p.getProperty("tamano", "-1")) != tamano
+                || Long.parseLong(p.getProperty("modificado", "-1")) != modificado) {
+            logger.warn("⚠️ {} ha cambiado desde la importación interrumpida; se importa desde el principio", csv);
+            return nuevo;
+        }
+        ImportCheckpoint cp = new ImportCheckpoint(file, tamano, modificado, p.getProperty("id"));
+        cp.registros = Long.parseLong(p.getProperty("registros", "0"));
+        cp.insertadas = Long.parseLong(p.getProperty("insertadas", "0"));
+        cp.rechazadas = Long.parseLong(p.getProperty("rechazadas", "0"));
+        cp.yaImportadas = Long.parseLong(p.getProperty("yaImportadas", "0"));
+        cp.rechazosBytes = Long.parseLong(p.getProperty("rechazosBytes", "0"));
+        return cp;
+    }
+
+    boolean isReanudacion() {
+        return registros > 0;
+    }
+
+    /**
+     * Guarda el estado; se escribe aparte y se renombra para no dejar nunca un fichero a medias
+     */
+    void save() throws IOException {
+        Properties p = new Properties();
+        p.setProperty("id", id);
+        p.setProperty("tamano", Long.toString(tamano));
+        p.setProperty("modificado", Long.toString(modificado));
+        p.setProperty("registros", Long.toString(registros));
+        p.setProperty("insertadas", Long.toString(insertadas));
+        p.setProperty("rechazadas", Long.toString(rechazadas));
+        p.setProperty("yaImportadas", Long.toString(yaImportadas));
+        p.setProperty("rechazosBytes", Long.toString(rechazosBytes));
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            p.store(out, "Importación de garantías");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
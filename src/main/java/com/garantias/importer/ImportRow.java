@@ -0,0 +1,31 @@
+package com.garantias.importer;
+
+import org.bson.Document;
+
+/**
+ * Un registro del fichero a lo largo de las etapas: campos leídos, documento validado
+ * y, si se descarta, el motivo
+ */
+final class ImportRow {
+
+    final long linea;
+    final String[] campos;
+    Document doc;
+    String motivo;
+    /** Ya insertada por esta misma importación antes de reanudarla */
+    boolean yaImportada;
+
+    ImportRow(long linea, String[] campos) {
+        this.linea = linea;
+        this.campos = campos;
+    }
+
+    boolean isValida() {
+        return motivo == null && !yaImportada;
+    }
+
+    void rechazar(String motivo) {
+        this.motivo = motivo;
+        this.doc = null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.garantias.importer;
+
+import com.garantias.service.GarantiaService;
+
+/**
+ * Reparte números de garantía consecutivos a partir del siguiente libre en la base de
+ * datos, sin una consulta por fila. Si otro usuario crea garantías mientras se importa,
+ * {@link #resync()} salta por encima de las suyas.
+ */
+final class NumberAllocator {
+
+    private static final int MIN_WIDTH = 4;
+
+    private final GarantiaService service;
+    private String prefix;
+    private long next;
+
+    NumberAllocator(GarantiaService service) {
+        this.service = service;
+        resync();
+    }
+
+    /**
+     * Siguiente número, con el mismo formato que {@link GarantiaService#generateNextNumero()}
+     */
+    synchronized String next() {
+        String digits = Long.toString(next++);
+        StringBuilder sb = new StringBuilder(prefix.length() + Math.max(MIN_WIDTH, digits.length())).append(prefix);
+        for (int i = digits.length(); i < MIN_WIDTH; i++) sb.append('0');
+        return sb.append(digits).toString();
+    }
+
+    /**
+     * Vuelve a leer el último número de la base de datos; nunca retrocede
+     */
+    synchronized void resync() {
+        String numero = service.generateNextNumero();
+        int dash = numero.lastIndexOf('-');
+        String nuevoPrefijo = numero.substring(0, dash + 1);
+        long siguiente = Long.parseLong(numero.substring(dash + 1));
+        // Con cambio de año el prefijo es otro y la numeración empieza de nuevo
+        next = nuevoPrefijo.equals(prefix) ? Math.max(next, siguiente) : siguiente;
+        prefix = nuevoPrefijo;
+    }
+}
@@ -0,0 +1,92 @@
+package com.garantias.importer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fichero de rechazos {@code <fichero>.rechazos.csv}: línea, motivo y los campos originales
+ * de cada fila descartada. Tiene las columnas del original, así que se puede corregir en
+ * Excel y volver a importar.
+ */
+final class RejectWriter implements Closeable {
+
+    private static final char SEP = ';';
+
+    private final FileChannel channel;
+    private final Writer out;
+
+    /**
+     * @param desde bytes que se conservan del fichero anterior (0 para empezar de nuevo);
+     *              al reanudar se descarta lo escrito después del último checkpoint
+     */
+    RejectWriter(Path file, String[] cabecera, long desde) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < desde) desde = 0;
+        channel.truncate(desde);
+        channel.position(desde);
+        out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), 32 * 1024);
+        if (desde == 0) {
+            // BOM para que Excel lo abra como UTF-8
+            out.write('\uFEFF');
+            out.write("linea;motivo");
+            for (String columna : cabecera) {
+                out.write(SEP);
+                field(columna);
+            }
+            out.write("\r\n");
+        }
+    }
+
+    static Path pathFor(Path csv) {
+        String nombre = csv.getFileName().toString();
+        int punto = nombre.toLowerCase().endsWith(".csv") ? nombre.length() - 4 : nombre.length();
+        return csv.resolveSibling(nombre.substring(0, punto) + ".rechazos.csv");
+    }
+
+    void write(ImportRow row) throws IOException {
+        out.write(Long.toString(row.linea));
+        out.write(SEP);
+        field(row.motivo);
+        for (String campo : row.campos) {
+            out.write(SEP);
+            field(campo);
+        }
+        out.write("\r\n");
+    }
+
+    /**
+     * Vuelca lo pendiente y devuelve el tamaño del fichero, para el checkpoint
+     */
+    long flush() throws IOException {
+        out.flush();
+        return channel.position();
+    }
+
+    private void field(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == SEP || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
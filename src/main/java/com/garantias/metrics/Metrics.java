@@ -0,0 +1,58 @@
+package com.garantias.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Punto de acceso global al registro de métricas
+ */
+public class Metrics {
+
+    private static volatile MetricsRegistry registry = new DefaultMetricsRegistry();
+
+    private Metrics() {}
+
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Sustituye el registro (p. ej. por uno que exporte a un sistema externo)
+     */
+    public static void setRegistry(MetricsRegistry newRegistry) {
+        registry = newRegistry;
+    }
+
+    public static Counter counter(String name) {
+        return registry.counter(name);
+    }
+
+    public static Timer timer(String name) {
+        return registry.timer(name);
+    }
+
+    public static void gauge(String name, LongSupplier value) {
+        registry.gauge(name, value);
+    }
+
+    /**
+     * Vista serializable de todas las métricas (usada por el volcado JSON)
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        registry.getCounters().forEach((name, c) -> counters.put(name, c.getCount()));
+
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        registry.getGauges().forEach((name, g) -> gauges.put(name, g.getAsLong()));
+
+        Map<String, Object> timers = new LinkedHashMap<>();
+        registry.getTimers().forEach((name, t) -> timers.put(name, t.snapshot()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("counters", counters);
+        result.put("gauges", gauges);
+        result.put("timers", timers);
+        return result;
+    }
+}
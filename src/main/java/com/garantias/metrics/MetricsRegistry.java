@@ -0,0 +1,32 @@
+package com.garantias.metrics;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro de métricas. La implementación por defecto es {@link DefaultMetricsRegistry};
+ * se puede sustituir con {@link Metrics#setRegistry(MetricsRegistry)}.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Obtiene (o crea) el contador con ese nombre
+     */
+    Counter counter(String name);
+
+    /**
+     * Obtiene (o crea) el temporizador con ese nombre
+     */
+    Timer timer(String name);
+
+    /**
+     * Registra un gauge cuyo valor se lee en cada consulta
+     */
+    void gauge(String name, LongSupplier value);
+
+    Map<String, Counter> getCounters();
+
+    Map<String, Timer> getTimers();
+
+    Map<String, LongSupplier> getGauges();
+}
@@ -0,0 +1,79 @@
+package com.garantias.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vuelca periódicamente todas las métricas a logs/metrics.json
+ */
+public class MetricsReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsReporter.class);
+
+    private static final Path OUTPUT = Paths.get("logs", "metrics.json");
+    private static final long PERIOD_SECONDS = 60;
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * Inicia el volcado periódico (idempotente)
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(MetricsReporter::dump, PERIOD_SECONDS, PERIOD_SECONDS, TimeUnit.SECONDS);
+        logger.info("Volcado de métricas cada {} s en {}", PERIOD_SECONDS, OUTPUT);
+    }
+
+    /**
+     * Detiene el volcado periódico y escribe un último volcado
+     */
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        dump();
+    }
+
+    /**
+     * Escribe el estado actual de las métricas (reemplazo atómico del fichero)
+     */
+    public static void dump() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.putAll(Metrics.snapshot());
+
+        try {
+            Files.createDirectories(OUTPUT.getParent());
+            Path tmp = OUTPUT.resolveSibling(OUTPUT.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                gson.toJson(report, writer);
+            }
+            Files.move(tmp, OUTPUT, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("No se pudieron volcar las métricas: {}", e.getMessage());
+        }
+    }
+}
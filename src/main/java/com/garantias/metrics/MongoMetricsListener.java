@@ -0,0 +1,139 @@
+package com.garantias.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentación del driver de MongoDB: tiempos y documentos por comando y
+ * colección, y gauges del pool de conexiones
+ */
+public class MongoMetricsListener implements CommandListener, ConnectionPoolListener {
+
+    private static final String PREFIX = "mongo.";
+
+    // Colección de cada comando en curso, por requestId (el evento de fin no la incluye)
+    private final Map<Integer, String> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong connectionsOpen = new AtomicLong();
+    private final AtomicLong connectionsInUse = new AtomicLong();
+    private final AtomicLong checkoutsWaiting = new AtomicLong();
+
+    public MongoMetricsListener() {
+        Metrics.gauge(PREFIX + "pool.connections", connectionsOpen::get);
+        Metrics.gauge(PREFIX + "pool.inUse", connectionsInUse::get);
+        Metrics.gauge(PREFIX + "pool.waitQueue", checkoutsWaiting::get);
+    }
+
+    // ========================================
+    // COMANDOS
+    // ========================================
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        // Comandos sin colección (listCollections, ping...) no se guardan: el mapa no admite null
+        String collection = collectionOf(event.getCommandName(), event.getCommand());
+        if (collection != null) {
+            inFlight.put(event.getRequestId(), collection);
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String key = metricKey(event.getCommandName(), inFlight.remove(event.getRequestId()));
+        Metrics.timer(key).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+        long documents = documentCount(event.getResponse());
+        if (documents > 0) {
+            Metrics.counter(key + ".documents").increment(documents);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String key = metricKey(event.getCommandName(), inFlight.remove(event.getRequestId()));
+        Metrics.timer(key).record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        Metrics.counter(key + ".errors").increment();
+    }
+
+    private static String metricKey(String commandName, String collection) {
+        String key = PREFIX + "command." + commandName;
+        return collection != null ? key + "." + collection : key;
+    }
+
+    /**
+     * En casi todos los comandos la colección es el valor del primer campo;
+     * en getMore va en el campo "collection"
+     */
+    private static String collectionOf(String commandName, BsonDocument command) {
+        BsonValue value = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return value != null && value.isString() ? value.asString().getValue() : null;
+    }
+
+    /**
+     * Documentos devueltos (cursores) o afectados (escrituras, count)
+     */
+    private static long documentCount(BsonDocument response) {
+        BsonDocument cursor = response.getDocument("cursor", null);
+        if (cursor != null) {
+            BsonArray batch = cursor.containsKey("firstBatch")
+                ? cursor.getArray("firstBatch")
+                : cursor.getArray("nextBatch", null);
+            return batch != null ? batch.size() : 0;
+        }
+        BsonValue n = response.get("n");
+        return n != null && n.isNumber() ? n.asNumber().longValue() : 0;
+    }
+
+    // ========================================
+    // POOL DE CONEXIONES
+    // ========================================
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        connectionsOpen.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        connectionsOpen.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        checkoutsWaiting.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkoutsWaiting.decrementAndGet();
+        connectionsInUse.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        checkoutsWaiting.decrementAndGet();
+        Metrics.counter(PREFIX + "pool.checkoutFailed").increment();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        connectionsInUse.decrementAndGet();
+    }
+}
@@ -0,0 +1,253 @@
+package com.garantias.metrics;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Detector de consultas lentas.
+ * <p>
+ * Las consultas que superan {@code garantias.slowquery.ms} (100 ms por defecto, 0 lo
+ * desactiva) se registran con su filtro y orden en {@code logs/slow-queries.log}, y en
+ * segundo plano se lanza un {@code explain} con {@code executionStats} para anotar
+ * documentos y claves examinados frente a documentos devueltos.
+ */
+public class SlowQueryDetector implements CommandListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryDetector.class);
+    private static final Logger slowLog = LoggerFactory.getLogger("com.garantias.slowqueries");
+
+    public static final String THRESHOLD_PROPERTY = "garantias.slowquery.ms";
+    private static final long DEFAULT_THRESHOLD_MS = 100;
+
+    // Misma "forma" de consulta: como mucho un explain cada 5 minutos
+    private static final long EXPLAIN_COOLDOWN_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Set<String> EXPLAINABLE = Set.of(
+        "find", "aggregate", "count", "distinct", "update", "delete", "findAndModify");
+
+    // Campos de sesión y transporte que el comando explain no admite
+    private static final Set<String> TRANSPORT_FIELDS = Set.of(
+        "lsid", "$db", "$clusterTime", "$readPreference", "txnNumber",
+        "autocommit", "startTransaction", "readConcern", "writeConcern");
+
+    private final long thresholdNanos;
+    private final Supplier<MongoDatabase> database;
+    private final Map<Integer, BsonDocument> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SlowQueryDetector(Supplier<MongoDatabase> database) {
+        this.database = database;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD_MS));
+
+        // Un único hilo con cola acotada: si se acumulan explains se descartan
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), r -> {
+                Thread t = new Thread(r, "slow-query-explain");
+                t.setDaemon(true);
+                return t;
+            });
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos > 0;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (isEnabled() && EXPLAINABLE.contains(event.getCommandName())) {
+            // El documento del comando solo es válido durante la llamada
+            inFlight.put(event.getRequestId(), event.getCommand().clone());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void finished(int requestId, String commandName, long elapsedNanos) {
+        BsonDocument command = inFlight.remove(requestId);
+        if (command == null || elapsedNanos < thresholdNanos) return;
+
+        BsonValue target = command.get(commandName);
+        String collection = target != null && target.isString() ? target.asString().getValue() : "?";
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        Metrics.counter("mongo.slowQueries").increment();
+
+        slowLog.warn("LENTA {}.{} {} ms filtro={} orden={}",
+            collection, commandName, elapsedMs, describeFilter(commandName, command), describeSort(command));
+
+        String shape = commandName + ":" + collection + ":" + shapeOf(describeFilter(commandName, command));
+        long now = System.currentTimeMillis();
+        Long last = lastExplained.get(shape);
+        if (last != null && now - last < EXPLAIN_COOLDOWN_MS) return;
+        lastExplained.put(shape, now);
+
+        try {
+            explainExecutor.execute(() -> explain(collection, commandName, command));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Cola de explain llena, se descarta {}.{}", collection, commandName);
+        }
+    }
+
+    private void explain(String collection, String commandName, BsonDocument command) {
+        BsonDocument explained = new BsonDocument();
+        for (Map.Entry<String, BsonValue> entry : command.entrySet()) {
+            if (!TRANSPORT_FIELDS.contains(entry.getKey())) {
+                explained.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        try {
+            Document result = database.get().runCommand(new BsonDocument("explain", explained)
+                .append("verbosity", new BsonString("executionStats")));
+            Document stats = findExecutionStats(result);
+            if (stats == null) {
+                slowLog.info("EXPLAIN {}.{} sin executionStats", collection, commandName);
+                return;
+            }
+
+            long returned = number(stats.get("nReturned"));
+            long docsExamined = number(stats.get("totalDocsExamined"));
+            long keysExamined = number(stats.get("totalKeysExamined"));
+            slowLog.warn("EXPLAIN {}.{} plan={} devueltos={} docsExaminados={} clavesExaminadas={} ratioDocs={} ratioClaves={} tiempoServidor={} ms",
+                collection, commandName, winningStages(result), returned, docsExamined, keysExamined,
+                ratio(docsExamined, returned), ratio(keysExamined, returned), number(stats.get("executionTimeMillis")));
+        } catch (Exception e) {
+            logger.debug("No se pudo obtener el explain de {}.{}: {}", collection, commandName, e.getMessage());
+        }
+    }
+
+    // ========================================
+    // UTILIDADES
+    // ========================================
+
+    private static String describeFilter(String commandName, BsonDocument command) {
+        switch (commandName) {
+            case "find":
+                return String.valueOf(command.get("filter"));
+            case "count":
+            case "distinct":
+            case "findAndModify":
+                return String.valueOf(command.get("query"));
+            case "aggregate":
+                return String.valueOf(command.get("pipeline"));
+            case "update":
+            case "delete":
+                BsonValue ops = command.get(commandName.equals("update") ? "updates" : "deletes");
+                return ops != null && ops.isArray() && !ops.asArray().isEmpty()
+                    ? String.valueOf(ops.asArray().get(0).asDocument().get("q"))
+                    : "null";
+            default:
+                return "null";
+        }
+    }
+
+    private static String describeSort(BsonDocument command) {
+        return String.valueOf(command.get("sort"));
+    }
+
+    /**
+     * Forma de la consulta: el filtro sin literales, para no repetir explains
+     */
+    private static String shapeOf(String filter) {
+        return filter.replaceAll("\"(?:[^\"\\\\]|\\\\.)*\"\\s*(?=[,}\\]])", "?")
+            .replaceAll("-?\\d+(\\.\\d+)?", "?");
+    }
+
+    /**
+     * En find/count las estadísticas están en la raíz; en aggregate pueden estar
+     * dentro de la primera etapa ($cursor)
+     */
+    @SuppressWarnings("unchecked")
+    private static Document findExecutionStats(Object node) {
+        if (node instanceof Document) {
+            Document doc = (Document) node;
+            Object stats = doc.get("executionStats");
+            if (stats instanceof Document) return (Document) stats;
+            for (Object value : doc.values()) {
+                Document found = findExecutionStats(value);
+                if (found != null) return found;
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<Object>) node) {
+                Document found = findExecutionStats(value);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Etapas del plan ganador, p. ej. "FETCH>IXSCAN" o "COLLSCAN"
+     */
+    private static String winningStages(Document explain) {
+        StringBuilder sb = new StringBuilder();
+        Document stage = findWinningPlan(explain);
+        while (stage != null) {
+            String name = stage.getString("stage");
+            if (name != null) {
+                if (sb.length() > 0) sb.append('>');
+                sb.append(name);
+            }
+            Object input = stage.get("inputStage");
+            if (input == null) input = stage.get("queryPlan");
+            stage = input instanceof Document ? (Document) input : null;
+        }
+        return sb.length() > 0 ? sb.toString() : "?";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Document findWinningPlan(Object node) {
+        if (node instanceof Document) {
+            Document doc = (Document) node;
+            Object plan = doc.get("winningPlan");
+            if (plan instanceof Document) return (Document) plan;
+            for (Object value : doc.values()) {
+                Document found = findWinningPlan(value);
+                if (found != null) return found;
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<Object>) node) {
+                Document found = findWinningPlan(value);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static String ratio(long examined, long returned) {
+        if (returned == 0) return examined == 0 ? "0" : "∞";
+        return String.format(Locale.ROOT, "%.1f", (double) examined / returned);
+    }
+}
@@ -0,0 +1,112 @@
+package com.garantias.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temporizador con histograma HdrHistogram (resolución de microsegundos,
+ * 3 dígitos significativos, hasta 10 minutos)
+ */
+public class Timer {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final String name;
+    private final Histogram histogram = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3);
+
+    public Timer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Inicia una medición; se registra al cerrar el contexto
+     */
+    public Context time() {
+        return new Context(this, System.nanoTime());
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        long micros = Math.max(0, unit.toMicros(duration));
+        histogram.recordValue(Math.min(micros, MAX_TRACKABLE_MICROS));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Copia consistente de los valores actuales (en milisegundos)
+     */
+    public Snapshot snapshot() {
+        Histogram copy = histogram.copy();
+        return new Snapshot(
+            copy.getTotalCount(),
+            copy.getMean() / 1000.0,
+            copy.getValueAtPercentile(50) / 1000.0,
+            copy.getValueAtPercentile(90) / 1000.0,
+            copy.getValueAtPercentile(99) / 1000.0,
+            copy.getValueAtPercentile(99.9) / 1000.0,
+            copy.getMaxValue() / 1000.0
+        );
+    }
+
+    /**
+     * Medición en curso, pensada para try-with-resources
+     */
+    public static class Context implements AutoCloseable {
+        private final Timer timer;
+        private final long start;
+
+        private Context(Timer timer, long start) {
+            this.timer = timer;
+            this.start = start;
+        }
+
+        /**
+         * Registra la medición y devuelve la duración en nanosegundos
+         */
+        public long stop() {
+            long elapsed = System.nanoTime() - start;
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+            return elapsed;
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    /**
+     * Resumen inmutable de un temporizador, en milisegundos
+     */
+    public static class Snapshot {
+        private final long count;
+        private final double mean;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double p999;
+        private final double max;
+
+        public Snapshot(long count, double mean, double p50, double p90, double p99, double p999, double max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getP50() { return p50; }
+        public double getP90() { return p90; }
+        public double getP99() { return p99; }
+        public double getP999() { return p999; }
+        public double getMax() { return max; }
+    }
+}
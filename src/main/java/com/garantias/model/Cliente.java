@@ -0,0 +1,49 @@
+package com.garantias.model;
+
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ficha de cliente de la colección clientes. Las garantías y facturas del mismo cliente
+ * la enlazan con {@code clienteId}; los datos que llevan embebidos no cambian.
+ */
+public class Cliente {
+
+    private ObjectId id;
+    private String nombre;
+    private String nif;
+    private String telefono;
+    private String email;
+    private String direccion;
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaActualizacion;
+
+    public Cliente() {}
+
+    public Cliente(String nombre, String nif, String telefono, String email, String direccion) {
+        this.nombre = nombre;
+        this.nif = nif;
+        this.telefono = telefono;
+        this.email = email;
+        this.direccion = direccion;
+    }
+
+    // Getters y Setters
+    public ObjectId getId() { return id; }
+    public void setId(ObjectId id) { this.id = id; }
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+    public String getNif() { return nif; }
+    public void setNif(String nif) { this.nif = nif; }
+    public String getTelefono() { return telefono; }
+    public void setTelefono(String telefono) { this.telefono = telefono; }
+    public String getEmail() { return email; }
+    public void setEmail(String email) { this.email = email; }
+    public String getDireccion() { return direccion; }
+    public void setDireccion(String direccion) { this.direccion = direccion; }
+    public LocalDateTime getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+    public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+}
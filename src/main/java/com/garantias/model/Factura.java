@@ -1,5 +1,6 @@
 package com.garantias.model;
 
+import com.garantias.util.Dinero;
 import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.bson.types.ObjectId;
@@ -10,7 +11,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Modelo de datos para Factura
+ * Modelo de datos para Factura.
+ * <p>
+ * Los importes se guardan en céntimos ({@code long}, ver {@link Dinero}); los getters y
+ * setters en euros se mantienen para la UI.
  */
 public class Factura {
     
@@ -21,17 +25,21 @@ public class Factura {
     private String numeroFactura;
     
     private ObjectId garantiaId;
+    // Ficha en la colección clientes (ver ClienteService)
+    private ObjectId clienteId;
     private DatosCliente cliente;
     private LocalDate fechaEmision;
     private List<ItemFactura> items;
-    private Double subtotal;
-    private Double totalIVA;
-    private Double total;
+    private long subtotal;
+    private long totalIVA;
+    private long total;
     private EstadoFactura estado;
     private MetodoPago metodoPago;
     private String notas;
     private LocalDateTime fechaCreacion;
     private LocalDateTime fechaActualizacion;
+    // Se incrementa en cada actualización: detecta ediciones simultáneas
+    private long version;
     
     // Constructor vacío
     public Factura() {
@@ -75,45 +83,56 @@ public class Factura {
     // Clase interna: ItemFactura
     public static class ItemFactura {
         private String descripcion;
-        private Integer cantidad;
-        private Double precioUnitario;
-        private Integer iva;
-        private Double total;
+        private int cantidad;
+        private long precioUnitario;
+        private int iva;
+        private long total;
         
         public ItemFactura() {}
         
-        public ItemFactura(String descripcion, Integer cantidad, Double precioUnitario, Integer iva) {
+        public ItemFactura(String descripcion, int cantidad, double precioUnitario, int iva) {
             this.descripcion = descripcion;
             this.cantidad = cantidad;
-            this.precioUnitario = precioUnitario;
+            this.precioUnitario = Dinero.deEuros(precioUnitario);
             this.iva = iva;
             calcularTotal();
         }
         
         public void calcularTotal() {
-            double baseImponible = cantidad * precioUnitario;
-            double importeIVA = baseImponible * (iva / 100.0);
-            this.total = baseImponible + importeIVA;
+            long baseImponible = getBaseImponibleCentimos();
+            this.total = baseImponible + Dinero.porcentaje(baseImponible, iva);
         }
         
         // Getters y Setters
         public String getDescripcion() { return descripcion; }
         public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
-        public Integer getCantidad() { return cantidad; }
-        public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
-        public Double getPrecioUnitario() { return precioUnitario; }
-        public void setPrecioUnitario(Double precioUnitario) { this.precioUnitario = precioUnitario; }
-        public Integer getIva() { return iva; }
-        public void setIva(Integer iva) { this.iva = iva; }
-        public Double getTotal() { return total; }
-        public void setTotal(Double total) { this.total = total; }
-        
-        public Double getBaseImponible() {
-            return cantidad * precioUnitario;
+        public int getCantidad() { return cantidad; }
+        public void setCantidad(int cantidad) { this.cantidad = cantidad; }
+        public double getPrecioUnitario() { return Dinero.aEuros(precioUnitario); }
+        public void setPrecioUnitario(double precioUnitario) { this.precioUnitario = Dinero.deEuros(precioUnitario); }
+        public long getPrecioUnitarioCentimos() { return precioUnitario; }
+        public void setPrecioUnitarioCentimos(long precioUnitario) { this.precioUnitario = precioUnitario; }
+        public int getIva() { return iva; }
+        public void setIva(int iva) { this.iva = iva; }
+        public double getTotal() { return Dinero.aEuros(total); }
+        public void setTotal(double total) { this.total = Dinero.deEuros(total); }
+        public long getTotalCentimos() { return total; }
+        public void setTotalCentimos(long total) { this.total = total; }
+        
+        public long getBaseImponibleCentimos() {
+            return Dinero.multiplicar(precioUnitario, cantidad);
         }
         
-        public Double getImporteIVA() {
-            return getBaseImponible() * (iva / 100.0);
+        public long getImporteIVACentimos() {
+            return Dinero.porcentaje(getBaseImponibleCentimos(), iva);
+        }
+        
+        public double getBaseImponible() {
+            return Dinero.aEuros(getBaseImponibleCentimos());
+        }
+        
+        public double getImporteIVA() {
+            return Dinero.aEuros(getImporteIVACentimos());
         }
     }
     
@@ -153,16 +172,22 @@ public class Factura {
     
     // Métodos de cálculo
     public void recalcularTotales() {
-        this.subtotal = 0.0;
-        this.totalIVA = 0.0;
-        
-        for (ItemFactura item : items) {
-            item.calcularTotal();
-            this.subtotal += item.getBaseImponible();
-            this.totalIVA += item.getImporteIVA();
+        long sumaBase = 0;
+        long sumaIVA = 0;
+        
+        // IVA redondeado por línea; bucle por índice para no crear el iterador
+        for (int i = 0, n = items.size(); i < n; i++) {
+            ItemFactura item = items.get(i);
+            long base = item.getBaseImponibleCentimos();
+            long iva = Dinero.porcentaje(base, item.getIva());
+            item.setTotalCentimos(base + iva);
+            sumaBase += base;
+            sumaIVA += iva;
         }
         
-        this.total = this.subtotal + this.totalIVA;
+        this.subtotal = sumaBase;
+        this.totalIVA = sumaIVA;
+        this.total = sumaBase + sumaIVA;
         this.fechaActualizacion = LocalDateTime.now();
     }
     
@@ -183,18 +208,26 @@ public class Factura {
     public void setNumeroFactura(String numeroFactura) { this.numeroFactura = numeroFactura; }
     public ObjectId getGarantiaId() { return garantiaId; }
     public void setGarantiaId(ObjectId garantiaId) { this.garantiaId = garantiaId; }
+    public ObjectId getClienteId() { return clienteId; }
+    public void setClienteId(ObjectId clienteId) { this.clienteId = clienteId; }
     public DatosCliente getCliente() { return cliente; }
     public void setCliente(DatosCliente cliente) { this.cliente = cliente; }
     public LocalDate getFechaEmision() { return fechaEmision; }
     public void setFechaEmision(LocalDate fechaEmision) { this.fechaEmision = fechaEmision; }
     public List<ItemFactura> getItems() { return items; }
     public void setItems(List<ItemFactura> items) { this.items = items; }
-    public Double getSubtotal() { return subtotal; }
-    public void setSubtotal(Double subtotal) { this.subtotal = subtotal; }
-    public Double getTotalIVA() { return totalIVA; }
-    public void setTotalIVA(Double totalIVA) { this.totalIVA = totalIVA; }
-    public Double getTotal() { return total; }
-    public void setTotal(Double total) { this.total = total; }
+    public double getSubtotal() { return Dinero.aEuros(subtotal); }
+    public void setSubtotal(double subtotal) { this.subtotal = Dinero.deEuros(subtotal); }
+    public long getSubtotalCentimos() { return subtotal; }
+    public void setSubtotalCentimos(long subtotal) { this.subtotal = subtotal; }
+    public double getTotalIVA() { return Dinero.aEuros(totalIVA); }
+    public void setTotalIVA(double totalIVA) { this.totalIVA = Dinero.deEuros(totalIVA); }
+    public long getTotalIVACentimos() { return totalIVA; }
+    public void setTotalIVACentimos(long totalIVA) { this.totalIVA = totalIVA; }
+    public double getTotal() { return Dinero.aEuros(total); }
+    public void setTotal(double total) { this.total = Dinero.deEuros(total); }
+    public long getTotalCentimos() { return total; }
+    public void setTotalCentimos(long total) { this.total = total; }
     public EstadoFactura getEstado() { return estado; }
     public void setEstado(EstadoFactura estado) { this.estado = estado; }
     public MetodoPago getMetodoPago() { return metodoPago; }
@@ -205,4 +238,6 @@ public class Factura {
     public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
     public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
     public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
 }
@@ -23,12 +23,18 @@ public class Garantia {
     private Cliente cliente;
     private AireAcondicionado aireAcondicionado;
     private DetalleGarantia garantia;
+    // Solo las últimas reparaciones: el historial completo está en la colección reparaciones
     private List<Reparacion> historialReparaciones;
+    private int numeroReparaciones;
     private ObjectId facturaId;
+    // Ficha en la colección clientes (ver ClienteService)
+    private ObjectId clienteId;
     private String notas;
     private String creadoPor;
     private LocalDateTime fechaCreacion;
     private LocalDateTime fechaActualizacion;
+    // Se incrementa en cada actualización: detecta ediciones simultáneas
+    private long version;
     
     // Constructor vacío requerido para BSON
     public Garantia() {
@@ -151,6 +157,8 @@ public class Garantia {
     
     // Clase interna: Reparacion
     public static class Reparacion {
+        private ObjectId id;
+        private ObjectId garantiaId;
         private LocalDate fecha;
         private String descripcion;
         private String tecnico;
@@ -166,6 +174,10 @@ public class Garantia {
         }
         
         // Getters y Setters
+        public ObjectId getId() { return id; }
+        public void setId(ObjectId id) { this.id = id; }
+        public ObjectId getGarantiaId() { return garantiaId; }
+        public void setGarantiaId(ObjectId garantiaId) { this.garantiaId = garantiaId; }
         public LocalDate getFecha() { return fecha; }
         public void setFecha(LocalDate fecha) { this.fecha = fecha; }
         public String getDescripcion() { return descripcion; }
@@ -216,8 +228,12 @@ public class Garantia {
     public void setGarantia(DetalleGarantia garantia) { this.garantia = garantia; }
     public List<Reparacion> getHistorialReparaciones() { return historialReparaciones; }
     public void setHistorialReparaciones(List<Reparacion> historialReparaciones) { this.historialReparaciones = historialReparaciones; }
+    public int getNumeroReparaciones() { return numeroReparaciones; }
+    public void setNumeroReparaciones(int numeroReparaciones) { this.numeroReparaciones = numeroReparaciones; }
     public ObjectId getFacturaId() { return facturaId; }
     public void setFacturaId(ObjectId facturaId) { this.facturaId = facturaId; }
+    public ObjectId getClienteId() { return clienteId; }
+    public void setClienteId(ObjectId clienteId) { this.clienteId = clienteId; }
     public String getNotas() { return notas; }
     public void setNotas(String notas) { this.notas = notas; }
     public String getCreadoPor() { return creadoPor; }
@@ -226,8 +242,11 @@ public class Garantia {
     public void setFechaCreacion(LocalDateTime fechaCreacion) { this.fechaCreacion = fechaCreacion; }
     public LocalDateTime getFechaActualizacion() { return fechaActualizacion; }
     public void setFechaActualizacion(LocalDateTime fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
     
     // Métodos de utilidad
+    // Solo en memoria: para guardarla se usa ReparacionService.registrar
     public void addReparacion(Reparacion reparacion) {
         this.historialReparaciones.add(reparacion);
         this.fechaActualizacion = LocalDateTime.now();
@@ -0,0 +1,162 @@
+package com.garantias.pdf;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.model.Factura;
+import com.garantias.service.FacturaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generación masiva de PDFs de facturas (cierre de mes) en paralelo.
+ * <p>
+ * {@link #submit} bloquea cuando hay demasiadas facturas pendientes: quien las lee de
+ * MongoDB espera y el cursor no avanza, así que la memoria no crece con el tamaño del
+ * lote. Cada factura se escribe en {@code <directorio>/<numeroFactura>.pdf}.
+ *
+ * <pre>
+ * java -cp ... com.garantias.pdf.FacturaPdfBatch --mes 2024-01 [--out facturas-pdf] [--threads 8] [--uri mongodb://...]
+ * </pre>
+ */
+public class FacturaPdfBatch implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacturaPdfBatch.class);
+
+    private final FacturaPdfRenderer renderer;
+    private final Path directorio;
+    private final ExecutorService executor;
+    private final Semaphore pendientes;
+
+    private final LongAdder facturas = new LongAdder();
+    private final LongAdder paginas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final long inicio = System.nanoTime();
+
+    public FacturaPdfBatch(FacturaPdfRenderer renderer, Path directorio, int threads) throws IOException {
+        this.renderer = renderer;
+        this.directorio = Files.createDirectories(directorio);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "pdf-batch-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Dos por hilo: ningún hilo se queda sin trabajo mientras se lee la siguiente
+        this.pendientes = new Semaphore(threads * 2);
+    }
+
+    /**
+     * Encola una factura; bloquea si ya hay el máximo pendiente
+     */
+    public void submit(Factura factura) {
+        pendientes.acquireUninterruptibly();
+        try {
+            executor.execute(() -> {
+                try {
+                    paginas.add(renderer.render(factura, directorio.resolve(fileName(factura))));
+                    facturas.increment();
+                } catch (IOException | RuntimeException e) {
+                    errores.increment();
+                    logger.error("❌ No se pudo generar el PDF de {}: {}", factura.getNumeroFactura(), e.getMessage());
+                } finally {
+                    pendientes.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            pendientes.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Espera a que terminen las facturas encoladas y devuelve el resumen
+     */
+    public Resultado finish() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        Resultado resultado = new Resultado(facturas.sum(), paginas.sum(), errores.sum(),
+            (System.nanoTime() - inicio) / 1e9);
+        logger.info("✅ {}", resultado);
+        return resultado;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Nombre de fichero para la factura: su número sin caracteres problemáticos
+     */
+    public static String fileName(Factura factura) {
+        String nombre = factura.getNumeroFactura() != null ? factura.getNumeroFactura() : String.valueOf(factura.getId());
+        return nombre.replaceAll("[^A-Za-z0-9._-]", "_") + ".pdf";
+    }
+
+    /**
+     * Resumen de una ejecución
+     */
+    public static final class Resultado {
+        private final long facturas;
+        private final long paginas;
+        private final long errores;
+        private final double segundos;
+
+        Resultado(long facturas, long paginas, long errores, double segundos) {
+            this.facturas = facturas;
+            this.paginas = paginas;
+            this.errores = errores;
+            this.segundos = segundos;
+        }
+
+        public long getFacturas() { return facturas; }
+        public long getPaginas() { return paginas; }
+        public long getErrores() { return errores; }
+        public double getSegundos() { return segundos; }
+
+        public double getPaginasPorSegundo() {
+            return segundos > 0 ? paginas / segundos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d facturas, %d páginas, %d errores en %.1f s (%.0f páginas/s)",
+                facturas, paginas, errores, segundos, getPaginasPorSegundo());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        YearMonth mes = options.containsKey("mes") ? YearMonth.parse(options.get("mes")) : YearMonth.now().minusMonths(1);
+        Path out = Paths.get(options.getOrDefault("out", "facturas-pdf"), mes.toString());
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        logger.info("Generando PDFs de {} en {} con {} hilos", mes, out, threads);
+        try (FacturaPdfBatch batch = new FacturaPdfBatch(new FacturaPdfRenderer(), out, threads)) {
+            new FacturaService().forEachByFechaRange(mes.atDay(1), mes.atEndOfMonth(), batch::submit);
+            batch.finish();
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
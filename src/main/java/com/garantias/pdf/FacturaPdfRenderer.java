@@ -0,0 +1,293 @@
+package com.garantias.pdf;
+
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.Timer;
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.DatosCliente;
+import com.garantias.model.Factura.ItemFactura;
+import com.garantias.util.Dinero;
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.colors.Color;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.events.Event;
+import com.itextpdf.kernel.events.IEventHandler;
+import com.itextpdf.kernel.events.PdfDocumentEvent;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.HorizontalAlignment;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Genera el PDF de una {@link Factura}. Es seguro usarlo desde varios hilos a la vez.
+ * <p>
+ * Lo que no cambia entre facturas se prepara una sola vez: los programas de fuente y la
+ * cabecera de la empresa, que se dibuja en un PDF plantilla y se copia a cada documento
+ * como {@link PdfFormXObject} (un único objeto referenciado desde todas sus páginas).
+ * La salida se escribe según se genera, página a página, sin montar el PDF en memoria.
+ * Los datos de la empresa salen de {@code garantias.empresa.nombre}, {@code .cif},
+ * {@code .direccion} y {@code .telefono}.
+ */
+public class FacturaPdfRenderer {
+
+    private static final float HEADER_HEIGHT = 80;
+    private static final float FOOTER_HEIGHT = 30;
+    private static final float MARGIN = 40;
+    private static final Color BRAND = new DeviceRgb(0x4F, 0x46, 0xE5);
+    private static final Color LIGHT = new DeviceRgb(0xEE, 0xF2, 0xFF);
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final Locale ES = new Locale("es", "ES");
+
+    private final FontProgram regular;
+    private final FontProgram bold;
+    private final byte[] headerTemplate;
+
+    // Cada hilo lee la plantilla desde su propio documento: PdfDocument no admite hilos
+    private final ThreadLocal<PdfDocument> headerSource;
+
+    private final Timer renderTimer = Metrics.timer("pdf.factura.render");
+
+    public FacturaPdfRenderer() {
+        try {
+            this.regular = FontProgramFactory.createFont(StandardFonts.HELVETICA);
+            this.bold = FontProgramFactory.createFont(StandardFonts.HELVETICA_BOLD);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron cargar las fuentes estándar", e);
+        }
+        this.headerTemplate = buildHeaderTemplate();
+        this.headerSource = ThreadLocal.withInitial(() -> {
+            try {
+                return new PdfDocument(new PdfReader(new ByteArrayInputStream(headerTemplate)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Escribe el PDF en {@code destino} (se sobrescribe si existe)
+     *
+     * @return número de páginas
+     */
+    public int render(Factura factura, Path destino) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(destino), 64 * 1024)) {
+            return render(factura, out);
+        }
+    }
+
+    /**
+     * Escribe el PDF en el flujo (no lo cierra)
+     *
+     * @return número de páginas
+     */
+    public int render(Factura factura, OutputStream out) {
+        try (Timer.Context ignored = renderTimer.time()) {
+            PdfWriter writer = new PdfWriter(new NonClosingOutputStream(out),
+                new WriterProperties().setFullCompressionMode(true));
+            PdfDocument pdf = new PdfDocument(writer);
+            PdfFont font = PdfFontFactory.createFont(regular, PdfEncodings.WINANSI);
+            PdfFont fontBold = PdfFontFactory.createFont(bold, PdfEncodings.WINANSI);
+
+            PdfFormXObject header = headerSource.get().getFirstPage().copyAsFormXObject(pdf);
+            pdf.addEventHandler(PdfDocumentEvent.END_PAGE, new PageDecorator(header, font, factura.getNumeroFactura()));
+
+            Document document = new Document(pdf, PageSize.A4);
+            document.setMargins(HEADER_HEIGHT + 20, MARGIN, FOOTER_HEIGHT + 20, MARGIN);
+            document.setFont(font).setFontSize(10);
+            writeBody(document, factura, fontBold);
+
+            int pages = pdf.getNumberOfPages();
+            document.close();
+            Metrics.counter("pdf.factura.paginas").increment(pages);
+            return pages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al generar el PDF de " + factura.getNumeroFactura(), e);
+        }
+    }
+
+    // ========================================
+    // CONTENIDO
+    // ========================================
+
+    private void writeBody(Document document, Factura factura, PdfFont fontBold) {
+        NumberFormat euros = NumberFormat.getCurrencyInstance(ES);
+
+        document.add(new Paragraph("FACTURA " + nvl(factura.getNumeroFactura()))
+            .setFont(fontBold).setFontSize(16).setFontColor(BRAND).setMarginBottom(2));
+        document.add(new Paragraph(
+            "Fecha: " + (factura.getFechaEmision() != null ? factura.getFechaEmision().format(FECHA) : "-")
+            + "    Estado: " + (factura.getEstado() != null ? factura.getEstado().getDisplayName() : "-")
+            + "    Pago: " + (factura.getMetodoPago() != null ? factura.getMetodoPago().getDisplayName() : "-")));
+
+        // Cliente
+        DatosCliente cliente = factura.getCliente();
+        Table datosCliente = new Table(1).useAllAvailableWidth().setBackgroundColor(LIGHT).setMarginBottom(15);
+        datosCliente.addCell(plain(new Paragraph("Cliente").setFont(fontBold)));
+        if (cliente != null) {
+            datosCliente.addCell(plain(new Paragraph(nvl(cliente.getNombre()))));
+            datosCliente.addCell(plain(new Paragraph("NIF: " + nvl(cliente.getNif()))));
+            datosCliente.addCell(plain(new Paragraph(nvl(cliente.getDireccion()))));
+        }
+        document.add(datosCliente);
+
+        // Líneas: la cabecera de la tabla se repite en cada página
+        Table lineas = new Table(UnitValue.createPercentArray(new float[]{52, 10, 14, 8, 16})).useAllAvailableWidth();
+        for (String titulo : new String[]{"Concepto", "Cant.", "Precio", "IVA", "Total"}) {
+            lineas.addHeaderCell(new Cell().add(new Paragraph(titulo).setFont(fontBold).setFontColor(ColorConstants.WHITE))
+                .setBackgroundColor(BRAND).setBorder(Border.NO_BORDER));
+        }
+        List<ItemFactura> items = factura.getItems();
+        for (int i = 0, n = items.size(); i < n; i++) {
+            ItemFactura item = items.get(i);
+            lineas.addCell(line(nvl(item.getDescripcion()), TextAlignment.LEFT));
+            lineas.addCell(line(String.valueOf(item.getCantidad()), TextAlignment.RIGHT));
+            lineas.addCell(line(euros.format(Dinero.aEuros(item.getPrecioUnitarioCentimos())), TextAlignment.RIGHT));
+            lineas.addCell(line(item.getIva() + " %", TextAlignment.RIGHT));
+            lineas.addCell(line(euros.format(Dinero.aEuros(item.getTotalCentimos())), TextAlignment.RIGHT));
+        }
+        document.add(lineas);
+
+        // Totales
+        Table totales = new Table(UnitValue.createPercentArray(new float[]{60, 40}))
+            .setWidth(UnitValue.createPercentValue(40)).setHorizontalAlignment(HorizontalAlignment.RIGHT)
+            .setMarginTop(10);
+        totales.addCell(plain(new Paragraph("Base imponible")));
+        totales.addCell(plain(new Paragraph(euros.format(Dinero.aEuros(factura.getSubtotalCentimos()))).setTextAlignment(TextAlignment.RIGHT)));
+        totales.addCell(plain(new Paragraph("IVA")));
+        totales.addCell(plain(new Paragraph(euros.format(Dinero.aEuros(factura.getTotalIVACentimos()))).setTextAlignment(TextAlignment.RIGHT)));
+        totales.addCell(plain(new Paragraph("TOTAL").setFont(fontBold)).setBorderTop(new SolidBorder(BRAND, 1)));
+        totales.addCell(plain(new Paragraph(euros.format(Dinero.aEuros(factura.getTotalCentimos()))).setFont(fontBold)
+            .setTextAlignment(TextAlignment.RIGHT)).setBorderTop(new SolidBorder(BRAND, 1)));
+        document.add(totales);
+
+        if (factura.getNotas() != null && !factura.getNotas().isBlank()) {
+            document.add(new Paragraph("Notas: " + factura.getNotas()).setFontSize(9).setMarginTop(15));
+        }
+    }
+
+    private static Cell plain(Paragraph content) {
+        return new Cell().add(content.setMargin(0)).setBorder(Border.NO_BORDER).setPaddingLeft(6);
+    }
+
+    private static Cell line(String text, TextAlignment alignment) {
+        return new Cell().add(new Paragraph(text).setTextAlignment(alignment))
+            .setBorder(Border.NO_BORDER).setBorderBottom(new SolidBorder(LIGHT, 0.5f));
+    }
+
+    private static String nvl(String value) {
+        return value != null ? value : "";
+    }
+
+    // ========================================
+    // CABECERA Y PIE
+    // ========================================
+
+    /**
+     * PDF de una página del tamaño de la cabecera, que se copia como XObject a cada factura
+     */
+    private byte[] buildHeaderTemplate() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfDocument pdf = new PdfDocument(new PdfWriter(out))) {
+            PdfFont font = PdfFontFactory.createFont(regular, PdfEncodings.WINANSI);
+            PdfFont fontBold = PdfFontFactory.createFont(bold, PdfEncodings.WINANSI);
+            float width = PageSize.A4.getWidth();
+            PdfPage page = pdf.addNewPage(new PageSize(width, HEADER_HEIGHT));
+
+            PdfCanvas canvas = new PdfCanvas(page);
+            canvas.setFillColor(BRAND).rectangle(0, 0, width, HEADER_HEIGHT).fill();
+            canvas.beginText().setFillColor(ColorConstants.WHITE)
+                .setFontAndSize(fontBold, 18).moveText(MARGIN, 46)
+                .showText(System.getProperty("garantias.empresa.nombre", "Climatización y Garantías S.L."))
+                .setFontAndSize(font, 9).moveText(0, -16)
+                .showText("CIF " + System.getProperty("garantias.empresa.cif", "B00000000")
+                    + "  ·  " + System.getProperty("garantias.empresa.telefono", "900 000 000"))
+                .moveText(0, -12)
+                .showText(System.getProperty("garantias.empresa.direccion", ""))
+                .endText();
+            canvas.release();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Al cerrar cada página: cabecera (el mismo XObject en todas) y pie con la numeración
+     */
+    private static final class PageDecorator implements IEventHandler {
+        private final PdfFormXObject header;
+        private final PdfFont font;
+        private final String numero;
+
+        PageDecorator(PdfFormXObject header, PdfFont font, String numero) {
+            this.header = header;
+            this.font = font;
+            this.numero = nvl(numero);
+        }
+
+        @Override
+        public void handleEvent(Event event) {
+            PdfDocumentEvent docEvent = (PdfDocumentEvent) event;
+            PdfDocument pdf = docEvent.getDocument();
+            PdfPage page = docEvent.getPage();
+            Rectangle size = page.getPageSize();
+
+            PdfCanvas canvas = new PdfCanvas(page.newContentStreamBefore(), page.getResources(), pdf);
+            canvas.addXObjectAt(header, 0, size.getTop() - HEADER_HEIGHT);
+            canvas.beginText().setFontAndSize(font, 8).setFillColor(ColorConstants.GRAY)
+                .moveText(MARGIN, FOOTER_HEIGHT)
+                .showText(numero + "  ·  Página " + pdf.getPageNumber(page))
+                .endText();
+            canvas.release();
+        }
+    }
+
+    /**
+     * PdfWriter cierra su flujo al cerrar el documento; así el del llamador sigue abierto
+     */
+    private static final class NonClosingOutputStream extends java.io.FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.garantias.pricing;
+
+/**
+ * Resultado de una simulación: distribución del coste en reparaciones de un equipo
+ * durante la garantía, en euros
+ */
+public final class Cotizacion {
+
+    private final ModeloAverias modelo;
+    private final int meses;
+    private final int ensayos;
+    private final double costeEsperado;
+    private final double varianza;
+    private final double percentil50;
+    private final double percentil95;
+    private final double percentil99;
+    private final double probabilidadAveria;
+    private final long milisegundos;
+
+    Cotizacion(ModeloAverias modelo, int meses, int ensayos, double costeEsperado, double varianza,
+               double percentil50, double percentil95, double percentil99, double probabilidadAveria,
+               long milisegundos) {
+        this.modelo = modelo;
+        this.meses = meses;
+        this.ensayos = ensayos;
+        this.costeEsperado = costeEsperado;
+        this.varianza = varianza;
+        this.percentil50 = percentil50;
+        this.percentil95 = percentil95;
+        this.percentil99 = percentil99;
+        this.probabilidadAveria = probabilidadAveria;
+        this.milisegundos = milisegundos;
+    }
+
+    public ModeloAverias getModelo() { return modelo; }
+    public int getMeses() { return meses; }
+    public int getEnsayos() { return ensayos; }
+    public double getCosteEsperado() { return costeEsperado; }
+    public double getVarianza() { return varianza; }
+    public double getDesviacion() { return Math.sqrt(varianza); }
+    /** Error estándar de {@link #getCosteEsperado()} por ser una estimación con ensayos */
+    public double getErrorEstandar() { return Math.sqrt(varianza / ensayos); }
+    public double getPercentil50() { return percentil50; }
+    public double getPercentil95() { return percentil95; }
+    public double getPercentil99() { return percentil99; }
+    /** Probabilidad de al menos una avería durante la garantía */
+    public double getProbabilidadAveria() { return probabilidadAveria; }
+    public long getMilisegundos() { return milisegundos; }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d meses: %.2f € (desv. %.2f, p95 %.2f, P(avería) %.1f %%) en %d ms",
+            modelo.getEquipo(), meses, costeEsperado, getDesviacion(), percentil95,
+            probabilidadAveria * 100, milisegundos);
+    }
+}
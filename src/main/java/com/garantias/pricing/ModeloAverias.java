@@ -0,0 +1,75 @@
+package com.garantias.pricing;
+
+import com.garantias.analytics.Fiabilidad;
+
+/**
+ * Modelo de averías de un equipo ajustado con el historial: la tasa anual de averías es
+ * incierta y se describe con una Gamma(alfa, beta) (conjugada de Poisson), y el coste de
+ * cada reparación se toma de las reparaciones reales.
+ * <p>
+ * Con pocos datos del modelo, la tasa se acerca a la de su marca (y la de la marca a la
+ * global) en proporción a los años observados: {@code alfa = averías + K·tasaPadre},
+ * {@code beta = años + K}.
+ */
+public final class ModeloAverias {
+
+    /** Años-equipo que pesa la tasa del nivel superior */
+    static final double CREDIBILIDAD_ANIOS = 20;
+
+    private final String equipo;
+    private final double alfa;
+    private final double beta;
+    private final long reparaciones;
+    private final double aniosObservados;
+    private final double[] costes;
+    private final String origenCostes;
+
+    ModeloAverias(String equipo, long reparaciones, double aniosObservados, double tasaPadre,
+                  double[] costes, String origenCostes) {
+        this.equipo = equipo;
+        this.reparaciones = reparaciones;
+        this.aniosObservados = aniosObservados;
+        this.alfa = reparaciones + CREDIBILIDAD_ANIOS * tasaPadre;
+        this.beta = aniosObservados + CREDIBILIDAD_ANIOS;
+        this.costes = costes;
+        this.origenCostes = origenCostes;
+    }
+
+    /**
+     * Ajusta el modelo de un equipo
+     *
+     * @param equipo  totales del modelo o de la marca que se cotiza
+     * @param padres  niveles superiores, del más general al más cercano (global, marca)
+     * @param costes  costes de reparaciones reales en euros
+     */
+    public static ModeloAverias ajustar(Fiabilidad equipo, Fiabilidad[] padres, double[] costes, String origenCostes) {
+        double tasa = 0;
+        for (Fiabilidad padre : padres) {
+            tasa = (padre.getReparaciones() + CREDIBILIDAD_ANIOS * tasa) / (anios(padre) + CREDIBILIDAD_ANIOS);
+        }
+        return new ModeloAverias(equipo.getGrupo(), equipo.getReparaciones(), anios(equipo), tasa, costes, origenCostes);
+    }
+
+    private static double anios(Fiabilidad f) {
+        return f.getDiasServicio() / 365.25;
+    }
+
+    public String getEquipo() { return equipo; }
+    public long getReparaciones() { return reparaciones; }
+    public double getAniosObservados() { return aniosObservados; }
+    /** Reparaciones de las que se toman los costes */
+    public int getMuestrasCoste() { return costes.length; }
+    /** Nivel del que salen los costes: modelo, marca o global */
+    public String getOrigenCostes() { return origenCostes; }
+
+    /**
+     * Tasa anual de averías esperada (media de la Gamma)
+     */
+    public double getTasaAnual() {
+        return alfa / beta;
+    }
+
+    double alfa() { return alfa; }
+    double beta() { return beta; }
+    double[] costes() { return costes; }
+}
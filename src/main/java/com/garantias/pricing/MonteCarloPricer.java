@@ -0,0 +1,148 @@
+package com.garantias.pricing;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulación de Monte Carlo del coste de una garantía.
+ * <p>
+ * En cada ensayo se toma una tasa de averías de la Gamma del {@link ModeloAverias}, se
+ * generan los instantes de avería (exponenciales) hasta el final de la garantía y cada
+ * avería cuesta una reparación real elegida al azar. Los ensayos se reparten en tareas
+ * fork-join; cada tarea hereda un {@link SplittableRandom} dividido del de su padre antes
+ * de lanzarse, así que con la misma semilla el resultado no depende de los hilos.
+ */
+public final class MonteCarloPricer {
+
+    private static final int ENSAYOS_POR_TAREA = 50_000;
+    private static final double MESES_POR_ANIO = 12.0;
+
+    private MonteCarloPricer() {}
+
+    public static Cotizacion simular(ModeloAverias modelo, int meses, int ensayos, long semilla) {
+        if (ensayos <= 0) throw new IllegalArgumentException("Ensayos no válidos: " + ensayos);
+        if (modelo.costes().length == 0) {
+            throw new IllegalStateException("Sin costes de reparación para " + modelo.getEquipo());
+        }
+        long inicio = System.nanoTime();
+
+        double[] costes = new double[ensayos];
+        Ensayos tarea = new Ensayos(modelo, meses / MESES_POR_ANIO, costes, 0, ensayos, new SplittableRandom(semilla));
+        Acumulado total = ForkJoinPool.commonPool().invoke(tarea);
+
+        double media = total.suma / ensayos;
+        double varianza = ensayos > 1 ? Math.max(0, (total.sumaCuadrados - ensayos * media * media) / (ensayos - 1)) : 0;
+        Arrays.parallelSort(costes);
+
+        return new Cotizacion(modelo, meses, ensayos, media, varianza,
+            percentil(costes, 0.50), percentil(costes, 0.95), percentil(costes, 0.99),
+            (double) total.conAveria / ensayos, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private static double percentil(double[] ordenados, double p) {
+        return ordenados[(int) Math.min(ordenados.length - 1, Math.floor(p * ordenados.length))];
+    }
+
+    /**
+     * Sumas parciales de un tramo de ensayos
+     */
+    private static final class Acumulado {
+        double suma;
+        double sumaCuadrados;
+        long conAveria;
+
+        Acumulado add(Acumulado otro) {
+            suma += otro.suma;
+            sumaCuadrados += otro.sumaCuadrados;
+            conAveria += otro.conAveria;
+            return this;
+        }
+    }
+
+    /**
+     * Ensayos [desde, hasta): divide por la mitad hasta {@link #ENSAYOS_POR_TAREA}
+     */
+    private static final class Ensayos extends RecursiveTask<Acumulado> {
+
+        private final ModeloAverias modelo;
+        private final double anios;
+        private final double[] resultados;
+        private final int desde;
+        private final int hasta;
+        private final SplittableRandom random;
+
+        Ensayos(ModeloAverias modelo, double anios, double[] resultados, int desde, int hasta, SplittableRandom random) {
+            this.modelo = modelo;
+            this.anios = anios;
+            this.resultados = resultados;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.random = random;
+        }
+
+        @Override
+        protected Acumulado compute() {
+            if (hasta - desde > ENSAYOS_POR_TAREA) {
+                int mitad = (desde + hasta) >>> 1;
+                // split() antes de lanzar: cada mitad recibe siempre la misma secuencia
+                Ensayos izquierda = new Ensayos(modelo, anios, resultados, desde, mitad, random.split());
+                Ensayos derecha = new Ensayos(modelo, anios, resultados, mitad, hasta, random);
+                izquierda.fork();
+                Acumulado acumulado = derecha.compute();
+                return acumulado.add(izquierda.join());
+            }
+
+            double alfa = modelo.alfa();
+            double beta = modelo.beta();
+            double[] costes = modelo.costes();
+            Acumulado acumulado = new Acumulado();
+            for (int i = desde; i < hasta; i++) {
+                double tasa = gamma(alfa, random) / beta;
+                double coste = 0;
+                int averias = 0;
+                // Proceso de Poisson: tiempos entre averías exponenciales de media 1/tasa
+                for (double t = exponencial(tasa, random); t < anios; t += exponencial(tasa, random)) {
+                    coste += costes[random.nextInt(costes.length)];
+                    averias++;
+                }
+                resultados[i] = coste;
+                acumulado.suma += coste;
+                acumulado.sumaCuadrados += coste * coste;
+                if (averias > 0) acumulado.conAveria++;
+            }
+            return acumulado;
+        }
+    }
+
+    private static double exponencial(double tasa, SplittableRandom random) {
+        // 1 - u está en (0, 1]: el logaritmo nunca es infinito
+        return tasa > 0 ? -Math.log(1 - random.nextDouble()) / tasa : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gamma(forma, 1) por el método de Marsaglia y Tsang; con forma menor que 1 se usa
+     * Gamma(forma + 1) · U^(1/forma)
+     */
+    static double gamma(double forma, SplittableRandom random) {
+        if (forma <= 0) return 0;
+        if (forma < 1) {
+            return gamma(forma + 1, random) * Math.pow(random.nextDouble(), 1 / forma);
+        }
+        double d = forma - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x;
+            double v;
+            do {
+                x = random.nextGaussian();
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x) return d * v;
+            if (Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) return d * v;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.garantias.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Conversión de un documento BSON al modelo
+ */
+@Name("com.garantias.DocumentMapping")
+@Label("Mapeo de documento")
+@Category({"Garantías", "Servicios"})
+@Description("Conversión de un Document de MongoDB a Garantia o Factura")
+@StackTrace(false)
+public class DocumentMappingEvent extends Event {
+
+    @Label("Colección")
+    String collection;
+
+    @Label("Id del documento")
+    String documentId;
+
+    public DocumentMappingEvent(String collection) {
+        this.collection = collection;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+}
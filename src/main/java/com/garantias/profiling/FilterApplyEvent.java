@@ -0,0 +1,41 @@
+package com.garantias.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Aplicación de los filtros de búsqueda sobre una tabla
+ */
+@Name("com.garantias.FilterApply")
+@Label("Aplicación de filtros")
+@Category({"Garantías", "Interfaz"})
+@Description("Evaluación del predicado de filtrado sobre la lista cargada en una tabla")
+@StackTrace(false)
+public class FilterApplyEvent extends Event {
+
+    @Label("Vista")
+    String view;
+
+    @Label("Filtro")
+    String filter;
+
+    @Label("Elementos")
+    int total;
+
+    @Label("Visibles")
+    int visible;
+
+    public FilterApplyEvent(String view, String filter) {
+        this.view = view;
+        this.filter = filter;
+    }
+
+    public void setResult(int total, int visible) {
+        this.total = total;
+        this.visible = visible;
+    }
+}
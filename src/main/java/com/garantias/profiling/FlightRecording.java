@@ -0,0 +1,78 @@
+package com.garantias.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Grabación continua de Java Flight Recorder activada con {@code -Dgarantias.jfr=true}.
+ * <p>
+ * Mantiene solo los últimos minutos ({@code garantias.jfr.maxAge}, en minutos) y un
+ * tamaño máximo ({@code garantias.jfr.maxSize}, en MB); al cerrar la aplicación se
+ * escribe en {@code logs/garantias-<fecha>.jfr}.
+ */
+public class FlightRecording {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecording.class);
+
+    public static final String ENABLED_PROPERTY = "garantias.jfr";
+    private static final String MAX_AGE_PROPERTY = "garantias.jfr.maxAge";
+    private static final String MAX_SIZE_PROPERTY = "garantias.jfr.maxSize";
+    private static final long DEFAULT_MAX_AGE_MINUTES = 15;
+    private static final long DEFAULT_MAX_SIZE_MB = 100;
+
+    private static Recording recording;
+
+    private FlightRecording() {}
+
+    /**
+     * Inicia la grabación si está activada por propiedad del sistema
+     */
+    public static synchronized void startIfEnabled() {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY) || recording != null) return;
+
+        try {
+            Path destination = Paths.get("logs",
+                "garantias-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+            Files.createDirectories(destination.getParent());
+
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName("garantias");
+            r.setToDisk(true);
+            r.setMaxAge(Duration.ofMinutes(Long.getLong(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_MINUTES)));
+            r.setMaxSize(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB) * 1024 * 1024);
+            r.setDestination(destination);
+            r.setDumpOnExit(true);
+            r.start();
+
+            recording = r;
+            logger.info("✅ Grabación JFR iniciada, se guardará en {}", destination);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo iniciar la grabación JFR: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Detiene la grabación y la escribe en disco
+     */
+    public static synchronized void stop() {
+        if (recording == null) return;
+        try {
+            recording.stop();
+            logger.info("Grabación JFR guardada en {}", recording.getDestination());
+        } catch (Exception e) {
+            logger.warn("⚠️ Error al guardar la grabación JFR: {}", e.getMessage());
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
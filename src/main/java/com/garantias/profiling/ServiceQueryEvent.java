@@ -0,0 +1,28 @@
+package com.garantias.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Ejecución de un método de servicio contra MongoDB
+ */
+@Name("com.garantias.ServiceQuery")
+@Label("Consulta de servicio")
+@Category({"Garantías", "Servicios"})
+@Description("Duración de una operación de GarantiaService o FacturaService")
+public class ServiceQueryEvent extends Event {
+
+    @Label("Colección")
+    String collection;
+
+    @Label("Operación")
+    String operation;
+
+    public ServiceQueryEvent(String collection, String operation) {
+        this.collection = collection;
+        this.operation = operation;
+    }
+}
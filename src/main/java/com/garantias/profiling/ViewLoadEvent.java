@@ -0,0 +1,26 @@
+package com.garantias.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Carga de una vista FXML (incluye el initialize del controlador)
+ */
+@Name("com.garantias.ViewLoad")
+@Label("Carga de vista")
+@Category({"Garantías", "Interfaz"})
+@Description("Carga del FXML de una vista y de su controlador")
+@StackTrace(false)
+public class ViewLoadEvent extends Event {
+
+    @Label("Vista")
+    String view;
+
+    public ViewLoadEvent(String view) {
+        this.view = view;
+    }
+}
@@ -0,0 +1,33 @@
+package com.garantias.service;
+
+/**
+ * Resultado agregado de una operación sobre varias entidades a la vez
+ */
+public final class BulkOutcome {
+
+    private final int solicitadas;
+    private final long modificadas;
+    private final int omitidas;
+    private final int noEncontradas;
+
+    BulkOutcome(int solicitadas, long modificadas, int omitidas, int noEncontradas) {
+        this.solicitadas = solicitadas;
+        this.modificadas = modificadas;
+        this.omitidas = omitidas;
+        this.noEncontradas = noEncontradas;
+    }
+
+    public int getSolicitadas() { return solicitadas; }
+    public long getModificadas() { return modificadas; }
+    /** Ya estaban en el estado pedido o no admiten el cambio */
+    public int getOmitidas() { return omitidas; }
+    /** Eliminadas desde otro puesto */
+    public int getNoEncontradas() { return noEncontradas; }
+
+    @Override
+    public String toString() {
+        return modificadas + " de " + solicitadas + " modificadas"
+            + (omitidas > 0 ? ", " + omitidas + " sin cambios" : "")
+            + (noEncontradas > 0 ? ", " + noEncontradas + " no encontradas" : "");
+    }
+}
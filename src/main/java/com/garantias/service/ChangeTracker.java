@@ -0,0 +1,237 @@
+package com.garantias.service;
+
+import com.garantias.metrics.Metrics;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Estado de cada entidad tal como se leyó de MongoDB (en forma de documento del mapper),
+ * para que {@code update} envíe solo los campos cambiados con {@code $set}/{@code $unset}
+ * en vez del documento entero.
+ * <p>
+ * Las entidades se identifican por referencia (los modelos no redefinen {@code equals}) y
+ * el estado se libera con ellas. Cada actualización suma a los contadores
+ * {@code update.<coleccion>.operaciones}, {@code update.<coleccion>.bytes} (enviados) y
+ * {@code update.<coleccion>.bytesCompletos} (lo que habría ocupado el documento entero).
+ * <p>
+ * El mismo estado sirve de base para combinar campo a campo una edición con la que otro
+ * puesto guardó antes ({@link #conflictos}, {@link #merge}).
+ */
+final class ChangeTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeTracker.class);
+
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+    // Campos que gestiona el servicio, no la edición
+    private static final Set<String> CONTROL = Set.of("_id", "version");
+    // Cambia en cada guardado: nunca es un conflicto
+    private static final String FECHA_ACTUALIZACION = "fechaActualizacion";
+
+    private final String collection;
+    private final Map<Object, Document> snapshots = Collections.synchronizedMap(new WeakHashMap<>());
+
+    ChangeTracker(String collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Guarda el estado leído (o recién escrito) de la entidad
+     */
+    void track(Object entity, Document doc) {
+        Document copia = new Document(doc);
+        CONTROL.forEach(copia::remove);
+        snapshots.put(entity, copia);
+    }
+
+    Document snapshot(Object entity) {
+        return snapshots.get(entity);
+    }
+
+    /**
+     * Filtro de {@code update} condicionado: la entidad sigue en la versión que se leyó.
+     * Los documentos anteriores al control de versiones no tienen el campo y son la 0.
+     */
+    static Bson sinCambios(Object id, long version) {
+        Bson mismaVersion = version == 0
+            ? Filters.or(Filters.eq("version", 0L), Filters.exists("version", false))
+            : Filters.eq("version", version);
+        return Filters.and(Filters.eq("_id", id), mismaVersion);
+    }
+
+    /**
+     * Update con los campos de {@code after} que difieren de {@code before}: los
+     * subdocumentos se comparan campo a campo ({@code cliente.telefono}); listas y demás
+     * valores, enteros. Vacío si no hay cambios.
+     */
+    static Document diff(Document before, Document after) {
+        Document set = new Document();
+        Document unset = new Document();
+        diff("", before, after, set, unset);
+        Document update = new Document();
+        if (!set.isEmpty()) update.append("$set", set);
+        if (!unset.isEmpty()) update.append("$unset", unset);
+        return update;
+    }
+
+    private static void diff(String prefix, Document before, Document after, Document set, Document unset) {
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            String path = prefix + entry.getKey();
+            Object antes = before.get(entry.getKey());
+            Object despues = entry.getValue();
+            if (antes instanceof Document && despues instanceof Document) {
+                diff(path + ".", (Document) antes, (Document) despues, set, unset);
+            } else if (!before.containsKey(entry.getKey()) || !Objects.equals(antes, despues)) {
+                set.append(path, despues);
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) unset.append(prefix + key, "");
+        }
+    }
+
+    // ========================================
+    // COMBINAR EDICIONES
+    // ========================================
+
+    /**
+     * Campos que {@code mio} ha cambiado respecto a {@code base} y que {@code suyo} tiene
+     * con otro valor distinto del de la base. Un campo ausente cuenta como null.
+     */
+    static List<UpdateOutcome.FieldConflict> conflictos(Document base, Document mio, Document suyo) {
+        Map<String, Object> antes = flatten(normalize(base));
+        Map<String, Object> mios = flatten(normalize(mio));
+        Map<String, Object> suyos = flatten(normalize(suyo));
+        List<UpdateOutcome.FieldConflict> conflictos = new ArrayList<>();
+        for (String campo : cambios(antes, mios)) {
+            Object original = antes.get(campo);
+            Object valorMio = mios.get(campo);
+            Object valorSuyo = suyos.get(campo);
+            if (!campo.equals(FECHA_ACTUALIZACION) && !Objects.equals(valorSuyo, original)
+                    && !Objects.equals(valorSuyo, valorMio)) {
+                conflictos.add(new UpdateOutcome.FieldConflict(campo, valorMio, valorSuyo));
+            }
+        }
+        return conflictos;
+    }
+
+    /**
+     * {@code suyo} con los cambios de {@code mio} respecto a {@code base}, salvo los campos
+     * de {@code quedarseSuyos}
+     */
+    static Document merge(Document base, Document mio, Document suyo, Set<String> quedarseSuyos) {
+        Map<String, Object> antes = flatten(normalize(base));
+        Map<String, Object> mios = flatten(normalize(mio));
+        Document result = normalize(suyo);
+        for (String campo : cambios(antes, mios)) {
+            if (quedarseSuyos.contains(campo)) continue;
+            if (mios.containsKey(campo)) set(result, campo, mios.get(campo));
+            else unset(result, campo);
+        }
+        return result;
+    }
+
+    private static Set<String> cambios(Map<String, Object> antes, Map<String, Object> despues) {
+        Set<String> campos = new LinkedHashSet<>(despues.keySet());
+        campos.addAll(antes.keySet());
+        campos.removeIf(campo -> Objects.equals(antes.get(campo), despues.get(campo)));
+        return campos;
+    }
+
+    /**
+     * Copia con los tipos que devuelve MongoDB (p. ej. {@code java.sql.Date} del mapper pasa
+     * a {@code java.util.Date}), para comparar y volver a leer con el mapper
+     */
+    static Document normalize(Document doc) {
+        return new RawBsonDocument(doc, CODEC).decode(CODEC);
+    }
+
+    /**
+     * Copia normalizada sin los campos de control ({@code _id}, {@code version})
+     */
+    static Document sinControl(Document doc) {
+        Document copia = normalize(doc);
+        CONTROL.forEach(copia::remove);
+        return copia;
+    }
+
+    /**
+     * Valores por ruta con puntos; los subdocumentos se recorren y las listas son un valor
+     */
+    private static Map<String, Object> flatten(Document doc) {
+        Map<String, Object> campos = new LinkedHashMap<>();
+        flatten("", doc, campos);
+        return campos;
+    }
+
+    private static void flatten(String prefix, Document doc, Map<String, Object> campos) {
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            if (prefix.isEmpty() && CONTROL.contains(entry.getKey())) continue;
+            if (entry.getValue() instanceof Document) {
+                flatten(prefix + entry.getKey() + ".", (Document) entry.getValue(), campos);
+            } else {
+                campos.put(prefix + entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void set(Document doc, String campo, Object value) {
+        String[] partes = campo.split("\\.");
+        Document actual = doc;
+        for (int i = 0; i < partes.length - 1; i++) {
+            Object hijo = actual.get(partes[i]);
+            if (!(hijo instanceof Document)) {
+                hijo = new Document();
+                actual.put(partes[i], hijo);
+            }
+            actual = (Document) hijo;
+        }
+        actual.put(partes[partes.length - 1], value);
+    }
+
+    private static void unset(Document doc, String campo) {
+        int punto = campo.indexOf('.');
+        if (punto < 0) {
+            doc.remove(campo);
+            return;
+        }
+        Object hijo = doc.get(campo.substring(0, punto));
+        if (hijo instanceof Document) {
+            unset((Document) hijo, campo.substring(punto + 1));
+            // Sin campos, el subdocumento tampoco existe (el mapper no escribe vacíos)
+            if (((Document) hijo).isEmpty()) doc.remove(campo.substring(0, punto));
+        }
+    }
+
+    /**
+     * Registra el tamaño del update frente al del documento completo
+     */
+    void record(Document update, Document full) {
+        long enviados = size(update);
+        long completos = size(new Document("$set", full));
+        Metrics.counter("update." + collection + ".bytes").increment(enviados);
+        Metrics.counter("update." + collection + ".bytesCompletos").increment(completos);
+        Metrics.counter("update." + collection + ".operaciones").increment();
+        logger.debug("Update {}: {} bytes de {} ({} ahorrados)", collection, enviados, completos, completos - enviados);
+    }
+
+    static long size(Document doc) {
+        return new RawBsonDocument(doc, CODEC).getByteBuffer().remaining();
+    }
+}
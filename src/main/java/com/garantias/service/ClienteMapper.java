@@ -0,0 +1,65 @@
+package com.garantias.service;
+
+import com.garantias.model.Cliente;
+import org.bson.Document;
+
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Conversión entre {@link Cliente} y su documento de MongoDB.
+ * <p>
+ * Además de los datos tal como se escribieron, el documento lleva {@code claves}: el NIF,
+ * teléfono y email normalizados (ver {@link ClienteService}), cada uno en una lista porque
+ * una ficha fusionada puede tener varios. Son los campos con índice único.
+ */
+public final class ClienteMapper {
+
+    private ClienteMapper() {}
+
+    /**
+     * Conversión Document -> Cliente
+     */
+    public static Cliente toCliente(Document doc) {
+        Cliente c = new Cliente(
+            doc.getString("nombre"),
+            doc.getString("nif"),
+            doc.getString("telefono"),
+            doc.getString("email"),
+            doc.getString("direccion")
+        );
+        c.setId(doc.getObjectId("_id"));
+        Date fechaCreacion = doc.getDate("fechaCreacion");
+        if (fechaCreacion != null) {
+            c.setFechaCreacion(fechaCreacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        }
+        Date fechaActualizacion = doc.getDate("fechaActualizacion");
+        if (fechaActualizacion != null) {
+            c.setFechaActualizacion(fechaActualizacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        }
+        return c;
+    }
+
+    /**
+     * Conversión Cliente -> Document, con las claves de sus propios datos
+     */
+    public static Document toDocument(Cliente c) {
+        Document doc = new Document();
+        if (c.getId() != null) {
+            doc.append("_id", c.getId());
+        }
+        doc.append("nombre", c.getNombre());
+        doc.append("nif", c.getNif());
+        doc.append("telefono", c.getTelefono());
+        doc.append("email", c.getEmail());
+        doc.append("direccion", c.getDireccion());
+        doc.append("claves", ClienteService.claves(c.getNif(), c.getTelefono(), c.getEmail()));
+        if (c.getFechaCreacion() != null) {
+            doc.append("fechaCreacion", Date.from(c.getFechaCreacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        if (c.getFechaActualizacion() != null) {
+            doc.append("fechaActualizacion", Date.from(c.getFechaActualizacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,220 @@
+package com.garantias.service;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.model.Cliente;
+import com.garantias.model.Factura;
+import com.garantias.model.Garantia;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fichas de cliente (colección {@code clientes}).
+ * <p>
+ * Un cliente se reconoce por su NIF, teléfono o email normalizados ({@code claves.*}),
+ * cada uno con índice único: buscar un cliente es leer un índice, y dos fichas no pueden
+ * compartir una clave. Las garantías y facturas que se dan de alta con conexión se
+ * enlazan a su ficha ({@code clienteId}); las anteriores, y las de ventas sin conexión,
+ * las enlaza {@code MigracionClientes}, que también fusiona las fichas repetidas.
+ */
+public class ClienteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClienteService.class);
+    private static final String COLLECTION_NAME = "clientes";
+
+    public static final String NIF = "nif";
+    public static final String TELEFONO = "telefono";
+    public static final String EMAIL = "email";
+    private static final String[] TIPOS = {NIF, TELEFONO, EMAIL};
+
+    public ClienteService() {
+        // La colección se resuelve en cada operación: crear el servicio no requiere conexión
+    }
+
+    private MongoCollection<Document> collection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+    }
+
+    /**
+     * Índices de clientes y de {@code clienteId} en garantías y facturas (los mismos que
+     * crea init-db.js)
+     */
+    public static void crearIndices(MongoDatabase database) {
+        MongoCollection<Document> clientes = database.getCollection(COLLECTION_NAME);
+        // Únicos y sparse: una ficha sin teléfono no ocupa el valor "sin teléfono"
+        IndexOptions unico = new IndexOptions().unique(true).sparse(true);
+        for (String tipo : TIPOS) {
+            clientes.createIndex(Indexes.ascending("claves." + tipo), unico);
+        }
+        database.getCollection("garantias").createIndex(Indexes.ascending("clienteId"));
+        database.getCollection("facturas").createIndex(Indexes.ascending("clienteId"));
+    }
+
+    // ========================================
+    // NORMALIZACIÓN
+    // ========================================
+
+    /**
+     * NIF/CIF en mayúsculas sin separadores ni prefijo de país; null si no parece un NIF
+     */
+    public static String normalizarNif(String nif) {
+        if (nif == null) return null;
+        String s = nif.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]", "");
+        if (s.length() == 11 && s.startsWith("ES")) s = s.substring(2);
+        return s.length() >= 8 ? s : null;
+    }
+
+    /**
+     * Solo los dígitos, sin el prefijo 34/0034; null si quedan menos de 9
+     */
+    public static String normalizarTelefono(String telefono) {
+        if (telefono == null) return null;
+        String s = telefono.replaceAll("[^0-9]", "");
+        if (s.startsWith("00")) s = s.substring(2);
+        if (s.length() == 11 && s.startsWith("34")) s = s.substring(2);
+        return s.length() >= 9 ? s : null;
+    }
+
+    /**
+     * Email sin espacios y en minúsculas; null si no tiene forma de email
+     */
+    public static String normalizarEmail(String email) {
+        if (email == null) return null;
+        String s = email.trim().toLowerCase(Locale.ROOT);
+        int arroba = s.indexOf('@');
+        return arroba > 0 && arroba < s.length() - 1 ? s : null;
+    }
+
+    /**
+     * Claves normalizadas, cada una como lista de un valor; sin las que falten
+     */
+    public static Document claves(String nif, String telefono, String email) {
+        Document claves = new Document();
+        String[] valores = {normalizarNif(nif), normalizarTelefono(telefono), normalizarEmail(email)};
+        for (int i = 0; i < TIPOS.length; i++) {
+            if (valores[i] != null) claves.append(TIPOS[i], new ArrayList<>(List.of(valores[i])));
+        }
+        return claves;
+    }
+
+    /**
+     * Filtro de las fichas que comparten alguna de las claves
+     */
+    static Bson porClaves(Document claves) {
+        List<Bson> filtros = new ArrayList<>();
+        for (String tipo : claves.keySet()) {
+            filtros.add(Filters.in("claves." + tipo, claves.getList(tipo, String.class)));
+        }
+        return filtros.size() == 1 ? filtros.get(0) : Filters.or(filtros);
+    }
+
+    // ========================================
+    // CONSULTAS
+    // ========================================
+
+    public Cliente findById(ObjectId id) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findById")) {
+            Document doc = collection().find(Filters.eq("_id", id)).first();
+            return doc != null ? ClienteMapper.toCliente(doc) : null;
+        }
+    }
+
+    public Cliente findByNif(String nif) {
+        return findByClave(NIF, normalizarNif(nif));
+    }
+
+    public Cliente findByTelefono(String telefono) {
+        return findByClave(TELEFONO, normalizarTelefono(telefono));
+    }
+
+    public Cliente findByEmail(String email) {
+        return findByClave(EMAIL, normalizarEmail(email));
+    }
+
+    private Cliente findByClave(String tipo, String valor) {
+        if (valor == null) return null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findBy" + tipo)) {
+            Document doc = collection().find(Filters.eq("claves." + tipo, valor)).first();
+            return doc != null ? ClienteMapper.toCliente(doc) : null;
+        }
+    }
+
+    // ========================================
+    // ALTA
+    // ========================================
+
+    public ObjectId resolver(Garantia garantia) {
+        Garantia.Cliente c = garantia.getCliente();
+        return c == null ? null : resolver(c.getNombre(), null, c.getTelefono(), c.getEmail(), c.getDireccion());
+    }
+
+    public ObjectId resolver(Factura factura) {
+        Factura.DatosCliente c = factura.getCliente();
+        return c == null ? null : resolver(c.getNombre(), c.getNif(), null, null, c.getDireccion());
+    }
+
+    /**
+     * Ficha del cliente con alguna de estas claves, o una nueva si no hay ninguna; a la
+     * existente se le añaden las claves que le falten. Null si no hay ninguna clave válida.
+     */
+    public ObjectId resolver(String nombre, String nif, String telefono, String email, String direccion) {
+        Document claves = claves(nif, telefono, email);
+        if (claves.isEmpty()) return null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "resolver")) {
+            Bson filtro = porClaves(claves);
+            for (int intento = 1; ; intento++) {
+                Document existente = collection().find(filtro).projection(Projections.include("claves")).first();
+                if (existente != null) {
+                    completar(existente, claves);
+                    return existente.getObjectId("_id");
+                }
+                Cliente cliente = new Cliente(nombre, nif, telefono, email, direccion);
+                cliente.setId(new ObjectId());
+                cliente.setFechaCreacion(LocalDateTime.now());
+                cliente.setFechaActualizacion(LocalDateTime.now());
+                try {
+                    collection().insertOne(ClienteMapper.toDocument(cliente));
+                    logger.info("Cliente creado: {} ({})", nombre, cliente.getId());
+                    return cliente.getId();
+                } catch (MongoWriteException e) {
+                    // Otro puesto ha dado de alta al mismo cliente entre medias: se vuelve a buscar
+                    if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY || intento >= 3) throw e;
+                }
+            }
+        }
+    }
+
+    private void completar(Document existente, Document claves) {
+        Document actuales = existente.get("claves", new Document());
+        List<Bson> nuevas = new ArrayList<>();
+        for (String tipo : claves.keySet()) {
+            String valor = claves.getList(tipo, String.class).get(0);
+            List<String> suyas = actuales.getList(tipo, String.class);
+            if (suyas == null || !suyas.contains(valor)) nuevas.add(Updates.addToSet("claves." + tipo, valor));
+        }
+        if (nuevas.isEmpty()) return;
+        try {
+            collection().updateOne(Filters.eq("_id", existente.getObjectId("_id")), Updates.combine(nuevas));
+        } catch (MongoWriteException e) {
+            // La clave es de otra ficha: son el mismo cliente, las fusiona MigracionClientes
+            if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) throw e;
+            logger.warn("⚠️ Cliente {} comparte datos con otra ficha: pendiente de fusionar", existente.getObjectId("_id"));
+        }
+    }
+}
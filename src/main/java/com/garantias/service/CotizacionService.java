@@ -0,0 +1,98 @@
+package com.garantias.service;
+
+import com.garantias.analytics.Fiabilidad;
+import com.garantias.analytics.FiabilidadAnalytics;
+import com.garantias.events.EventBus;
+import com.garantias.events.ReparacionChanged;
+import com.garantias.pricing.Cotizacion;
+import com.garantias.pricing.ModeloAverias;
+import com.garantias.pricing.MonteCarloPricer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cotización de garantías extendidas: coste esperado en reparaciones de un equipo durante
+ * {@code duracionMeses}, simulado con el historial de averías y costes.
+ * <p>
+ * Los modelos ajustados y las cotizaciones se guardan por parámetros (la semilla es fija:
+ * mismos parámetros, misma cotización) hasta que se registra una reparación.
+ */
+public class CotizacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CotizacionService.class);
+
+    public static final int ENSAYOS = 1_000_000;
+    private static final long SEMILLA = 0x6A09E667F3BCC909L;
+
+    // Reparaciones mínimas de un nivel para usar sus costes; si no, los del nivel superior
+    private static final int MIN_COSTES = 30;
+    private static final int MAX_COSTES = 20_000;
+    private static final int MAX_COTIZACIONES = 256;
+
+    private static final Map<String, ModeloAverias> modelos = new ConcurrentHashMap<>();
+    private static final Map<String, Cotizacion> cotizaciones = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cotizacion> eldest) {
+                return size() > MAX_COTIZACIONES;
+            }
+        });
+
+    static {
+        // Cada reparación nueva cambia los datos de los que salen los modelos
+        EventBus.subscribe(ReparacionChanged.class, e -> invalidar());
+    }
+
+    private final ReparacionService reparacionService = new ReparacionService();
+
+    /**
+     * Cotiza un equipo ({@code modelo} null para cualquier modelo de la marca)
+     */
+    public Cotizacion cotizar(String marca, String modelo, int meses) {
+        return cotizar(marca, modelo, meses, ENSAYOS);
+    }
+
+    public Cotizacion cotizar(String marca, String modelo, int meses, int ensayos) {
+        if (marca == null || marca.isBlank()) throw new IllegalArgumentException("Falta la marca");
+        if (meses <= 0) throw new IllegalArgumentException("Duración no válida: " + meses);
+        String clave = marca + "|" + modelo + "|" + meses + "|" + ensayos;
+        Cotizacion cotizacion = cotizaciones.get(clave);
+        if (cotizacion != null) return cotizacion;
+
+        ModeloAverias ajuste = modelos.computeIfAbsent(marca + "|" + modelo, k -> ajustar(marca, modelo));
+        cotizacion = MonteCarloPricer.simular(ajuste, meses, ensayos, SEMILLA);
+        logger.info("Cotización: {}", cotizacion);
+        cotizaciones.put(clave, cotizacion);
+        return cotizacion;
+    }
+
+    public static void invalidar() {
+        modelos.clear();
+        cotizaciones.clear();
+    }
+
+    private ModeloAverias ajustar(String marca, String modelo) {
+        FiabilidadAnalytics fiabilidad = reparacionService.instantaneaFiabilidad();
+        Fiabilidad global = fiabilidad.resumen(null, null);
+        Fiabilidad deMarca = fiabilidad.resumen(marca, null);
+        Fiabilidad equipo = modelo != null ? fiabilidad.resumen(marca, modelo) : deMarca;
+        Fiabilidad[] padres = modelo != null ? new Fiabilidad[]{global, deMarca} : new Fiabilidad[]{global};
+
+        double[] costes = modelo != null ? reparacionService.costes(marca, modelo, MAX_COSTES) : new double[0];
+        String origen = "modelo";
+        if (costes.length < MIN_COSTES) {
+            costes = reparacionService.costes(marca, null, MAX_COSTES);
+            origen = "marca";
+        }
+        if (costes.length < MIN_COSTES) {
+            costes = reparacionService.costes(null, null, MAX_COSTES);
+            origen = "global";
+        }
+        return ModeloAverias.ajustar(equipo, padres, costes, origen);
+    }
+}
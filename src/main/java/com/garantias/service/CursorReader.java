@@ -0,0 +1,89 @@
+package com.garantias.service;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Lectura de un cursor con la conversión a modelo en paralelo.
+ * <p>
+ * El hilo que llama solo recorre el cursor con {@link RawBsonDocument} (los bytes tal como
+ * llegan, sin convertir), así que pide el siguiente lote ({@code getMore}) en cuanto
+ * termina el anterior. Los documentos se agrupan en tramos del tamaño del lote y un pool
+ * pequeño los convierte mientras llega el siguiente. Los tramos se juntan en el orden del
+ * cursor: si la consulta lleva {@code sort}, el resultado lo respeta.
+ * <p>
+ * El tamaño de lote se cambia con {@code -Dgarantias.cursor.batchSize} (1000 por defecto).
+ */
+final class CursorReader {
+
+    public static final String BATCH_SIZE_PROPERTY = "garantias.cursor.batchSize";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+    // Deja un núcleo para el hilo que lee del socket
+    private static final int HILOS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService decoders = Executors.newFixedThreadPool(HILOS, r -> {
+        Thread t = new Thread(r, "cursor-decode-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private CursorReader() {}
+
+    static int batchSize() {
+        return Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Todos los documentos de la consulta convertidos con {@code mapper}, en el orden del cursor
+     */
+    static <T> List<T> read(FindIterable<RawBsonDocument> find, Function<Document, T> mapper) {
+        int batchSize = batchSize();
+        List<CompletableFuture<List<T>>> tramos = new ArrayList<>();
+        List<RawBsonDocument> tramo = new ArrayList<>(batchSize);
+        for (RawBsonDocument raw : find.batchSize(batchSize)) {
+            tramo.add(raw);
+            if (tramo.size() >= batchSize) {
+                List<RawBsonDocument> lleno = tramo;
+                tramos.add(CompletableFuture.supplyAsync(() -> decode(lleno, mapper), decoders));
+                tramo = new ArrayList<>(batchSize);
+            }
+        }
+        // El último tramo (el único en las consultas pequeñas) se convierte en este hilo
+        List<T> ultimo = decode(tramo, mapper);
+
+        List<T> result = new ArrayList<>(tramos.size() * batchSize + ultimo.size());
+        for (CompletableFuture<List<T>> f : tramos) {
+            try {
+                result.addAll(f.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        result.addAll(ultimo);
+        return result;
+    }
+
+    private static <T> List<T> decode(List<RawBsonDocument> tramo, Function<Document, T> mapper) {
+        List<T> result = new ArrayList<>(tramo.size());
+        for (RawBsonDocument raw : tramo) {
+            result.add(mapper.apply(raw.decode(CODEC)));
+        }
+        return result;
+    }
+}
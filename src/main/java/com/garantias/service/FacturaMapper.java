@@ -0,0 +1,185 @@
+package com.garantias.service;
+
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.util.Dinero;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Conversión entre {@link Factura} y su documento de MongoDB
+ */
+public final class FacturaMapper {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FacturaMapper.class);
+    
+    private FacturaMapper() {}
+    
+    /**
+     * Conversión Document -> Factura (null si el documento no es válido)
+     */
+    public static Factura toFactura(Document doc) {
+        try {
+            Factura f = new Factura();
+            f.setId(doc.getObjectId("_id"));
+            f.setNumeroFactura(doc.getString("numeroFactura"));
+            f.setGarantiaId(doc.getObjectId("garantiaId"));
+            f.setClienteId(doc.getObjectId("clienteId"));
+            f.setNotas(doc.getString("notas"));
+            
+            // Importes: Decimal128, o Double/Integer en documentos sin migrar
+            f.setSubtotalCentimos(Dinero.deBson(doc.get("subtotal")));
+            f.setTotalIVACentimos(Dinero.deBson(doc.get("totalIVA")));
+            f.setTotalCentimos(Dinero.deBson(doc.get("total")));
+            
+            // Estado y método de pago
+            String estadoStr = doc.getString("estadoFactura");
+            if (estadoStr == null) estadoStr = doc.getString("estado");
+            if (estadoStr != null) {
+                try {
+                    f.setEstado(EstadoFactura.valueOf(estadoStr));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Estado no reconocido: {}", estadoStr);
+                }
+            }
+            String metodoStr = doc.getString("metodoPago");
+            if (metodoStr != null) {
+                try {
+                    f.setMetodoPago(Factura.MetodoPago.valueOf(metodoStr));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Método de pago no reconocido: {}", metodoStr);
+                }
+            }
+            
+            // Cliente
+            Document clienteDoc = doc.get("cliente", Document.class);
+            if (clienteDoc != null) {
+                Factura.DatosCliente cliente = new Factura.DatosCliente(
+                    clienteDoc.getString("nombre"),
+                    clienteDoc.getString("nif"),
+                    clienteDoc.getString("direccion")
+                );
+                f.setCliente(cliente);
+            }
+            
+            // Items
+            List<Document> itemDocs = doc.getList("items", Document.class);
+            if (itemDocs != null) {
+                List<Factura.ItemFactura> items = new ArrayList<>();
+                for (Document itemDoc : itemDocs) {
+                    Factura.ItemFactura item = new Factura.ItemFactura();
+                    item.setDescripcion(itemDoc.getString("descripcion"));
+                    
+                    // Manejar cantidad como Number
+                    Number cantidad = (Number) itemDoc.get("cantidad");
+                    item.setCantidad(cantidad != null ? cantidad.intValue() : 0);
+                    
+                    item.setPrecioUnitarioCentimos(Dinero.deBson(itemDoc.get("precioUnitario")));
+                    
+                    // Manejar IVA como Number
+                    Number iva = (Number) itemDoc.get("iva");
+                    item.setIva(iva != null ? iva.intValue() : 21);
+                    
+                    item.setTotalCentimos(Dinero.deBson(itemDoc.get("total")));
+                    
+                    items.add(item);
+                }
+                f.setItems(items);
+            }
+            
+            // Fechas
+            Date fechaEmision = doc.getDate("fechaEmision");
+            if (fechaEmision != null) {
+                f.setFechaEmision(fechaEmision.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+            }
+            // Sin campo (documentos anteriores al control de versiones) cuenta como 0
+            Number version = doc.get("version", Number.class);
+            f.setVersion(version != null ? version.longValue() : 0);
+            
+            logger.debug("Factura convertida: {}", f.getNumeroFactura());
+            return f;
+        } catch (Exception e) {
+            logger.error("Error convirtiendo documento a factura: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Conversión Factura -> Document
+     */
+    public static Document toDocument(Factura f) {
+        Document doc = new Document();
+        
+        if (f.getId() != null) {
+            doc.append("_id", f.getId());
+        }
+        doc.append("numeroFactura", f.getNumeroFactura());
+        if (f.getGarantiaId() != null) {
+            doc.append("garantiaId", f.getGarantiaId());
+        }
+        if (f.getClienteId() != null) {
+            doc.append("clienteId", f.getClienteId());
+        }
+        doc.append("subtotal", Dinero.aDecimal128(f.getSubtotalCentimos()));
+        doc.append("totalIVA", Dinero.aDecimal128(f.getTotalIVACentimos()));
+        doc.append("total", Dinero.aDecimal128(f.getTotalCentimos()));
+        doc.append("estado", f.getEstado() != null ? f.getEstado().name() : null);
+        doc.append("metodoPago", f.getMetodoPago() != null ? f.getMetodoPago().name() : null);
+        doc.append("notas", f.getNotas());
+        
+        // Cliente
+        if (f.getCliente() != null) {
+            doc.append("cliente", new Document()
+                .append("nombre", f.getCliente().getNombre())
+                .append("nif", f.getCliente().getNif())
+                .append("direccion", f.getCliente().getDireccion())
+            );
+        }
+        
+        // Items
+        if (f.getItems() != null) {
+            List<Document> itemDocs = new ArrayList<>();
+            for (Factura.ItemFactura item : f.getItems()) {
+                itemDocs.add(new Document()
+                    .append("descripcion", item.getDescripcion())
+                    .append("cantidad", item.getCantidad())
+                    .append("precioUnitario", Dinero.aDecimal128(item.getPrecioUnitarioCentimos()))
+                    .append("iva", item.getIva())
+                    .append("total", Dinero.aDecimal128(item.getTotalCentimos()))
+                );
+            }
+            doc.append("items", itemDocs);
+        }
+        
+        // Fechas
+        if (f.getFechaEmision() != null) {
+            doc.append("fechaEmision", java.sql.Date.valueOf(f.getFechaEmision()));
+        }
+        if (f.getFechaCreacion() != null) {
+            doc.append("fechaCreacion", Date.from(f.getFechaCreacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        if (f.getFechaActualizacion() != null) {
+            doc.append("fechaActualizacion", Date.from(f.getFechaActualizacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        doc.append("version", f.getVersion());
+        
+        return doc;
+    }
+    
+    /**
+     * Suma exacta en céntimos del campo "total" (los documentos sin él cuentan como 0)
+     */
+    public static long sumTotales(Iterable<Document> docs) {
+        long total = 0;
+        for (Document doc : docs) {
+            total = Math.addExact(total, Dinero.deBson(doc.get("total")));
+        }
+        return total;
+    }
+}
@@ -1,23 +1,34 @@
 package com.garantias.service;
 
+import com.garantias.analytics.AnalyticsStore;
+import com.garantias.analytics.FacturaAnalytics;
 import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.FacturaChanged;
 import com.garantias.model.Factura;
 import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Factura.MetodoPago;
+import com.garantias.profiling.DocumentMappingEvent;
+import com.garantias.snapshot.LocalSnapshot;
+import com.garantias.util.Dinero;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Sorts;
-import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Servicio para gestión de Facturas en MongoDB
@@ -27,370 +38,518 @@ public class FacturaService {
     private static final Logger logger = LoggerFactory.getLogger(FacturaService.class);
     private static final String COLLECTION_NAME = "facturas";
     
-    private MongoCollection<Document> collection;
+    private static final FallbackCache cache = new FallbackCache(COLLECTION_NAME);
+    private static final ChangeTracker tracker = new ChangeTracker(COLLECTION_NAME);
+    
+    private final ClienteService clienteService = new ClienteService();
     
     public FacturaService() {
-        this.collection = MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+        // La colección se resuelve en cada operación: crear el servicio no requiere conexión
+    }
+    
+    private MongoCollection<Document> collection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+    }
+    
+    // Listados: se leen sin convertir y se pasan a modelo en paralelo (ver CursorReader)
+    private MongoCollection<RawBsonDocument> rawCollection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME, RawBsonDocument.class);
     }
     
     /**
      * Obtiene todas las facturas
      */
     public List<Factura> findAll() {
-        List<Factura> facturas = new ArrayList<>();
-        try {
-            logger.info("Cargando facturas desde MongoDB...");
-            for (Document doc : collection.find().sort(Sorts.descending("fechaEmision"))) {
-                Factura f = documentToFactura(doc);
-                if (f != null) {
-                    facturas.add(f);
-                }
-            }
-            logger.info("Facturas cargadas: {}", facturas.size());
-        } catch (Exception e) {
-            logger.error("Error en findAll: {}", e.getMessage(), e);
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findAll")) {
+            return cache.get("findAll", () -> {
+                logger.info("Cargando facturas desde MongoDB...");
+                List<Factura> facturas = CursorReader.read(
+                    rawCollection().find().sort(Sorts.descending("fechaEmision")), this::documentToFactura);
+                facturas.removeIf(Objects::isNull);
+                logger.info("Facturas cargadas: {}", facturas.size());
+                return facturas;
+            });
+        }
+    }
+    
+    /**
+     * Filas resumidas de la copia local, sin consultar MongoDB (vacía si no hay copia)
+     */
+    public List<Factura> findAllLocal() {
+        return LocalSnapshot.facturas();
+    }
+    
+    /**
+     * Listado de la tabla: sincroniza la copia local con los cambios desde la última vez y
+     * devuelve sus filas resumidas. Sin copia local devuelve {@link #findAll()}.
+     */
+    public List<Factura> findAllResumen() {
+        if (!LocalSnapshot.isStarted()) return findAll();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findAllResumen")) {
+            return LocalSnapshot.syncFacturas();
         }
-        return facturas;
     }
     
     /**
      * Busca factura por ID
      */
     public Factura findById(ObjectId id) {
-        Document doc = collection.find(Filters.eq("_id", id)).first();
-        return doc != null ? documentToFactura(doc) : null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findById")) {
+            Document doc = collection().find(Filters.eq("_id", id)).first();
+            if (doc == null) return null;
+            // Se carga para ver o editar: update() enviará solo lo que cambie
+            Factura factura = documentToFactura(doc);
+            tracker.track(factura, facturaToDocument(factura));
+            return factura;
+        }
     }
     
     /**
      * Busca factura por número
      */
     public Factura findByNumero(String numeroFactura) {
-        Document doc = collection.find(Filters.eq("numeroFactura", numeroFactura)).first();
-        return doc != null ? documentToFactura(doc) : null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByNumero")) {
+            Document doc = collection().find(Filters.eq("numeroFactura", numeroFactura)).first();
+            return doc != null ? documentToFactura(doc) : null;
+        }
     }
     
     /**
      * Busca facturas por garantía
      */
     public Factura findByGarantiaId(ObjectId garantiaId) {
-        Document doc = collection.find(Filters.eq("garantiaId", garantiaId)).first();
-        return doc != null ? documentToFactura(doc) : null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByGarantiaId")) {
+            Document doc = collection().find(Filters.eq("garantiaId", garantiaId)).first();
+            return doc != null ? documentToFactura(doc) : null;
+        }
+    }
+    
+    /**
+     * Facturas de un cliente (índice por {@code clienteId}), las más recientes primero
+     */
+    public List<Factura> findByCliente(ObjectId clienteId) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByCliente")) {
+            List<Factura> facturas = CursorReader.read(rawCollection().find(Filters.eq("clienteId", clienteId))
+                .sort(Sorts.descending("fechaEmision")), this::documentToFactura);
+            // Como en findAll: los documentos no válidos se convierten en null
+            facturas.removeIf(Objects::isNull);
+            return facturas;
+        }
     }
     
     /**
      * Busca facturas por estado
      */
     public List<Factura> findByEstado(EstadoFactura estado) {
-        List<Factura> facturas = new ArrayList<>();
-        for (Document doc : collection.find(Filters.eq("estado", estado.name()))) {
-            facturas.add(documentToFactura(doc));
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByEstado")) {
+            List<Factura> facturas = CursorReader.read(
+                rawCollection().find(Filters.eq("estado", estado.name())), this::documentToFactura);
+            facturas.removeIf(Objects::isNull);
+            return facturas;
         }
-        return facturas;
     }
     
     /**
      * Busca facturas por rango de fechas
      */
     public List<Factura> findByFechaRange(LocalDate desde, LocalDate hasta) {
-        List<Factura> facturas = new ArrayList<>();
-        for (Document doc : collection.find(Filters.and(
-            Filters.gte("fechaEmision", java.sql.Date.valueOf(desde)),
-            Filters.lte("fechaEmision", java.sql.Date.valueOf(hasta))
-        )).sort(Sorts.descending("fechaEmision"))) {
-            facturas.add(documentToFactura(doc));
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByFechaRange")) {
+            List<Factura> facturas = new ArrayList<>();
+            for (Document doc : collection().find(Filters.and(
+                Filters.gte("fechaEmision", java.sql.Date.valueOf(desde)),
+                Filters.lte("fechaEmision", java.sql.Date.valueOf(hasta))
+            )).sort(Sorts.descending("fechaEmision"))) {
+                Factura f = documentToFactura(doc);
+                if (f != null) {
+                    facturas.add(f);
+                }
+            }
+            return facturas;
+        }
+    }
+    
+    /**
+     * Recorre las facturas emitidas en el rango sin cargarlas todas en memoria: el cursor
+     * avanza al ritmo al que {@code action} las consume
+     */
+    public void forEachByFechaRange(LocalDate desde, LocalDate hasta, Consumer<Factura> action) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "forEachByFechaRange")) {
+            for (Document doc : collection().find(Filters.and(
+                Filters.gte("fechaEmision", java.sql.Date.valueOf(desde)),
+                Filters.lte("fechaEmision", java.sql.Date.valueOf(hasta))
+            )).sort(Sorts.ascending("numeroFactura")).batchSize(500)) {
+                Factura f = documentToFactura(doc);
+                if (f != null) {
+                    action.accept(f);
+                }
+            }
         }
-        return facturas;
     }
     
     /**
      * Búsqueda por texto
      */
     public List<Factura> search(String texto) {
-        List<Factura> facturas = new ArrayList<>();
-        String regex = ".*" + texto + ".*";
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "search")) {
+            String regex = ".*" + texto + ".*";
         
-        for (Document doc : collection.find(Filters.or(
-            Filters.regex("numeroFactura", regex, "i"),
-            Filters.regex("cliente.nombre", regex, "i"),
-            Filters.regex("cliente.nif", regex, "i")
-        ))) {
-            facturas.add(documentToFactura(doc));
+            List<Factura> facturas = CursorReader.read(rawCollection().find(Filters.or(
+                Filters.regex("numeroFactura", regex, "i"),
+                Filters.regex("cliente.nombre", regex, "i"),
+                Filters.regex("cliente.nif", regex, "i")
+            )), this::documentToFactura);
+            facturas.removeIf(Objects::isNull);
+            return facturas;
         }
-        return facturas;
     }
     
     /**
-     * Inserta una nueva factura
+     * Inserta una nueva factura. El {@code _id} se genera en el puesto: sin conexión el
+     * alta queda en el diario local ({@link Outbox}) con el mismo id.
      */
     public ObjectId insert(Factura factura) {
-        Document doc = facturaToDocument(factura);
-        InsertOneResult result = collection.insertOne(doc);
-        logger.info("Factura insertada: {}", result.getInsertedId());
-        return result.getInsertedId().asObjectId().getValue();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "insert")) {
+            if (factura.getId() == null) factura.setId(new ObjectId());
+            vincularCliente(factura);
+            Document doc = facturaToDocument(factura);
+            try {
+                if (Outbox.hayPendientes()) {
+                    Outbox.insert(COLLECTION_NAME, doc);
+                } else {
+                    collection().insertOne(doc);
+                    logger.info("Factura insertada: {}", factura.getId());
+                }
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+                Outbox.insert(COLLECTION_NAME, doc);
+            }
+            EventBus.publish(new FacturaChanged(factura.getId(), null, factura));
+            return factura.getId();
+        }
+    }
+    
+    /**
+     * Enlaza la ficha del cliente antes del alta. Sin conexión se deja sin enlazar: lo
+     * hace después MigracionClientes.
+     */
+    private void vincularCliente(Factura factura) {
+        if (factura.getClienteId() != null || Outbox.hayPendientes()) return;
+        try {
+            factura.setClienteId(clienteService.resolver(factura));
+        } catch (RuntimeException e) {
+            if (!Outbox.sinConexion(e)) throw e;
+        }
+    }
+    
+    /**
+     * Actualiza una factura existente si nadie la ha guardado desde que se leyó (misma
+     * {@code version}); si no, devuelve el conflicto sin escribir nada. Sin conexión el
+     * cambio queda en el diario local y se combina al enviarlo.
+     */
+    public UpdateOutcome<Factura> update(Factura factura) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "update")) {
+            factura.setFechaActualizacion(LocalDateTime.now());
+            Document doc = facturaToDocument(factura);
+            doc.remove("_id");
+            doc.remove("version");
+            long version = factura.getVersion();
+        
+            // $set en vez de reemplazar: conserva los campos que el modelo no lee (p. ej.
+            // fechaCreacion). Si la factura se leyó con findById, solo los campos que han cambiado.
+            Document snapshot = tracker.snapshot(factura);
+            if (Outbox.hayPendientes()) return enCola(factura, snapshot, doc);
+            Document update = snapshot != null ? ChangeTracker.diff(snapshot, doc) : new Document("$set", doc);
+            update.append("$inc", new Document("version", 1L));
+            tracker.record(update, doc);
+        
+            // Devuelve la versión anterior en la misma operación, para el evento
+            Document before;
+            try {
+                before = collection().findOneAndUpdate(ChangeTracker.sinCambios(factura.getId(), version), update);
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+                return enCola(factura, snapshot, doc);
+            }
+        
+            if (before == null) {
+                Document actual = collection().find(Filters.eq("_id", factura.getId())).first();
+                if (actual == null) return UpdateOutcome.noEncontrada();
+                logger.warn("⚠️ Factura {} modificada desde otro puesto (versión {} -> {})",
+                    factura.getNumeroFactura(), version, actual.get("version"));
+                return UpdateOutcome.conflicto(documentToFactura(actual),
+                    snapshot != null ? snapshot : new Document(), doc, actual);
+            }
+            factura.setVersion(version + 1);
+            tracker.track(factura, doc);
+            EventBus.publish(new FacturaChanged(factura.getId(), documentToFactura(before), factura));
+            return UpdateOutcome.actualizada(factura);
+        }
+    }
+    
+    /**
+     * Deja el cambio en el diario local; la factura pasa a la versión que tendrá al enviarse
+     */
+    private UpdateOutcome<Factura> enCola(Factura factura, Document snapshot, Document doc) {
+        Outbox.update(COLLECTION_NAME, factura.getId(), factura.getVersion(), snapshot, doc);
+        Factura before = snapshot != null
+            ? documentToFactura(ChangeTracker.normalize(snapshot).append("_id", factura.getId()))
+            : factura;
+        factura.setVersion(factura.getVersion() + 1);
+        tracker.track(factura, doc);
+        EventBus.publish(new FacturaChanged(factura.getId(), before, factura));
+        return UpdateOutcome.enCola(factura);
+    }
+    
+    /**
+     * Edición combinada tras un conflicto: la versión actual con los cambios propios,
+     * salvo los campos de {@code quedarseSuyos}. Se guarda con
+     * {@link #update(Factura)} (que puede volver a dar conflicto).
+     */
+    public Factura merge(UpdateOutcome<Factura> conflicto, Set<String> quedarseSuyos) {
+        Document combinado = ChangeTracker.merge(conflicto.base, conflicto.mio, conflicto.suyo, quedarseSuyos);
+        Factura merged = documentToFactura(combinado);
+        // La base pasa a ser la versión actual: update() enviará solo los cambios propios
+        tracker.track(merged, facturaToDocument(conflicto.getActual()));
+        return merged;
     }
     
     /**
-     * Actualiza una factura existente
+     * Marca como pagadas varias facturas con un solo {@code updateMany}. Las ya pagadas o
+     * anuladas no se tocan; se publica un cambio por cada factura modificada. Si otro
+     * puesto ha cambiado alguna entre la lectura y el {@code updateMany}, los cambios se
+     * publican con lo que quedó guardado.
+     *
+     * @throws IllegalStateException si alguna tiene cambios sin enviar ({@link Outbox})
      */
-    public boolean update(Factura factura) {
-        factura.setFechaActualizacion(LocalDateTime.now());
-        Document doc = facturaToDocument(factura);
-        doc.remove("_id");
+    public BulkOutcome marcarPagadasBulk(Collection<ObjectId> ids, MetodoPago metodoPago) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "marcarPagadasBulk")) {
+            Set<ObjectId> solicitadas = new LinkedHashSet<>(ids);
+            if (solicitadas.isEmpty()) return new BulkOutcome(0, 0, 0, 0);
+            Outbox.exigirEnviadas(solicitadas, "factura(s)");
+            List<String> cerradas = List.of(EstadoFactura.PAGADA.name(), EstadoFactura.ANULADA.name());
+        
+            // Estado anterior para los eventos: una lectura para todas
+            List<Document> candidatas = new ArrayList<>();
+            int encontradas = 0;
+            for (Document doc : collection().find(Filters.in("_id", solicitadas))) {
+                encontradas++;
+                Factura factura = documentToFactura(doc);
+                if (factura != null && (factura.getEstado() == null || !cerradas.contains(factura.getEstado().name()))) {
+                    candidatas.add(doc);
+                }
+            }
+            if (candidatas.isEmpty()) {
+                return new BulkOutcome(solicitadas.size(), 0, encontradas, solicitadas.size() - encontradas);
+            }
         
-        UpdateResult result = collection.replaceOne(
-            Filters.eq("_id", factura.getId()),
-            doc
-        );
+            LocalDateTime ahora = LocalDateTime.now();
+            List<ObjectId> candidatasIds = new ArrayList<>();
+            candidatas.forEach(doc -> candidatasIds.add(doc.getObjectId("_id")));
+            // Los documentos antiguos guardan el estado en estadoFactura: se pasa a estado
+            UpdateResult result = collection().updateMany(
+                Filters.and(Filters.in("_id", candidatasIds),
+                    Filters.nin("estado", cerradas), Filters.nin("estadoFactura", cerradas)),
+                Updates.combine(
+                    Updates.inc("version", 1L),
+                    Updates.set("estado", EstadoFactura.PAGADA.name()),
+                    Updates.unset("estadoFactura"),
+                    Updates.set("metodoPago", metodoPago.name()),
+                    Updates.set("fechaActualizacion", Date.from(ahora.atZone(ZoneId.systemDefault()).toInstant()))
+                )
+            );
+            logger.info("Facturas marcadas como pagadas: {} de {}", result.getModifiedCount(), solicitadas.size());
         
-        return result.getModifiedCount() > 0;
+            if (result.getModifiedCount() < candidatas.size()) {
+                publicarGuardadas(candidatas, candidatasIds);
+            } else {
+                for (Document before : candidatas) {
+                    Factura after = documentToFactura(before);
+                    after.setEstado(EstadoFactura.PAGADA);
+                    after.setMetodoPago(metodoPago);
+                    after.setFechaActualizacion(ahora);
+                    after.setVersion(after.getVersion() + 1);
+                    EventBus.publish(new FacturaChanged(after.getId(), documentToFactura(before), after));
+                }
+            }
+            return new BulkOutcome(solicitadas.size(), result.getModifiedCount(),
+                encontradas - candidatas.size(), solicitadas.size() - encontradas);
+        }
+    }
+    
+    /**
+     * Parte del {@code updateMany} no se aplicó: se vuelven a leer las candidatas y se
+     * publica lo guardado de las que han cambiado (por este puesto o por otro)
+     */
+    private void publicarGuardadas(List<Document> candidatas, List<ObjectId> candidatasIds) {
+        Map<Object, Document> guardadas = new HashMap<>();
+        for (Document doc : collection().find(Filters.in("_id", candidatasIds))) {
+            guardadas.put(doc.get("_id"), doc);
+        }
+        for (Document before : candidatas) {
+            Document guardada = guardadas.get(before.get("_id"));
+            if (guardada != null && Objects.equals(guardada.get("version"), before.get("version"))) continue;
+            EventBus.publish(new FacturaChanged(before.getObjectId("_id"), documentToFactura(before),
+                guardada != null ? documentToFactura(guardada) : null));
+        }
     }
     
     /**
      * Elimina una factura
+     *
+     * @throws IllegalStateException si tiene cambios sin enviar ({@link Outbox})
      */
     public boolean delete(ObjectId id) {
-        DeleteResult result = collection.deleteOne(Filters.eq("_id", id));
-        return result.getDeletedCount() > 0;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "delete")) {
+            Outbox.exigirEnviadas(List.of(id), "factura(s)");
+            Document before = collection().findOneAndDelete(Filters.eq("_id", id));
+            if (before == null) return false;
+            EventBus.publish(new FacturaChanged(id, documentToFactura(before), null));
+            return true;
+        }
+    }
+    
+    /**
+     * Número para una factura nueva: el siguiente si hay conexión; si no, uno provisional
+     * ({@code FAC-2026-P…}) que se cambia por el definitivo al enviar el alta
+     */
+    public String reservarNumero() {
+        if (!Outbox.hayPendientes()) {
+            try {
+                return generateNextNumero();
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+            }
+        }
+        return Outbox.numeroProvisional("FAC-" + LocalDate.now().getYear() + "-");
     }
     
     /**
      * Genera el próximo número de factura
      */
     public String generateNextNumero() {
-        int year = LocalDate.now().getYear();
-        String prefix = "FAC-" + year + "-";
-        
-        Document lastDoc = collection.find(Filters.regex("numeroFactura", "^" + prefix))
-            .sort(Sorts.descending("numeroFactura"))
-            .first();
-        
-        int nextNumber = 1;
-        if (lastDoc != null) {
-            String lastNumero = lastDoc.getString("numeroFactura");
-            String[] parts = lastNumero.split("-");
-            nextNumber = Integer.parseInt(parts[2]) + 1;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "generateNextNumero")) {
+            return Numeracion.siguiente(collection(), "numeroFactura", "FAC-" + LocalDate.now().getYear() + "-");
         }
-        
-        return String.format("%s%04d", prefix, nextNumber);
     }
     
     /**
      * Obtiene totales por estado
      */
     public Map<EstadoFactura, Double> getTotalesByEstado() {
-        Map<EstadoFactura, Double> totales = new HashMap<>();
-        
-        for (EstadoFactura estado : EstadoFactura.values()) {
-            double total = 0;
-            for (Document doc : collection.find(Filters.eq("estado", estado.name()))) {
-                Object docTotal = doc.get("total");
-                if (docTotal instanceof Number) {
-                    total += ((Number) docTotal).doubleValue();
-                }
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "getTotalesByEstado")) {
+            FacturaAnalytics snapshot = AnalyticsStore.facturas();
+            if (snapshot != null) {
+                Map<EstadoFactura, Double> totales = new HashMap<>();
+                snapshot.totalesPorEstado().forEach((estado, centimos) -> totales.put(estado, Dinero.aEuros(centimos)));
+                return totales;
             }
-            totales.put(estado, total);
+            return cache.get("getTotalesByEstado", () -> {
+                Map<EstadoFactura, Double> totales = new HashMap<>();
+            
+                for (EstadoFactura estado : EstadoFactura.values()) {
+                    long centimos = FacturaMapper.sumTotales(collection().find(Filters.eq("estado", estado.name()))
+                        .projection(Projections.include("total")));
+                    totales.put(estado, Dinero.aEuros(centimos));
+                }
+            
+                return totales;
+            });
         }
-        
-        return totales;
     }
     
     /**
      * Obtiene facturación por mes del año actual
      */
     public Map<Integer, Double> getFacturacionPorMes() {
-        Map<Integer, Double> facturacion = new LinkedHashMap<>();
-        
-        // Inicializar todos los meses
-        for (int i = 1; i <= 12; i++) {
-            facturacion.put(i, 0.0);
-        }
-        
-        int year = LocalDate.now().getYear();
-        LocalDate inicioAno = LocalDate.of(year, 1, 1);
-        LocalDate finAno = LocalDate.of(year, 12, 31);
-        
-        for (Document doc : collection.find(Filters.and(
-            Filters.eq("estado", "PAGADA"),
-            Filters.gte("fechaEmision", java.sql.Date.valueOf(inicioAno)),
-            Filters.lte("fechaEmision", java.sql.Date.valueOf(finAno))
-        ))) {
-            Date fecha = doc.getDate("fechaEmision");
-            if (fecha != null) {
-                int mes = fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().getMonthValue();
-                Object total = doc.get("total");
-                if (total instanceof Number) {
-                    facturacion.put(mes, facturacion.get(mes) + ((Number) total).doubleValue());
-                }
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "getFacturacionPorMes")) {
+            FacturaAnalytics snapshot = AnalyticsStore.facturas();
+            if (snapshot != null) {
+                Map<Integer, Double> facturacion = new LinkedHashMap<>();
+                snapshot.facturacionPorMes(YearMonth.of(LocalDate.now().getYear(), 1), 12, EstadoFactura.PAGADA)
+                    .forEach((mes, centimos) -> facturacion.put(mes.getMonthValue(), Dinero.aEuros(centimos)));
+                return facturacion;
             }
+            return cache.get("getFacturacionPorMes", () -> {
+                // Suma en céntimos por mes (índice 1..12)
+                long[] centimos = new long[13];
+            
+                int year = LocalDate.now().getYear();
+                LocalDate inicioAno = LocalDate.of(year, 1, 1);
+                LocalDate finAno = LocalDate.of(year, 12, 31);
+            
+                for (Document doc : collection().find(Filters.and(
+                    Filters.eq("estado", "PAGADA"),
+                    Filters.gte("fechaEmision", java.sql.Date.valueOf(inicioAno)),
+                    Filters.lte("fechaEmision", java.sql.Date.valueOf(finAno))
+                )).projection(Projections.include("fechaEmision", "total"))) {
+                    Date fecha = doc.getDate("fechaEmision");
+                    if (fecha != null) {
+                        int mes = fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().getMonthValue();
+                        centimos[mes] += Dinero.deBson(doc.get("total"));
+                    }
+                }
+            
+                Map<Integer, Double> facturacion = new LinkedHashMap<>();
+                for (int i = 1; i <= 12; i++) {
+                    facturacion.put(i, Dinero.aEuros(centimos[i]));
+                }
+                return facturacion;
+            });
         }
-        
-        return facturacion;
     }
     
     /**
      * Cuenta total de facturas
      */
     public long countTotal() {
-        return collection.countDocuments();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "countTotal")) {
+            FacturaAnalytics snapshot = AnalyticsStore.facturas();
+            if (snapshot != null) return snapshot.count();
+            return cache.get("countTotal", () -> collection().countDocuments());
+        }
     }
     
     /**
      * Suma total facturado (facturas pagadas)
      */
     public double getTotalFacturado() {
-        double total = 0;
-        for (Document doc : collection.find(Filters.eq("estado", "PAGADA"))) {
-            Object docTotal = doc.get("total");
-            if (docTotal instanceof Number) {
-                total += ((Number) docTotal).doubleValue();
-            }
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "getTotalFacturado")) {
+            return Dinero.aEuros(totalFacturadoCentimos());
         }
-        return total;
+    }
+    
+    /**
+     * Suma exacta en céntimos de las facturas pagadas
+     */
+    public long getTotalFacturadoCentimos() {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "getTotalFacturadoCentimos")) {
+            return totalFacturadoCentimos();
+        }
+    }
+    
+    private long totalFacturadoCentimos() {
+        FacturaAnalytics snapshot = AnalyticsStore.facturas();
+        if (snapshot != null) return snapshot.totalFacturado();
+        return cache.get("getTotalFacturado", () -> FacturaMapper.sumTotales(
+            collection().find(Filters.eq("estado", "PAGADA")).projection(Projections.include("total"))));
     }
     
     // Conversión Document -> Factura
     private Factura documentToFactura(Document doc) {
+        DocumentMappingEvent event = new DocumentMappingEvent(COLLECTION_NAME);
+        event.begin();
         try {
-            Factura f = new Factura();
-            f.setId(doc.getObjectId("_id"));
-            f.setNumeroFactura(doc.getString("numeroFactura"));
-            f.setGarantiaId(doc.getObjectId("garantiaId"));
-            f.setNotas(doc.getString("notas"));
-            
-            // Subtotales y totales - usar Number para manejar Integer y Double
-            Number subtotal = (Number) doc.get("subtotal");
-            Number totalIVA = (Number) doc.get("totalIVA");
-            Number total = (Number) doc.get("total");
-            f.setSubtotal(subtotal != null ? subtotal.doubleValue() : 0.0);
-            f.setTotalIVA(totalIVA != null ? totalIVA.doubleValue() : 0.0);
-            f.setTotal(total != null ? total.doubleValue() : 0.0);
-            
-            // Estado y método de pago
-            String estadoStr = doc.getString("estadoFactura");
-            if (estadoStr == null) estadoStr = doc.getString("estado");
-            if (estadoStr != null) {
-                try {
-                    f.setEstado(EstadoFactura.valueOf(estadoStr));
-                } catch (IllegalArgumentException e) {
-                    logger.warn("Estado no reconocido: {}", estadoStr);
-                }
-            }
-            String metodoStr = doc.getString("metodoPago");
-            if (metodoStr != null) {
-                try {
-                    f.setMetodoPago(Factura.MetodoPago.valueOf(metodoStr));
-                } catch (IllegalArgumentException e) {
-                    logger.warn("Método de pago no reconocido: {}", metodoStr);
-                }
-            }
-            
-            // Cliente
-            Document clienteDoc = doc.get("cliente", Document.class);
-            if (clienteDoc != null) {
-                Factura.DatosCliente cliente = new Factura.DatosCliente(
-                    clienteDoc.getString("nombre"),
-                    clienteDoc.getString("nif"),
-                    clienteDoc.getString("direccion")
-                );
-                f.setCliente(cliente);
-            }
-            
-            // Items
-            List<Document> itemDocs = doc.getList("items", Document.class);
-            if (itemDocs != null) {
-                List<Factura.ItemFactura> items = new ArrayList<>();
-                for (Document itemDoc : itemDocs) {
-                    Factura.ItemFactura item = new Factura.ItemFactura();
-                    item.setDescripcion(itemDoc.getString("descripcion"));
-                    
-                    // Manejar cantidad como Number
-                    Number cantidad = (Number) itemDoc.get("cantidad");
-                    item.setCantidad(cantidad != null ? cantidad.intValue() : 0);
-                    
-                    // Manejar precioUnitario como Number
-                    Number precioUnit = (Number) itemDoc.get("precioUnitario");
-                    item.setPrecioUnitario(precioUnit != null ? precioUnit.doubleValue() : 0.0);
-                    
-                    // Manejar IVA como Number
-                    Number iva = (Number) itemDoc.get("iva");
-                    item.setIva(iva != null ? iva.intValue() : 21);
-                    
-                    // Manejar total como Number
-                    Number totalItem = (Number) itemDoc.get("total");
-                    item.setTotal(totalItem != null ? totalItem.doubleValue() : 0.0);
-                    
-                    items.add(item);
-                }
-                f.setItems(items);
-            }
-            
-            // Fechas
-            Date fechaEmision = doc.getDate("fechaEmision");
-            if (fechaEmision != null) {
-                f.setFechaEmision(fechaEmision.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+            return FacturaMapper.toFactura(doc);
+        } finally {
+            if (event.shouldCommit()) {
+                event.setDocumentId(String.valueOf(doc.get("_id")));
+                event.commit();
             }
-            
-            logger.debug("Factura convertida: {}", f.getNumeroFactura());
-            return f;
-        } catch (Exception e) {
-            logger.error("Error convirtiendo documento a factura: {}", e.getMessage(), e);
-            return null;
         }
     }
     
     // Conversión Factura -> Document
     private Document facturaToDocument(Factura f) {
-        Document doc = new Document();
-        
-        if (f.getId() != null) {
-            doc.append("_id", f.getId());
-        }
-        doc.append("numeroFactura", f.getNumeroFactura());
-        if (f.getGarantiaId() != null) {
-            doc.append("garantiaId", f.getGarantiaId());
-        }
-        doc.append("subtotal", f.getSubtotal());
-        doc.append("totalIVA", f.getTotalIVA());
-        doc.append("total", f.getTotal());
-        doc.append("estado", f.getEstado() != null ? f.getEstado().name() : null);
-        doc.append("metodoPago", f.getMetodoPago() != null ? f.getMetodoPago().name() : null);
-        doc.append("notas", f.getNotas());
-        
-        // Cliente
-        if (f.getCliente() != null) {
-            doc.append("cliente", new Document()
-                .append("nombre", f.getCliente().getNombre())
-                .append("nif", f.getCliente().getNif())
-                .append("direccion", f.getCliente().getDireccion())
-            );
-        }
-        
-        // Items
-        if (f.getItems() != null) {
-            List<Document> itemDocs = new ArrayList<>();
-            for (Factura.ItemFactura item : f.getItems()) {
-                itemDocs.add(new Document()
-                    .append("descripcion", item.getDescripcion())
-                    .append("cantidad", item.getCantidad())
-                    .append("precioUnitario", item.getPrecioUnitario())
-                    .append("iva", item.getIva())
-                    .append("total", item.getTotal())
-                );
-            }
-            doc.append("items", itemDocs);
-        }
-        
-        // Fechas
-        if (f.getFechaEmision() != null) {
-            doc.append("fechaEmision", java.sql.Date.valueOf(f.getFechaEmision()));
-        }
-        if (f.getFechaCreacion() != null) {
-            doc.append("fechaCreacion", Date.from(f.getFechaCreacion().atZone(ZoneId.systemDefault()).toInstant()));
-        }
-        if (f.getFechaActualizacion() != null) {
-            doc.append("fechaActualizacion", Date.from(f.getFechaActualizacion().atZone(ZoneId.systemDefault()).toInstant()));
-        }
-        
-        return doc;
+        return FacturaMapper.toDocument(f);
     }
 }
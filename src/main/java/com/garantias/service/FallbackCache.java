@@ -0,0 +1,48 @@
+package com.garantias.service;
+
+import com.garantias.config.DatabaseUnavailableException;
+import com.mongodb.MongoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Último resultado conocido de las lecturas que alimentan las vistas.
+ * Si MongoDB no está disponible se devuelve el valor cacheado en lugar de fallar.
+ */
+class FallbackCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackCache.class);
+
+    private final String name;
+    private final Map<String, Object> lastKnown = new ConcurrentHashMap<>();
+
+    FallbackCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Ejecuta la lectura y guarda el resultado; si falla por falta de conexión
+     * devuelve el último resultado guardado (si existe) o relanza el error
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, Supplier<T> loader) {
+        try {
+            T value = loader.get();
+            if (value != null) {
+                lastKnown.put(key, value);
+            }
+            return value;
+        } catch (DatabaseUnavailableException | MongoException e) {
+            Object cached = lastKnown.get(key);
+            if (cached == null) {
+                throw e;
+            }
+            logger.warn("MongoDB no disponible, usando datos en caché para {}.{}", name, key);
+            return (T) cached;
+        }
+    }
+}
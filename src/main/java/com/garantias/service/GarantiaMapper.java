@@ -0,0 +1,223 @@
+package com.garantias.service;
+
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import org.bson.Document;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Conversión entre {@link Garantia} y su documento de MongoDB.
+ * <p>
+ * {@code historialReparaciones} y {@code numeroReparaciones} se leen pero no se escriben:
+ * solo los modifica {@link ReparacionService}, para que guardar una garantía no pise una
+ * reparación registrada entre medias.
+ */
+public final class GarantiaMapper {
+    
+    private GarantiaMapper() {}
+    
+    /**
+     * Conversión Document -> Garantia
+     */
+    public static Garantia toGarantia(Document doc) {
+        Garantia g = new Garantia();
+        g.setId(doc.getObjectId("_id"));
+        g.setNumeroGarantia(doc.getString("numeroGarantia"));
+        g.setNotas(doc.getString("notas"));
+        g.setCreadoPor(doc.getString("creadoPor"));
+        g.setFacturaId(doc.getObjectId("facturaId"));
+        g.setClienteId(doc.getObjectId("clienteId"));
+        
+        // Cliente
+        Document clienteDoc = doc.get("cliente", Document.class);
+        if (clienteDoc != null) {
+            Garantia.Cliente cliente = new Garantia.Cliente(
+                clienteDoc.getString("nombre"),
+                clienteDoc.getString("telefono"),
+                clienteDoc.getString("email"),
+                clienteDoc.getString("direccion")
+            );
+            g.setCliente(cliente);
+        }
+        
+        // Aire Acondicionado
+        Document aireDoc = doc.get("aireAcondicionado", Document.class);
+        if (aireDoc != null) {
+            Garantia.AireAcondicionado aire = new Garantia.AireAcondicionado();
+            aire.setMarca(aireDoc.getString("marca"));
+            aire.setModelo(aireDoc.getString("modelo"));
+            aire.setNumeroSerie(aireDoc.getString("numeroSerie"));
+            aire.setTipoRefrigerante(aireDoc.getString("tipoRefrigerante"));
+            aire.setPotenciaBTU(aireDoc.getInteger("potenciaBTU"));
+            Date fechaInst = aireDoc.getDate("fechaInstalacion");
+            if (fechaInst != null) {
+                aire.setFechaInstalacion(fechaInst.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+            }
+            g.setAireAcondicionado(aire);
+        }
+        
+        // Detalles garantía
+        Document garDoc = doc.get("garantia", Document.class);
+        if (garDoc != null) {
+            Garantia.DetalleGarantia detalle = new Garantia.DetalleGarantia();
+            Date fechaInicio = garDoc.getDate("fechaInicio");
+            Date fechaFin = garDoc.getDate("fechaFin");
+            if (fechaInicio != null) {
+                detalle.setFechaInicio(fechaInicio.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+            }
+            if (fechaFin != null) {
+                detalle.setFechaFin(fechaFin.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+            }
+            detalle.setDuracionMeses(garDoc.getInteger("duracionMeses"));
+            String tipoStr = garDoc.getString("tipo");
+            if (tipoStr != null) {
+                detalle.setTipo(Garantia.TipoGarantia.valueOf(tipoStr));
+            }
+            String estadoStr = garDoc.getString("estado");
+            if (estadoStr != null) {
+                detalle.setEstado(EstadoGarantia.valueOf(estadoStr));
+            }
+            detalle.setCobertura(garDoc.getList("cobertura", String.class));
+            g.setGarantia(detalle);
+        }
+        
+        // Últimas reparaciones
+        List<Document> reparaciones = doc.getList("historialReparaciones", Document.class);
+        if (reparaciones != null) {
+            List<Garantia.Reparacion> historial = new ArrayList<>(reparaciones.size());
+            for (Document r : reparaciones) {
+                Garantia.Reparacion reparacion = toReparacion(r);
+                reparacion.setGarantiaId(g.getId());
+                historial.add(reparacion);
+            }
+            g.setHistorialReparaciones(historial);
+        }
+        Integer numeroReparaciones = doc.getInteger("numeroReparaciones");
+        g.setNumeroReparaciones(numeroReparaciones != null ? numeroReparaciones : g.getHistorialReparaciones().size());
+        
+        // Fechas
+        Date fechaCreacion = doc.getDate("fechaCreacion");
+        if (fechaCreacion != null) {
+            g.setFechaCreacion(fechaCreacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        }
+        Date fechaActualizacion = doc.getDate("fechaActualizacion");
+        if (fechaActualizacion != null) {
+            g.setFechaActualizacion(fechaActualizacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        }
+        // Sin campo (documentos anteriores al control de versiones) cuenta como 0
+        Number version = doc.get("version", Number.class);
+        g.setVersion(version != null ? version.longValue() : 0);
+        
+        return g;
+    }
+    
+    /**
+     * Conversión Garantia -> Document
+     */
+    public static Document toDocument(Garantia g) {
+        Document doc = new Document();
+        
+        if (g.getId() != null) {
+            doc.append("_id", g.getId());
+        }
+        doc.append("numeroGarantia", g.getNumeroGarantia());
+        doc.append("notas", g.getNotas());
+        doc.append("creadoPor", g.getCreadoPor());
+        if (g.getFacturaId() != null) {
+            doc.append("facturaId", g.getFacturaId());
+        }
+        if (g.getClienteId() != null) {
+            doc.append("clienteId", g.getClienteId());
+        }
+        
+        // Cliente
+        if (g.getCliente() != null) {
+            doc.append("cliente", new Document()
+                .append("nombre", g.getCliente().getNombre())
+                .append("telefono", g.getCliente().getTelefono())
+                .append("email", g.getCliente().getEmail())
+                .append("direccion", g.getCliente().getDireccion())
+            );
+        }
+        
+        // Aire Acondicionado
+        if (g.getAireAcondicionado() != null) {
+            Document aireDoc = new Document()
+                .append("marca", g.getAireAcondicionado().getMarca())
+                .append("modelo", g.getAireAcondicionado().getModelo())
+                .append("numeroSerie", g.getAireAcondicionado().getNumeroSerie())
+                .append("tipoRefrigerante", g.getAireAcondicionado().getTipoRefrigerante())
+                .append("potenciaBTU", g.getAireAcondicionado().getPotenciaBTU());
+            if (g.getAireAcondicionado().getFechaInstalacion() != null) {
+                aireDoc.append("fechaInstalacion", java.sql.Date.valueOf(g.getAireAcondicionado().getFechaInstalacion()));
+            }
+            doc.append("aireAcondicionado", aireDoc);
+        }
+        
+        // Detalles garantía
+        if (g.getGarantia() != null) {
+            Document garDoc = new Document()
+                .append("duracionMeses", g.getGarantia().getDuracionMeses())
+                .append("tipo", g.getGarantia().getTipo() != null ? g.getGarantia().getTipo().name() : null)
+                .append("estado", g.getGarantia().getEstado() != null ? g.getGarantia().getEstado().name() : null)
+                .append("cobertura", g.getGarantia().getCobertura());
+            if (g.getGarantia().getFechaInicio() != null) {
+                garDoc.append("fechaInicio", java.sql.Date.valueOf(g.getGarantia().getFechaInicio()));
+            }
+            if (g.getGarantia().getFechaFin() != null) {
+                garDoc.append("fechaFin", java.sql.Date.valueOf(g.getGarantia().getFechaFin()));
+            }
+            doc.append("garantia", garDoc);
+        }
+        
+        // Fechas
+        if (g.getFechaCreacion() != null) {
+            doc.append("fechaCreacion", Date.from(g.getFechaCreacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        if (g.getFechaActualizacion() != null) {
+            doc.append("fechaActualizacion", Date.from(g.getFechaActualizacion().atZone(ZoneId.systemDefault()).toInstant()));
+        }
+        doc.append("version", g.getVersion());
+        
+        return doc;
+    }
+    
+    /**
+     * Conversión Document -> Reparacion (de la colección reparaciones o del historial embebido)
+     */
+    public static Garantia.Reparacion toReparacion(Document doc) {
+        Garantia.Reparacion r = new Garantia.Reparacion();
+        r.setId(doc.getObjectId("_id"));
+        r.setGarantiaId(doc.getObjectId("garantiaId"));
+        Date fecha = doc.getDate("fecha");
+        if (fecha != null) {
+            r.setFecha(fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+        }
+        r.setDescripcion(doc.getString("descripcion"));
+        r.setTecnico(doc.getString("tecnico"));
+        Number costo = doc.get("costo", Number.class);
+        r.setCosto(costo != null ? costo.doubleValue() : null);
+        return r;
+    }
+    
+    /**
+     * Conversión Reparacion -> Document, tal como se embebe en la garantía (sin garantiaId)
+     */
+    public static Document toDocument(Garantia.Reparacion r) {
+        Document doc = new Document();
+        if (r.getId() != null) {
+            doc.append("_id", r.getId());
+        }
+        if (r.getFecha() != null) {
+            doc.append("fecha", Date.from(r.getFecha().atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        }
+        doc.append("descripcion", r.getDescripcion());
+        doc.append("tecnico", r.getTecnico());
+        doc.append("costo", r.getCosto());
+        return doc;
+    }
+}
@@ -1,16 +1,22 @@
 package com.garantias.service;
 
+import com.garantias.analytics.AnalyticsStore;
+import com.garantias.analytics.GarantiaAnalytics;
 import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.GarantiaChanged;
 import com.garantias.model.Garantia;
 import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
+import com.garantias.profiling.DocumentMappingEvent;
+import com.garantias.snapshot.LocalSnapshot;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.Updates;
-import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.InsertOneResult;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.slf4j.Logger;
@@ -29,334 +35,503 @@ public class GarantiaService {
     private static final Logger logger = LoggerFactory.getLogger(GarantiaService.class);
     private static final String COLLECTION_NAME = "garantias";
     
-    private MongoCollection<Document> collection;
+    private static final FallbackCache cache = new FallbackCache(COLLECTION_NAME);
+    private static final ChangeTracker tracker = new ChangeTracker(COLLECTION_NAME);
+    
+    private final ClienteService clienteService = new ClienteService();
     
     public GarantiaService() {
-        this.collection = MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+        // La colección se resuelve en cada operación: crear el servicio no requiere conexión
+    }
+    
+    private MongoCollection<Document> collection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+    }
+    
+    // Listados: se leen sin convertir y se pasan a modelo en paralelo (ver CursorReader)
+    private MongoCollection<RawBsonDocument> rawCollection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME, RawBsonDocument.class);
     }
     
     /**
      * Obtiene todas las garantías
      */
     public List<Garantia> findAll() {
-        List<Garantia> garantias = new ArrayList<>();
-        for (Document doc : collection.find().sort(Sorts.descending("fechaCreacion"))) {
-            garantias.add(documentToGarantia(doc));
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findAll")) {
+            return cache.get("findAll", () -> CursorReader.read(
+                rawCollection().find().sort(Sorts.descending("fechaCreacion")), this::documentToGarantia));
+        }
+    }
+    
+    /**
+     * Filas resumidas de la copia local, sin consultar MongoDB (vacía si no hay copia)
+     */
+    public List<Garantia> findAllLocal() {
+        return LocalSnapshot.garantias();
+    }
+    
+    /**
+     * Listado de la tabla: sincroniza la copia local con los cambios desde la última vez y
+     * devuelve sus filas resumidas. Sin copia local devuelve {@link #findAll()}.
+     */
+    public List<Garantia> findAllResumen() {
+        if (!LocalSnapshot.isStarted()) return findAll();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findAllResumen")) {
+            return LocalSnapshot.syncGarantias();
         }
-        return garantias;
     }
     
     /**
      * Busca garantía por ID
      */
     public Garantia findById(ObjectId id) {
-        Document doc = collection.find(Filters.eq("_id", id)).first();
-        return doc != null ? documentToGarantia(doc) : null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findById")) {
+            Document doc = collection().find(Filters.eq("_id", id)).first();
+            if (doc == null) return null;
+            // Se carga para ver o editar: update() enviará solo lo que cambie
+            Garantia garantia = documentToGarantia(doc);
+            tracker.track(garantia, garantiaToDocument(garantia));
+            return garantia;
+        }
     }
     
     /**
      * Busca garantía por número
      */
     public Garantia findByNumero(String numeroGarantia) {
-        Document doc = collection.find(Filters.eq("numeroGarantia", numeroGarantia)).first();
-        return doc != null ? documentToGarantia(doc) : null;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByNumero")) {
+            Document doc = collection().find(Filters.eq("numeroGarantia", numeroGarantia)).first();
+            return doc != null ? documentToGarantia(doc) : null;
+        }
+    }
+    
+    /**
+     * Garantías de un cliente (índice por {@code clienteId}), las más recientes primero
+     */
+    public List<Garantia> findByCliente(ObjectId clienteId) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByCliente")) {
+            return CursorReader.read(rawCollection().find(Filters.eq("clienteId", clienteId))
+                .sort(Sorts.descending("fechaCreacion")), this::documentToGarantia);
+        }
     }
     
     /**
      * Busca garantías por estado
      */
     public List<Garantia> findByEstado(EstadoGarantia estado) {
-        List<Garantia> garantias = new ArrayList<>();
-        for (Document doc : collection.find(Filters.eq("garantia.estado", estado.name()))) {
-            garantias.add(documentToGarantia(doc));
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByEstado")) {
+            return CursorReader.read(
+                rawCollection().find(Filters.eq("garantia.estado", estado.name())), this::documentToGarantia);
         }
-        return garantias;
     }
     
     /**
      * Busca garantías próximas a vencer (30 días por defecto)
      */
     public List<Garantia> findProximasAVencer(int dias) {
-        LocalDate hoy = LocalDate.now();
-        LocalDate limite = hoy.plusDays(dias);
-        
-        List<Garantia> garantias = new ArrayList<>();
-        Bson filter = Filters.and(
-            Filters.eq("garantia.estado", "ACTIVA"),
-            Filters.gte("garantia.fechaFin", java.sql.Date.valueOf(hoy)),
-            Filters.lte("garantia.fechaFin", java.sql.Date.valueOf(limite))
-        );
-        
-        for (Document doc : collection.find(filter).sort(Sorts.ascending("garantia.fechaFin"))) {
-            garantias.add(documentToGarantia(doc));
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findProximasAVencer")) {
+            return cache.get("findProximasAVencer:" + dias, () -> {
+                LocalDate hoy = LocalDate.now();
+                LocalDate limite = hoy.plusDays(dias);
+            
+                List<Garantia> garantias = new ArrayList<>();
+                Bson filter = Filters.and(
+                    Filters.eq("garantia.estado", "ACTIVA"),
+                    Filters.gte("garantia.fechaFin", java.sql.Date.valueOf(hoy)),
+                    Filters.lte("garantia.fechaFin", java.sql.Date.valueOf(limite))
+                );
+            
+                for (Document doc : collection().find(filter).sort(Sorts.ascending("garantia.fechaFin"))) {
+                    garantias.add(documentToGarantia(doc));
+                }
+                return garantias;
+            });
         }
-        return garantias;
     }
     
     /**
      * Búsqueda por texto (cliente, número serie, etc.)
      */
     public List<Garantia> search(String texto) {
-        List<Garantia> garantias = new ArrayList<>();
-        String regex = ".*" + texto + ".*";
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "search")) {
+            String regex = ".*" + texto + ".*";
         
-        Bson filter = Filters.or(
-            Filters.regex("numeroGarantia", regex, "i"),
-            Filters.regex("cliente.nombre", regex, "i"),
-            Filters.regex("cliente.telefono", regex, "i"),
-            Filters.regex("aireAcondicionado.numeroSerie", regex, "i"),
-            Filters.regex("aireAcondicionado.marca", regex, "i")
-        );
+            Bson filter = Filters.or(
+                Filters.regex("numeroGarantia", regex, "i"),
+                Filters.regex("cliente.nombre", regex, "i"),
+                Filters.regex("cliente.telefono", regex, "i"),
+                Filters.regex("aireAcondicionado.numeroSerie", regex, "i"),
+                Filters.regex("aireAcondicionado.marca", regex, "i")
+            );
         
-        for (Document doc : collection.find(filter)) {
-            garantias.add(documentToGarantia(doc));
+            return CursorReader.read(rawCollection().find(filter), this::documentToGarantia);
         }
-        return garantias;
     }
     
     /**
-     * Inserta una nueva garantía
+     * Inserta una nueva garantía. El {@code _id} se genera en el puesto: sin conexión el
+     * alta queda en el diario local ({@link Outbox}) con el mismo id.
      */
     public ObjectId insert(Garantia garantia) {
-        Document doc = garantiaToDocument(garantia);
-        InsertOneResult result = collection.insertOne(doc);
-        logger.info("Garantía insertada: {}", result.getInsertedId());
-        return result.getInsertedId().asObjectId().getValue();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "insert")) {
+            if (garantia.getId() == null) garantia.setId(new ObjectId());
+            vincularCliente(garantia);
+            Document doc = garantiaToDocument(garantia);
+            try {
+                if (Outbox.hayPendientes()) {
+                    Outbox.insert(COLLECTION_NAME, doc);
+                } else {
+                    collection().insertOne(doc);
+                    logger.info("Garantía insertada: {}", garantia.getId());
+                }
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+                Outbox.insert(COLLECTION_NAME, doc);
+            }
+            EventBus.publish(new GarantiaChanged(garantia.getId(), null, garantia));
+            return garantia.getId();
+        }
+    }
+    
+    /**
+     * Enlaza la ficha del cliente antes del alta. Sin conexión se deja sin enlazar: lo
+     * hace después MigracionClientes.
+     */
+    private void vincularCliente(Garantia garantia) {
+        if (garantia.getClienteId() != null || Outbox.hayPendientes()) return;
+        try {
+            garantia.setClienteId(clienteService.resolver(garantia));
+        } catch (RuntimeException e) {
+            if (!Outbox.sinConexion(e)) throw e;
+        }
     }
     
     /**
-     * Actualiza una garantía existente
+     * Actualiza una garantía existente si nadie la ha guardado desde que se leyó (misma
+     * {@code version}); si no, devuelve el conflicto sin escribir nada. Sin conexión el
+     * cambio queda en el diario local y se combina al enviarlo.
      */
-    public boolean update(Garantia garantia) {
-        garantia.setFechaActualizacion(LocalDateTime.now());
-        Document doc = garantiaToDocument(garantia);
-        doc.remove("_id");
+    public UpdateOutcome<Garantia> update(Garantia garantia) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "update")) {
+            garantia.setFechaActualizacion(LocalDateTime.now());
+            Document doc = garantiaToDocument(garantia);
+            doc.remove("_id");
+            doc.remove("version");
         
-        UpdateResult result = collection.replaceOne(
-            Filters.eq("_id", garantia.getId()),
-            doc
-        );
+            // $set en vez de reemplazar: conserva las reparaciones (ver ReparacionService).
+            // Si la garantía se leyó con findById, solo los campos que han cambiado.
+            Document snapshot = tracker.snapshot(garantia);
+            if (Outbox.hayPendientes()) return enCola(garantia, snapshot, doc);
+            Document update = snapshot != null ? ChangeTracker.diff(snapshot, doc) : new Document("$set", doc);
+            update.append("$inc", new Document("version", 1L));
+            tracker.record(update, doc);
+        
+            // Devuelve la versión anterior en la misma operación, para el evento
+            Document before;
+            try {
+                before = collection().findOneAndUpdate(
+                    ChangeTracker.sinCambios(garantia.getId(), garantia.getVersion()), update);
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+                return enCola(garantia, snapshot, doc);
+            }
         
-        logger.info("Garantía actualizada: {} modificados", result.getModifiedCount());
-        return result.getModifiedCount() > 0;
+            if (before == null) {
+                Document actual = collection().find(Filters.eq("_id", garantia.getId())).first();
+                if (actual == null) return UpdateOutcome.noEncontrada();
+                logger.warn("⚠️ Garantía {} modificada desde otro puesto (versión {} -> {})",
+                    garantia.getNumeroGarantia(), garantia.getVersion(), actual.get("version"));
+                return UpdateOutcome.conflicto(documentToGarantia(actual),
+                    snapshot != null ? snapshot : new Document(), doc, actual);
+            }
+            logger.info("Garantía actualizada: {}", garantia.getNumeroGarantia());
+            garantia.setVersion(garantia.getVersion() + 1);
+            tracker.track(garantia, doc);
+            EventBus.publish(new GarantiaChanged(garantia.getId(), documentToGarantia(before), garantia));
+            return UpdateOutcome.actualizada(garantia);
+        }
+    }
+    
+    /**
+     * Deja el cambio en el diario local; la garantía pasa a la versión que tendrá al enviarse
+     */
+    private UpdateOutcome<Garantia> enCola(Garantia garantia, Document snapshot, Document doc) {
+        Outbox.update(COLLECTION_NAME, garantia.getId(), garantia.getVersion(), snapshot, doc);
+        Garantia before = snapshot != null
+            ? documentToGarantia(ChangeTracker.normalize(snapshot).append("_id", garantia.getId()))
+            : garantia;
+        garantia.setVersion(garantia.getVersion() + 1);
+        tracker.track(garantia, doc);
+        EventBus.publish(new GarantiaChanged(garantia.getId(), before, garantia));
+        return UpdateOutcome.enCola(garantia);
+    }
+    
+    /**
+     * Edición combinada tras un conflicto: la versión actual con los cambios propios,
+     * salvo los campos de {@code quedarseSuyos}. Se guarda con
+     * {@link #update(Garantia)} (que puede volver a dar conflicto).
+     */
+    public Garantia merge(UpdateOutcome<Garantia> conflicto, Set<String> quedarseSuyos) {
+        Document combinado = ChangeTracker.merge(conflicto.base, conflicto.mio, conflicto.suyo, quedarseSuyos);
+        Garantia merged = documentToGarantia(combinado);
+        // La base pasa a ser la versión actual: update() enviará solo los cambios propios
+        tracker.track(merged, garantiaToDocument(conflicto.getActual()));
+        return merged;
     }
     
     /**
      * Cambia el estado de una garantía
+     *
+     * @throws IllegalStateException si tiene cambios sin enviar ({@link Outbox})
      */
     public boolean updateEstado(ObjectId id, EstadoGarantia nuevoEstado) {
-        UpdateResult result = collection.updateOne(
-            Filters.eq("_id", id),
-            Updates.combine(
-                Updates.set("garantia.estado", nuevoEstado.name()),
-                Updates.set("fechaActualizacion", new Date())
-            )
-        );
-        return result.getModifiedCount() > 0;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "updateEstado")) {
+            Outbox.exigirEnviadas(List.of(id), "garantía(s)");
+            LocalDateTime ahora = LocalDateTime.now();
+            Document before = collection().findOneAndUpdate(
+                Filters.eq("_id", id),
+                Updates.combine(
+                    Updates.inc("version", 1L),
+                    Updates.set("garantia.estado", nuevoEstado.name()),
+                    Updates.set("fechaActualizacion", Date.from(ahora.atZone(ZoneId.systemDefault()).toInstant()))
+                )
+            );
+            if (before == null) return false;
+            Garantia anterior = documentToGarantia(before);
+            EventBus.publish(new GarantiaChanged(id, anterior, conEstado(anterior, nuevoEstado, ahora)));
+            return true;
+        }
+    }
+    
+    /**
+     * La garantía tras un cambio de estado, sin volver a mapear el documento: comparte con
+     * {@code anterior} todo lo que no cambia
+     */
+    private static Garantia conEstado(Garantia anterior, EstadoGarantia nuevoEstado, LocalDateTime ahora) {
+        Garantia after = new Garantia(anterior.getNumeroGarantia(), anterior.getCliente(),
+            anterior.getAireAcondicionado(), null, anterior.getCreadoPor());
+        Garantia.DetalleGarantia detalle = anterior.getGarantia();
+        if (detalle != null) {
+            Garantia.DetalleGarantia nuevo = new Garantia.DetalleGarantia();
+            nuevo.setFechaInicio(detalle.getFechaInicio());
+            nuevo.setFechaFin(detalle.getFechaFin());
+            nuevo.setDuracionMeses(detalle.getDuracionMeses());
+            nuevo.setTipo(detalle.getTipo());
+            nuevo.setEstado(nuevoEstado);
+            nuevo.setCobertura(detalle.getCobertura());
+            after.setGarantia(nuevo);
+        }
+        after.setId(anterior.getId());
+        after.setHistorialReparaciones(anterior.getHistorialReparaciones());
+        after.setNumeroReparaciones(anterior.getNumeroReparaciones());
+        after.setFacturaId(anterior.getFacturaId());
+        after.setClienteId(anterior.getClienteId());
+        after.setNotas(anterior.getNotas());
+        after.setFechaCreacion(anterior.getFechaCreacion());
+        after.setFechaActualizacion(ahora);
+        after.setVersion(anterior.getVersion() + 1);
+        return after;
+    }
+    
+    /**
+     * Cambia el estado de varias garantías con un solo {@code updateMany}. Las que ya
+     * están en ese estado no se tocan; se publica un cambio por cada garantía modificada.
+     * Si otro puesto ha cambiado alguna entre la lectura y el {@code updateMany}, los
+     * cambios se publican con lo que quedó guardado.
+     *
+     * @throws IllegalStateException si alguna tiene cambios sin enviar ({@link Outbox})
+     */
+    public BulkOutcome updateEstadoBulk(Collection<ObjectId> ids, EstadoGarantia nuevoEstado) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "updateEstadoBulk")) {
+            Set<ObjectId> solicitadas = new LinkedHashSet<>(ids);
+            if (solicitadas.isEmpty()) return new BulkOutcome(0, 0, 0, 0);
+            Outbox.exigirEnviadas(solicitadas, "garantía(s)");
+        
+            // Estado anterior para los eventos: una lectura para todas
+            List<Document> candidatas = new ArrayList<>();
+            int encontradas = 0;
+            for (Document doc : collection().find(Filters.in("_id", solicitadas))) {
+                encontradas++;
+                Document garantia = doc.get("garantia", Document.class);
+                if (garantia == null || !nuevoEstado.name().equals(garantia.getString("estado"))) {
+                    candidatas.add(doc);
+                }
+            }
+            if (candidatas.isEmpty()) {
+                return new BulkOutcome(solicitadas.size(), 0, encontradas, solicitadas.size() - encontradas);
+            }
+        
+            LocalDateTime ahora = LocalDateTime.now();
+            List<ObjectId> candidatasIds = new ArrayList<>();
+            candidatas.forEach(doc -> candidatasIds.add(doc.getObjectId("_id")));
+            UpdateResult result = collection().updateMany(
+                Filters.and(Filters.in("_id", candidatasIds), Filters.ne("garantia.estado", nuevoEstado.name())),
+                Updates.combine(
+                    Updates.inc("version", 1L),
+                    Updates.set("garantia.estado", nuevoEstado.name()),
+                    Updates.set("fechaActualizacion", Date.from(ahora.atZone(ZoneId.systemDefault()).toInstant()))
+                )
+            );
+            logger.info("Estado {} aplicado a {} de {} garantías", nuevoEstado, result.getModifiedCount(), solicitadas.size());
+        
+            if (result.getModifiedCount() < candidatas.size()) {
+                publicarGuardadas(candidatas, candidatasIds);
+            } else {
+                for (Document before : candidatas) {
+                    Garantia anterior = documentToGarantia(before);
+                    EventBus.publish(new GarantiaChanged(anterior.getId(), anterior, conEstado(anterior, nuevoEstado, ahora)));
+                }
+            }
+            return new BulkOutcome(solicitadas.size(), result.getModifiedCount(),
+                encontradas - candidatas.size(), solicitadas.size() - encontradas);
+        }
+    }
+    
+    /**
+     * Parte del {@code updateMany} no se aplicó: se vuelven a leer las candidatas y se
+     * publica lo guardado de las que han cambiado (por este puesto o por otro)
+     */
+    private void publicarGuardadas(List<Document> candidatas, List<ObjectId> candidatasIds) {
+        Map<Object, Document> guardadas = new HashMap<>();
+        for (Document doc : collection().find(Filters.in("_id", candidatasIds))) {
+            guardadas.put(doc.get("_id"), doc);
+        }
+        for (Document before : candidatas) {
+            Document guardada = guardadas.get(before.get("_id"));
+            if (guardada != null && Objects.equals(guardada.get("version"), before.get("version"))) continue;
+            EventBus.publish(new GarantiaChanged(before.getObjectId("_id"), documentToGarantia(before),
+                guardada != null ? documentToGarantia(guardada) : null));
+        }
     }
     
     /**
      * Elimina una garantía
+     *
+     * @throws IllegalStateException si tiene cambios sin enviar ({@link Outbox})
      */
     public boolean delete(ObjectId id) {
-        DeleteResult result = collection.deleteOne(Filters.eq("_id", id));
-        logger.info("Garantía eliminada: {}", result.getDeletedCount() > 0);
-        return result.getDeletedCount() > 0;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "delete")) {
+            Outbox.exigirEnviadas(List.of(id), "garantía(s)");
+            Document before = collection().findOneAndDelete(Filters.eq("_id", id));
+            logger.info("Garantía eliminada: {}", before != null);
+            if (before == null) return false;
+            EventBus.publish(new GarantiaChanged(id, documentToGarantia(before), null));
+            return true;
+        }
+    }
+    
+    /**
+     * Número para una garantía nueva: el siguiente si hay conexión; si no, uno provisional
+     * ({@code GAR-2026-P…}) que se cambia por el definitivo al enviar el alta
+     */
+    public String reservarNumero() {
+        if (!Outbox.hayPendientes()) {
+            try {
+                return generateNextNumero();
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+            }
+        }
+        return Outbox.numeroProvisional("GAR-" + LocalDate.now().getYear() + "-");
     }
     
     /**
      * Genera el próximo número de garantía
      */
     public String generateNextNumero() {
-        int year = LocalDate.now().getYear();
-        String prefix = "GAR-" + year + "-";
-        
-        Document lastDoc = collection.find(Filters.regex("numeroGarantia", "^" + prefix))
-            .sort(Sorts.descending("numeroGarantia"))
-            .first();
-        
-        int nextNumber = 1;
-        if (lastDoc != null) {
-            String lastNumero = lastDoc.getString("numeroGarantia");
-            String[] parts = lastNumero.split("-");
-            nextNumber = Integer.parseInt(parts[2]) + 1;
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "generateNextNumero")) {
+            return Numeracion.siguiente(collection(), "numeroGarantia", "GAR-" + LocalDate.now().getYear() + "-");
         }
-        
-        return String.format("%s%04d", prefix, nextNumber);
     }
     
     /**
      * Cuenta garantías por estado
      */
     public Map<EstadoGarantia, Long> countByEstado() {
-        Map<EstadoGarantia, Long> counts = new HashMap<>();
-        for (EstadoGarantia estado : EstadoGarantia.values()) {
-            long count = collection.countDocuments(Filters.eq("garantia.estado", estado.name()));
-            counts.put(estado, count);
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "countByEstado")) {
+            GarantiaAnalytics snapshot = AnalyticsStore.garantias();
+            if (snapshot != null) return snapshot.countByEstado();
+            return cache.get("countByEstado", () -> {
+                Map<EstadoGarantia, Long> counts = new HashMap<>();
+                for (EstadoGarantia estado : EstadoGarantia.values()) {
+                    long count = collection().countDocuments(Filters.eq("garantia.estado", estado.name()));
+                    counts.put(estado, count);
+                }
+                return counts;
+            });
         }
-        return counts;
     }
     
     /**
      * Cuenta garantías por marca
      */
     public Map<String, Long> countByMarca() {
-        Map<String, Long> counts = new HashMap<>();
-        List<Document> pipeline = Arrays.asList(
-            new Document("$group", new Document("_id", "$aireAcondicionado.marca")
-                .append("count", new Document("$sum", 1)))
-        );
-        
-        for (Document doc : collection.aggregate(pipeline)) {
-            String marca = doc.getString("_id");
-            if (marca != null) {
-                Number countNum = (Number) doc.get("count");
-                counts.put(marca, countNum != null ? countNum.longValue() : 0L);
-            }
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "countByMarca")) {
+            GarantiaAnalytics snapshot = AnalyticsStore.garantias();
+            if (snapshot != null) return snapshot.countByMarca();
+            return cache.get("countByMarca", () -> {
+                Map<String, Long> counts = new HashMap<>();
+                List<Document> pipeline = Arrays.asList(
+                    new Document("$group", new Document("_id", "$aireAcondicionado.marca")
+                        .append("count", new Document("$sum", 1)))
+                );
+            
+                for (Document doc : collection().aggregate(pipeline)) {
+                    String marca = doc.getString("_id");
+                    if (marca != null) {
+                        Number countNum = (Number) doc.get("count");
+                        counts.put(marca, countNum != null ? countNum.longValue() : 0L);
+                    }
+                }
+                return counts;
+            });
+        }
+    }
+    
+    /**
+     * Cuenta garantías por tipo
+     */
+    public Map<TipoGarantia, Long> countByTipo() {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "countByTipo")) {
+            GarantiaAnalytics snapshot = AnalyticsStore.garantias();
+            if (snapshot != null) return snapshot.countByTipo();
+            return cache.get("countByTipo", () -> {
+                Map<TipoGarantia, Long> counts = new EnumMap<>(TipoGarantia.class);
+                for (TipoGarantia tipo : TipoGarantia.values()) {
+                    counts.put(tipo, collection().countDocuments(Filters.eq("garantia.tipo", tipo.name())));
+                }
+                return counts;
+            });
         }
-        return counts;
     }
     
     /**
      * Cuenta total de garantías
      */
     public long countTotal() {
-        return collection.countDocuments();
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "countTotal")) {
+            GarantiaAnalytics snapshot = AnalyticsStore.garantias();
+            if (snapshot != null) return snapshot.count();
+            return cache.get("countTotal", () -> collection().countDocuments());
+        }
     }
     
     // Conversión Document -> Garantia
     private Garantia documentToGarantia(Document doc) {
-        Garantia g = new Garantia();
-        g.setId(doc.getObjectId("_id"));
-        g.setNumeroGarantia(doc.getString("numeroGarantia"));
-        g.setNotas(doc.getString("notas"));
-        g.setCreadoPor(doc.getString("creadoPor"));
-        
-        // Cliente
-        Document clienteDoc = doc.get("cliente", Document.class);
-        if (clienteDoc != null) {
-            Garantia.Cliente cliente = new Garantia.Cliente(
-                clienteDoc.getString("nombre"),
-                clienteDoc.getString("telefono"),
-                clienteDoc.getString("email"),
-                clienteDoc.getString("direccion")
-            );
-            g.setCliente(cliente);
-        }
-        
-        // Aire Acondicionado
-        Document aireDoc = doc.get("aireAcondicionado", Document.class);
-        if (aireDoc != null) {
-            Garantia.AireAcondicionado aire = new Garantia.AireAcondicionado();
-            aire.setMarca(aireDoc.getString("marca"));
-            aire.setModelo(aireDoc.getString("modelo"));
-            aire.setNumeroSerie(aireDoc.getString("numeroSerie"));
-            aire.setTipoRefrigerante(aireDoc.getString("tipoRefrigerante"));
-            aire.setPotenciaBTU(aireDoc.getInteger("potenciaBTU"));
-            Date fechaInst = aireDoc.getDate("fechaInstalacion");
-            if (fechaInst != null) {
-                aire.setFechaInstalacion(fechaInst.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
+        DocumentMappingEvent event = new DocumentMappingEvent(COLLECTION_NAME);
+        event.begin();
+        try {
+            return GarantiaMapper.toGarantia(doc);
+        } finally {
+            if (event.shouldCommit()) {
+                event.setDocumentId(String.valueOf(doc.get("_id")));
+                event.commit();
             }
-            g.setAireAcondicionado(aire);
         }
-        
-        // Detalles garantía
-        Document garDoc = doc.get("garantia", Document.class);
-        if (garDoc != null) {
-            Garantia.DetalleGarantia detalle = new Garantia.DetalleGarantia();
-            Date fechaInicio = garDoc.getDate("fechaInicio");
-            Date fechaFin = garDoc.getDate("fechaFin");
-            if (fechaInicio != null) {
-                detalle.setFechaInicio(fechaInicio.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-            }
-            if (fechaFin != null) {
-                detalle.setFechaFin(fechaFin.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-            }
-            detalle.setDuracionMeses(garDoc.getInteger("duracionMeses"));
-            String tipoStr = garDoc.getString("tipo");
-            if (tipoStr != null) {
-                detalle.setTipo(Garantia.TipoGarantia.valueOf(tipoStr));
-            }
-            String estadoStr = garDoc.getString("estado");
-            if (estadoStr != null) {
-                detalle.setEstado(EstadoGarantia.valueOf(estadoStr));
-            }
-            detalle.setCobertura(garDoc.getList("cobertura", String.class));
-            g.setGarantia(detalle);
-        }
-        
-        // Fechas
-        Date fechaCreacion = doc.getDate("fechaCreacion");
-        if (fechaCreacion != null) {
-            g.setFechaCreacion(fechaCreacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
-        }
-        Date fechaActualizacion = doc.getDate("fechaActualizacion");
-        if (fechaActualizacion != null) {
-            g.setFechaActualizacion(fechaActualizacion.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
-        }
-        
-        return g;
     }
     
     // Conversión Garantia -> Document
     private Document garantiaToDocument(Garantia g) {
-        Document doc = new Document();
-        
-        if (g.getId() != null) {
-            doc.append("_id", g.getId());
-        }
-        doc.append("numeroGarantia", g.getNumeroGarantia());
-        doc.append("notas", g.getNotas());
-        doc.append("creadoPor", g.getCreadoPor());
-        
-        // Cliente
-        if (g.getCliente() != null) {
-            doc.append("cliente", new Document()
-                .append("nombre", g.getCliente().getNombre())
-                .append("telefono", g.getCliente().getTelefono())
-                .append("email", g.getCliente().getEmail())
-                .append("direccion", g.getCliente().getDireccion())
-            );
-        }
-        
-        // Aire Acondicionado
-        if (g.getAireAcondicionado() != null) {
-            Document aireDoc = new Document()
-                .append("marca", g.getAireAcondicionado().getMarca())
-                .append("modelo", g.getAireAcondicionado().getModelo())
-                .append("numeroSerie", g.getAireAcondicionado().getNumeroSerie())
-                .append("tipoRefrigerante", g.getAireAcondicionado().getTipoRefrigerante())
-                .append("potenciaBTU", g.getAireAcondicionado().getPotenciaBTU());
-            if (g.getAireAcondicionado().getFechaInstalacion() != null) {
-                aireDoc.append("fechaInstalacion", java.sql.Date.valueOf(g.getAireAcondicionado().getFechaInstalacion()));
-            }
-            doc.append("aireAcondicionado", aireDoc);
-        }
-        
-        // Detalles garantía
-        if (g.getGarantia() != null) {
-            Document garDoc = new Document()
-                .append("duracionMeses", g.getGarantia().getDuracionMeses())
-                .append("tipo", g.getGarantia().getTipo() != null ? g.getGarantia().getTipo().name() : null)
-                .append("estado", g.getGarantia().getEstado() != null ? g.getGarantia().getEstado().name() : null)
-                .append("cobertura", g.getGarantia().getCobertura());
-            if (g.getGarantia().getFechaInicio() != null) {
-                garDoc.append("fechaInicio", java.sql.Date.valueOf(g.getGarantia().getFechaInicio()));
-            }
-            if (g.getGarantia().getFechaFin() != null) {
-                garDoc.append("fechaFin", java.sql.Date.valueOf(g.getGarantia().getFechaFin()));
-            }
-            doc.append("garantia", garDoc);
-        }
-        
-        // Fechas
-        if (g.getFechaCreacion() != null) {
-            doc.append("fechaCreacion", Date.from(g.getFechaCreacion().atZone(ZoneId.systemDefault()).toInstant()));
-        }
-        if (g.getFechaActualizacion() != null) {
-            doc.append("fechaActualizacion", Date.from(g.getFechaActualizacion().atZone(ZoneId.systemDefault()).toInstant()));
-        }
-        
-        return doc;
+        return GarantiaMapper.toDocument(g);
     }
 }
@@ -0,0 +1,43 @@
+package com.garantias.service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+
+/**
+ * Siguiente número correlativo ({@code GAR-2026-0001}, {@code FAC-2026-0001}) a partir del
+ * último guardado con el mismo prefijo.
+ * <p>
+ * El índice único ordena el número como texto: "GAR-2025-10000" queda antes que
+ * "GAR-2025-9999". Si hay números más largos (importaciones masivas), el último es el
+ * mayor de entre ellos, así que se busca el mayor de cada ancho hasta que no haya otro
+ * más largo.
+ */
+final class Numeracion {
+
+    private Numeracion() {}
+
+    static String siguiente(MongoCollection<Document> collection, String campo, String prefix) {
+        Document lastDoc = collection.find(Filters.regex(campo, "^" + prefix))
+            .sort(Sorts.descending(campo))
+            .first();
+        while (lastDoc != null) {
+            int width = lastDoc.getString(campo).length() - prefix.length();
+            Document longer = collection.find(Filters.regex(campo, "^" + prefix + "\\d{" + (width + 1) + ",}$"))
+                .sort(Sorts.descending(campo))
+                .first();
+            if (longer == null) break;
+            lastDoc = longer;
+        }
+
+        int nextNumber = 1;
+        if (lastDoc != null) {
+            String lastNumero = lastDoc.getString(campo);
+            String[] parts = lastNumero.split("-");
+            nextNumber = Integer.parseInt(parts[2]) + 1;
+        }
+
+        return String.format("%s%04d", prefix, nextNumber);
+    }
+}
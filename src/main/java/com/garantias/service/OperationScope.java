@@ -0,0 +1,32 @@
+package com.garantias.service;
+
+import com.garantias.metrics.Metrics;
+import com.garantias.metrics.Timer;
+import com.garantias.profiling.ServiceQueryEvent;
+
+/**
+ * Mide una operación de servicio: timer {@code service.<coleccion>.<operacion>} y
+ * evento JFR {@link ServiceQueryEvent}.
+ * Se usa con try-with-resources alrededor del cuerpo del método.
+ */
+final class OperationScope implements AutoCloseable {
+
+    private final Timer.Context timer;
+    private final ServiceQueryEvent event;
+
+    private OperationScope(String service, String operation) {
+        this.timer = Metrics.timer("service." + service + "." + operation).time();
+        this.event = new ServiceQueryEvent(service, operation);
+        event.begin();
+    }
+
+    static OperationScope open(String service, String operation) {
+        return new OperationScope(service, operation);
+    }
+
+    @Override
+    public void close() {
+        timer.stop();
+        event.commit();
+    }
+}
@@ -0,0 +1,521 @@
+package com.garantias.service;
+
+import com.garantias.config.DatabaseUnavailableException;
+import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.FacturaChanged;
+import com.garantias.events.GarantiaChanged;
+import com.garantias.metrics.Metrics;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.MongoWriteConcernException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Escrituras hechas sin conexión con MongoDB.
+ * <p>
+ * Si MongoDB no responde, {@code insert}/{@code update} de garantías y facturas no fallan:
+ * la escritura se guarda en un diario local ({@code garantias.outbox.dir},
+ * {@code data/outbox} por defecto), se avisa a las vistas y el puesto sigue trabajando.
+ * Mientras quede algo pendiente, las altas y cambios nuevos ({@code insert}/{@code update})
+ * también pasan por el diario para no adelantar a los anteriores. Los cambios de estado y
+ * los borrados van siempre directos a MongoDB: sobre una entidad con escrituras sin
+ * enviar se rechazan ({@link #exigirEnviadas}). Un hilo en segundo plano las envía por lotes, en orden,
+ * en cuanto vuelve la conexión:
+ * <ul>
+ *   <li>Las altas llevan el {@code _id} generado en el puesto: si ya se enviaron, el
+ *       duplicado se ignora. Las que se hicieron con número provisional
+ *       ({@code GAR-2026-P…}) reciben el siguiente número definitivo al enviarse.</li>
+ *   <li>Los cambios se aplican con la versión con la que se leyó la entidad. Si otro
+ *       puesto la guardó mientras tanto se combinan campo a campo y, en los campos que han
+ *       cambiado los dos, se queda lo que ya estaba guardado (contador
+ *       {@code outbox.conflictos}).</li>
+ * </ul>
+ * Solo se apartan las escrituras que MongoDB rechaza siempre igual (p. ej. no cumplen el
+ * validador): pasan a {@code outbox.dead.jsonl}, junto al diario, para revisarlas a mano.
+ * Con cualquier otro error se reintenta más tarde.
+ */
+public final class Outbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(Outbox.class);
+
+    public static final String DIR_PROPERTY = "garantias.outbox.dir";
+    private static final String DEFAULT_DIR = "data/outbox";
+
+    private static final long INTERVALO_MS = 5000;
+    private static final int LOTE = 100;
+    private static final int MAX_INTENTOS = 10;
+    private static final Pattern PROVISIONAL = Pattern.compile("^[A-Z]+-\\d{4}-P");
+
+    // Errores deterministas: reintentar la escritura daría siempre el mismo
+    // (BadValue, FailedToParse, TypeMismatch, nombres de campo no válidos, ImmutableField,
+    // DocumentValidationFailure, documento demasiado grande)
+    private static final Set<Integer> RECHAZOS = Set.of(2, 9, 14, 52, 56, 57, 66, 121, 10334);
+    private static final String RETRYABLE_WRITE_ERROR = "RetryableWriteError";
+
+    private static final String INSERT = "INSERT";
+    private static final String UPDATE = "UPDATE";
+
+    private static volatile WriteJournal journal;
+    private static ScheduledExecutorService replayer;
+    private static final Object replayLock = new Object();
+
+    private Outbox() {}
+
+    /**
+     * Abre el diario y programa el reenvío periódico (idempotente)
+     */
+    public static synchronized void start() {
+        if (replayer != null) return;
+        journal();
+        Metrics.gauge("outbox.pendientes", Outbox::pendientes);
+        replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        replayer.scheduleWithFixedDelay(Outbox::replayProgramado, 0, INTERVALO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stop() {
+        if (replayer != null) {
+            replayer.shutdown();
+            replayer = null;
+        }
+        WriteJournal j = journal;
+        journal = null;
+        if (j == null) return;
+        try {
+            j.close();
+            if (j.size() > 0) logger.warn("⚠️ Quedan {} escrituras sin enviar; se enviarán al volver a arrancar", j.size());
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo cerrar el diario de escrituras: {}", e.getMessage());
+        }
+    }
+
+    /** Escrituras guardadas en el puesto que aún no están en MongoDB */
+    public static int pendientes() {
+        WriteJournal j = journal;
+        return j != null ? j.size() : 0;
+    }
+
+    /** true si la garantía o factura tiene cambios sin enviar */
+    public static boolean isPendiente(ObjectId id) {
+        WriteJournal j = journal;
+        return j != null && j.contiene(id);
+    }
+
+    private static synchronized WriteJournal journal() {
+        if (journal == null) {
+            WriteJournal j = new WriteJournal(Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR)));
+            try {
+                j.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo abrir el diario de escrituras", e);
+            }
+            journal = j;
+        }
+        return journal;
+    }
+
+    // ========================================
+    // ESCRITURAS EN COLA
+    // ========================================
+
+    /**
+     * true si el error es de conexión o pasajero, como un cambio de primario en el replica
+     * set (la escritura puede esperar en el diario); los demás errores de MongoDB se
+     * siguen lanzando
+     */
+    static boolean sinConexion(RuntimeException e) {
+        return e instanceof DatabaseUnavailableException
+            || e instanceof MongoTimeoutException
+            || e instanceof MongoSocketException
+            || e instanceof MongoNotPrimaryException
+            || e instanceof MongoNodeIsRecoveringException
+            || e instanceof MongoWriteConcernException
+            || (e instanceof MongoException && (((MongoException) e).hasErrorLabel(RETRYABLE_WRITE_ERROR)
+                || ((MongoException) e).hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL)));
+    }
+
+    /**
+     * true si MongoDB rechazará la escritura siempre igual: solo entonces se aparta
+     */
+    private static boolean rechazoDefinitivo(MongoException e) {
+        // Los de insertMany se resuelven entrada a entrada en insertar()
+        if (e instanceof MongoBulkWriteException) return false;
+        if (e instanceof MongoWriteException) {
+            return rechazo(e.getCode(), ((MongoWriteException) e).getError().getCategory());
+        }
+        return RECHAZOS.contains(e.getCode());
+    }
+
+    // Un duplicado de _id ya se trata aparte; uno de número no se arregla reintentando
+    private static boolean rechazo(int code, ErrorCategory categoria) {
+        return RECHAZOS.contains(code) || categoria == ErrorCategory.DUPLICATE_KEY;
+    }
+
+    /**
+     * Falla si alguna de las entidades tiene escrituras sin enviar: un cambio directo en
+     * MongoDB se adelantaría a ellas (o no encontraría un alta aún en el diario)
+     */
+    static void exigirEnviadas(Collection<ObjectId> ids, String entidades) {
+        WriteJournal j = journal;
+        if (j == null || j.size() == 0) return;
+        long pendientes = ids.stream().filter(j::contiene).count();
+        if (pendientes > 0) {
+            throw new IllegalStateException(pendientes + " " + entidades
+                + " con cambios aún sin enviar a MongoDB. Inténtalo de nuevo cuando se hayan sincronizado.");
+        }
+    }
+
+    static boolean hayPendientes() {
+        return pendientes() > 0;
+    }
+
+    /**
+     * Número para un alta sin conexión: único en el puesto y reconocible al enviarla
+     */
+    static String numeroProvisional(String prefijo) {
+        return prefijo + "P" + new ObjectId().toHexString().substring(16).toUpperCase();
+    }
+
+    static boolean isProvisional(String numero) {
+        return numero != null && PROVISIONAL.matcher(numero).find();
+    }
+
+    /**
+     * Guarda un alta (el documento lleva ya su {@code _id})
+     */
+    static void insert(String coleccion, Document doc) {
+        append(new Document("op", INSERT)
+            .append("coleccion", coleccion)
+            .append("_id", doc.get("_id"))
+            .append("doc", doc));
+    }
+
+    /**
+     * Guarda un cambio: {@code doc} leído en {@code version} a partir de {@code base}
+     * (null si no se conoce el estado leído y se envía el documento entero)
+     */
+    static void update(String coleccion, ObjectId id, long version, Document base, Document doc) {
+        append(new Document("op", UPDATE)
+            .append("coleccion", coleccion)
+            .append("_id", id)
+            .append("version", version)
+            .append("base", base)
+            .append("doc", doc));
+    }
+
+    private static void append(Document entry) {
+        try {
+            long seq = journal().append(entry);
+            Metrics.counter("outbox.encoladas").increment();
+            logger.warn("⚠️ Sin conexión con MongoDB: {} de {} {} guardado en el puesto (#{})",
+                entry.getString("op"), entry.getString("coleccion"), entry.get("_id"), seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar la escritura en el diario local", e);
+        }
+        ScheduledExecutorService r = replayer;
+        if (r != null && MongoDBConfig.isConnected()) r.execute(Outbox::replayProgramado);
+    }
+
+    // ========================================
+    // REENVÍO
+    // ========================================
+
+    private static void replayProgramado() {
+        try {
+            replay();
+        } catch (RuntimeException e) {
+            if (sinConexion(e)) {
+                logger.debug("Reenvío aplazado: {}", e.getMessage());
+            } else {
+                logger.error("❌ Error al reenviar escrituras pendientes: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Envía a MongoDB lo pendiente, en orden y por lotes. Devuelve las escrituras aplicadas.
+     *
+     * @throws DatabaseUnavailableException o MongoException si se pierde la conexión; lo
+     *         no enviado sigue en el diario
+     */
+    public static int replay() {
+        synchronized (replayLock) {
+            WriteJournal j = journal();
+            int aplicadas = 0;
+            List<Document> lote;
+            while (!(lote = j.lote(LOTE)).isEmpty()) {
+                MongoDatabase db = MongoDBConfig.getDatabase();
+                int enviadas = 0;
+                try {
+                    while (enviadas < lote.size()) {
+                        enviadas += aplicar(db, lote, enviadas);
+                    }
+                } finally {
+                    if (enviadas > 0) {
+                        ack(j, lote.get(enviadas - 1).getLong("seq"));
+                        aplicadas += enviadas;
+                        Metrics.counter("outbox.enviadas").increment(enviadas);
+                    }
+                }
+            }
+            if (aplicadas > 0) logger.info("✅ {} escrituras pendientes enviadas a MongoDB", aplicadas);
+            return aplicadas;
+        }
+    }
+
+    private static void ack(WriteJournal j, long seq) {
+        try {
+            j.ack(seq);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo actualizar el diario de escrituras", e);
+        }
+    }
+
+    /**
+     * Aplica la entrada {@code desde} del lote (y las altas seguidas de la misma colección
+     * con número definitivo, en un solo {@code insertMany}). Devuelve cuántas ha aplicado.
+     */
+    private static int aplicar(MongoDatabase db, List<Document> lote, int desde) {
+        Document entry = lote.get(desde);
+        Coleccion coleccion = Coleccion.of(entry.getString("coleccion"));
+        MongoCollection<Document> collection = db.getCollection(coleccion.nombre);
+        try {
+            if (!INSERT.equals(entry.getString("op"))) {
+                actualizar(collection, coleccion, entry);
+                return 1;
+            }
+            int hasta = desde;
+            while (hasta < lote.size() && esAltaDirecta(lote.get(hasta), coleccion)) hasta++;
+            if (hasta - desde > 1) {
+                insertar(collection, lote.subList(desde, hasta));
+                return hasta - desde;
+            }
+            insertar(collection, coleccion, entry);
+            return 1;
+        } catch (MongoException e) {
+            // Cualquier error que no sea un rechazo definitivo deja la entrada para el siguiente intento
+            if (sinConexion(e) || !rechazoDefinitivo(e)) throw e;
+            // Reintentarla bloquearía todo lo que viene detrás: se aparta sin perderla
+            apartar(entry, e);
+            return 1;
+        }
+    }
+
+    private static void apartar(Document entry, MongoException e) {
+        apartar(entry, e.getCode(), e.getMessage());
+    }
+
+    private static void apartar(Document entry, int code, String mensaje) {
+        try {
+            journal().apartar(entry, code + " " + mensaje);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo apartar la escritura rechazada", ex);
+        }
+        Metrics.counter("outbox.rechazadas").increment();
+        logger.error("❌ Escritura pendiente rechazada por MongoDB y apartada en outbox.dead.jsonl: #{} {} de {} {} ({})",
+            entry.getLong("seq"), entry.getString("op"), entry.getString("coleccion"), entry.get("_id"), mensaje);
+    }
+
+    private static boolean esAltaDirecta(Document entry, Coleccion coleccion) {
+        return INSERT.equals(entry.getString("op"))
+            && coleccion.nombre.equals(entry.getString("coleccion"))
+            && !isProvisional(entry.get("doc", Document.class).getString(coleccion.campoNumero));
+    }
+
+    private static void insertar(MongoCollection<Document> collection, List<Document> entries) {
+        List<Document> docs = new ArrayList<>(entries.size());
+        entries.forEach(entry -> docs.add(entry.get("doc", Document.class)));
+        try {
+            collection.insertMany(docs, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            // Duplicados: altas que ya llegaron antes de un corte. Las rechazadas se apartan
+            // y, con cualquier otro error, el lote se repite entero más tarde
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY
+                        && !RECHAZOS.contains(error.getCode())) throw e;
+            }
+            if (e.getWriteConcernError() != null) throw e;
+            for (BulkWriteError error : e.getWriteErrors()) {
+                Document doc = docs.get(error.getIndex());
+                // Un duplicado de número, no de _id, no es un alta repetida
+                boolean repetida = ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                    && collection.find(Filters.eq("_id", doc.get("_id"))).first() != null;
+                if (!repetida) apartar(entries.get(error.getIndex()), error.getCode(), error.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Un alta suelta. Con número provisional se le asigna el siguiente y, si otro puesto se
+     * adelanta con ese número, se vuelve a pedir (hasta {@value #MAX_INTENTOS} veces); un
+     * número definitivo repetido no se arregla reintentando y el alta se aparta.
+     */
+    private static void insertar(MongoCollection<Document> collection, Coleccion coleccion, Document entry) {
+        Document doc = entry.get("doc", Document.class);
+        Object id = doc.get("_id");
+        if (collection.find(Filters.eq("_id", id)).first() != null) return;
+
+        String numero = doc.getString(coleccion.campoNumero);
+        boolean provisional = isProvisional(numero);
+        for (int intento = 1; ; intento++) {
+            Document enviado = doc;
+            if (provisional) {
+                enviado = new Document(doc);
+                enviado.put(coleccion.campoNumero, coleccion.siguienteNumero());
+            }
+            try {
+                collection.insertOne(enviado);
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) throw e;
+                // El _id ya se ha comprobado: el número lo tiene otro registro
+                if (provisional && intento < MAX_INTENTOS) continue;
+                apartar(entry, e);
+                return;
+            }
+            if (provisional) {
+                logger.info("Número {} asignado a {}", enviado.getString(coleccion.campoNumero), numero);
+                coleccion.publicar(doc, enviado);
+            }
+            return;
+        }
+    }
+
+    private static void actualizar(MongoCollection<Document> collection, Coleccion coleccion, Document entry) {
+        ObjectId id = entry.getObjectId("_id");
+        Document base = entry.get("base", Document.class);
+        Document mio = entry.get("doc", Document.class);
+        long esperada = entry.getLong("version");
+        // Cambio hecho sobre un alta sin conexión: el número provisional ya se ha sustituido
+        // por el definitivo al enviar el alta y no se puede volver a poner
+        if (isProvisional(mio.getString(coleccion.campoNumero))) {
+            mio = sinNumero(mio, coleccion);
+            base = base != null ? sinNumero(base, coleccion) : null;
+        }
+        Document desde = base;
+        Document objetivo = mio;
+
+        for (int intento = 0; intento < MAX_INTENTOS; intento++) {
+            Document update = desde != null ? ChangeTracker.diff(desde, objetivo) : new Document("$set", objetivo);
+            update.append("$inc", new Document("version", 1L));
+            if (collection.findOneAndUpdate(ChangeTracker.sinCambios(id, esperada), update) != null) {
+                if (intento > 0) {
+                    Document guardado = new Document(objetivo).append("_id", id).append("version", esperada + 1);
+                    coleccion.publicar(new Document(mio).append("_id", id), guardado);
+                }
+                return;
+            }
+
+            Document actual = collection.find(Filters.eq("_id", id)).first();
+            if (actual == null) {
+                Metrics.counter("outbox.descartadas").increment();
+                logger.warn("⚠️ {} {} eliminada desde otro puesto: se descarta su cambio pendiente", coleccion.nombre, id);
+                return;
+            }
+            // Otro puesto la guardó mientras tanto: se combina y, donde cambiaron los dos, queda lo suyo
+            Document referencia = base != null ? base : new Document();
+            Set<String> suyos = new HashSet<>();
+            ChangeTracker.conflictos(referencia, mio, actual).forEach(c -> suyos.add(c.getCampo()));
+            if (intento == 0 && !suyos.isEmpty()) {
+                Metrics.counter("outbox.conflictos").increment();
+                logger.warn("⚠️ {} {} modificada desde otro puesto; se conserva su valor en {}",
+                    coleccion.nombre, id, suyos);
+            }
+            esperada = versionDe(actual);
+            desde = ChangeTracker.sinControl(actual);
+            objetivo = ChangeTracker.sinControl(ChangeTracker.merge(referencia, mio, actual, suyos));
+        }
+        throw new IllegalStateException("Demasiados cambios simultáneos en " + coleccion.nombre + " " + id);
+    }
+
+    private static Document sinNumero(Document doc, Coleccion coleccion) {
+        Document copia = new Document(doc);
+        copia.remove(coleccion.campoNumero);
+        return copia;
+    }
+
+    private static long versionDe(Document doc) {
+        Number version = doc.get("version", Number.class);
+        return version != null ? version.longValue() : 0;
+    }
+
+    /**
+     * Colecciones que admiten escrituras sin conexión
+     */
+    private enum Coleccion {
+        GARANTIAS("garantias", "numeroGarantia") {
+            @Override
+            String siguienteNumero() {
+                return new GarantiaService().generateNextNumero();
+            }
+
+            @Override
+            void publicar(Document before, Document after) {
+                EventBus.publish(new GarantiaChanged(after.getObjectId("_id"),
+                    GarantiaMapper.toGarantia(before), GarantiaMapper.toGarantia(after)));
+            }
+        },
+        FACTURAS("facturas", "numeroFactura") {
+            @Override
+            String siguienteNumero() {
+                return new FacturaService().generateNextNumero();
+            }
+
+            @Override
+            void publicar(Document before, Document after) {
+                EventBus.publish(new FacturaChanged(after.getObjectId("_id"),
+                    FacturaMapper.toFactura(before), FacturaMapper.toFactura(after)));
+            }
+        };
+
+        final String nombre;
+        final String campoNumero;
+
+        Coleccion(String nombre, String campoNumero) {
+            this.nombre = nombre;
+            this.campoNumero = campoNumero;
+        }
+
+        abstract String siguienteNumero();
+
+        /** Avisa a las vistas de lo que ha cambiado al enviar (número definitivo, combinación) */
+        abstract void publicar(Document before, Document after);
+
+        static Coleccion of(String nombre) {
+            for (Coleccion c : values()) {
+                if (c.nombre.equals(nombre)) return c;
+            }
+            throw new IllegalArgumentException("Colección sin escrituras en cola: " + nombre);
+        }
+    }
+}
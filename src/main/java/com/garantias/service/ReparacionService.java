@@ -0,0 +1,205 @@
+package com.garantias.service;
+
+import com.garantias.analytics.AnalyticsStore;
+import com.garantias.analytics.Fiabilidad;
+import com.garantias.analytics.FiabilidadAnalytics;
+import com.garantias.analytics.FiabilidadAnalytics.Dimension;
+import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.GarantiaChanged;
+import com.garantias.events.ReparacionChanged;
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.Reparacion;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.PushOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Historial de reparaciones: registro de solo añadir en la colección {@code reparaciones}
+ * (índices por garantía, técnico y fecha) y copia de las {@value #RECIENTES} más recientes
+ * embebida en la garantía, para mostrarlas sin otra consulta.
+ * <p>
+ * Registrar una reparación es un {@code insertOne} pequeño más un {@code $push} con
+ * {@code $slice} sobre la garantía: nunca se reescribe la garantía entera y el documento
+ * no crece con los años de servicio.
+ */
+public class ReparacionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReparacionService.class);
+    private static final String COLLECTION_NAME = "reparaciones";
+    private static final String GARANTIAS = "garantias";
+
+    private static final FallbackCache cache = new FallbackCache(COLLECTION_NAME);
+
+    /** Reparaciones embebidas en cada garantía */
+    public static final int RECIENTES = 5;
+
+    private MongoCollection<Document> collection() {
+        return MongoDBConfig.getDatabase().getCollection(COLLECTION_NAME);
+    }
+
+    /**
+     * Registra una reparación de la garantía. Devuelve {@code false} si la garantía no existe.
+     */
+    public boolean registrar(ObjectId garantiaId, Reparacion reparacion) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "registrar")) {
+            reparacion.setId(new ObjectId());
+            reparacion.setGarantiaId(garantiaId);
+            Document embebida = GarantiaMapper.toDocument(reparacion);
+            LocalDateTime ahora = LocalDateTime.now();
+            Date fechaRegistro = Date.from(ahora.atZone(ZoneId.systemDefault()).toInstant());
+
+            // Primero el registro: es el historial de referencia
+            collection().insertOne(new Document(embebida)
+                .append("garantiaId", garantiaId)
+                .append("fechaRegistro", fechaRegistro));
+
+            Document before = MongoDBConfig.getDatabase().getCollection(GARANTIAS).findOneAndUpdate(
+                Filters.eq("_id", garantiaId),
+                Updates.combine(
+                    Updates.pushEach("historialReparaciones", List.of(embebida),
+                        new PushOptions().sortDocument(Sorts.ascending("fecha")).slice(-RECIENTES)),
+                    Updates.inc("numeroReparaciones", 1),
+                    Updates.set("fechaActualizacion", fechaRegistro)
+                )
+            );
+            if (before == null) {
+                collection().deleteOne(Filters.eq("_id", reparacion.getId()));
+                logger.warn("⚠️ Reparación no registrada: no existe la garantía {}", garantiaId);
+                return false;
+            }
+            logger.info("Reparación registrada: {} en garantía {}", reparacion.getId(), garantiaId);
+
+            Garantia after = GarantiaMapper.toGarantia(before);
+            List<Reparacion> recientes = new ArrayList<>(after.getHistorialReparaciones());
+            recientes.add(reparacion);
+            recientes.sort(Comparator.comparing(Reparacion::getFecha, Comparator.nullsFirst(Comparator.naturalOrder())));
+            after.setHistorialReparaciones(new ArrayList<>(
+                recientes.subList(Math.max(0, recientes.size() - RECIENTES), recientes.size())));
+            after.setNumeroReparaciones(after.getNumeroReparaciones() + 1);
+            after.setFechaActualizacion(ahora);
+            EventBus.publish(new GarantiaChanged(garantiaId, GarantiaMapper.toGarantia(before), after));
+            EventBus.publish(new ReparacionChanged(reparacion.getId(), reparacion));
+            return true;
+        }
+    }
+
+    /**
+     * Historial completo de una garantía, de la más reciente a la más antigua
+     */
+    public List<Reparacion> findByGarantia(ObjectId garantiaId) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByGarantia")) {
+            return find(Filters.eq("garantiaId", garantiaId));
+        }
+    }
+
+    /**
+     * Reparaciones de un técnico entre dos fechas (incluidas)
+     */
+    public List<Reparacion> findByTecnico(String tecnico, LocalDate desde, LocalDate hasta) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findByTecnico")) {
+            return find(Filters.and(Filters.eq("tecnico", tecnico), entre(desde, hasta)));
+        }
+    }
+
+    /**
+     * Reparaciones entre dos fechas (incluidas)
+     */
+    public List<Reparacion> findEntre(LocalDate desde, LocalDate hasta) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "findEntre")) {
+            return find(entre(desde, hasta));
+        }
+    }
+
+    /**
+     * Averías por equipo y año, MTBF y coste medio por grupo de la dimensión
+     */
+    public List<Fiabilidad> fiabilidad(Dimension dimension) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "fiabilidad")) {
+            return cache.get("fiabilidad." + dimension, () -> instantaneaFiabilidad().por(dimension));
+        }
+    }
+
+    /**
+     * Tabla de fiabilidad de la instantánea analítica o, si no está cargada, una carga
+     * completa desde MongoDB
+     */
+    public FiabilidadAnalytics instantaneaFiabilidad() {
+        FiabilidadAnalytics snapshot = AnalyticsStore.fiabilidad();
+        if (snapshot != null) return snapshot;
+        MongoDatabase db = MongoDBConfig.getDatabase();
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, db.getCollection(GARANTIAS).estimatedDocumentCount() + 16);
+        return FiabilidadAnalytics.load(db, capacity);
+    }
+
+    /**
+     * Costes (euros) de como mucho {@code max} reparaciones de los equipos de una marca o
+     * de un modelo ({@code modelo} null para toda la marca; {@code marca} null para una
+     * muestra de todas las reparaciones)
+     */
+    public double[] costes(String marca, String modelo, int max) {
+        try (OperationScope ignored = OperationScope.open(COLLECTION_NAME, "costes")) {
+            List<Bson> pipeline;
+            MongoCollection<Document> origen;
+            if (marca == null) {
+                origen = collection();
+                pipeline = List.of(Aggregates.sample(max), Aggregates.project(Projections.include("costo")));
+            } else {
+                // Garantías del equipo -> sus reparaciones (índice garantiaId de reparaciones)
+                origen = MongoDBConfig.getDatabase().getCollection(GARANTIAS);
+                Bson equipo = modelo != null
+                    ? Filters.and(Filters.eq("aireAcondicionado.marca", marca), Filters.eq("aireAcondicionado.modelo", modelo))
+                    : Filters.eq("aireAcondicionado.marca", marca);
+                pipeline = List.of(
+                    Aggregates.match(Filters.and(equipo, Filters.gt("numeroReparaciones", 0))),
+                    Aggregates.project(Projections.include("_id")),
+                    Aggregates.lookup(COLLECTION_NAME, "_id", "garantiaId", "reparaciones"),
+                    Aggregates.unwind("$reparaciones"),
+                    Aggregates.replaceRoot("$reparaciones"),
+                    Aggregates.project(Projections.include("costo")),
+                    Aggregates.limit(max));
+            }
+            double[] costes = new double[max];
+            int n = 0;
+            for (Document doc : origen.aggregate(pipeline).allowDiskUse(true)) {
+                Number costo = doc.get("costo", Number.class);
+                if (costo != null && n < max) costes[n++] = costo.doubleValue();
+            }
+            return Arrays.copyOf(costes, n);
+        }
+    }
+
+    private List<Reparacion> find(Bson filter) {
+        List<Reparacion> reparaciones = new ArrayList<>();
+        for (Document doc : collection().find(filter).sort(Sorts.descending("fecha"))) {
+            reparaciones.add(GarantiaMapper.toReparacion(doc));
+        }
+        return reparaciones;
+    }
+
+    private static Bson entre(LocalDate desde, LocalDate hasta) {
+        return Filters.and(
+            Filters.gte("fecha", Date.from(desde.atStartOfDay(ZoneId.systemDefault()).toInstant())),
+            Filters.lt("fecha", Date.from(hasta.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant()))
+        );
+    }
+}
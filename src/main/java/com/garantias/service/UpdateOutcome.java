@@ -0,0 +1,92 @@
+package com.garantias.service;
+
+import org.bson.Document;
+
+import java.util.List;
+
+/**
+ * Resultado de un {@code update} con control de versión.
+ * <p>
+ * Si otro puesto ha guardado la entidad desde que se leyó, no se escribe nada: el
+ * resultado es {@link Estado#CONFLICTO} con la versión actual de la base de datos y los
+ * campos que han cambiado los dos de forma distinta. Con {@code merge} del servicio se
+ * obtiene la entidad combinada para volver a guardarla.
+ * <p>
+ * Sin conexión el cambio queda en el puesto ({@link Estado#EN_COLA}) y se envía al
+ * volver la conexión (ver {@link Outbox}).
+ */
+public final class UpdateOutcome<T> {
+
+    public enum Estado {
+        ACTUALIZADA,
+        CONFLICTO,
+        NO_ENCONTRADA,
+        EN_COLA
+    }
+
+    /**
+     * Campo cambiado a la vez en los dos puestos (ruta con puntos, p. ej. {@code cliente.telefono})
+     */
+    public static final class FieldConflict {
+        private final String campo;
+        private final Object mio;
+        private final Object suyo;
+
+        FieldConflict(String campo, Object mio, Object suyo) {
+            this.campo = campo;
+            this.mio = mio;
+            this.suyo = suyo;
+        }
+
+        public String getCampo() { return campo; }
+        /** Valor guardado por este puesto (null si lo ha borrado) */
+        public Object getMio() { return mio; }
+        /** Valor guardado por el otro puesto (null si lo ha borrado) */
+        public Object getSuyo() { return suyo; }
+    }
+
+    private final Estado estado;
+    private final T actual;
+    private final List<FieldConflict> conflictos;
+
+    // Documentos para combinar: los leídos al abrir, los editados y los de la base de datos
+    final Document base;
+    final Document mio;
+    final Document suyo;
+
+    private UpdateOutcome(Estado estado, T actual, List<FieldConflict> conflictos,
+                          Document base, Document mio, Document suyo) {
+        this.estado = estado;
+        this.actual = actual;
+        this.conflictos = conflictos;
+        this.base = base;
+        this.mio = mio;
+        this.suyo = suyo;
+    }
+
+    static <T> UpdateOutcome<T> actualizada(T entidad) {
+        return new UpdateOutcome<>(Estado.ACTUALIZADA, entidad, List.of(), null, null, null);
+    }
+
+    static <T> UpdateOutcome<T> enCola(T entidad) {
+        return new UpdateOutcome<>(Estado.EN_COLA, entidad, List.of(), null, null, null);
+    }
+
+    static <T> UpdateOutcome<T> noEncontrada() {
+        return new UpdateOutcome<>(Estado.NO_ENCONTRADA, null, List.of(), null, null, null);
+    }
+
+    static <T> UpdateOutcome<T> conflicto(T actual, Document base, Document mio, Document suyo) {
+        return new UpdateOutcome<>(Estado.CONFLICTO, actual, ChangeTracker.conflictos(base, mio, suyo),
+            base, mio, suyo);
+    }
+
+    public Estado getEstado() { return estado; }
+    public boolean isActualizada() { return estado == Estado.ACTUALIZADA; }
+    /** true si el cambio está guardado en el puesto pendiente de enviar */
+    public boolean isEnCola() { return estado == Estado.EN_COLA; }
+    /** Entidad guardada (o en cola) o, en un conflicto, la versión actual de la base de datos */
+    public T getActual() { return actual; }
+    /** Campos cambiados por los dos; vacío si los cambios se pueden combinar sin preguntar */
+    public List<FieldConflict> getConflictos() { return conflictos; }
+}
@@ -0,0 +1,165 @@
+package com.garantias.service;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.events.EventBus;
+import com.garantias.events.FacturaChanged;
+import com.garantias.events.GarantiaChanged;
+import com.garantias.model.Factura;
+import com.garantias.model.Garantia;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ReadConcern;
+import com.mongodb.TransactionOptions;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Venta en mostrador: una garantía y su factura se crean juntas y enlazadas
+ * ({@code Garantia.facturaId} / {@code Factura.garantiaId}).
+ * <p>
+ * Los {@code _id} se generan en el puesto, así que los enlaces van ya en los documentos y
+ * no hace falta actualizarlos después. Con replica set (o mongos) los dos números y las
+ * dos altas van en una transacción; {@code withTransaction} reintenta los errores
+ * transitorios y la confirmación de resultado desconocido. Un servidor standalone no
+ * admite transacciones: se inserta la garantía y después la factura y, si esta falla, se
+ * borra la garantía. Si otro puesto se adelanta con el mismo número (E11000, que
+ * {@code withTransaction} no reintenta), la venta se repite entera con números nuevos
+ * hasta {@value #MAX_REINTENTOS} veces. Sin conexión las dos altas quedan en el diario local
+ * ({@link Outbox}), también enlazadas.
+ * <p>
+ * Las dos quedan enlazadas a la misma ficha de cliente, buscada con el teléfono y email
+ * de la garantía y el NIF de la factura (ver {@link ClienteService}).
+ */
+public class VentaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VentaService.class);
+    private static final String NOMBRE = "ventas";
+    private static final String GARANTIAS = "garantias";
+    private static final String FACTURAS = "facturas";
+    private static final int MAX_REINTENTOS = 5;
+
+    private static final TransactionOptions TRANSACCION = TransactionOptions.builder()
+        .readConcern(ReadConcern.SNAPSHOT)
+        .writeConcern(WriteConcern.MAJORITY)
+        .build();
+
+    private final GarantiaService garantiaService = new GarantiaService();
+    private final FacturaService facturaService = new FacturaService();
+    private final ClienteService clienteService = new ClienteService();
+
+    /**
+     * Asigna los números de garantía y factura y crea las dos, enlazadas
+     */
+    public void registrar(Garantia garantia, Factura factura) {
+        try (OperationScope ignored = OperationScope.open(NOMBRE, "registrar")) {
+            if (garantia.getId() == null) garantia.setId(new ObjectId());
+            if (factura.getId() == null) factura.setId(new ObjectId());
+            garantia.setFacturaId(factura.getId());
+            factura.setGarantiaId(garantia.getId());
+
+            if (Outbox.hayPendientes()) {
+                enCola(garantia, factura);
+                return;
+            }
+            try {
+                vincularCliente(garantia, factura);
+                for (int intento = 1; ; intento++) {
+                    try {
+                        if (MongoDBConfig.supportsTransactions()) {
+                            enTransaccion(garantia, factura);
+                        } else {
+                            porOrden(garantia, factura);
+                        }
+                        break;
+                    } catch (MongoWriteException e) {
+                        if (!numeroRepetido(e) || intento >= MAX_REINTENTOS) throw e;
+                        logger.warn("⚠️ Número {} / {} ya usado por otro puesto: se repite la venta",
+                            garantia.getNumeroGarantia(), factura.getNumeroFactura());
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (!Outbox.sinConexion(e)) throw e;
+                enCola(garantia, factura);
+                return;
+            }
+            logger.info("Venta registrada: garantía {} y factura {}", garantia.getNumeroGarantia(), factura.getNumeroFactura());
+            EventBus.publish(new GarantiaChanged(garantia.getId(), null, garantia));
+            EventBus.publish(new FacturaChanged(factura.getId(), null, factura));
+        }
+    }
+
+    /**
+     * Una sola búsqueda de ficha para las dos, con todas las claves que hay (fuera de la
+     * transacción: una ficha sin venta no estorba)
+     */
+    private void vincularCliente(Garantia garantia, Factura factura) {
+        if (garantia.getClienteId() == null) {
+            Garantia.Cliente g = garantia.getCliente();
+            Factura.DatosCliente f = factura.getCliente();
+            garantia.setClienteId(clienteService.resolver(
+                g != null ? g.getNombre() : f != null ? f.getNombre() : null,
+                f != null ? f.getNif() : null,
+                g != null ? g.getTelefono() : null,
+                g != null ? g.getEmail() : null,
+                g != null ? g.getDireccion() : f != null ? f.getDireccion() : null));
+        }
+        factura.setClienteId(garantia.getClienteId());
+    }
+
+    private void enTransaccion(Garantia garantia, Factura factura) {
+        try (ClientSession session = MongoDBConfig.startSession()) {
+            session.withTransaction(() -> {
+                // Dentro del bloque, para que un reintento de withTransaction (solo errores
+                // transitorios) recalcule los números; los repetidos los reintenta registrar()
+                numerar(garantia, factura);
+                MongoDatabase db = MongoDBConfig.getDatabase();
+                db.getCollection(GARANTIAS).insertOne(session, GarantiaMapper.toDocument(garantia));
+                db.getCollection(FACTURAS).insertOne(session, FacturaMapper.toDocument(factura));
+                return null;
+            }, TRANSACCION);
+        }
+    }
+
+    private void porOrden(Garantia garantia, Factura factura) {
+        numerar(garantia, factura);
+        MongoDatabase db = MongoDBConfig.getDatabase();
+        db.getCollection(GARANTIAS).insertOne(GarantiaMapper.toDocument(garantia));
+        try {
+            db.getCollection(FACTURAS).insertOne(FacturaMapper.toDocument(factura));
+        } catch (RuntimeException e) {
+            // Sin transacción: no dejar la garantía sin su factura
+            try {
+                db.getCollection(GARANTIAS).deleteOne(Filters.eq("_id", garantia.getId()));
+            } catch (RuntimeException ex) {
+                logger.error("❌ Garantía {} creada sin su factura: {}", garantia.getNumeroGarantia(), ex.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    // Otro puesto ha usado el mismo número entre la consulta y el alta
+    private static boolean numeroRepetido(MongoWriteException e) {
+        return e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY
+            && (e.getMessage().contains("numeroGarantia") || e.getMessage().contains("numeroFactura"));
+    }
+
+    private void numerar(Garantia garantia, Factura factura) {
+        garantia.setNumeroGarantia(garantiaService.generateNextNumero());
+        factura.setNumeroFactura(facturaService.generateNextNumero());
+    }
+
+    /**
+     * Sin conexión: números provisionales y las dos altas al diario local, en orden
+     */
+    private void enCola(Garantia garantia, Factura factura) {
+        garantia.setNumeroGarantia(garantiaService.reservarNumero());
+        factura.setNumeroFactura(facturaService.reservarNumero());
+        garantiaService.insert(garantia);
+        facturaService.insert(factura);
+    }
+}
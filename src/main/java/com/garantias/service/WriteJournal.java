@@ -0,0 +1,180 @@
+package com.garantias.service;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Diario de solo añadir de las escrituras pendientes de enviar a MongoDB.
+ * <p>
+ * Cada entrada es una línea de JSON extendido (conserva fechas, {@code long} y
+ * {@code Decimal128}) con un número de secuencia creciente, y se fuerza a disco antes de
+ * devolver. Lo ya aplicado se anota aparte ({@code outbox.ack}, escrito y renombrado);
+ * cuando no queda nada pendiente el diario se vacía. Las líneas ilegibles (p. ej. la
+ * última, a medias tras un corte de luz) se descartan al abrir. Las entradas que MongoDB
+ * rechaza se apartan en {@code outbox.dead.jsonl} con el motivo.
+ */
+final class WriteJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteJournal.class);
+
+    // Registro del driver: incluye los tipos que escriben los mappers (p. ej. java.sql.Date)
+    private static final Codec<Document> CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+
+    private final Path file;
+    private final Path ackFile;
+    private final Path deadFile;
+    private final Deque<Document> pendientes = new ArrayDeque<>();
+    private FileChannel channel;
+    private long ultimoSeq;
+
+    WriteJournal(Path dir) {
+        this.file = dir.resolve("outbox.jsonl");
+        this.ackFile = dir.resolve("outbox.ack");
+        this.deadFile = dir.resolve("outbox.dead.jsonl");
+    }
+
+    /**
+     * Carga las entradas no aplicadas y reescribe el diario solo con ellas
+     */
+    synchronized void open() throws IOException {
+        Files.createDirectories(file.getParent());
+        long ack = Files.exists(ackFile) ? Long.parseLong(Files.readString(ackFile, StandardCharsets.UTF_8).trim()) : 0;
+        ultimoSeq = ack;
+        if (Files.exists(file)) {
+            int descartadas = 0;
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    Document entry;
+                    try {
+                        entry = Document.parse(line);
+                    } catch (RuntimeException e) {
+                        descartadas++;
+                        continue;
+                    }
+                    long seq = entry.getLong("seq");
+                    ultimoSeq = Math.max(ultimoSeq, seq);
+                    if (seq > ack) pendientes.add(entry);
+                }
+            }
+            if (descartadas > 0) logger.warn("⚠️ {} línea(s) ilegibles descartadas de {}", descartadas, file);
+        }
+        rewrite();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!pendientes.isEmpty()) logger.info("Diario de escrituras: {} pendientes de enviar", pendientes.size());
+    }
+
+    private void rewrite() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Document entry : pendientes) {
+                out.write(entry.toJson(JSON, CODEC));
+                out.write('\n');
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Añade una entrada (se le asigna {@code seq}) y espera a que esté en disco
+     */
+    synchronized long append(Document entry) throws IOException {
+        long seq = ultimoSeq + 1;
+        Document linea = new Document("seq", seq);
+        linea.putAll(entry);
+        String json = linea.toJson(JSON, CODEC);
+        ByteBuffer bytes = ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        ultimoSeq = seq;
+        // Lo escrito, no el documento recibido: los mismos tipos que al cargar el diario
+        // tras reiniciar (p. ej. java.util.Date en vez del java.sql.Date de los mappers)
+        pendientes.add(Document.parse(json));
+        return seq;
+    }
+
+    /**
+     * Las primeras {@code max} entradas pendientes, en orden
+     */
+    synchronized List<Document> lote(int max) {
+        List<Document> lote = new ArrayList<>(Math.min(max, pendientes.size()));
+        Iterator<Document> it = pendientes.iterator();
+        while (it.hasNext() && lote.size() < max) {
+            lote.add(it.next());
+        }
+        return lote;
+    }
+
+    /**
+     * Marca como aplicadas las entradas hasta {@code seq} (incluida)
+     */
+    synchronized void ack(long seq) throws IOException {
+        while (!pendientes.isEmpty() && pendientes.peekFirst().getLong("seq") <= seq) {
+            pendientes.removeFirst();
+        }
+        Path tmp = ackFile.resolveSibling(ackFile.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(seq), StandardCharsets.UTF_8);
+        Files.move(tmp, ackFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // El ack guarda la secuencia: el diario vacío puede empezar de cero sin repetir números
+        if (pendientes.isEmpty()) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Copia la entrada, con el motivo, al fichero de rechazadas y espera a que esté en
+     * disco. Sigue pendiente hasta su {@link #ack}.
+     */
+    synchronized void apartar(Document entry, String motivo) throws IOException {
+        Document linea = new Document(entry).append("motivo", motivo);
+        ByteBuffer bytes = ByteBuffer.wrap((linea.toJson(JSON, CODEC) + "\n").getBytes(StandardCharsets.UTF_8));
+        try (FileChannel dead = FileChannel.open(deadFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                dead.write(bytes);
+            }
+            dead.force(false);
+        }
+    }
+
+    synchronized int size() {
+        return pendientes.size();
+    }
+
+    synchronized boolean contiene(Object id) {
+        for (Document entry : pendientes) {
+            if (id.equals(entry.get("_id"))) return true;
+        }
+        return false;
+    }
+
+    synchronized void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+}
@@ -0,0 +1,138 @@
+package com.garantias.snapshot;
+
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Factura.MetodoPago;
+import com.garantias.util.Dinero;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Fila de la tabla de facturas: número, cliente, fecha, total (céntimos), estado y método de pago
+ */
+public final class FacturaResumen {
+
+    /** Campos que se leen de MongoDB al sincronizar */
+    static final Bson PROJECTION = Projections.include(
+        "numeroFactura", "cliente.nombre", "fechaEmision", "total",
+        "estado", "estadoFactura", "metodoPago", "fechaActualizacion");
+
+    private static final EstadoFactura[] ESTADOS = EstadoFactura.values();
+    private static final MetodoPago[] METODOS = MetodoPago.values();
+
+    private final ObjectId id;
+    private final String numeroFactura;
+    private final String cliente;
+    private final LocalDate fechaEmision;
+    private final long total;
+    private final EstadoFactura estado;
+    private final MetodoPago metodoPago;
+    private final long actualizado;
+
+    FacturaResumen(ObjectId id, String numeroFactura, String cliente, LocalDate fechaEmision, long total,
+                   EstadoFactura estado, MetodoPago metodoPago, long actualizado) {
+        this.id = id;
+        this.numeroFactura = numeroFactura;
+        this.cliente = cliente;
+        this.fechaEmision = fechaEmision;
+        this.total = total;
+        this.estado = estado;
+        this.metodoPago = metodoPago;
+        this.actualizado = actualizado;
+    }
+
+    /**
+     * A partir de un documento completo o proyectado con {@link #PROJECTION}
+     */
+    static FacturaResumen of(Document doc) {
+        // Igual que FacturaMapper: "estadoFactura" tiene prioridad sobre "estado"
+        String estado = doc.getString("estadoFactura");
+        if (estado == null) estado = doc.getString("estado");
+        Document clienteDoc = doc.get("cliente", Document.class);
+        return new FacturaResumen(
+            doc.getObjectId("_id"),
+            doc.getString("numeroFactura"),
+            clienteDoc != null ? clienteDoc.getString("nombre") : null,
+            GarantiaResumen.toLocalDate(doc.getDate("fechaEmision")),
+            Dinero.deBson(doc.get("total")),
+            GarantiaResumen.parse(EstadoFactura.class, estado),
+            GarantiaResumen.parse(MetodoPago.class, doc.getString("metodoPago")),
+            GarantiaResumen.millis(doc.getDate("fechaActualizacion")));
+    }
+
+    /**
+     * Factura parcial para la tabla (sin líneas); para ver el detalle hay que cargar la completa
+     */
+    public Factura toFactura() {
+        Factura f = new Factura();
+        f.setId(id);
+        f.setNumeroFactura(numeroFactura);
+        f.setCliente(new Factura.DatosCliente(cliente, null, null));
+        f.setFechaEmision(fechaEmision);
+        f.setTotalCentimos(total);
+        f.setEstado(estado);
+        f.setMetodoPago(metodoPago);
+        f.setFechaActualizacion(actualizado != 0 ? GarantiaResumen.toLocalDateTime(actualizado) : null);
+        return f;
+    }
+
+    ObjectId getId() { return id; }
+    LocalDate getFechaEmision() { return fechaEmision; }
+    long getActualizado() { return actualizado; }
+
+    // ========================================
+    // REGISTRO DE ANCHO FIJO (56 bytes)
+    // ========================================
+
+    static final RecordCodec<FacturaResumen> CODEC = new RecordCodec<>() {
+        @Override
+        public int kind() {
+            return 2;
+        }
+
+        @Override
+        public int recordSize() {
+            return 56;
+        }
+
+        @Override
+        public ObjectId id(FacturaResumen value) {
+            return value.id;
+        }
+
+        @Override
+        public long actualizado(FacturaResumen value) {
+            return value.actualizado;
+        }
+
+        @Override
+        public void write(ByteBuffer buf, int pos, FacturaResumen r, SnapshotFile.Heap heap) {
+            SnapshotFile.writeId(buf, pos, r.id);
+            SnapshotFile.writeEnum(buf, pos + 12, r.estado);
+            SnapshotFile.writeEnum(buf, pos + 13, r.metodoPago);
+            heap.put(buf, pos + 16, r.numeroFactura);
+            heap.put(buf, pos + 24, r.cliente);
+            SnapshotFile.writeDate(buf, pos + 32, r.fechaEmision);
+            buf.putLong(pos + 40, r.total);
+            buf.putLong(pos + 48, r.actualizado);
+        }
+
+        @Override
+        public FacturaResumen read(ByteBuffer buf, int pos, SnapshotFile<FacturaResumen> file) {
+            return new FacturaResumen(
+                SnapshotFile.readId(buf, pos),
+                file.string(buf, pos + 16),
+                file.string(buf, pos + 24),
+                SnapshotFile.readDate(buf, pos + 32),
+                buf.getLong(pos + 40),
+                SnapshotFile.readEnum(buf, pos + 12, ESTADOS),
+                SnapshotFile.readEnum(buf, pos + 13, METODOS),
+                buf.getLong(pos + 48));
+        }
+    };
+}
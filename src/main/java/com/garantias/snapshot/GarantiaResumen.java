@@ -0,0 +1,185 @@
+package com.garantias.snapshot;
+
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Fila de la tabla de garantías: solo los campos que se muestran y por los que se filtra
+ */
+public final class GarantiaResumen {
+
+    /** Campos que se leen de MongoDB al sincronizar */
+    static final Bson PROJECTION = Projections.include(
+        "numeroGarantia", "cliente.nombre", "aireAcondicionado.marca", "aireAcondicionado.modelo",
+        "garantia.fechaInicio", "garantia.fechaFin", "garantia.estado",
+        "fechaCreacion", "fechaActualizacion");
+
+    private static final EstadoGarantia[] ESTADOS = EstadoGarantia.values();
+
+    private final ObjectId id;
+    private final String numeroGarantia;
+    private final String cliente;
+    private final String marca;
+    private final String modelo;
+    private final LocalDate fechaInicio;
+    private final LocalDate fechaFin;
+    private final EstadoGarantia estado;
+    private final long creado;
+    private final long actualizado;
+
+    GarantiaResumen(ObjectId id, String numeroGarantia, String cliente, String marca, String modelo,
+                    LocalDate fechaInicio, LocalDate fechaFin, EstadoGarantia estado,
+                    long creado, long actualizado) {
+        this.id = id;
+        this.numeroGarantia = numeroGarantia;
+        this.cliente = cliente;
+        this.marca = marca;
+        this.modelo = modelo;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+        this.estado = estado;
+        this.creado = creado;
+        this.actualizado = actualizado;
+    }
+
+    /**
+     * A partir de un documento completo o proyectado con {@link #PROJECTION}
+     */
+    static GarantiaResumen of(Document doc) {
+        Document clienteDoc = doc.get("cliente", Document.class);
+        Document aireDoc = doc.get("aireAcondicionado", Document.class);
+        Document garDoc = doc.get("garantia", Document.class);
+        return new GarantiaResumen(
+            doc.getObjectId("_id"),
+            doc.getString("numeroGarantia"),
+            clienteDoc != null ? clienteDoc.getString("nombre") : null,
+            aireDoc != null ? aireDoc.getString("marca") : null,
+            aireDoc != null ? aireDoc.getString("modelo") : null,
+            garDoc != null ? toLocalDate(garDoc.getDate("fechaInicio")) : null,
+            garDoc != null ? toLocalDate(garDoc.getDate("fechaFin")) : null,
+            garDoc != null ? parse(EstadoGarantia.class, garDoc.getString("estado")) : null,
+            millis(doc.getDate("fechaCreacion")),
+            millis(doc.getDate("fechaActualizacion")));
+    }
+
+    /**
+     * Garantía parcial para la tabla; para ver o editar hay que cargar la completa
+     */
+    public Garantia toGarantia() {
+        Garantia g = new Garantia();
+        g.setId(id);
+        g.setNumeroGarantia(numeroGarantia);
+        g.setCliente(new Garantia.Cliente(cliente, null, null, null));
+
+        Garantia.AireAcondicionado aire = new Garantia.AireAcondicionado();
+        aire.setMarca(marca);
+        aire.setModelo(modelo);
+        g.setAireAcondicionado(aire);
+
+        Garantia.DetalleGarantia detalle = new Garantia.DetalleGarantia();
+        detalle.setFechaInicio(fechaInicio);
+        detalle.setFechaFin(fechaFin);
+        detalle.setEstado(estado);
+        g.setGarantia(detalle);
+
+        g.setFechaCreacion(creado != 0 ? toLocalDateTime(creado) : null);
+        g.setFechaActualizacion(actualizado != 0 ? toLocalDateTime(actualizado) : null);
+        return g;
+    }
+
+    ObjectId getId() { return id; }
+    long getCreado() { return creado; }
+    long getActualizado() { return actualizado; }
+
+    // ========================================
+    // REGISTRO DE ANCHO FIJO (72 bytes)
+    // ========================================
+
+    static final RecordCodec<GarantiaResumen> CODEC = new RecordCodec<>() {
+        @Override
+        public int kind() {
+            return 1;
+        }
+
+        @Override
+        public int recordSize() {
+            return 72;
+        }
+
+        @Override
+        public ObjectId id(GarantiaResumen value) {
+            return value.id;
+        }
+
+        @Override
+        public long actualizado(GarantiaResumen value) {
+            return value.actualizado;
+        }
+
+        @Override
+        public void write(ByteBuffer buf, int pos, GarantiaResumen r, SnapshotFile.Heap heap) {
+            SnapshotFile.writeId(buf, pos, r.id);
+            SnapshotFile.writeEnum(buf, pos + 12, r.estado);
+            heap.put(buf, pos + 16, r.numeroGarantia);
+            heap.put(buf, pos + 24, r.cliente);
+            heap.put(buf, pos + 32, r.marca);
+            heap.put(buf, pos + 40, r.modelo);
+            SnapshotFile.writeDate(buf, pos + 48, r.fechaInicio);
+            SnapshotFile.writeDate(buf, pos + 52, r.fechaFin);
+            buf.putLong(pos + 56, r.creado);
+            buf.putLong(pos + 64, r.actualizado);
+        }
+
+        @Override
+        public GarantiaResumen read(ByteBuffer buf, int pos, SnapshotFile<GarantiaResumen> file) {
+            return new GarantiaResumen(
+                SnapshotFile.readId(buf, pos),
+                file.string(buf, pos + 16),
+                file.string(buf, pos + 24),
+                file.string(buf, pos + 32),
+                file.string(buf, pos + 40),
+                SnapshotFile.readDate(buf, pos + 48),
+                SnapshotFile.readDate(buf, pos + 52),
+                SnapshotFile.readEnum(buf, pos + 12, ESTADOS),
+                buf.getLong(pos + 56),
+                buf.getLong(pos + 64));
+        }
+    };
+
+    // ========================================
+    // CONVERSIONES
+    // ========================================
+
+    static <E extends Enum<E>> E parse(Class<E> type, String name) {
+        if (name == null) return null;
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static long millis(Date date) {
+        return date != null ? date.getTime() : 0;
+    }
+
+    static LocalDate toLocalDate(Date date) {
+        // getTime() y no toInstant(): los java.sql.Date no lo admiten
+        return date != null ? Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate() : null;
+    }
+
+    static LocalDateTime toLocalDateTime(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDateTime();
+    }
+}
@@ -0,0 +1,140 @@
+package com.garantias.snapshot;
+
+import com.garantias.model.Factura;
+import com.garantias.model.Garantia;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Copia local de los listados de garantías y facturas para arrancar al instante y
+ * consultar sin conexión.
+ * <p>
+ * Se guardan solo las filas resumidas de las tablas en ficheros proyectados en memoria
+ * ({@code garantias.snapshot.dir}, {@code data/snapshot} por defecto). Al arrancar, las
+ * tablas se pintan desde el fichero y en segundo plano se traen de MongoDB los cambios
+ * desde la última {@code fechaActualizacion}. Sin MongoDB la copia es de solo lectura.
+ * Se desactiva con {@code -Dgarantias.snapshot=false}.
+ */
+public final class LocalSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalSnapshot.class);
+
+    public static final String ENABLED_PROPERTY = "garantias.snapshot";
+    public static final String DIR_PROPERTY = "garantias.snapshot.dir";
+    private static final String DEFAULT_DIR = "data/snapshot";
+
+    private static volatile SnapshotStore<GarantiaResumen> garantias;
+    private static volatile SnapshotStore<FacturaResumen> facturas;
+
+    private LocalSnapshot() {}
+
+    /**
+     * Proyecta los ficheros existentes y lanza una sincronización en segundo plano (idempotente)
+     */
+    public static synchronized void start() {
+        if (garantias != null || !isEnabled()) return;
+
+        Path dir = Paths.get(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+        SnapshotStore<GarantiaResumen> g = new SnapshotStore<>("garantias", GarantiaResumen.CODEC,
+            GarantiaResumen.PROJECTION, GarantiaResumen::of,
+            Comparator.comparingLong(GarantiaResumen::getCreado).reversed(), dir);
+        SnapshotStore<FacturaResumen> f = new SnapshotStore<>("facturas", FacturaResumen.CODEC,
+            FacturaResumen.PROJECTION, FacturaResumen::of,
+            Comparator.comparing(FacturaResumen::getFechaEmision, Comparator.nullsFirst(Comparator.naturalOrder())).reversed(),
+            dir);
+        g.open();
+        f.open();
+        garantias = g;
+        facturas = f;
+
+        Thread sync = new Thread(() -> {
+            try {
+                g.sync();
+                f.sync();
+            } catch (RuntimeException e) {
+                // Sin conexión: las tablas siguen con la copia local y sincronizan al recargar
+                logger.warn("⚠️ No se pudo sincronizar la copia local: {}", e.getMessage());
+            }
+        }, "snapshot-sync");
+        sync.setDaemon(true);
+        sync.setPriority(Thread.MIN_PRIORITY);
+        sync.start();
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+    }
+
+    /** true si la copia está activa y las tablas deben leer de ella */
+    public static boolean isStarted() {
+        return garantias != null;
+    }
+
+    // ========================================
+    // GARANTÍAS
+    // ========================================
+
+    /**
+     * Garantías (parciales) del fichero local, sin consultar MongoDB
+     */
+    public static List<Garantia> garantias() {
+        SnapshotStore<GarantiaResumen> store = garantias;
+        return store != null ? toGarantias(store.rows()) : List.of();
+    }
+
+    /**
+     * Sincroniza con MongoDB y devuelve las garantías (parciales) actualizadas
+     *
+     * @throws com.garantias.config.DatabaseUnavailableException o MongoException sin conexión
+     */
+    public static List<Garantia> syncGarantias() {
+        SnapshotStore<GarantiaResumen> store = garantias;
+        if (store == null) throw new IllegalStateException("La copia local no está iniciada");
+        return toGarantias(store.sync());
+    }
+
+    private static List<Garantia> toGarantias(List<GarantiaResumen> rows) {
+        List<Garantia> result = new ArrayList<>(rows.size());
+        for (GarantiaResumen row : rows) {
+            result.add(row.toGarantia());
+        }
+        return result;
+    }
+
+    // ========================================
+    // FACTURAS
+    // ========================================
+
+    /**
+     * Facturas (parciales, sin líneas) del fichero local, sin consultar MongoDB
+     */
+    public static List<Factura> facturas() {
+        SnapshotStore<FacturaResumen> store = facturas;
+        return store != null ? toFacturas(store.rows()) : List.of();
+    }
+
+    /**
+     * Sincroniza con MongoDB y devuelve las facturas (parciales) actualizadas
+     *
+     * @throws com.garantias.config.DatabaseUnavailableException o MongoException sin conexión
+     */
+    public static List<Factura> syncFacturas() {
+        SnapshotStore<FacturaResumen> store = facturas;
+        if (store == null) throw new IllegalStateException("La copia local no está iniciada");
+        return toFacturas(store.sync());
+    }
+
+    private static List<Factura> toFacturas(List<FacturaResumen> rows) {
+        List<Factura> result = new ArrayList<>(rows.size());
+        for (FacturaResumen row : rows) {
+            result.add(row.toFactura());
+        }
+        return result;
+    }
+}
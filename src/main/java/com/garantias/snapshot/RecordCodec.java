@@ -0,0 +1,28 @@
+package com.garantias.snapshot;
+
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Formato de registro de ancho fijo de un {@link SnapshotFile}.
+ * <p>
+ * Los textos no van en el registro: se guarda su posición en el montón de cadenas
+ * del fichero ({@link SnapshotFile.Heap#put} / {@link SnapshotFile#string}).
+ */
+interface RecordCodec<T> {
+
+    /** Identifica el tipo de registro en la cabecera (un fichero de otro tipo se descarta) */
+    int kind();
+
+    int recordSize();
+
+    ObjectId id(T value);
+
+    /** Marca de tiempo de la última modificación en MongoDB (epoch ms, 0 si no consta) */
+    long actualizado(T value);
+
+    void write(ByteBuffer buf, int pos, T value, SnapshotFile.Heap heap);
+
+    T read(ByteBuffer buf, int pos, SnapshotFile<T> file);
+}
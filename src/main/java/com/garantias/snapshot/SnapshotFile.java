@@ -0,0 +1,219 @@
+package com.garantias.snapshot;
+
+import org.bson.types.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Fichero de instantánea proyectado en memoria (fuera del heap de Java).
+ * <p>
+ * Formato: cabecera de {@value #HEADER_SIZE} bytes, registros de ancho fijo
+ * ({@link RecordCodec}) y un montón de cadenas UTF-8 sin repetir. Los registros se
+ * decodifican al leerlos, sin cargar el fichero entero. La marca de la cabecera se
+ * escribe la última: un fichero a medio escribir no se reconoce al abrirlo.
+ */
+final class SnapshotFile<T> {
+
+    static final int HEADER_SIZE = 64;
+    static final int NULL_DAY = Integer.MIN_VALUE;
+
+    private static final int MAGIC = 0x47534E50; // "GSNP"
+    private static final int VERSION = 1;
+
+    private final RecordCodec<T> codec;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long lastSync;
+    private final int heapOffset;
+
+    private SnapshotFile(RecordCodec<T> codec, Path path, MappedByteBuffer buffer,
+                         int count, long lastSync, int heapOffset) {
+        this.codec = codec;
+        this.path = path;
+        this.buffer = buffer;
+        this.count = count;
+        this.lastSync = lastSync;
+        this.heapOffset = heapOffset;
+    }
+
+    /**
+     * Proyecta el fichero en memoria; null si no es una instantánea válida de este tipo
+     */
+    static <T> SnapshotFile<T> open(Path path, RecordCodec<T> codec) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // La proyección sigue siendo válida después de cerrar el canal
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+            || buffer.getInt(8) != codec.kind() || buffer.getInt(12) != codec.recordSize()) {
+            return null;
+        }
+        int count = buffer.getInt(16);
+        long heapOffset = buffer.getLong(32);
+        long heapLength = buffer.getLong(40);
+        if (heapOffset != HEADER_SIZE + (long) count * codec.recordSize()
+            || heapOffset + heapLength != buffer.capacity()) {
+            return null;
+        }
+        return new SnapshotFile<>(codec, path, buffer, count, buffer.getLong(24), (int) heapOffset);
+    }
+
+    /**
+     * Escribe un fichero nuevo (no debe existir) con las filas en el orden dado
+     */
+    static <T> void write(Path path, RecordCodec<T> codec, List<T> rows, long lastSync) throws IOException {
+        int recordSize = codec.recordSize();
+        ByteBuffer records = ByteBuffer.allocate(Math.multiplyExact(rows.size(), recordSize));
+        Heap heap = new Heap();
+        for (int i = 0; i < rows.size(); i++) {
+            codec.write(records, i * recordSize, rows.get(i), heap);
+        }
+
+        long heapOffset = HEADER_SIZE + (long) records.capacity();
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, heapOffset + heap.size());
+            out.position(HEADER_SIZE);
+            out.put(records.array());
+            heap.writeTo(out);
+
+            out.putInt(4, VERSION);
+            out.putInt(8, codec.kind());
+            out.putInt(12, recordSize);
+            out.putInt(16, rows.size());
+            out.putLong(24, lastSync);
+            out.putLong(32, heapOffset);
+            out.putLong(40, heap.size());
+            out.force();
+            out.putInt(0, MAGIC);
+            out.force();
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /** Mayor fecha de actualización vista en MongoDB en la última sincronización (epoch ms) */
+    long lastSync() {
+        return lastSync;
+    }
+
+    /**
+     * Vista de solo lectura de los registros; cada acceso decodifica desde el fichero
+     */
+    List<T> records() {
+        return new Records();
+    }
+
+    private final class Records extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+            return codec.read(buffer, HEADER_SIZE + index * codec.recordSize(), SnapshotFile.this);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    // ========================================
+    // CAMPOS DE LOS REGISTROS
+    // ========================================
+
+    /**
+     * Texto cuya referencia (posición y longitud en el montón) está en {@code pos}
+     */
+    String string(ByteBuffer buf, int pos) {
+        int offset = buf.getInt(pos);
+        if (offset < 0) return null;
+        byte[] bytes = new byte[buf.getInt(pos + 4)];
+        buffer.get(heapOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static ObjectId readId(ByteBuffer buf, int pos) {
+        byte[] bytes = new byte[12];
+        buf.get(pos, bytes);
+        return new ObjectId(bytes);
+    }
+
+    static void writeId(ByteBuffer buf, int pos, ObjectId id) {
+        buf.put(pos, id.toByteArray());
+    }
+
+    static LocalDate readDate(ByteBuffer buf, int pos) {
+        int day = buf.getInt(pos);
+        return day == NULL_DAY ? null : LocalDate.ofEpochDay(day);
+    }
+
+    static void writeDate(ByteBuffer buf, int pos, LocalDate date) {
+        buf.putInt(pos, date != null ? (int) date.toEpochDay() : NULL_DAY);
+    }
+
+    static <E extends Enum<E>> E readEnum(ByteBuffer buf, int pos, E[] values) {
+        int ordinal = buf.get(pos);
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : null;
+    }
+
+    static void writeEnum(ByteBuffer buf, int pos, Enum<?> value) {
+        buf.put(pos, (byte) (value != null ? value.ordinal() : -1));
+    }
+
+    /**
+     * Montón de cadenas que se va llenando al escribir; cada texto distinto se guarda una vez
+     */
+    static final class Heap {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Map<String, int[]> refs = new HashMap<>();
+
+        /**
+         * Escribe en {@code pos} la referencia al texto (8 bytes; posición -1 si es null)
+         */
+        void put(ByteBuffer buf, int pos, String value) {
+            if (value == null) {
+                buf.putInt(pos, -1);
+                buf.putInt(pos + 4, 0);
+                return;
+            }
+            int[] ref = refs.computeIfAbsent(value, v -> {
+                byte[] encoded = v.getBytes(StandardCharsets.UTF_8);
+                int offset = bytes.size();
+                bytes.write(encoded, 0, encoded.length);
+                return new int[]{offset, encoded.length};
+            });
+            buf.putInt(pos, ref[0]);
+            buf.putInt(pos + 4, ref[1]);
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(ByteBuffer out) {
+            out.put(bytes.toByteArray());
+        }
+    }
+}
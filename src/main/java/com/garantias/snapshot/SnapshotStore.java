@@ -0,0 +1,212 @@
+package com.garantias.snapshot;
+
+import com.garantias.config.MongoDBConfig;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Copia local de una colección: el fichero proyectado más reciente y su sincronización.
+ * <p>
+ * Cada sincronización escribe una generación nueva ({@code <coleccion>-<n>.snap}) en lugar
+ * de sobrescribir la que está proyectada: en Windows un fichero proyectado no se puede
+ * reemplazar ni borrar. Las generaciones antiguas se borran cuando se puede.
+ */
+final class SnapshotStore<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    // Margen sobre la última fecha vista: otros puestos pueden llevar el reloj algo atrasado
+    private static final long OVERLAP_MS = 5 * 60 * 1000;
+    private static final int BATCH_SIZE = 5000;
+
+    private final String collection;
+    private final RecordCodec<T> codec;
+    private final Bson projection;
+    private final Function<Document, T> fromDocument;
+    private final Comparator<T> order;
+    private final Path dir;
+
+    private volatile SnapshotFile<T> current;
+    private long generation;
+
+    SnapshotStore(String collection, RecordCodec<T> codec, Bson projection,
+                  Function<Document, T> fromDocument, Comparator<T> order, Path dir) {
+        this.collection = collection;
+        this.codec = codec;
+        this.projection = projection;
+        this.fromDocument = fromDocument;
+        this.order = order;
+        this.dir = dir;
+    }
+
+    /**
+     * Proyecta la generación válida más reciente del directorio (no consulta MongoDB)
+     */
+    synchronized void open() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, collection + "-*.snap")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            return;
+        }
+        files.sort(Comparator.comparingLong(this::generationOf).reversed());
+
+        for (Path file : files) {
+            try {
+                SnapshotFile<T> snapshot = SnapshotFile.open(file, codec);
+                if (snapshot != null) {
+                    current = snapshot;
+                    generation = generationOf(file);
+                    logger.info("Copia local de {}: {} filas ({})", collection, snapshot.size(), file.getFileName());
+                    break;
+                }
+            } catch (IOException e) {
+                logger.warn("⚠️ No se pudo abrir {}: {}", file, e.getMessage());
+            }
+        }
+        deleteOldGenerations(files);
+    }
+
+    /**
+     * Filas de la copia local en el orden de la tabla (vacía si no hay copia)
+     */
+    List<T> rows() {
+        SnapshotFile<T> snapshot = current;
+        return snapshot != null ? snapshot.records() : List.of();
+    }
+
+    /**
+     * Trae de MongoDB lo modificado desde la última sincronización y los _id existentes
+     * (para detectar altas y bajas), y escribe una generación nueva si algo ha cambiado.
+     * Sin copia previa carga la colección entera (solo los campos del resumen).
+     *
+     * @return filas actualizadas, aunque no se hayan podido guardar en disco
+     */
+    synchronized List<T> sync() {
+        long inicio = System.currentTimeMillis();
+        SnapshotFile<T> snapshot = current;
+        long desde = snapshot != null ? snapshot.lastSync() : 0;
+        MongoCollection<Document> coll = MongoDBConfig.getDatabase().getCollection(collection);
+
+        Map<ObjectId, T> rows = new HashMap<>();
+        if (snapshot != null) {
+            for (T row : snapshot.records()) {
+                rows.put(codec.id(row), row);
+            }
+        }
+
+        Bson filter = snapshot != null
+            ? Filters.gte("fechaActualizacion", new Date(Math.max(0, desde - OVERLAP_MS)))
+            : new Document();
+        long ultima = desde;
+        int cambios = 0;
+        for (Document doc : coll.find(filter).projection(projection).batchSize(BATCH_SIZE)) {
+            T row = fromDocument.apply(doc);
+            if (merge(rows, row)) cambios++;
+            ultima = Math.max(ultima, codec.actualizado(row));
+        }
+
+        // Altas y bajas (desde este u otro puesto), sin depender de las fechas: se comparan los _id
+        if (snapshot != null) {
+            Set<ObjectId> ids = new HashSet<>(rows.size() * 2);
+            List<ObjectId> altas = new ArrayList<>();
+            for (Document doc : coll.find().projection(Projections.include("_id")).batchSize(BATCH_SIZE)) {
+                ObjectId id = doc.getObjectId("_id");
+                ids.add(id);
+                if (!rows.containsKey(id)) altas.add(id);
+            }
+            int antes = rows.size();
+            rows.keySet().retainAll(ids);
+            cambios += antes - rows.size();
+
+            for (int i = 0; i < altas.size(); i += BATCH_SIZE) {
+                List<ObjectId> lote = altas.subList(i, Math.min(altas.size(), i + BATCH_SIZE));
+                for (Document doc : coll.find(Filters.in("_id", lote)).projection(projection)) {
+                    if (merge(rows, fromDocument.apply(doc))) cambios++;
+                }
+            }
+        }
+        // Las fechas las pone el reloj de cada puesto: una fecha futura no puede adelantar
+        // la marca, o los cambios de los demás quedarían fuera de la siguiente consulta
+        ultima = Math.min(ultima, inicio);
+
+        if (snapshot != null && cambios == 0) {
+            return snapshot.records();
+        }
+
+        List<T> ordered = new ArrayList<>(rows.values());
+        ordered.sort(order);
+        try {
+            save(ordered, ultima);
+            logger.info("Copia local de {} sincronizada: {} cambios, {} filas", collection, cambios, ordered.size());
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo guardar la copia local de {}: {}", collection, e.getMessage());
+        }
+        return ordered;
+    }
+
+    /** true si la fila es nueva o ha cambiado desde la copia */
+    private boolean merge(Map<ObjectId, T> rows, T row) {
+        T anterior = rows.put(codec.id(row), row);
+        return anterior == null || codec.actualizado(anterior) != codec.actualizado(row);
+    }
+
+    private void save(List<T> rows, long lastSync) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(collection + "-" + (generation + 1) + ".snap");
+        Files.deleteIfExists(file);
+        SnapshotFile.write(file, codec, rows, lastSync);
+
+        SnapshotFile<T> saved = SnapshotFile.open(file, codec);
+        if (saved == null) throw new IOException("fichero no válido tras escribirlo: " + file);
+
+        SnapshotFile<T> previous = current;
+        current = saved;
+        generation++;
+        if (previous != null) {
+            deleteOldGenerations(List.of(previous.path()));
+        }
+    }
+
+    private void deleteOldGenerations(List<Path> files) {
+        SnapshotFile<T> snapshot = current;
+        for (Path file : files) {
+            if (snapshot != null && file.equals(snapshot.path())) continue;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Sigue proyectado (Windows): se borrará en el próximo arranque
+                logger.debug("No se pudo borrar {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(collection.length() + 1, name.length() - ".snap".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
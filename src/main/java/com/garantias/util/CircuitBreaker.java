@@ -0,0 +1,93 @@
+package com.garantias.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker sin bloqueos para dependencias remotas.
+ * <p>
+ * CERRADO deja pasar todas las peticiones; tras {@code failureThreshold} fallos
+ * consecutivos pasa a ABIERTO y las rechaza de inmediato. Pasado {@code openDuration}
+ * deja pasar una única petición de prueba (SEMIABIERTO); si en otro {@code openDuration}
+ * no llega ni éxito ni fallo, la prueba se da por fallida y vuelve a ABIERTO.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final AtomicReference<Estado> estado = new AtomicReference<>(Estado.CERRADO);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Indica si la petición puede intentarse. En ABIERTO solo se concede
+     * una petición de prueba cuando ha expirado el tiempo de espera.
+     */
+    public boolean allowRequest() {
+        Estado actual = estado.get();
+        if (actual == Estado.CERRADO) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (actual == Estado.ABIERTO && now - openedAt.get() >= openDurationNanos) {
+            if (estado.compareAndSet(Estado.ABIERTO, Estado.SEMIABIERTO)) {
+                openedAt.set(now);
+                logger.info("Circuit breaker '{}' semiabierto: se permite una petición de prueba", name);
+                return true;
+            }
+        } else if (actual == Estado.SEMIABIERTO && now - openedAt.get() >= openDurationNanos) {
+            // La prueba no obtuvo respuesta: abrir de nuevo
+            if (estado.compareAndSet(Estado.SEMIABIERTO, Estado.ABIERTO)) {
+                openedAt.set(now);
+            }
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        Estado anterior = estado.getAndSet(Estado.CERRADO);
+        if (anterior != Estado.CERRADO) {
+            logger.info("✅ Circuit breaker '{}' cerrado", name);
+        }
+    }
+
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        Estado actual = estado.get();
+        if (actual == Estado.SEMIABIERTO || (actual == Estado.CERRADO && failures >= failureThreshold)) {
+            if (estado.compareAndSet(actual, Estado.ABIERTO)) {
+                openedAt.set(System.nanoTime());
+                logger.warn("❌ Circuit breaker '{}' abierto tras {} fallo(s)", name, failures);
+            }
+        } else if (actual == Estado.ABIERTO) {
+            // Sigue caído: reiniciar la ventana de espera
+            openedAt.set(System.nanoTime());
+        }
+    }
+
+    public Estado getEstado() {
+        return estado.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,528 @@
+package com.garantias.util;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.DatosCliente;
+import com.garantias.model.Factura.EstadoFactura;
+import com.garantias.model.Factura.ItemFactura;
+import com.garantias.model.Factura.MetodoPago;
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.garantias.model.Garantia.TipoGarantia;
+import com.garantias.service.FacturaMapper;
+import com.garantias.service.GarantiaMapper;
+import com.garantias.service.ReparacionService;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generador determinista de datos sintéticos para pruebas de carga.
+ * <p>
+ * Con la misma semilla produce siempre los mismos documentos: garantías con
+ * distribuciones realistas de marca, modelo y potencia, historial de reparaciones
+ * ({@code reparaciones}, con las últimas embebidas) y facturas enlazadas ({@code garantiaId}) con varias líneas. Escribe directamente en
+ * MongoDB con inserciones masivas o a un fichero JSON Lines comprimido para recargas
+ * repetibles.
+ *
+ * <pre>
+ * java -cp garantias-aires-1.0.0.jar com.garantias.util.DatasetGenerator --garantias 1000000 --seed 42
+ * java -cp ... com.garantias.util.DatasetGenerator --garantias 1000000 --export datos.jsonl.gz
+ * java -cp ... com.garantias.util.DatasetGenerator --import datos.jsonl.gz --uri mongodb://...
+ * </pre>
+ */
+public class DatasetGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final String GARANTIAS = "garantias";
+    private static final String FACTURAS = "facturas";
+    private static final String REPARACIONES = "reparaciones";
+    private static final int YEARS_BACK = 6;
+
+    // ========================================
+    // DISTRIBUCIONES
+    // ========================================
+
+    private static final String[] MARCAS = {"Daikin", "Mitsubishi", "Fujitsu", "LG", "Samsung", "Panasonic", "Toshiba", "Carrier", "Haier", "Hisense"};
+    private static final int[] PESO_MARCAS = {22, 18, 12, 12, 10, 8, 7, 5, 4, 2};
+    private static final Map<String, String[]> MODELOS = Map.of(
+        "Daikin", new String[]{"FTXM25R", "FTXM35R", "FTXM50R", "FTXF35D", "FTXC25D"},
+        "Mitsubishi", new String[]{"MSZ-LN25VG", "MSZ-LN35VG", "MSZ-AP35VG", "MSZ-HR25VF"},
+        "Fujitsu", new String[]{"ASY25UI-KL", "ASY35UI-KL", "ASY50UI-KM"},
+        "LG", new String[]{"S12ET", "S09ET", "DC12RH", "PC12SQ"},
+        "Samsung", new String[]{"AR12TXHQASINXEF", "AR09TXFCAWKNEU", "AR24TXHQASINXEU"},
+        "Panasonic", new String[]{"CS-TZ35ZKEW", "CS-Z25ZKEW", "CS-BZ50ZKE"},
+        "Toshiba", new String[]{"RAS-B13E2KVG", "RAS-10J2KVG"},
+        "Carrier", new String[]{"42QHG012DS", "42QHG018DS"},
+        "Haier", new String[]{"AS35S2SF1FA", "AS25S2SF1FA"},
+        "Hisense", new String[]{"CA35YR3AG", "KB25YR3A"}
+    );
+    private static final int[] BTU = {9000, 12000, 18000, 24000, 36000};
+    private static final int[] PESO_BTU = {30, 40, 18, 9, 3};
+    private static final double[] PRECIO_BTU = {420, 560, 820, 1150, 1900};
+    private static final String[] REFRIGERANTES = {"R-32", "R-32", "R-32", "R-410A"};
+
+    private static final TipoGarantia[] TIPOS = {TipoGarantia.COMPLETA, TipoGarantia.LIMITADA, TipoGarantia.EXTENDIDA};
+    private static final int[] PESO_TIPOS = {60, 25, 15};
+
+    private static final String[] NOMBRES = {"Antonio", "José", "Manuel", "Francisco", "David", "Juan", "Javier", "Daniel",
+        "María", "Carmen", "Ana", "Isabel", "Laura", "Lucía", "Cristina", "Marta", "Pilar", "Elena", "Pablo", "Sergio"};
+    private static final String[] APELLIDOS = {"García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez",
+        "Pérez", "Gómez", "Martín", "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno", "Muñoz", "Álvarez", "Romero", "Navarro", "Torres"};
+    private static final String[] CALLES = {"Calle Mayor", "Avenida del Puerto", "Calle Colón", "Gran Vía", "Avenida de Francia",
+        "Calle San Vicente", "Paseo de la Alameda", "Calle de la Paz", "Avenida Blasco Ibáñez", "Calle Xàtiva"};
+    private static final String[] CIUDADES = {"Valencia", "Madrid", "Barcelona", "Sevilla", "Alicante", "Murcia", "Málaga", "Castellón"};
+    private static final int[] PESO_CIUDADES = {30, 15, 12, 10, 12, 8, 8, 5};
+    private static final String[] TECNICOS = {"Pedro Gil", "Raúl Ortega", "Iván Castillo", "Sonia Vidal", "Jorge Molina", "Nuria Ferrer"};
+    private static final String[] AVERIAS = {"Fuga de refrigerante", "Sustitución de compresor", "Cambio de placa electrónica",
+        "Limpieza de evaporador", "Sustitución de ventilador", "Sensor de temperatura defectuoso", "Obstrucción en desagüe"};
+    private static final double[] COSTE_AVERIAS = {180, 650, 320, 90, 210, 75, 60};
+    private static final String[] COBERTURA_COMPLETA = {"compresor", "evaporador", "condensador", "mano_obra"};
+    private static final String[] COBERTURA_LIMITADA = {"compresor"};
+    private static final String DNI_LETRAS = "TRWAGMYFPDXBNJZSQVHLCKE";
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}");
+
+    private final SplittableRandom random;
+    private final LocalDate hoy;
+    private final int numberWidth;
+    private final Map<String, Integer> contadores = new HashMap<>();
+
+    public DatasetGenerator(long seed, long total, LocalDate hoy) {
+        this.random = new SplittableRandom(seed);
+        this.hoy = hoy;
+        // Los números se ordenan como texto en generateNextNumero: mismo ancho en todos
+        this.numberWidth = Math.max(4, String.valueOf(total).length());
+    }
+
+    /**
+     * Genera una garantía y sus facturas, en el orden en que deben insertarse
+     */
+    public void next(Sink sink) {
+        String ciudad = weighted(CIUDADES, PESO_CIUDADES);
+        String nombre = pick(NOMBRES) + " " + pick(APELLIDOS) + " " + pick(APELLIDOS);
+        String telefono = "+34 6" + pad(random.nextInt(100), 2) + " " + pad(random.nextInt(1000), 3) + " " + pad(random.nextInt(1000), 3);
+        String email = normalizar(nombre).replace(' ', '.') + random.nextInt(1000) + "@correo.es";
+        String direccion = pick(CALLES) + " " + (1 + random.nextInt(250)) + ", " + ciudad;
+
+        // Más altas recientes que antiguas (sesgo cuadrático hacia hoy)
+        double u = random.nextDouble();
+        LocalDate fechaInicio = hoy.minusDays((long) (u * u * 365 * YEARS_BACK));
+
+        int btuIndex = weightedIndex(PESO_BTU);
+        String marca = weighted(MARCAS, PESO_MARCAS);
+        String[] modelos = MODELOS.get(marca);
+
+        Garantia.AireAcondicionado aire = new Garantia.AireAcondicionado();
+        aire.setMarca(marca);
+        aire.setModelo(modelos[random.nextInt(modelos.length)]);
+        aire.setNumeroSerie(marca.substring(0, Math.min(3, marca.length())).toUpperCase() + Long.toString(random.nextLong() & Long.MAX_VALUE, 36).toUpperCase());
+        aire.setTipoRefrigerante(pick(REFRIGERANTES));
+        aire.setPotenciaBTU(BTU[btuIndex]);
+        aire.setFechaInstalacion(fechaInicio);
+
+        TipoGarantia tipo = TIPOS[weightedIndex(PESO_TIPOS)];
+        int meses = tipo == TipoGarantia.EXTENDIDA ? 60 : tipo == TipoGarantia.COMPLETA ? (random.nextBoolean() ? 24 : 36) : 12;
+        LocalDate fechaFin = fechaInicio.plusMonths(meses);
+
+        Garantia.DetalleGarantia detalle = new Garantia.DetalleGarantia();
+        detalle.setFechaInicio(fechaInicio);
+        detalle.setFechaFin(fechaFin);
+        detalle.setDuracionMeses(meses);
+        detalle.setTipo(tipo);
+        detalle.setEstado(estadoGarantia(fechaFin));
+        detalle.setCobertura(List.of(tipo == TipoGarantia.LIMITADA ? COBERTURA_LIMITADA : COBERTURA_COMPLETA));
+
+        Garantia g = new Garantia();
+        g.setId(objectId(fechaInicio));
+        g.setNumeroGarantia(numero("GAR", fechaInicio.getYear()));
+        g.setCliente(new Garantia.Cliente(nombre, telefono, email, direccion));
+        g.setAireAcondicionado(aire);
+        g.setGarantia(detalle);
+        g.setNotas("");
+        g.setCreadoPor("generador");
+        LocalDateTime creacion = fechaInicio.atTime(8 + random.nextInt(11), random.nextInt(60));
+        g.setFechaCreacion(creacion);
+        g.setFechaActualizacion(creacion);
+
+        // Reparaciones: la mayoría no tiene ninguna
+        List<Garantia.Reparacion> reparaciones = new ArrayList<>();
+        LocalDate limite = fechaFin.isBefore(hoy) ? fechaFin : hoy;
+        long diasCubiertos = ChronoUnit.DAYS.between(fechaInicio, limite);
+        int numReparaciones = diasCubiertos <= 0 ? 0 : numeroReparaciones(detalle.getEstado());
+        for (int i = 0; i < numReparaciones; i++) {
+            int averia = random.nextInt(AVERIAS.length);
+            LocalDate fecha = fechaInicio.plusDays(1 + random.nextLong(diasCubiertos));
+            Garantia.Reparacion reparacion = new Garantia.Reparacion(fecha, AVERIAS[averia], pick(TECNICOS),
+                cents(COSTE_AVERIAS[averia] * (0.7 + random.nextDouble() * 0.8)));
+            reparacion.setId(objectId(fecha));
+            reparaciones.add(reparacion);
+        }
+        reparaciones.sort(Comparator.comparing(Garantia.Reparacion::getFecha));
+
+        // Como ReparacionService: historial completo aparte y las últimas embebidas
+        List<Document> recientes = new ArrayList<>();
+        for (int i = Math.max(0, reparaciones.size() - ReparacionService.RECIENTES); i < reparaciones.size(); i++) {
+            recientes.add(GarantiaMapper.toDocument(reparaciones.get(i)));
+        }
+        Document garantiaDoc = GarantiaMapper.toDocument(g);
+        garantiaDoc.append("historialReparaciones", recientes);
+        garantiaDoc.append("numeroReparaciones", reparaciones.size());
+        sink.accept(GARANTIAS, garantiaDoc);
+        for (Garantia.Reparacion reparacion : reparaciones) {
+            sink.accept(REPARACIONES, GarantiaMapper.toDocument(reparacion)
+                .append("garantiaId", g.getId())
+                .append("fechaRegistro", toDate(reparacion.getFecha())));
+        }
+
+        // Factura de venta e instalación (no todas las garantías se facturaron aquí)
+        if (random.nextInt(100) < 85) {
+            List<ItemFactura> items = new ArrayList<>();
+            items.add(new ItemFactura("Aire acondicionado " + marca + " " + aire.getModelo() + " " + BTU[btuIndex] + " BTU",
+                1, cents(PRECIO_BTU[btuIndex] * (0.9 + random.nextDouble() * 0.25)), 21));
+            items.add(new ItemFactura("Instalación", 1, cents(180 + random.nextInt(220)), 21));
+            if (random.nextInt(100) < 40) {
+                int metros = 3 + random.nextInt(10);
+                items.add(new ItemFactura("Línea frigorífica (m)", metros, 18.0, 21));
+            }
+            if (random.nextInt(100) < 25) {
+                items.add(new ItemFactura("Soportes antivibración", 1, 35.0, 21));
+            }
+            sink.accept(FACTURAS, factura(g, fechaInicio, items, detalle.getEstado() == EstadoGarantia.ANULADA));
+        }
+
+        // Reparaciones fuera de cobertura facturadas al cliente
+        for (Garantia.Reparacion reparacion : reparaciones) {
+            if (tipo == TipoGarantia.LIMITADA && random.nextBoolean()) {
+                List<ItemFactura> items = new ArrayList<>();
+                items.add(new ItemFactura(reparacion.getDescripcion(), 1, reparacion.getCosto(), 21));
+                items.add(new ItemFactura("Desplazamiento", 1, 30.0, 21));
+                sink.accept(FACTURAS, factura(g, reparacion.getFecha(), items, false));
+            }
+        }
+    }
+
+    private Document factura(Garantia g, LocalDate fecha, List<ItemFactura> items, boolean anulada) {
+        Factura f = new Factura();
+        f.setId(objectId(fecha));
+        f.setNumeroFactura(numero("FAC", fecha.getYear()));
+        f.setGarantiaId(g.getId());
+        f.setCliente(new DatosCliente(g.getCliente().getNombre(), nif(), g.getCliente().getDireccion()));
+        f.setFechaEmision(fecha);
+        f.setItems(items);
+        f.recalcularTotales();
+
+        // Las facturas recientes tienen más probabilidad de seguir pendientes
+        long dias = ChronoUnit.DAYS.between(fecha, hoy);
+        int pendiente = dias < 30 ? 45 : dias < 90 ? 15 : 3;
+        int r = random.nextInt(100);
+        f.setEstado(anulada ? EstadoFactura.ANULADA : r < pendiente ? EstadoFactura.PENDIENTE
+            : r < pendiente + 3 ? EstadoFactura.ANULADA : EstadoFactura.PAGADA);
+        f.setMetodoPago(MetodoPago.values()[weightedIndex(new int[]{10, 45, 25, 12, 8})]);
+        f.setNotas("");
+        f.setFechaCreacion(fecha.atStartOfDay());
+        f.setFechaActualizacion(fecha.atStartOfDay());
+        return FacturaMapper.toDocument(f);
+    }
+
+    private EstadoGarantia estadoGarantia(LocalDate fechaFin) {
+        int r = random.nextInt(100);
+        if (fechaFin.isBefore(hoy)) {
+            return r < 5 ? EstadoGarantia.ANULADA : EstadoGarantia.VENCIDA;
+        }
+        return r < 8 ? EstadoGarantia.RECLAMADA : r < 10 ? EstadoGarantia.ANULADA : EstadoGarantia.ACTIVA;
+    }
+
+    private int numeroReparaciones(EstadoGarantia estado) {
+        int r = random.nextInt(100);
+        if (estado == EstadoGarantia.RECLAMADA) {
+            return 1 + (r < 30 ? 1 : 0) + (r < 10 ? 1 : 0);
+        }
+        return r < 70 ? 0 : r < 90 ? 1 : r < 97 ? 2 : 3 + random.nextInt(3);
+    }
+
+    private String numero(String prefijo, int year) {
+        String clave = prefijo + year;
+        int n = contadores.merge(clave, 1, Integer::sum);
+        return prefijo + "-" + year + "-" + pad(n, numberWidth);
+    }
+
+    /**
+     * ObjectId con la fecha del documento y el resto de bytes de la semilla (reproducible)
+     */
+    private ObjectId objectId(LocalDate fecha) {
+        int timestamp = (int) fecha.atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        return new ObjectId(ByteBuffer.allocate(12).putInt(timestamp).putLong(random.nextLong()).array());
+    }
+
+    private String nif() {
+        int numero = random.nextInt(100_000_000);
+        return pad(numero, 8) + DNI_LETRAS.charAt(numero % 23);
+    }
+
+    private static String pad(int value, int width) {
+        String s = Integer.toString(value);
+        return s.length() >= width ? s : "0".repeat(width - s.length()) + s;
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private String weighted(String[] values, int[] weights) {
+        return values[weightedIndex(weights)];
+    }
+
+    private int weightedIndex(int[] weights) {
+        int total = 0;
+        for (int w : weights) total += w;
+        int r = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    private static double cents(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static Date toDate(LocalDate fecha) {
+        return Date.from(fecha.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String normalizar(String texto) {
+        return DIACRITICOS.matcher(Normalizer.normalize(texto.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    // ========================================
+    // DESTINOS
+    // ========================================
+
+    /**
+     * Destino de los documentos generados
+     */
+    public interface Sink extends AutoCloseable {
+        void accept(String coleccion, Document doc);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Inserción masiva en MongoDB: lotes desordenados escritos por varios hilos
+     */
+    public static class MongoSink implements Sink {
+
+        private final int batchSize;
+        private final ExecutorService writers;
+        private final Semaphore inFlight;
+        private final Map<String, List<Document>> batches = new HashMap<>();
+        private final AtomicLong written = new AtomicLong();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final long start = System.nanoTime();
+
+        public MongoSink(int batchSize, int threads) {
+            this.batchSize = batchSize;
+            this.writers = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "dataset-writer");
+                t.setDaemon(true);
+                return t;
+            });
+            // Como mucho dos lotes por hilo en memoria
+            this.inFlight = new Semaphore(threads * 2);
+        }
+
+        @Override
+        public void accept(String coleccion, Document doc) {
+            List<Document> batch = batches.computeIfAbsent(coleccion, k -> new ArrayList<>(batchSize));
+            batch.add(doc);
+            if (batch.size() >= batchSize) {
+                flush(coleccion, batch);
+                batches.put(coleccion, new ArrayList<>(batchSize));
+            }
+        }
+
+        private void flush(String coleccion, List<Document> batch) {
+            if (batch.isEmpty()) return;
+            if (failure.get() != null) {
+                throw new IllegalStateException("Error en la inserción masiva", failure.get());
+            }
+            inFlight.acquireUninterruptibly();
+            writers.execute(() -> {
+                try {
+                    MongoCollection<Document> collection = MongoDBConfig.getDatabase().getCollection(coleccion);
+                    collection.insertMany(batch, new InsertManyOptions().ordered(false));
+                    long total = written.addAndGet(batch.size());
+                    if (total / 100_000 != (total - batch.size()) / 100_000) {
+                        double secs = (System.nanoTime() - start) / 1e9;
+                        logger.info("{} documentos insertados ({} docs/s)", total, Math.round(total / secs));
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            batches.forEach(this::flush);
+            writers.shutdown();
+            try {
+                writers.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure.get() != null) {
+                throw new IllegalStateException("Error en la inserción masiva", failure.get());
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            logger.info("✅ {} documentos insertados en {} s ({} docs/s)",
+                written.get(), String.format("%.1f", secs), Math.round(written.get() / secs));
+        }
+    }
+
+    /**
+     * Exportación a JSON Lines comprimido (Extended JSON: conserva tipos, fechas e ids)
+     */
+    public static class FileSink implements Sink {
+
+        private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.EXTENDED).build();
+        // Registro del driver: incluye java.sql.Date, que usan los mappers
+        private static final DocumentCodec CODEC = new DocumentCodec(MongoClientSettings.getDefaultCodecRegistry());
+
+        private final BufferedWriter writer;
+        private final Path path;
+        private long written;
+
+        public FileSink(Path path) throws IOException {
+            this.path = path;
+            this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(path), 1 << 16), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public void accept(String coleccion, Document doc) {
+            try {
+                writer.write(new Document("c", coleccion).append("d", doc).toJson(JSON, CODEC));
+                writer.newLine();
+                written++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+                logger.info("✅ {} documentos exportados a {}", written, path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Recarga un fichero exportado en el destino indicado
+     */
+    public static void importFile(Path path, Sink sink) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(path), 1 << 16), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Document envelope = Document.parse(line);
+                sink.accept(envelope.getString("c"), envelope.get("d", Document.class));
+            }
+        }
+    }
+
+    // ========================================
+    // LÍNEA DE COMANDOS
+    // ========================================
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        long garantias = Long.parseLong(options.getOrDefault("garantias", "10000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "5000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        // Fecha de referencia fija para que la semilla reproduzca exactamente los mismos datos
+        LocalDate hoy = LocalDate.parse(options.getOrDefault("hoy", LocalDate.now().toString()));
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+
+        try {
+            if (options.containsKey("import")) {
+                Path file = Paths.get(options.get("import"));
+                logger.info("Importando {} en MongoDB...", file);
+                try (Sink sink = new MongoSink(batch, threads)) {
+                    importFile(file, sink);
+                }
+                return;
+            }
+
+            Sink sink = options.containsKey("export")
+                ? new FileSink(Paths.get(options.get("export")))
+                : new MongoSink(batch, threads);
+
+            logger.info("Generando {} garantías (semilla {}, fecha de referencia {})", garantias, seed, hoy);
+            DatasetGenerator generator = new DatasetGenerator(seed, garantias, hoy);
+            try (sink) {
+                for (long i = 0; i < garantias; i++) {
+                    generator.next(sink);
+                }
+            }
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
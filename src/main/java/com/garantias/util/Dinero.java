@@ -0,0 +1,109 @@
+package com.garantias.util;
+
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Importes en céntimos de euro sobre {@code long}.
+ * <p>
+ * Todos los cálculos de facturas se hacen con enteros (sin deriva de redondeo ni
+ * objetos intermedios); en MongoDB se guardan como {@link Decimal128} con dos
+ * decimales. Los {@code double} solo aparecen en los bordes: entrada de la UI y
+ * documentos antiguos que aún no se han migrado.
+ */
+public final class Dinero {
+
+    public static final long CENTIMOS_POR_EURO = 100;
+
+    // Decimal128: bit de signo, exponente sesgado (14 bits desde el bit 49) y coeficiente
+    private static final long SIGN_BIT = 0x8000000000000000L;
+    private static final int EXPONENT_BIAS = 6176;
+    private static final long EXPONENT_MASK = 0x3FFFL;
+    private static final long SPECIAL_MASK = 0x6000000000000000L;
+    private static final long COEFFICIENT_HIGH_MASK = 0x1FFFFFFFFFFFFL;
+    private static final long HIGH_CENTIMOS = (long) (EXPONENT_BIAS - 2) << 49;
+
+    private Dinero() {}
+
+    /**
+     * Euros -> céntimos, redondeando al céntimo más cercano (mitad hacia arriba)
+     */
+    public static long deEuros(double euros) {
+        if (Double.isNaN(euros) || Double.isInfinite(euros)) {
+            throw new IllegalArgumentException("Importe no válido: " + euros);
+        }
+        // BigDecimal.valueOf usa la representación decimal más corta: 1.005 -> 101
+        return BigDecimal.valueOf(euros).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Céntimos -> euros (solo para mostrar o para APIs que esperan double)
+     */
+    public static double aEuros(long centimos) {
+        return centimos / (double) CENTIMOS_POR_EURO;
+    }
+
+    /**
+     * Importe unitario por cantidad, con control de desbordamiento
+     */
+    public static long multiplicar(long centimos, int cantidad) {
+        return Math.multiplyExact(centimos, (long) cantidad);
+    }
+
+    /**
+     * Porcentaje de un importe (p. ej. el IVA), redondeado al céntimo (mitad hacia arriba)
+     */
+    public static long porcentaje(long centimos, int porcentaje) {
+        long producto = Math.multiplyExact(centimos, (long) porcentaje);
+        return (producto >= 0 ? producto + 50 : producto - 50) / 100;
+    }
+
+    // ========================================
+    // CONVERSIÓN BSON
+    // ========================================
+
+    /**
+     * Céntimos -> Decimal128 con exponente -2 (igual que {@code new Decimal128(BigDecimal.valueOf(c, 2))})
+     */
+    public static Decimal128 aDecimal128(long centimos) {
+        long high = HIGH_CENTIMOS | (centimos < 0 ? SIGN_BIT : 0);
+        return Decimal128.fromIEEE754BIDEncoding(high, Math.absExact(centimos));
+    }
+
+    /**
+     * Decimal128 -> céntimos. Los valores guardados por la aplicación (exponente -2 y
+     * coeficiente de 63 bits) se decodifican sin crear objetos; el resto pasa por BigDecimal.
+     */
+    public static long deDecimal128(Decimal128 valor) {
+        long high = valor.getHigh();
+        long low = valor.getLow();
+        if ((high & SPECIAL_MASK) != SPECIAL_MASK
+                && (high & COEFFICIENT_HIGH_MASK) == 0 && low >= 0
+                && ((high >>> 49) & EXPONENT_MASK) == EXPONENT_BIAS - 2) {
+            return high < 0 ? -low : low;
+        }
+        if (valor.isNaN() || valor.isInfinite()) {
+            throw new IllegalArgumentException("Importe no válido: " + valor);
+        }
+        return valor.bigDecimalValue().setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Valor de un campo BSON -> céntimos: Decimal128, o Double/Integer/Long de documentos
+     * anteriores a la migración. Null o ausente cuenta como 0.
+     */
+    public static long deBson(Object valor) {
+        if (valor instanceof Decimal128) {
+            return deDecimal128((Decimal128) valor);
+        }
+        if (valor instanceof Integer || valor instanceof Long) {
+            return Math.multiplyExact(((Number) valor).longValue(), CENTIMOS_POR_EURO);
+        }
+        if (valor instanceof Number) {
+            return deEuros(((Number) valor).doubleValue());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,106 @@
+package com.garantias.util;
+
+import com.garantias.model.Factura;
+import com.garantias.model.Factura.EstadoFactura;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Filtro de la tabla de facturas: estado, rango de fechas de emisión y búsqueda de texto
+ */
+public class FacturaFilter implements Predicate<Factura> {
+    
+    private final EstadoFactura estado;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String searchText;
+    
+    /**
+     * @param estado     estado exigido, o null para cualquiera
+     * @param from       fecha de emisión mínima, o null
+     * @param to         fecha de emisión máxima, o null
+     * @param searchText texto ya normalizado (minúsculas, sin espacios al inicio/final)
+     */
+    public FacturaFilter(EstadoFactura estado, LocalDate from, LocalDate to, String searchText) {
+        this.estado = estado;
+        this.from = from;
+        this.to = to;
+        this.searchText = searchText;
+    }
+    
+    @Override
+    public boolean test(Factura factura) {
+        // Estado
+        if (estado != null && factura.getEstado() != estado) {
+            return false;
+        }
+        
+        // Fechas
+        if (from != null && factura.getFechaEmision() != null && factura.getFechaEmision().isBefore(from)) {
+            return false;
+        }
+        if (to != null && factura.getFechaEmision() != null && factura.getFechaEmision().isAfter(to)) {
+            return false;
+        }
+        
+        // Texto
+        if (!searchText.isEmpty()) {
+            boolean matchNumero = factura.getNumeroFactura() != null && 
+                factura.getNumeroFactura().toLowerCase().contains(searchText);
+            boolean matchCliente = factura.getCliente() != null && 
+                factura.getCliente().getNombre() != null &&
+                factura.getCliente().getNombre().toLowerCase().contains(searchText);
+            return matchNumero || matchCliente;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * El mismo filtro como consulta de MongoDB, para recorrer en el servidor lo que la
+     * tabla muestra (exportaciones)
+     */
+    public Bson toBson() {
+        List<Bson> conditions = new ArrayList<>();
+        if (estado != null) {
+            // Igual que FacturaMapper: "estadoFactura" tiene prioridad sobre "estado"
+            conditions.add(Filters.or(
+                Filters.eq("estadoFactura", estado.name()),
+                Filters.and(Filters.eq("estadoFactura", null), Filters.eq("estado", estado.name()))
+            ));
+        }
+        // Como en la tabla, las facturas sin fecha no se excluyen por fechas
+        if (from != null) {
+            conditions.add(Filters.or(
+                Filters.gte("fechaEmision", java.sql.Date.valueOf(from)),
+                Filters.eq("fechaEmision", null)
+            ));
+        }
+        if (to != null) {
+            conditions.add(Filters.or(
+                Filters.lt("fechaEmision", java.sql.Date.valueOf(to.plusDays(1))),
+                Filters.eq("fechaEmision", null)
+            ));
+        }
+        if (!searchText.isEmpty()) {
+            String regex = Pattern.quote(searchText);
+            conditions.add(Filters.or(
+                Filters.regex("numeroFactura", regex, "i"),
+                Filters.regex("cliente.nombre", regex, "i")
+            ));
+        }
+        return conditions.isEmpty() ? new Document() : Filters.and(conditions);
+    }
+    
+    @Override
+    public String toString() {
+        return "estado=" + estado + " desde=" + from + " hasta=" + to + " texto=" + searchText;
+    }
+}
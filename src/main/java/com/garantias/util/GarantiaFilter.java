@@ -0,0 +1,97 @@
+package com.garantias.util;
+
+import com.garantias.model.Garantia;
+import com.garantias.model.Garantia.DetalleGarantia;
+import com.garantias.model.Garantia.EstadoGarantia;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Filtro de la tabla de garantías: estado y búsqueda de texto (número, cliente, equipo)
+ */
+public class GarantiaFilter implements Predicate<Garantia> {
+    
+    private final EstadoGarantia estado;
+    private final String searchText;
+    
+    /**
+     * @param estado     estado exigido, o null para cualquiera
+     * @param searchText texto ya normalizado (minúsculas, sin espacios al inicio/final)
+     */
+    public GarantiaFilter(EstadoGarantia estado, String searchText) {
+        this.estado = estado;
+        this.searchText = searchText;
+    }
+    
+    @Override
+    public boolean test(Garantia garantia) {
+        // Filtro de estado
+        if (estado != null) {
+            DetalleGarantia detalle = garantia.getGarantia();
+            if (detalle == null || detalle.getEstado() != estado) {
+                return false;
+            }
+        }
+        
+        // Búsqueda de texto
+        if (!searchText.isEmpty()) {
+            boolean matchNumero = garantia.getNumeroGarantia() != null && 
+                garantia.getNumeroGarantia().toLowerCase().contains(searchText);
+            boolean matchCliente = garantia.getCliente() != null && 
+                garantia.getCliente().getNombre() != null &&
+                garantia.getCliente().getNombre().toLowerCase().contains(searchText);
+            boolean matchEquipo = garantia.getAireAcondicionado() != null &&
+                (garantia.getAireAcondicionado().getMarca() + " " + garantia.getAireAcondicionado().getModelo())
+                .toLowerCase().contains(searchText);
+            
+            return matchNumero || matchCliente || matchEquipo;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * El mismo filtro como consulta de MongoDB, para recorrer en el servidor lo que la
+     * tabla muestra (exportaciones)
+     */
+    public Bson toBson() {
+        List<Bson> conditions = new ArrayList<>();
+        if (estado != null) {
+            conditions.add(Filters.eq("garantia.estado", estado.name()));
+        }
+        if (!searchText.isEmpty()) {
+            String regex = Pattern.quote(searchText);
+            List<Bson> texto = new ArrayList<>(Arrays.asList(
+                Filters.regex("numeroGarantia", regex, "i"),
+                Filters.regex("cliente.nombre", regex, "i"),
+                Filters.regex("aireAcondicionado.marca", regex, "i"),
+                Filters.regex("aireAcondicionado.modelo", regex, "i")
+            ));
+            // Sin espacios el texto cae entero en la marca o en el modelo; con espacios
+            // puede abarcar los dos, como en "marca modelo" de la tabla
+            if (searchText.indexOf(' ') >= 0) {
+                texto.add(new Document("$expr", new Document("$regexMatch", new Document()
+                    .append("input", new Document("$concat", Arrays.asList(
+                        new Document("$ifNull", Arrays.asList("$aireAcondicionado.marca", "")), " ",
+                        new Document("$ifNull", Arrays.asList("$aireAcondicionado.modelo", ""))
+                    )))
+                    .append("regex", regex)
+                    .append("options", "i"))));
+            }
+            conditions.add(Filters.or(texto));
+        }
+        return conditions.isEmpty() ? new Document() : Filters.and(conditions);
+    }
+    
+    @Override
+    public String toString() {
+        return "estado=" + estado + " texto=" + searchText;
+    }
+}
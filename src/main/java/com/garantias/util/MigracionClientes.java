@@ -0,0 +1,444 @@
+package com.garantias.util;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.service.ClienteService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Crea las fichas de la colección {@code clientes} a partir de las garantías y facturas,
+ * fusiona las repetidas y enlaza cada garantía y factura con la suya ({@code clienteId}).
+ * Crea los índices de {@link ClienteService}.
+ * <p>
+ * Son el mismo cliente los registros que comparten NIF, teléfono o email normalizados,
+ * una factura y su garantía, y los que ya apuntan a la misma ficha; la relación se cierra
+ * por transitividad (union-find). De cada grupo queda una ficha: la existente más
+ * antigua, con las claves de todo el grupo y los datos más recientes de cada campo. Las
+ * demás fichas del grupo se borran. Un registro sin claves tiene su propia ficha.
+ * <p>
+ * Las tres colecciones se leen a la vez y los grupos se escriben en tramos de
+ * {@code --batch} repartidos entre {@code --hilos}: los grupos no comparten claves, así
+ * que los tramos no chocan en los índices únicos. Repetirlo no cambia nada si no hay
+ * registros nuevos. Se ejecuta con la aplicación cerrada.
+ *
+ * <pre>
+ * java -cp ... com.garantias.util.MigracionClientes [--uri mongodb://...] [--batch 1000] [--hilos 4] [--dry-run true]
+ * </pre>
+ */
+public class MigracionClientes {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionClientes.class);
+
+    private static final String GARANTIAS = "garantias";
+    private static final String FACTURAS = "facturas";
+    private static final String CLIENTES = "clientes";
+    private static final String[] TIPOS = {ClienteService.NIF, ClienteService.TELEFONO, ClienteService.EMAIL};
+    // Datos de la ficha que se comparan para no reescribirla si no cambia
+    private static final String[] CAMPOS = {"nombre", "nif", "telefono", "email", "direccion", "claves"};
+
+    private enum Origen { GARANTIA, FACTURA, CLIENTE }
+
+    /**
+     * Lo que interesa de cada documento para agrupar y componer la ficha
+     */
+    private static final class Registro {
+        Origen origen;
+        ObjectId id;
+        ObjectId clienteId;
+        ObjectId garantiaId;
+        String nombre;
+        String nif;
+        String telefono;
+        String email;
+        String direccion;
+        Date fecha;
+        Document claves;
+        Document original;
+    }
+
+    /**
+     * Escrituras de un grupo
+     */
+    private static final class Grupo {
+        ObjectId clienteId;
+        Document ficha;
+        List<ObjectId> fusionadas = new ArrayList<>();
+        List<ObjectId> garantias = new ArrayList<>();
+        List<ObjectId> facturas = new ArrayList<>();
+        boolean nueva;
+    }
+
+    private final MongoDatabase database;
+    private final int batchSize;
+    private final int hilos;
+    private final boolean dryRun;
+
+    private final AtomicLong nuevas = new AtomicLong();
+    private final AtomicLong actualizadas = new AtomicLong();
+    private final AtomicLong fusionadas = new AtomicLong();
+    private final AtomicLong garantiasEnlazadas = new AtomicLong();
+    private final AtomicLong facturasEnlazadas = new AtomicLong();
+
+    public MigracionClientes(MongoDatabase database, int batchSize, int hilos, boolean dryRun) {
+        this.database = database;
+        this.batchSize = batchSize;
+        this.hilos = Math.max(1, hilos);
+        this.dryRun = dryRun;
+    }
+
+    public void run() {
+        if (!dryRun) {
+            ClienteService.crearIndices(database);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        try {
+            // Lectura: las tres colecciones a la vez
+            Future<List<Registro>> garantias = pool.submit(() -> leer(Origen.GARANTIA));
+            Future<List<Registro>> facturas = pool.submit(() -> leer(Origen.FACTURA));
+            Future<List<Registro>> clientes = pool.submit(() -> leer(Origen.CLIENTE));
+            List<Registro> registros = new ArrayList<>(esperar(garantias));
+            registros.addAll(esperar(facturas));
+            registros.addAll(esperar(clientes));
+            logger.info("{} registros leídos", registros.size());
+
+            List<Grupo> grupos = agrupar(registros);
+            logger.info("{} clientes distintos", grupos.size());
+
+            // Escritura: tramos de grupos en paralelo
+            List<Future<?>> tramos = new ArrayList<>();
+            for (int i = 0; i < grupos.size(); i += batchSize) {
+                List<Grupo> tramo = grupos.subList(i, Math.min(grupos.size(), i + batchSize));
+                tramos.add(pool.submit(() -> escribir(tramo)));
+            }
+            for (Future<?> tramo : tramos) {
+                esperar(tramo);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        logger.info("{} {} fichas nuevas, {} actualizadas, {} fusionadas; {} garantías y {} facturas enlazadas",
+            dryRun ? "🔎 [simulación]" : "✅", nuevas.get(), actualizadas.get(), fusionadas.get(),
+            garantiasEnlazadas.get(), facturasEnlazadas.get());
+    }
+
+    // ========================================
+    // LECTURA
+    // ========================================
+
+    private List<Registro> leer(Origen origen) {
+        List<Registro> registros = new ArrayList<>();
+        switch (origen) {
+            case GARANTIA:
+                for (Document doc : database.getCollection(GARANTIAS).find()
+                        .projection(Projections.include("clienteId", "cliente", "fechaCreacion", "fechaActualizacion"))
+                        .batchSize(batchSize)) {
+                    Registro r = registro(origen, doc);
+                    Document cliente = doc.get("cliente", new Document());
+                    r.nombre = cliente.getString("nombre");
+                    r.telefono = cliente.getString("telefono");
+                    r.email = cliente.getString("email");
+                    r.direccion = cliente.getString("direccion");
+                    r.fecha = fecha(doc, "fechaActualizacion", "fechaCreacion");
+                    r.claves = ClienteService.claves(null, r.telefono, r.email);
+                    registros.add(r);
+                }
+                break;
+            case FACTURA:
+                for (Document doc : database.getCollection(FACTURAS).find()
+                        .projection(Projections.include("clienteId", "garantiaId", "cliente", "fechaEmision", "fechaActualizacion"))
+                        .batchSize(batchSize)) {
+                    Registro r = registro(origen, doc);
+                    r.garantiaId = doc.getObjectId("garantiaId");
+                    Document cliente = doc.get("cliente", new Document());
+                    r.nombre = cliente.getString("nombre");
+                    r.nif = cliente.getString("nif");
+                    r.direccion = cliente.getString("direccion");
+                    r.fecha = fecha(doc, "fechaActualizacion", "fechaEmision");
+                    r.claves = ClienteService.claves(r.nif, null, null);
+                    registros.add(r);
+                }
+                break;
+            case CLIENTE:
+                for (Document doc : database.getCollection(CLIENTES).find().batchSize(batchSize)) {
+                    Registro r = registro(origen, doc);
+                    r.nombre = doc.getString("nombre");
+                    r.nif = doc.getString("nif");
+                    r.telefono = doc.getString("telefono");
+                    r.email = doc.getString("email");
+                    r.direccion = doc.getString("direccion");
+                    r.fecha = fecha(doc, "fechaActualizacion", "fechaCreacion");
+                    // Las claves guardadas pueden venir de fichas ya fusionadas
+                    r.claves = unir(List.of(doc.get("claves", new Document()),
+                        ClienteService.claves(r.nif, r.telefono, r.email)));
+                    r.original = doc;
+                    registros.add(r);
+                }
+                break;
+        }
+        logger.info("   ... {} {} leídos", registros.size(), origen.name().toLowerCase());
+        return registros;
+    }
+
+    private static Registro registro(Origen origen, Document doc) {
+        Registro r = new Registro();
+        r.origen = origen;
+        r.id = doc.getObjectId("_id");
+        r.clienteId = origen == Origen.CLIENTE ? r.id : doc.getObjectId("clienteId");
+        return r;
+    }
+
+    private static Date fecha(Document doc, String... campos) {
+        for (String campo : campos) {
+            Object valor = doc.get(campo);
+            if (valor instanceof Date) return (Date) valor;
+        }
+        return null;
+    }
+
+    // ========================================
+    // AGRUPACIÓN
+    // ========================================
+
+    private List<Grupo> agrupar(List<Registro> registros) {
+        int[] padre = new int[registros.size()];
+        for (int i = 0; i < padre.length; i++) padre[i] = i;
+
+        // Primer registro con cada clave: los siguientes se unen a él
+        Map<String, Integer> primero = new HashMap<>();
+        for (int i = 0; i < registros.size(); i++) {
+            Registro r = registros.get(i);
+            List<String> claves = new ArrayList<>();
+            for (String tipo : r.claves.keySet()) {
+                for (String valor : r.claves.getList(tipo, String.class)) {
+                    claves.add(tipo + ":" + valor);
+                }
+            }
+            if (r.clienteId != null) claves.add("cliente:" + r.clienteId);
+            if (r.origen == Origen.GARANTIA) claves.add("garantia:" + r.id);
+            if (r.garantiaId != null) claves.add("garantia:" + r.garantiaId);
+            for (String clave : claves) {
+                Integer otro = primero.putIfAbsent(clave, i);
+                if (otro != null) unir(padre, i, otro);
+            }
+        }
+
+        Map<Integer, List<Registro>> componentes = new HashMap<>();
+        for (int i = 0; i < registros.size(); i++) {
+            componentes.computeIfAbsent(raiz(padre, i), k -> new ArrayList<>()).add(registros.get(i));
+        }
+        List<Grupo> grupos = new ArrayList<>(componentes.size());
+        for (List<Registro> componente : componentes.values()) {
+            Grupo grupo = grupo(componente);
+            if (grupo != null) grupos.add(grupo);
+        }
+        return grupos;
+    }
+
+    private static int raiz(int[] padre, int i) {
+        while (padre[i] != i) {
+            padre[i] = padre[padre[i]];
+            i = padre[i];
+        }
+        return i;
+    }
+
+    private static void unir(int[] padre, int a, int b) {
+        int ra = raiz(padre, a);
+        int rb = raiz(padre, b);
+        if (ra != rb) padre[Math.max(ra, rb)] = Math.min(ra, rb);
+    }
+
+    /**
+     * Ficha y enlaces de un grupo; null si no hay nada con qué identificar al cliente
+     */
+    private static Grupo grupo(List<Registro> registros) {
+        // Los más recientes primero: sus datos ganan
+        registros.sort(Comparator.comparing((Registro r) -> r.fecha, Comparator.nullsLast(Comparator.reverseOrder())));
+
+        List<Registro> fichas = new ArrayList<>();
+        ObjectId referenciada = null;
+        List<Document> claves = new ArrayList<>();
+        for (Registro r : registros) {
+            if (r.origen == Origen.CLIENTE) fichas.add(r);
+            if (r.clienteId != null && (referenciada == null || r.clienteId.compareTo(referenciada) < 0)) {
+                referenciada = r.clienteId;
+            }
+            claves.add(r.claves);
+        }
+        Document ficha = new Document()
+            .append("nombre", primero(registros, r -> r.nombre))
+            .append("nif", primero(registros, r -> r.nif))
+            .append("telefono", primero(registros, r -> r.telefono))
+            .append("email", primero(registros, r -> r.email))
+            .append("direccion", primero(registros, r -> r.direccion))
+            .append("claves", unir(claves));
+        if (fichas.isEmpty() && ficha.get("claves", Document.class).isEmpty() && ficha.getString("nombre") == null) {
+            return null;
+        }
+
+        Grupo grupo = new Grupo();
+        fichas.sort(Comparator.comparing(r -> r.id));
+        Registro conservada = fichas.isEmpty() ? null : fichas.get(0);
+        grupo.clienteId = conservada != null ? conservada.id : referenciada != null ? referenciada : new ObjectId();
+        for (Registro r : fichas) {
+            if (r != conservada) grupo.fusionadas.add(r.id);
+        }
+        for (Registro r : registros) {
+            if (Objects.equals(r.clienteId, grupo.clienteId)) continue;
+            if (r.origen == Origen.GARANTIA) grupo.garantias.add(r.id);
+            if (r.origen == Origen.FACTURA) grupo.facturas.add(r.id);
+        }
+
+        Date ahora = new Date();
+        if (conservada == null) {
+            grupo.nueva = true;
+            grupo.ficha = ficha.append("fechaCreacion", ahora).append("fechaActualizacion", ahora);
+        } else if (!igual(conservada.original, ficha) || !grupo.fusionadas.isEmpty()) {
+            Date creada = conservada.original.getDate("fechaCreacion");
+            grupo.ficha = ficha.append("fechaCreacion", creada != null ? creada : ahora).append("fechaActualizacion", ahora);
+        }
+        return grupo;
+    }
+
+    private static String primero(List<Registro> registros, Function<Registro, String> campo) {
+        for (Registro r : registros) {
+            String valor = campo.apply(r);
+            if (valor != null && !valor.isBlank()) return valor;
+        }
+        return null;
+    }
+
+    /**
+     * Unión de claves, cada lista ordenada y sin repetidos; sin los tipos vacíos
+     */
+    private static Document unir(List<Document> claves) {
+        Document result = new Document();
+        for (String tipo : TIPOS) {
+            TreeSet<String> valores = new TreeSet<>();
+            for (Document c : claves) {
+                List<String> lista = c.getList(tipo, String.class);
+                if (lista != null) valores.addAll(lista);
+            }
+            if (!valores.isEmpty()) result.append(tipo, new ArrayList<>(valores));
+        }
+        return result;
+    }
+
+    private static boolean igual(Document guardada, Document ficha) {
+        for (String campo : CAMPOS) {
+            if (!Objects.equals(guardada.get(campo), ficha.get(campo))) return false;
+        }
+        return true;
+    }
+
+    // ========================================
+    // ESCRITURA
+    // ========================================
+
+    private void escribir(List<Grupo> tramo) {
+        List<ObjectId> borrar = new ArrayList<>();
+        List<WriteModel<Document>> fichas = new ArrayList<>();
+        List<WriteModel<Document>> garantias = new ArrayList<>();
+        List<WriteModel<Document>> facturas = new ArrayList<>();
+        long nuevasTramo = 0;
+        long actualizadasTramo = 0;
+        long garantiasTramo = 0;
+        long facturasTramo = 0;
+
+        for (Grupo grupo : tramo) {
+            borrar.addAll(grupo.fusionadas);
+            if (grupo.ficha != null) {
+                Document doc = new Document("_id", grupo.clienteId);
+                doc.putAll(grupo.ficha);
+                fichas.add(new ReplaceOneModel<>(Filters.eq("_id", grupo.clienteId), doc, new ReplaceOptions().upsert(true)));
+                if (grupo.nueva) nuevasTramo++;
+                else actualizadasTramo++;
+            }
+            Bson enlace = Updates.set("clienteId", grupo.clienteId);
+            if (!grupo.garantias.isEmpty()) {
+                garantias.add(new UpdateManyModel<>(Filters.in("_id", grupo.garantias), enlace));
+                garantiasTramo += grupo.garantias.size();
+            }
+            if (!grupo.facturas.isEmpty()) {
+                facturas.add(new UpdateManyModel<>(Filters.in("_id", grupo.facturas), enlace));
+                facturasTramo += grupo.facturas.size();
+            }
+        }
+
+        if (!dryRun) {
+            MongoCollection<Document> clientes = database.getCollection(CLIENTES);
+            // Primero se borran las fusionadas: sus claves pasan a la ficha que queda
+            if (!borrar.isEmpty()) clientes.deleteMany(Filters.in("_id", borrar));
+            if (!fichas.isEmpty()) clientes.bulkWrite(fichas, new BulkWriteOptions().ordered(false));
+            if (!garantias.isEmpty()) database.getCollection(GARANTIAS).bulkWrite(garantias, new BulkWriteOptions().ordered(false));
+            if (!facturas.isEmpty()) database.getCollection(FACTURAS).bulkWrite(facturas, new BulkWriteOptions().ordered(false));
+        }
+        nuevas.addAndGet(nuevasTramo);
+        actualizadas.addAndGet(actualizadasTramo);
+        fusionadas.addAndGet(borrar.size());
+        garantiasEnlazadas.addAndGet(garantiasTramo);
+        facturasEnlazadas.addAndGet(facturasTramo);
+        logger.info("   ... {} grupos escritos", tramo.size());
+    }
+
+    private static <T> T esperar(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migración interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        int batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+        int hilos = Integer.parseInt(options.getOrDefault("hilos",
+            Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+        boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dry-run", "false"));
+
+        try {
+            new MigracionClientes(MongoDBConfig.getDatabase(), batch, hilos, dryRun).run();
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
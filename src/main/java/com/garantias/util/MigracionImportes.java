@@ -0,0 +1,190 @@
+package com.garantias.util;
+
+import com.garantias.config.MongoDBConfig;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migra los importes de las facturas de Double a Decimal128 (céntimos exactos).
+ * <p>
+ * Convierte {@code subtotal}, {@code totalIVA}, {@code total} y los importes de cada
+ * línea sin recalcularlos: una factura emitida no cambia de importe. Las que no
+ * cuadran (total ≠ subtotal + IVA) solo se avisan. Al terminar, el validador de la
+ * colección pasa a exigir {@code decimal}. Se puede repetir sin efectos.
+ *
+ * <pre>
+ * java -cp ... com.garantias.util.MigracionImportes [--uri mongodb://...] [--batch 1000] [--dry-run true]
+ * </pre>
+ */
+public class MigracionImportes {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionImportes.class);
+
+    private static final String COLLECTION_NAME = "facturas";
+    private static final String[] CAMPOS = {"subtotal", "totalIVA", "total"};
+    private static final String[] CAMPOS_ITEM = {"precioUnitario", "total"};
+
+    private final MongoDatabase database;
+    private final int batchSize;
+    private final boolean dryRun;
+
+    private long revisadas;
+    private long migradas;
+    private long descuadradas;
+
+    public MigracionImportes(MongoDatabase database, int batchSize, boolean dryRun) {
+        this.database = database;
+        this.batchSize = batchSize;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Facturas con algún importe que todavía no es Decimal128
+     */
+    static Bson pendientes() {
+        List<Bson> condiciones = new ArrayList<>();
+        for (String campo : CAMPOS) {
+            condiciones.add(sinMigrar(campo));
+        }
+        List<Bson> item = new ArrayList<>();
+        for (String campo : CAMPOS_ITEM) {
+            item.add(sinMigrar(campo));
+        }
+        condiciones.add(Filters.elemMatch("items", Filters.or(item)));
+        return Filters.or(condiciones);
+    }
+
+    private static Bson sinMigrar(String campo) {
+        return Filters.and(Filters.exists(campo), Filters.not(Filters.type(campo, "decimal")));
+    }
+
+    public void run() {
+        MongoCollection<Document> facturas = database.getCollection(COLLECTION_NAME);
+        List<WriteModel<Document>> lote = new ArrayList<>(batchSize);
+
+        // Recorrido único por _id: cada documento se visita una vez aunque se modifique
+        for (Document doc : facturas.find(pendientes()).sort(Sorts.ascending("_id")).batchSize(batchSize)) {
+            revisadas++;
+            Document cambios = convertir(doc);
+            if (cambios.isEmpty()) continue;
+
+            lote.add(new UpdateOneModel<>(Filters.eq("_id", doc.get("_id")), new Document("$set", cambios)));
+            if (lote.size() >= batchSize) {
+                escribir(facturas, lote);
+            }
+        }
+        escribir(facturas, lote);
+
+        logger.info("{} {} facturas revisadas, {} migradas, {} con importes descuadrados",
+            dryRun ? "🔎 [simulación]" : "✅", revisadas, migradas, descuadradas);
+
+        if (!dryRun) {
+            actualizarValidador();
+        }
+    }
+
+    private Document convertir(Document doc) {
+        Document cambios = new Document();
+        Map<String, Long> centimos = new HashMap<>();
+        for (String campo : CAMPOS) {
+            if (doc.containsKey(campo)) {
+                long valor = Dinero.deBson(doc.get(campo));
+                centimos.put(campo, valor);
+                cambios.append(campo, Dinero.aDecimal128(valor));
+            }
+        }
+
+        List<Document> items = doc.getList("items", Document.class);
+        if (items != null) {
+            List<Document> convertidos = new ArrayList<>(items.size());
+            for (Document item : items) {
+                Document copia = new Document(item);
+                for (String campo : CAMPOS_ITEM) {
+                    if (item.containsKey(campo)) {
+                        copia.put(campo, Dinero.aDecimal128(Dinero.deBson(item.get(campo))));
+                    }
+                }
+                convertidos.add(copia);
+            }
+            cambios.append("items", convertidos);
+        }
+
+        if (centimos.size() == CAMPOS.length
+                && centimos.get("subtotal") + centimos.get("totalIVA") != centimos.get("total")) {
+            descuadradas++;
+            logger.warn("⚠️ Factura {} descuadrada: subtotal {} + IVA {} ≠ total {} (se conserva el total)",
+                doc.getString("numeroFactura"), Dinero.aEuros(centimos.get("subtotal")),
+                Dinero.aEuros(centimos.get("totalIVA")), Dinero.aEuros(centimos.get("total")));
+        }
+        return cambios;
+    }
+
+    private void escribir(MongoCollection<Document> facturas, List<WriteModel<Document>> lote) {
+        if (lote.isEmpty()) return;
+        if (!dryRun) {
+            // El validador antiguo exige double: se ignora hasta cambiarlo al final
+            facturas.bulkWrite(lote, new BulkWriteOptions().ordered(false).bypassDocumentValidation(true));
+        }
+        migradas += lote.size();
+        logger.info("   ... {} facturas convertidas", migradas);
+        lote.clear();
+    }
+
+    /**
+     * Cambia el bsonType de los importes del validador $jsonSchema a "decimal"
+     */
+    private void actualizarValidador() {
+        Document info = database.listCollections().filter(Filters.eq("name", COLLECTION_NAME)).first();
+        Document options = info != null ? info.get("options", Document.class) : null;
+        Document validator = options != null ? options.get("validator", Document.class) : null;
+        Document schema = validator != null ? validator.get("$jsonSchema", Document.class) : null;
+        Document properties = schema != null ? schema.get("properties", Document.class) : null;
+        if (properties == null) {
+            logger.info("La colección {} no tiene validador $jsonSchema: nada que actualizar", COLLECTION_NAME);
+            return;
+        }
+
+        for (String campo : CAMPOS) {
+            properties.put(campo, new Document("bsonType", "decimal"));
+        }
+        try {
+            database.runCommand(new Document("collMod", COLLECTION_NAME).append("validator", validator));
+            logger.info("✅ Validador de {} actualizado: importes como decimal", COLLECTION_NAME);
+        } catch (MongoException e) {
+            logger.warn("⚠️ No se pudo actualizar el validador de {}: {}", COLLECTION_NAME, e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        int batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+        boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dry-run", "false"));
+
+        try {
+            new MigracionImportes(MongoDBConfig.getDatabase(), batch, dryRun).run();
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.garantias.util;
+
+import com.garantias.config.MongoDBConfig;
+import com.garantias.service.ReparacionService;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saca el historial de reparaciones embebido en las garantías a la colección
+ * {@code reparaciones} y deja en cada garantía solo las {@value ReparacionService#RECIENTES}
+ * más recientes y el total ({@code numeroReparaciones}). Crea los índices de la colección.
+ * <p>
+ * Solo toca garantías sin {@code numeroReparaciones}, que nunca han pasado por
+ * {@link ReparacionService}: se puede repetir, y si se interrumpe el lote a medias se
+ * rehace entero (primero se borran las reparaciones copiadas de esas garantías). Se
+ * ejecuta con la aplicación cerrada, antes de registrar reparaciones nuevas.
+ *
+ * <pre>
+ * java -cp ... com.garantias.util.MigracionReparaciones [--uri mongodb://...] [--batch 1000] [--dry-run true]
+ * </pre>
+ */
+public class MigracionReparaciones {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigracionReparaciones.class);
+
+    private static final String GARANTIAS = "garantias";
+    private static final String REPARACIONES = "reparaciones";
+
+    private final MongoDatabase database;
+    private final int batchSize;
+    private final boolean dryRun;
+
+    private long revisadas;
+    private long reparaciones;
+
+    public MigracionReparaciones(MongoDatabase database, int batchSize, boolean dryRun) {
+        this.database = database;
+        this.batchSize = batchSize;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Índices de la colección reparaciones (los mismos que crea init-db.js)
+     */
+    public static void crearIndices(MongoDatabase database) {
+        MongoCollection<Document> coleccion = database.getCollection(REPARACIONES);
+        coleccion.createIndex(Indexes.compoundIndex(Indexes.ascending("garantiaId"), Indexes.descending("fecha")));
+        coleccion.createIndex(Indexes.compoundIndex(Indexes.ascending("tecnico"), Indexes.descending("fecha")));
+        coleccion.createIndex(Indexes.descending("fecha"));
+    }
+
+    public void run() {
+        if (!dryRun) {
+            crearIndices(database);
+        }
+        MongoCollection<Document> garantias = database.getCollection(GARANTIAS);
+        List<Document> lote = new ArrayList<>(batchSize);
+
+        for (Document doc : garantias.find(Filters.exists("numeroReparaciones", false))
+                .projection(new Document("historialReparaciones", 1))
+                .sort(Sorts.ascending("_id")).batchSize(batchSize)) {
+            lote.add(doc);
+            if (lote.size() >= batchSize) {
+                migrar(garantias, lote);
+            }
+        }
+        migrar(garantias, lote);
+
+        logger.info("{} {} garantías revisadas, {} reparaciones movidas a {}",
+            dryRun ? "🔎 [simulación]" : "✅", revisadas, reparaciones, REPARACIONES);
+    }
+
+    private void migrar(MongoCollection<Document> garantias, List<Document> lote) {
+        if (lote.isEmpty()) return;
+        List<ObjectId> ids = new ArrayList<>(lote.size());
+        List<Document> copias = new ArrayList<>();
+        List<WriteModel<Document>> updates = new ArrayList<>(lote.size());
+
+        for (Document doc : lote) {
+            ObjectId garantiaId = doc.getObjectId("_id");
+            ids.add(garantiaId);
+            List<Document> historial = new ArrayList<>();
+            List<Document> embebido = doc.getList("historialReparaciones", Document.class);
+            if (embebido != null) {
+                for (Document r : embebido) {
+                    Document copia = new Document(r);
+                    copia.putIfAbsent("_id", new ObjectId());
+                    historial.add(copia);
+                }
+            }
+            historial.sort(Comparator.comparing(r -> r.getDate("fecha"), Comparator.nullsFirst(Comparator.<Date>naturalOrder())));
+
+            for (Document r : historial) {
+                copias.add(new Document(r).append("garantiaId", garantiaId).append("fechaRegistro", r.getDate("fecha")));
+            }
+            List<Document> recientes = historial.subList(Math.max(0, historial.size() - ReparacionService.RECIENTES), historial.size());
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", garantiaId), Updates.combine(
+                Updates.set("historialReparaciones", new ArrayList<>(recientes)),
+                Updates.set("numeroReparaciones", historial.size()))));
+        }
+
+        if (!dryRun) {
+            MongoCollection<Document> destino = database.getCollection(REPARACIONES);
+            destino.deleteMany(Filters.in("garantiaId", ids));
+            if (!copias.isEmpty()) {
+                destino.insertMany(copias, new InsertManyOptions().ordered(false));
+            }
+            garantias.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+        revisadas += lote.size();
+        reparaciones += copias.size();
+        logger.info("   ... {} garantías migradas", revisadas);
+        lote.clear();
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        if (options.containsKey("uri")) {
+            System.setProperty("garantias.mongo.uri", options.get("uri"));
+        }
+        int batch = Integer.parseInt(options.getOrDefault("batch", "1000"));
+        boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dry-run", "false"));
+
+        try {
+            new MigracionReparaciones(MongoDBConfig.getDatabase(), batch, dryRun).run();
+        } finally {
+            MongoDBConfig.close();
+        }
+    }
+}
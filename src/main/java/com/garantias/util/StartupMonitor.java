@@ -0,0 +1,84 @@
+package com.garantias.util;
+
+import com.garantias.model.Usuario;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mide el tiempo de arranque hasta el primer frame y conduce la ejecución
+ * de entrenamiento usada para generar el archivo AppCDS (perfil runtime-image)
+ */
+public class StartupMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMonitor.class);
+
+    /** Recorre login y dashboard de forma automática y sale */
+    public static final String TRAINING_PROPERTY = "garantias.training";
+    /** Imprime STARTUP_MS=<n> tras el primer frame y sale */
+    public static final String BENCHMARK_PROPERTY = "garantias.startup.benchmark";
+
+    // Tiempo en el dashboard para que las consultas en segundo plano carguen sus clases
+    private static final Duration TRAINING_DASHBOARD_TIME = Duration.seconds(5);
+
+    public static boolean isTrainingRun() {
+        return Boolean.getBoolean(TRAINING_PROPERTY);
+    }
+
+    public static boolean isBenchmarkRun() {
+        return Boolean.getBoolean(BENCHMARK_PROPERTY);
+    }
+
+    /**
+     * Registra la medición del primer frame de la escena inicial
+     */
+    public static void watchFirstFrame(Scene scene) {
+        onFirstFrame(scene, () -> {
+            long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+            logger.info("⏱️ Primer frame en {} ms desde el arranque de la JVM", elapsed);
+
+            if (isBenchmarkRun()) {
+                System.out.println("STARTUP_MS=" + elapsed);
+                Platform.exit();
+            } else if (isTrainingRun()) {
+                runTraining();
+            }
+        });
+    }
+
+    /**
+     * Ejecuta la acción una sola vez, tras el primer pulso de layout de la escena
+     */
+    public static void onFirstFrame(Scene scene, Runnable action) {
+        AtomicBoolean fired = new AtomicBoolean(false);
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if (fired.compareAndSet(false, true)) {
+                // No se puede quitar el listener mientras la escena recorre la lista
+                Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+                action.run();
+            }
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    private static void runTraining() {
+        logger.info("Ejecución de entrenamiento AppCDS: entrando al dashboard en modo demo");
+        Usuario demoUser = new Usuario(1, "Administrador Demo", "admin", "admin@demo.com");
+        SessionManager.getInstance().setCurrentUser(demoUser);
+        ViewManager.navigateToDashboard();
+
+        PauseTransition pause = new PauseTransition(TRAINING_DASHBOARD_TIME);
+        pause.setOnFinished(e -> {
+            logger.info("Entrenamiento completado, cerrando aplicación");
+            Platform.exit();
+        });
+        pause.play();
+    }
+}